@@ -0,0 +1,175 @@
+package com.nzoth.testgraph;
+
+import android.app.Instrumentation;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.MotionEvent;
+import android.view.View;
+
+import com.nzoth.testgraph.chart.ScrollPreview;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Counts what {@link GraphView#onDraw} allocates on the main thread once the graph is shown.
+ * Every frame sequence runs twice and only the second run is counted, so labels met for
+ * the first time are already in their caches; what happens between frames, such as touch
+ * handling, isn't counted.
+ */
+@RunWith(AndroidJUnit4.class)
+@SuppressWarnings("deprecation")
+public class GraphViewAllocationTest {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1200;
+    private static final int POINT_COUNT = 10000;
+    private static final int FRAME_COUNT = 100;
+    private static final long PREVIEW_TIMEOUT_MILLIS = 5000;
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private GraphView graphView;
+    private Bitmap bitmap;
+    private Canvas canvas;
+
+    private interface FrameStep {
+        //runs before frame number {@code frame}, outside of the count
+        void prepare(int frame);
+    }
+
+    @Before
+    public void setUp() throws InterruptedException {
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                graphView = new GraphView(instrumentation.getTargetContext(), createGraphItem());
+                graphView.measure(
+                        View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+                graphView.layout(0, 0, WIDTH, HEIGHT);
+                bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+                canvas = new Canvas(bitmap);
+            }
+        });
+
+        //the scroll preview is built on the loader thread and delivered on the main thread
+        long deadline = SystemClock.uptimeMillis() + PREVIEW_TIMEOUT_MILLIS;
+        while (getScrollPreview() == null && SystemClock.uptimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNotNull("No scroll preview", getScrollPreview());
+    }
+
+    @After
+    public void tearDown() {
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                graphView.releaseGraph();
+            }
+        });
+        bitmap.recycle();
+    }
+
+    @Test
+    public void sameFrameDoesNotAllocate() {
+        assertEquals(0, countAllocations(new FrameStep() {
+            @Override
+            public void prepare(int frame) {
+            }
+        }));
+    }
+
+    @Test
+    public void selectionFramesDoNotAllocate() {
+        assertEquals(0, countAllocations(new FrameStep() {
+            @Override
+            public void prepare(int frame) {
+                graphView.setSelectedPosition(frame * (POINT_COUNT / FRAME_COUNT));
+            }
+        }));
+    }
+
+    @Test
+    public void panningFramesDoNotAllocate() {
+        final long downTime = SystemClock.uptimeMillis();
+        final MotionEvent[] events = new MotionEvent[FRAME_COUNT];
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            //drags the graph one way, then back
+            float x = WIDTH / 2 + (i < FRAME_COUNT / 2 ? i : FRAME_COUNT - i) * 8;
+            events[i] = MotionEvent.obtain(downTime, downTime + i * 16,
+                    i == 0 ? MotionEvent.ACTION_DOWN : MotionEvent.ACTION_MOVE, x, HEIGHT / 4, 0);
+        }
+
+        try {
+            assertEquals(0, countAllocations(new FrameStep() {
+                @Override
+                public void prepare(int frame) {
+                    graphView.onTouchEvent(events[frame]);
+                }
+            }));
+        } finally {
+            for (MotionEvent event : events) {
+                event.recycle();
+            }
+        }
+    }
+
+    private ScrollPreview getScrollPreview() {
+        final ScrollPreview[] scrollPreview = new ScrollPreview[1];
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                scrollPreview[0] = graphView.getScrollPreview();
+            }
+        });
+        return scrollPreview[0];
+    }
+
+    private int countAllocations(final FrameStep step) {
+        final int[] count = new int[1];
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                drawFrames(step);
+                Debug.resetThreadAllocCount();
+                drawFrames(step);
+                count[0] = Debug.getThreadAllocCount();
+            }
+        });
+        return count[0];
+    }
+
+    private void drawFrames(FrameStep step) {
+        for (int frame = 0; frame < FRAME_COUNT; frame++) {
+            step.prepare(frame);
+            Debug.startAllocCounting();
+            graphView.onDraw(canvas);
+            Debug.stopAllocCounting();
+        }
+    }
+
+    private static GraphItem createGraphItem() {
+        long[] dateList = new long[POINT_COUNT];
+        long[][] graphList = new long[2][POINT_COUNT];
+        for (int i = 0; i < POINT_COUNT; i++) {
+            dateList[i] = 1542412800000L + i * 24 * 60 * 60 * 1000L;
+            graphList[0][i] = (i * 7919) % 1000;
+            graphList[1][i] = (i * 104729) % 5000;
+        }
+        GraphItem graphItem = new GraphItem();
+        graphItem.setDateList(dateList);
+        graphItem.setGraphList(graphList);
+        graphItem.setGraphColorList(new String[]{"#3DC23F", "#F34C44"});
+        graphItem.setGraphTitleList(new String[]{"#0", "#1"});
+        return graphItem;
+    }
+}
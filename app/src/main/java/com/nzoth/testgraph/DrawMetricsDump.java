@@ -0,0 +1,42 @@
+package com.nzoth.testgraph;
+
+import android.util.Log;
+
+import com.nzoth.testgraph.chart.DrawMetricsRecorder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * Writes the summary of a {@link DrawMetricsRecorder} to logcat or to a file.
+ */
+public class DrawMetricsDump {
+
+    private DrawMetricsDump() {
+    }
+
+    public static void toLog(String tag, DrawMetricsRecorder recorder) {
+        StringWriter writer = new StringWriter();
+        try {
+            recorder.writeSummary(writer);
+        } catch (IOException e) {
+            //StringWriter doesn't throw
+            throw new IllegalStateException(e);
+        }
+        for (String line : writer.toString().split("\n")) {
+            Log.i(tag, line.trim());
+        }
+    }
+
+    public static void toFile(File file, DrawMetricsRecorder recorder) throws IOException {
+        Writer writer = new FileWriter(file);
+        try {
+            recorder.writeSummary(writer);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -1,32 +1,17 @@
 package com.nzoth.testgraph;
 
-import java.util.Map;
-import java.util.NavigableMap;
-import java.util.TreeMap;
+import com.nzoth.testgraph.chart.LabelFormat;
 
+/**
+ * String versions of {@link LabelFormat}, for places that are not drawn every frame.
+ */
 public class FormatUtils {
-    private static final NavigableMap<Long, String> suffixes = new TreeMap<>();
-    static {
-        suffixes.put(1_000L, "k");
-        suffixes.put(1_000_000L, "M");
-        suffixes.put(1_000_000_000L, "G");
-        suffixes.put(1_000_000_000_000L, "T");
-        suffixes.put(1_000_000_000_000_000L, "P");
-        suffixes.put(1_000_000_000_000_000_000L, "E");
+
+    private FormatUtils() {
     }
 
     public static String formatBigValue(long value) {
-        //Long.MIN_VALUE == -Long.MIN_VALUE so we need an adjustment here
-        if (value == Long.MIN_VALUE) return formatBigValue(Long.MIN_VALUE + 1);
-        if (value < 0) return "-" + formatBigValue(-value);
-        if (value < 1000) return Long.toString(value); //deal with easy case
-
-        Map.Entry<Long, String> e = suffixes.floorEntry(value);
-        Long divideBy = e.getKey();
-        String suffix = e.getValue();
-
-        long truncated = value / (divideBy / 10); //the number part of the output times 10
-        boolean hasDecimal = truncated < 100 && (truncated / 10d) != (truncated / 10);
-        return hasDecimal ? (truncated / 10d) + suffix : (truncated / 10) + suffix;
+        char[] chars = new char[LabelFormat.BIG_VALUE_MAX_LENGTH];
+        return new String(chars, 0, LabelFormat.formatBigValue(value, chars, 0));
     }
 }
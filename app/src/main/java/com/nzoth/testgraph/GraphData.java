@@ -0,0 +1,201 @@
+package com.nzoth.testgraph;
+
+import android.graphics.Color;
+import android.os.Build;
+
+import com.nzoth.testgraph.chart.DerivedStateFile;
+import com.nzoth.testgraph.chart.ParallelPyramidBuilder;
+import com.nzoth.testgraph.chart.RangeMaxIndex;
+import com.nzoth.testgraph.chart.ScrollPreview;
+import com.nzoth.testgraph.chart.SeriesPyramid;
+import com.nzoth.testgraph.chart.SeriesVisibility;
+import com.nzoth.testgraph.chart.StackedSeries;
+
+import java.util.Arrays;
+
+/**
+ * A {@link GraphItem} together with the state {@link GraphView} derives from it once.
+ * An instance can be prepared on a background thread and handed to the main thread;
+ * after that it is only changed there, through {@link #append}.
+ */
+public class GraphData {
+    private static final int PARALLEL_PYRAMID_SIZE = 1 << 20;
+
+    private final GraphItem graphItem;
+    private final int[] graphColorList;
+    private final SeriesPyramid[] pyramids;
+    private final SeriesVisibility visibility;
+    private final StackedSeries stackedSeries;
+
+    private long[] combinedValues;
+    private RangeMaxIndex combinedMaxIndex;
+
+    public GraphData(GraphItem graphItem) {
+        this.graphItem = graphItem;
+        this.graphColorList = parseColors(graphItem.getGraphColorList());
+        this.combinedValues = new long[graphItem.getPointCount()];
+        combineValues(0, graphItem.getPointCount());
+        this.combinedMaxIndex = new RangeMaxIndex(combinedValues, graphItem.getPointCount());
+        this.pyramids = buildPyramids(graphItem.getGraphList(), graphItem.getPointCount());
+        this.visibility = new SeriesVisibility(graphItem.getGraphList().length);
+        this.stackedSeries = createStackedSeries(graphItem, visibility);
+    }
+
+    /**
+     * Uses {@code state} read from a {@link DerivedStateFile} for the points of
+     * {@code graphItem} instead of deriving it again.
+     */
+    public GraphData(GraphItem graphItem, DerivedStateFile.State state) {
+        this.graphItem = graphItem;
+        this.graphColorList = parseColors(graphItem.getGraphColorList());
+        this.combinedValues = state.getCombinedValues();
+        this.combinedMaxIndex = state.getCombinedMaxIndex();
+        this.pyramids = state.getPyramids();
+        this.visibility = new SeriesVisibility(graphItem.getGraphList().length);
+        this.stackedSeries = createStackedSeries(graphItem, visibility);
+    }
+
+    public GraphItem getGraphItem() {
+        return graphItem;
+    }
+
+    /**
+     * @return index over the element-wise max of all series
+     */
+    public RangeMaxIndex getCombinedMaxIndex() {
+        return combinedMaxIndex;
+    }
+
+    /**
+     * @return min/max pyramid of every series
+     */
+    public SeriesPyramid[] getPyramids() {
+        return pyramids;
+    }
+
+    /**
+     * @return which series are shown, kept here so it survives the view being recycled
+     */
+    public SeriesVisibility getVisibility() {
+        return visibility;
+    }
+
+    /**
+     * @return running sums of the visible series for stacked and percentage charts, or
+     * null for line charts
+     */
+    public StackedSeries getStackedSeries() {
+        return stackedSeries;
+    }
+
+    /**
+     * Shows or hides a series through {@link #getVisibility}, summing the stacked series
+     * from it up again if the chart has them.
+     *
+     * @return false if the series already was in that state
+     */
+    public boolean setSeriesVisible(int series, boolean visible, long time) {
+        if (!visibility.setVisible(series, visible, time)) {
+            return false;
+        }
+        if (stackedSeries != null) {
+            stackedSeries.update(graphItem.getGraphList(), visibility, series);
+        }
+        return true;
+    }
+
+    /**
+     * @return max of all points of the visible series, or {@link Long#MIN_VALUE} if none is
+     */
+    public long getVisibleMax() {
+        if (visibility.isAllVisible()) {
+            return combinedMaxIndex.getMax();
+        }
+
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < pyramids.length; i++) {
+            if (visibility.isVisible(i)) {
+                max = Math.max(max, pyramids[i].getMax(0, getPointCount()));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return the derived state as it is now, for {@link DerivedStateFile#write} on another
+     * thread while this keeps being appended to
+     */
+    DerivedStateFile.Snapshot snapshotState(ScrollPreview scrollPreview) {
+        return new DerivedStateFile.Snapshot(combinedValues, combinedMaxIndex, pyramids, getPointCount(), scrollPreview);
+    }
+
+    public int[] getGraphColorList() {
+        return graphColorList;
+    }
+
+    public int getPointCount() {
+        return graphItem.getPointCount();
+    }
+
+    /**
+     * Appends a point to the graph item and indexes it in amortized O(1).
+     */
+    public void append(long date, long[] values) {
+        int from = graphItem.getPointCount();
+        graphItem.append(date, values);
+        int to = graphItem.getPointCount();
+
+        if (to > combinedValues.length) {
+            combinedValues = Arrays.copyOf(combinedValues, Math.max(to, combinedValues.length * 2));
+        }
+        combineValues(from, to);
+        combinedMaxIndex.update(combinedValues, to);
+
+        long[][] graphList = graphItem.getGraphList();
+        for (int i = 0; i < pyramids.length; i++) {
+            pyramids[i].append(graphList[i], to);
+        }
+        if (stackedSeries != null) {
+            stackedSeries.append(graphList, to, visibility);
+        }
+    }
+
+    private void combineValues(int from, int to) {
+        long[][] graphList = graphItem.getGraphList();
+        for (int i = from; i < to; i++) {
+            long max = Long.MIN_VALUE;
+            for (long[] array : graphList) {
+                max = max < array[i] ? array[i] : max;
+            }
+            combinedValues[i] = max;
+        }
+    }
+
+    private static StackedSeries createStackedSeries(GraphItem graphItem, SeriesVisibility visibility) {
+        return graphItem.getChartType() != GraphItem.ChartType.LINE
+                ? new StackedSeries(graphItem.getGraphList(), graphItem.getPointCount(), visibility,
+                graphItem.getChartType() == GraphItem.ChartType.PERCENTAGE)
+                : null;
+    }
+
+    private static SeriesPyramid[] buildPyramids(long[][] graphList, int pointCount) {
+        SeriesPyramid[] pyramids = new SeriesPyramid[graphList.length];
+        for (int i = 0; i < graphList.length; i++) {
+            //ForkJoinPool is available since Lollipop
+            if (pointCount >= PARALLEL_PYRAMID_SIZE && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                pyramids[i] = ParallelPyramidBuilder.build(graphList[i], pointCount);
+            } else {
+                pyramids[i] = new SeriesPyramid(graphList[i], pointCount);
+            }
+        }
+        return pyramids;
+    }
+
+    static int[] parseColors(String[] colorList) {
+        int[] colors = new int[colorList.length];
+        for (int i = 0; i < colorList.length; i++) {
+            colors[i] = Color.parseColor(colorList[i]);
+        }
+        return colors;
+    }
+}
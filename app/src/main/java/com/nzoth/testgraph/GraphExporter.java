@@ -0,0 +1,309 @@
+package com.nzoth.testgraph;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Picture;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+
+import com.nzoth.testgraph.chart.ChartImage;
+import com.nzoth.testgraph.chart.PngWriter;
+import com.nzoth.testgraph.chart.SvgChartWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Draws a date range of a chart into a PNG or SVG without a view, for reports and
+ * notifications. The layout is a {@link ChartImage}, the same viewport, ticks and lines
+ * as the main graph of {@link GraphView}; SVG is written by the pure Java
+ * {@link SvgChartWriter}.
+ * <p>
+ * PNGs are drawn once into a {@link Picture} and replayed into a strip bitmap a few rows
+ * at a time, each strip streamed into a {@link PngWriter}, so a very wide image never
+ * holds more than {@link #MAX_STRIP_BYTES} of pixels. The export methods block and may be
+ * called from any thread, {@link #exportAll} runs many exports in parallel.
+ */
+public class GraphExporter {
+    public static final int MAX_STRIP_BYTES = 4 * 1024 * 1024;
+
+    private static final int TEXT_SIZE_SP = 12;
+    private static final int TEXT_PADDING_DP = 10;
+    private static final int LINE_WIDTH_DP = 2;
+
+    private static ExecutorService executor;
+
+    private final float textSize;
+    private final float textPadding;
+    private final float lineWidth;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public enum Format {
+        PNG, SVG
+    }
+
+    public interface Listener {
+        void onExported(Request request);
+
+        /**
+         * @param e the {@link IOException} of the write, or what a bug in drawing the chart
+         *          threw
+         */
+        void onExportFailed(Request request, Exception e);
+    }
+
+    /**
+     * One chart for {@link #exportAll}: points dated {@code [fromDate, toDate]} drawn into
+     * an image {@code width} by {@code height} pixels.
+     */
+    public static class Request {
+        private final GraphItem graphItem;
+        private final long fromDate;
+        private final long toDate;
+        private final int width;
+        private final int height;
+        private final Format format;
+        private final File file;
+
+        public Request(GraphItem graphItem, long fromDate, long toDate, int width, int height, Format format, File file) {
+            this.graphItem = graphItem;
+            this.fromDate = fromDate;
+            this.toDate = toDate;
+            this.width = width;
+            this.height = height;
+            this.format = format;
+            this.file = file;
+        }
+
+        public GraphItem getGraphItem() {
+            return graphItem;
+        }
+
+        public Format getFormat() {
+            return format;
+        }
+
+        public File getFile() {
+            return file;
+        }
+    }
+
+    public GraphExporter(Context context) {
+        DisplayMetrics displayMetrics = context.getResources().getDisplayMetrics();
+        this.textSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, TEXT_SIZE_SP, displayMetrics);
+        this.textPadding = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, TEXT_PADDING_DP, displayMetrics);
+        this.lineWidth = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, LINE_WIDTH_DP, displayMetrics);
+    }
+
+    /**
+     * Writes points dated {@code [fromDate, toDate]} as a PNG. The item must not be
+     * appended to meanwhile.
+     *
+     * @throws IllegalArgumentException if fewer than 2 points are in the range
+     */
+    public void exportPng(GraphItem graphItem, long fromDate, long toDate, int width, int height, OutputStream out) throws IOException {
+        exportPng(new Chart(graphItem), fromDate, toDate, width, height, out);
+    }
+
+    /**
+     * Like {@link #exportPng} as SVG, the writer is flushed but not closed.
+     */
+    public void exportSvg(GraphItem graphItem, long fromDate, long toDate, int width, int height, Writer writer) throws IOException {
+        exportSvg(new Chart(graphItem), fromDate, toDate, width, height, writer);
+    }
+
+    /**
+     * Exports every request on a shared pool, one thread per core, and reports each on the
+     * main thread as it is done. Must be called from the main thread; the items are read
+     * as they are now, appends afterwards are not exported.
+     */
+    public void exportAll(List<Request> requests, final Listener listener) {
+        for (final Request request : requests) {
+            final Chart chart = new Chart(request.graphItem);
+            getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        export(chart, request);
+                        mainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                listener.onExported(request);
+                            }
+                        });
+                    } catch (final Exception e) {
+                        mainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                listener.onExportFailed(request, e);
+                            }
+                        });
+                    }
+                }
+            });
+        }
+    }
+
+    //a range without points fails like a write, the listener has one error to handle
+    private void export(Chart chart, Request request) throws IOException {
+        try {
+            writeFile(chart, request);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Can't export " + request.file, e);
+        }
+    }
+
+    private void writeFile(Chart chart, Request request) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(request.file));
+        try {
+            if (request.format == Format.PNG) {
+                exportPng(chart, request.fromDate, request.toDate, request.width, request.height, out);
+            } else {
+                exportSvg(chart, request.fromDate, request.toDate, request.width, request.height, new OutputStreamWriter(out, "UTF-8"));
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private void exportPng(Chart chart, long fromDate, long toDate, int width, int height, OutputStream out) throws IOException {
+        Picture picture = new Picture();
+        Canvas recordingCanvas = picture.beginRecording(width, height);
+        recordingCanvas.drawColor(ChartImage.BACKGROUND_COLOR);
+        draw(chart, fromDate, toDate, width, height, new CanvasSink(recordingCanvas, textSize));
+        picture.endRecording();
+
+        int stripHeight = Math.max(1, Math.min(height, MAX_STRIP_BYTES / 4 / width));
+        Bitmap strip = Bitmap.createBitmap(width, stripHeight, Bitmap.Config.ARGB_8888);
+        try {
+            Canvas canvas = new Canvas(strip);
+            int[] row = new int[width];
+            PngWriter pngWriter = new PngWriter(out, width, height);
+            try {
+                for (int top = 0; top < height; top += stripHeight) {
+                    canvas.save();
+                    canvas.translate(0, -top);
+                    canvas.drawPicture(picture);
+                    canvas.restore();
+
+                    int rowCount = Math.min(stripHeight, height - top);
+                    for (int y = 0; y < rowCount; y++) {
+                        strip.getPixels(row, 0, width, 0, y, width, 1);
+                        pngWriter.writeRow(row, 0);
+                    }
+                }
+                pngWriter.finish();
+            } finally {
+                pngWriter.close();
+            }
+        } finally {
+            strip.recycle();
+        }
+    }
+
+    private void exportSvg(Chart chart, long fromDate, long toDate, int width, int height, Writer writer) throws IOException {
+        SvgChartWriter svgWriter = new SvgChartWriter(writer, textSize);
+        svgWriter.begin(width, height);
+        draw(chart, fromDate, toDate, width, height, svgWriter);
+        svgWriter.end();
+    }
+
+    //the series are reduced from the points in range, cheaper than indexing all of them
+    private void draw(Chart chart, long fromDate, long toDate, int width, int height, ChartImage.Sink sink) {
+        int from = getFirstPosition(chart.dateList, chart.pointCount, fromDate);
+        int to = getFirstPosition(chart.dateList, chart.pointCount, toDate == Long.MAX_VALUE ? toDate : toDate + 1);
+        ChartImage image = new ChartImage(width, height, textSize, textPadding, lineWidth, TimeZone.getDefault());
+        image.draw(chart.dateList, chart.graphList, null, chart.colorList, chart.pointCount, from, to, sink);
+    }
+
+    //first position dated at or after date, dates are ascending
+    private static int getFirstPosition(long[] dateList, int pointCount, long date) {
+        int low = 0;
+        int high = pointCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (dateList[middle] < date) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The arrays of an item as they are when it is created; appends only write past
+     * {@code pointCount} or into grown copies, so it may be drawn on another thread.
+     */
+    private static class Chart {
+        private final long[] dateList;
+        private final long[][] graphList;
+        private final int[] colorList;
+        private final int pointCount;
+
+        Chart(GraphItem graphItem) {
+            this.dateList = graphItem.getDateList();
+            this.graphList = graphItem.getGraphList().clone();
+            this.colorList = GraphData.parseColors(graphItem.getGraphColorList());
+            this.pointCount = graphItem.getPointCount();
+        }
+    }
+
+    private static class CanvasSink implements ChartImage.Sink {
+        private final Canvas canvas;
+        private final Paint linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+        CanvasSink(Canvas canvas, float textSize) {
+            this.canvas = canvas;
+            linePaint.setStyle(Paint.Style.STROKE);
+            linePaint.setStrokeCap(Paint.Cap.ROUND);
+            textPaint.setTextSize(textSize);
+        }
+
+        @Override
+        public void drawLines(float[] segments, int count, int color, float lineWidth) {
+            linePaint.setColor(color);
+            linePaint.setStrokeWidth(lineWidth);
+            canvas.drawLines(segments, 0, count, linePaint);
+        }
+
+        @Override
+        public void drawText(char[] text, int length, float x, float y, int color, boolean alignRight) {
+            textPaint.setColor(color);
+            float textX = alignRight ? x - textPaint.measureText(text, 0, length) : x;
+            canvas.drawText(text, 0, length, textX, y, textPaint);
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                private final AtomicInteger threadCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "GraphExporter-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+}
@@ -1,17 +1,46 @@
 package com.nzoth.testgraph;
 
+import java.util.Arrays;
+
+/**
+ * Dates and series values in chronological order. Arrays may be longer than
+ * {@link #getPointCount()}, the spare capacity is used by {@link #append}.
+ */
 public class GraphItem {
+    private static final int MIN_APPEND_CAPACITY = 16;
+
+    public enum ChartType {
+        /**
+         * Every series is an independent line.
+         */
+        LINE,
+        /**
+         * Series are areas stacked on each other, the top one shows the total.
+         */
+        STACKED,
+        /**
+         * Stacked areas scaled so the total of every point is 100%.
+         */
+        PERCENTAGE
+    }
+
     private long[] dateList;
     private long[][] graphList;
     private String[] graphColorList;
     private String[] graphTitleList;
+    private ChartType chartType = ChartType.LINE;
+    private int pointCount;
 
     public long[] getDateList() {
         return dateList;
     }
 
+    /**
+     * Also sets the point count to the length of {@code dateList}.
+     */
     public void setDateList(long[] dateList) {
         this.dateList = dateList;
+        this.pointCount = dateList.length;
     }
 
     public long[][] getGraphList() {
@@ -37,4 +66,45 @@ public class GraphItem {
     public void setGraphTitleList(String[] graphTitleList) {
         this.graphTitleList = graphTitleList;
     }
+
+    public ChartType getChartType() {
+        return chartType;
+    }
+
+    public void setChartType(ChartType chartType) {
+        this.chartType = chartType;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * Adds a point after the last one in amortized O(1). Arrays grow by doubling, so
+     * references returned by the getters before the call may be stale afterwards.
+     *
+     * @param values one value per series
+     */
+    public void append(long date, long[] values) {
+        if (values.length != graphList.length) {
+            throw new IllegalArgumentException("Expected " + graphList.length + " values, got " + values.length);
+        }
+        if (pointCount > 0 && date < dateList[pointCount - 1]) {
+            throw new IllegalArgumentException("Date " + date + " is before the last date " + dateList[pointCount - 1]);
+        }
+
+        if (pointCount == dateList.length) {
+            int capacity = Math.max(pointCount * 2, MIN_APPEND_CAPACITY);
+            dateList = Arrays.copyOf(dateList, capacity);
+            for (int i = 0; i < graphList.length; i++) {
+                graphList[i] = Arrays.copyOf(graphList[i], capacity);
+            }
+        }
+
+        dateList[pointCount] = date;
+        for (int i = 0; i < graphList.length; i++) {
+            graphList[i][pointCount] = values[i];
+        }
+        pointCount++;
+    }
 }
@@ -0,0 +1,62 @@
+package com.nzoth.testgraph;
+
+/**
+ * Layout of the binary chart file written by {@link GraphItemBinaryWriter} and mapped by
+ * {@link GraphItemBinaryReader}. All numbers are little-endian.
+ * <pre>
+ * file:  int magic, int version, int chartCount, chartCount * chart
+ * chart: int pointCount, int graphCount, int flags,
+ *        graphCount * (string title, string color),
+ *        padding to 8 bytes,
+ *        dates: pointCount * long, or int byteCount + zigzag varint deltas when
+ *               {@link #FLAG_DELTA_DATES} is set, then padding to 8 bytes,
+ *        graphCount * pointCount * long
+ * string: int byteCount (-1 for null), UTF-8 bytes
+ * </pre>
+ * Columns are in chronological order, like in {@link GraphItem}. {@link #FLAG_STACKED} and
+ * {@link #FLAG_PERCENTAGE} give the {@link GraphItem.ChartType}, a line chart has neither.
+ */
+public final class GraphItemBinaryFormat {
+    static final int MAGIC = 0x48434754; //"TGCH"
+    static final int VERSION = 2;
+
+    static final int FLAG_DELTA_DATES = 1;
+    static final int FLAG_STACKED = 2;
+    static final int FLAG_PERCENTAGE = 4;
+
+    static final int ALIGNMENT = 8;
+
+    private GraphItemBinaryFormat() {
+    }
+
+    static int getChartTypeFlags(GraphItem.ChartType chartType) {
+        switch (chartType) {
+            case STACKED:
+                return FLAG_STACKED;
+            case PERCENTAGE:
+                return FLAG_STACKED | FLAG_PERCENTAGE;
+            default:
+                return 0;
+        }
+    }
+
+    static GraphItem.ChartType getChartType(int flags) {
+        if ((flags & FLAG_STACKED) == 0) {
+            return GraphItem.ChartType.LINE;
+        }
+        return (flags & FLAG_PERCENTAGE) != 0 ? GraphItem.ChartType.PERCENTAGE : GraphItem.ChartType.STACKED;
+    }
+
+    static int getPadding(int position) {
+        int rest = position % ALIGNMENT;
+        return rest == 0 ? 0 : ALIGNMENT - rest;
+    }
+
+    static long encodeZigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long decodeZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,167 @@
+package com.nzoth.testgraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Memory-maps a file in the {@link GraphItemBinaryFormat} layout.
+ */
+public class GraphItemBinaryReader {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public List<MappedGraphItem> map(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            //the mapping stays valid after the channel is closed
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    public List<MappedGraphItem> read(ByteBuffer source) throws IOException {
+        ByteBuffer buffer = source.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+        try {
+            if (buffer.getInt() != GraphItemBinaryFormat.MAGIC) {
+                throw new IOException("Not a chart file");
+            }
+            int version = buffer.getInt();
+            if (version != GraphItemBinaryFormat.VERSION) {
+                throw new IOException("Unsupported chart file version " + version);
+            }
+
+            int chartCount = readCount(buffer);
+            //three counts per chart
+            if ((long) chartCount * 12 > buffer.remaining()) {
+                throw new IOException("Corrupt chart file");
+            }
+            List<MappedGraphItem> itemList = new ArrayList<>(chartCount);
+            for (int i = 0; i < chartCount; i++) {
+                itemList.add(readGraphItem(buffer));
+            }
+            return itemList;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated chart file", e);
+        }
+    }
+
+    private MappedGraphItem readGraphItem(ByteBuffer buffer) throws IOException {
+        int pointCount = readCount(buffer);
+        int graphCount = readCount(buffer);
+        int flags = buffer.getInt();
+        //a title and a color of at least a length each
+        if ((long) graphCount * 8 > buffer.remaining()) {
+            throw new IOException("Corrupt chart file");
+        }
+
+        String[] titles = new String[graphCount];
+        String[] colors = new String[graphCount];
+        for (int i = 0; i < graphCount; i++) {
+            titles[i] = readString(buffer);
+            colors[i] = readString(buffer);
+        }
+        skipPadding(buffer);
+
+        LongBuffer dateBuffer;
+        if ((flags & GraphItemBinaryFormat.FLAG_DELTA_DATES) != 0) {
+            dateBuffer = LongBuffer.wrap(readDeltaDates(buffer, pointCount));
+        } else {
+            dateBuffer = sliceLongs(buffer, pointCount);
+        }
+
+        LongBuffer[] graphBufferList = new LongBuffer[graphCount];
+        for (int i = 0; i < graphCount; i++) {
+            graphBufferList[i] = sliceLongs(buffer, pointCount);
+        }
+
+        return new MappedGraphItem(dateBuffer, graphBufferList, colors, titles, GraphItemBinaryFormat.getChartType(flags));
+    }
+
+    private long[] readDeltaDates(ByteBuffer buffer, int pointCount) throws IOException {
+        int byteCount = readCount(buffer);
+        if (byteCount > buffer.remaining()) {
+            throw new IOException("Truncated chart file");
+        }
+        //every varint takes at least a byte
+        if (pointCount > byteCount) {
+            throw new IOException("Corrupt date column");
+        }
+        int end = buffer.position() + byteCount;
+
+        long[] dates = new long[pointCount];
+        long previous = 0;
+        for (int i = 0; i < pointCount; i++) {
+            previous += GraphItemBinaryFormat.decodeZigZag(readVarLong(buffer));
+            dates[i] = previous;
+        }
+        if (buffer.position() != end) {
+            throw new IOException("Corrupt date column");
+        }
+        skipPadding(buffer);
+        return dates;
+    }
+
+    private long readVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt varint");
+    }
+
+    private LongBuffer sliceLongs(ByteBuffer buffer, int count) throws IOException {
+        long byteCount = (long) count * 8;
+        if (byteCount > buffer.remaining()) {
+            throw new IOException("Truncated chart file");
+        }
+
+        ByteBuffer slice = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        slice.limit((int) byteCount);
+        buffer.position(buffer.position() + (int) byteCount);
+        return slice.asLongBuffer();
+    }
+
+    private String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new IOException("Truncated chart file");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private int readCount(ByteBuffer buffer) throws IOException {
+        int count = buffer.getInt();
+        if (count < 0) {
+            throw new IOException("Corrupt chart file");
+        }
+        return count;
+    }
+
+    private void skipPadding(ByteBuffer buffer) throws IOException {
+        int position = buffer.position() + GraphItemBinaryFormat.getPadding(buffer.position());
+        if (position > buffer.limit()) {
+            throw new IOException("Truncated chart file");
+        }
+        buffer.position(position);
+    }
+}
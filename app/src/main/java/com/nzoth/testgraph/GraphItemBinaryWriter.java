@@ -0,0 +1,166 @@
+package com.nzoth.testgraph;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Writes {@link GraphItem}s in the {@link GraphItemBinaryFormat} layout.
+ */
+public class GraphItemBinaryWriter {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final boolean deltaDates;
+
+    private OutputStream outputStream;
+    private int position;
+
+    /**
+     * @param deltaDates store dates as zigzag varint deltas instead of plain longs. Dates of
+     *                   evenly spaced data shrink to a byte or two each, but can no longer be
+     *                   mapped as a {@link java.nio.LongBuffer} view.
+     */
+    public GraphItemBinaryWriter(boolean deltaDates) {
+        this.deltaDates = deltaDates;
+    }
+
+    /**
+     * Converts chart_data.json content to a binary chart file.
+     */
+    public void convert(Reader jsonReader, File file) throws IOException {
+        write(new GraphItemJsonReader().read(jsonReader), file);
+    }
+
+    public void write(List<GraphItem> itemList, File file) throws IOException {
+        OutputStream stream = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+        try {
+            write(itemList, stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    public void write(List<GraphItem> itemList, OutputStream stream) throws IOException {
+        outputStream = stream;
+        position = 0;
+
+        writeInt(GraphItemBinaryFormat.MAGIC);
+        writeInt(GraphItemBinaryFormat.VERSION);
+        writeInt(itemList.size());
+        for (GraphItem graphItem : itemList) {
+            writeGraphItem(graphItem);
+        }
+
+        outputStream.flush();
+        outputStream = null;
+    }
+
+    private void writeGraphItem(GraphItem graphItem) throws IOException {
+        long[] dateList = graphItem.getDateList();
+        long[][] graphList = graphItem.getGraphList();
+        int pointCount = graphItem.getPointCount();
+
+        writeInt(pointCount);
+        writeInt(graphList.length);
+        writeInt((deltaDates ? GraphItemBinaryFormat.FLAG_DELTA_DATES : 0)
+                | GraphItemBinaryFormat.getChartTypeFlags(graphItem.getChartType()));
+        for (int i = 0; i < graphList.length; i++) {
+            if (graphList[i].length < pointCount) {
+                throw new IOException("Graph " + i + " has " + graphList[i].length
+                        + " points, dates have " + pointCount);
+            }
+            writeString(graphItem.getGraphTitleList()[i]);
+            writeString(graphItem.getGraphColorList()[i]);
+        }
+        writePadding();
+
+        if (deltaDates) {
+            writeDeltaDates(dateList, pointCount);
+        } else {
+            writeLongs(dateList, pointCount);
+        }
+        for (long[] graph : graphList) {
+            writeLongs(graph, pointCount);
+        }
+    }
+
+    private void writeDeltaDates(long[] dateList, int pointCount) throws IOException {
+        int byteCount = 0;
+        long previous = 0;
+        for (int i = 0; i < pointCount; i++) {
+            byteCount += getVarLongSize(GraphItemBinaryFormat.encodeZigZag(dateList[i] - previous));
+            previous = dateList[i];
+        }
+
+        writeInt(byteCount);
+        previous = 0;
+        for (int i = 0; i < pointCount; i++) {
+            writeVarLong(GraphItemBinaryFormat.encodeZigZag(dateList[i] - previous));
+            previous = dateList[i];
+        }
+        writePadding();
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        writeInt(bytes.length);
+        outputStream.write(bytes);
+        position += bytes.length;
+    }
+
+    private void writeLongs(long[] values, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            writeLong(values[i]);
+        }
+    }
+
+    private void writeLong(long value) throws IOException {
+        writeInt((int) value);
+        writeInt((int) (value >>> 32));
+    }
+
+    private void writeInt(int value) throws IOException {
+        outputStream.write(value);
+        outputStream.write(value >>> 8);
+        outputStream.write(value >>> 16);
+        outputStream.write(value >>> 24);
+        position += 4;
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            outputStream.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+            position++;
+        }
+        outputStream.write((int) value);
+        position++;
+    }
+
+    private int getVarLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private void writePadding() throws IOException {
+        int padding = GraphItemBinaryFormat.getPadding(position);
+        for (int i = 0; i < padding; i++) {
+            outputStream.write(0);
+        }
+        position += padding;
+    }
+}
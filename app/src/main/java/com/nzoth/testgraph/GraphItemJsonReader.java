@@ -0,0 +1,191 @@
+package com.nzoth.testgraph;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads chart_data.json (the schema of {@link com.nzoth.testgraph.models.GraphModel})
+ * token by token straight into {@link GraphItem} arrays, without binding the columns
+ * to string lists first. Object keys may come in any order.
+ * <p>
+ * A chart whose series are all of type {@code "area"}, or that has {@code "stacked": true},
+ * is {@link GraphItem.ChartType#STACKED}; with {@code "percentage": true} as well it is
+ * {@link GraphItem.ChartType#PERCENTAGE}.
+ */
+public class GraphItemJsonReader {
+    private static final String DATA_TYPE = "x";
+    private static final String AREA_TYPE = "area";
+
+    private static final String KEY_COLUMNS = "columns";
+    private static final String KEY_TYPES = "types";
+    private static final String KEY_NAMES = "names";
+    private static final String KEY_COLORS = "colors";
+    private static final String KEY_STACKED = "stacked";
+    private static final String KEY_PERCENTAGE = "percentage";
+
+    private static final int INITIAL_COLUMN_CAPACITY = 256;
+
+    private long[] columnBuffer = new long[INITIAL_COLUMN_CAPACITY];
+
+    public List<GraphItem> read(Reader reader) throws IOException {
+        JsonReader jsonReader = new JsonReader(reader);
+        try {
+            return read(jsonReader);
+        } finally {
+            jsonReader.close();
+        }
+    }
+
+    public List<GraphItem> read(JsonReader reader) throws IOException {
+        List<GraphItem> itemList = new ArrayList<>();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            itemList.add(readGraphItem(reader));
+        }
+        reader.endArray();
+
+        return itemList;
+    }
+
+    private GraphItem readGraphItem(JsonReader reader) throws IOException {
+        List<String> columnLabels = new ArrayList<>();
+        List<long[]> columns = new ArrayList<>();
+        Map<String, String> types = new HashMap<>();
+        Map<String, String> names = new HashMap<>();
+        Map<String, String> colors = new HashMap<>();
+        boolean stacked = false;
+        boolean percentage = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (KEY_COLUMNS.equals(key)) {
+                readColumns(reader, columnLabels, columns);
+            } else if (KEY_TYPES.equals(key)) {
+                readStringMap(reader, types);
+            } else if (KEY_NAMES.equals(key)) {
+                readStringMap(reader, names);
+            } else if (KEY_COLORS.equals(key)) {
+                readStringMap(reader, colors);
+            } else if (KEY_STACKED.equals(key)) {
+                stacked = reader.nextBoolean();
+            } else if (KEY_PERCENTAGE.equals(key)) {
+                percentage = reader.nextBoolean();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        GraphItem graphItem = createGraphItem(columnLabels, columns, types, names, colors);
+        if (stacked || isAllArea(columnLabels, types)) {
+            graphItem.setChartType(percentage ? GraphItem.ChartType.PERCENTAGE : GraphItem.ChartType.STACKED);
+        }
+        return graphItem;
+    }
+
+    private GraphItem createGraphItem(
+            List<String> columnLabels,
+            List<long[]> columns,
+            Map<String, String> types,
+            Map<String, String> names,
+            Map<String, String> colors
+    ) {
+        GraphItem graphItem = new GraphItem();
+
+        int graphSize = 0;
+        for (String label : columnLabels) {
+            if (!isDateColumn(label, types)) {
+                graphSize++;
+            }
+        }
+
+        int counter = 0;
+        String[] graphColors = new String[graphSize];
+        String[] titles = new String[graphSize];
+        long[][] graphs = new long[graphSize][];
+
+        for (int i = 0; i < columnLabels.size(); i++) {
+            String label = columnLabels.get(i);
+            if (isDateColumn(label, types)) {
+                graphItem.setDateList(columns.get(i));
+            } else {
+                graphColors[counter] = colors.get(label);
+                titles[counter] = String.valueOf(names.get(label));
+                graphs[counter] = columns.get(i);
+                counter++;
+            }
+        }
+
+        graphItem.setGraphColorList(graphColors);
+        graphItem.setGraphTitleList(titles);
+        graphItem.setGraphList(graphs);
+        return graphItem;
+    }
+
+    private boolean isAllArea(List<String> columnLabels, Map<String, String> types) {
+        boolean hasArea = false;
+        for (String label : columnLabels) {
+            if (isDateColumn(label, types)) {
+                continue;
+            }
+            if (!AREA_TYPE.equalsIgnoreCase(types.get(label))) {
+                return false;
+            }
+            hasArea = true;
+        }
+        return hasArea;
+    }
+
+    private boolean isDateColumn(String label, Map<String, String> types) {
+        String type = types.get(label);
+        return DATA_TYPE.equalsIgnoreCase(type != null ? type : label);
+    }
+
+    private void readColumns(JsonReader reader, List<String> columnLabels, List<long[]> columns) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginArray();
+            columnLabels.add(reader.nextString());
+            columns.add(readColumnValues(reader));
+            reader.endArray();
+        }
+        reader.endArray();
+    }
+
+    private long[] readColumnValues(JsonReader reader) throws IOException {
+        int size = 0;
+        while (reader.peek() != JsonToken.END_ARRAY) {
+            if (size == columnBuffer.length) {
+                long[] buffer = new long[size * 2];
+                System.arraycopy(columnBuffer, 0, buffer, 0, size);
+                columnBuffer = buffer;
+            }
+            columnBuffer[size++] = reader.nextLong();
+        }
+
+        return Arrays.copyOf(columnBuffer, size);
+    }
+
+    private void readStringMap(JsonReader reader, Map<String, String> map) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else {
+                map.put(key, reader.nextString());
+            }
+        }
+        reader.endObject();
+    }
+}
@@ -0,0 +1,89 @@
+package com.nzoth.testgraph;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes {@link GraphItem}s as chart_data.json, the schema {@link GraphItemJsonReader}
+ * reads, streaming the columns so large items are never held as strings.
+ */
+public class GraphItemJsonWriter {
+    private static final String DATE_LABEL = "x";
+    private static final String DATE_TYPE = "x";
+    private static final String LINE_TYPE = "line";
+    private static final String AREA_TYPE = "area";
+    private static final String GRAPH_LABEL_PREFIX = "y";
+
+    private static final String KEY_COLUMNS = "columns";
+    private static final String KEY_TYPES = "types";
+    private static final String KEY_NAMES = "names";
+    private static final String KEY_COLORS = "colors";
+    private static final String KEY_PERCENTAGE = "percentage";
+
+    public void write(List<GraphItem> itemList, Writer writer) throws IOException {
+        JsonWriter jsonWriter = new JsonWriter(writer);
+        try {
+            write(itemList, jsonWriter);
+        } finally {
+            jsonWriter.close();
+        }
+    }
+
+    public void write(List<GraphItem> itemList, JsonWriter writer) throws IOException {
+        writer.beginArray();
+        for (GraphItem graphItem : itemList) {
+            writeGraphItem(graphItem, writer);
+        }
+        writer.endArray();
+    }
+
+    private void writeGraphItem(GraphItem graphItem, JsonWriter writer) throws IOException {
+        long[][] graphList = graphItem.getGraphList();
+        int pointCount = graphItem.getPointCount();
+        GraphItem.ChartType chartType = graphItem.getChartType();
+
+        writer.beginObject();
+
+        writer.name(KEY_COLUMNS).beginArray();
+        writeColumn(DATE_LABEL, graphItem.getDateList(), pointCount, writer);
+        for (int i = 0; i < graphList.length; i++) {
+            writeColumn(GRAPH_LABEL_PREFIX + i, graphList[i], pointCount, writer);
+        }
+        writer.endArray();
+
+        writer.name(KEY_TYPES).beginObject();
+        writer.name(DATE_LABEL).value(DATE_TYPE);
+        for (int i = 0; i < graphList.length; i++) {
+            writer.name(GRAPH_LABEL_PREFIX + i).value(chartType == GraphItem.ChartType.LINE ? LINE_TYPE : AREA_TYPE);
+        }
+        writer.endObject();
+        if (chartType == GraphItem.ChartType.PERCENTAGE) {
+            writer.name(KEY_PERCENTAGE).value(true);
+        }
+
+        writeStringMap(KEY_NAMES, graphItem.getGraphTitleList(), writer);
+        writeStringMap(KEY_COLORS, graphItem.getGraphColorList(), writer);
+
+        writer.endObject();
+    }
+
+    private void writeColumn(String label, long[] values, int pointCount, JsonWriter writer) throws IOException {
+        writer.beginArray();
+        writer.value(label);
+        for (int i = 0; i < pointCount; i++) {
+            writer.value(values[i]);
+        }
+        writer.endArray();
+    }
+
+    private void writeStringMap(String key, String[] values, JsonWriter writer) throws IOException {
+        writer.name(key).beginObject();
+        for (int i = 0; i < values.length; i++) {
+            writer.name(GRAPH_LABEL_PREFIX + i).value(values[i]);
+        }
+        writer.endObject();
+    }
+}
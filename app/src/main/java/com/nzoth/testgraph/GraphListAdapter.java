@@ -0,0 +1,109 @@
+package com.nzoth.testgraph;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.BaseAdapter;
+
+import com.nzoth.testgraph.chart.DrawMetrics;
+
+import java.util.List;
+
+/**
+ * Shows every chart of a list in a recycled {@link GraphRowView}.
+ * <p>
+ * A chart is prepared only when its row is bound. When the row scrolls off, its prepared
+ * state moves from the view to a bounded {@link GraphStateCache}, so the cost of the list
+ * depends on the number of visible rows and not on the number of charts. Charts are
+ * held as {@link PackedGraphItem}s or {@link MappedGraphItem}s and decoded on the loader
+ * thread when bound.
+ */
+public class GraphListAdapter extends BaseAdapter implements AbsListView.RecyclerListener {
+    private static final int STATE_CACHE_SIZE = 8;
+
+    private final List<? extends GraphLoader.Source> itemList;
+    private final int graphHeight;
+    private final GraphStateCache stateCache = new GraphStateCache(STATE_CACHE_SIZE);
+    private DrawMetrics.Listener drawMetricsListener;
+    private GraphStateDiskCache diskCache;
+
+    public GraphListAdapter(List<? extends GraphLoader.Source> itemList, int graphHeight) {
+        this.itemList = itemList;
+        this.graphHeight = graphHeight;
+    }
+
+    /**
+     * Set on every row created after this call.
+     */
+    public void setDrawMetricsListener(DrawMetrics.Listener drawMetricsListener) {
+        this.drawMetricsListener = drawMetricsListener;
+    }
+
+    /**
+     * Set on every row created after this call, see {@link GraphView#setDiskCache}.
+     */
+    public void setDiskCache(GraphStateDiskCache diskCache) {
+        this.diskCache = diskCache;
+    }
+
+    @Override
+    public int getCount() {
+        return itemList.size();
+    }
+
+    @Override
+    public GraphLoader.Source getItem(int position) {
+        return itemList.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        GraphRowView rowView = (GraphRowView) convertView;
+        if (rowView == null) {
+            rowView = new GraphRowView(parent.getContext(), graphHeight);
+            rowView.setLayoutParams(new AbsListView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+            rowView.getGraphView().setDrawMetricsListener(drawMetricsListener);
+            rowView.getGraphView().setDiskCache(diskCache);
+        } else {
+            releaseGraph(rowView.getGraphView());
+        }
+
+        GraphView graphView = rowView.getGraphView();
+
+        graphView.setTag(position);
+        GraphStateCache.Entry entry = stateCache.get(position);
+        if (entry != null) {
+            graphView.setGraphData(entry.getGraphData(), entry.getScrollPreview());
+        } else {
+            graphView.loadGraph(itemList.get(position));
+        }
+        return rowView;
+    }
+
+    @Override
+    public void onMovedToScrapHeap(View view) {
+        if (view instanceof GraphRowView) {
+            releaseGraph(((GraphRowView) view).getGraphView());
+        }
+    }
+
+    private void releaseGraph(GraphView graphView) {
+        Object position = graphView.getTag();
+        GraphData graphData = graphView.getGraphData();
+        if (position instanceof Integer && graphData != null) {
+            stateCache.put((Integer) position, new GraphStateCache.Entry(graphData, graphView.getScrollPreview()));
+        }
+        graphView.setTag(null);
+        graphView.releaseGraph();
+    }
+}
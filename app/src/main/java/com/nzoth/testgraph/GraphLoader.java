@@ -0,0 +1,381 @@
+package com.nzoth.testgraph;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.nzoth.testgraph.chart.ScrollPreview;
+import com.nzoth.testgraph.chart.SeriesPyramid;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads a {@link GraphItem} and prepares {@link GraphData}, {@link ScrollPreview}s and
+ * rollups on a small shared executor, delivering results on the main thread.
+ * <p>
+ * Every new request replaces the previous one of the same kind: the replaced task is
+ * cancelled and, if it already finished, its result is dropped instead of delivered.
+ * All methods must be called from the main thread.
+ * <p>
+ * With a {@link GraphStateDiskCache} a load reads the derived state and the preview from
+ * its file when there is one; otherwise they are built as usual and stored once the graph
+ * is first drawn, see {@link #onGraphDrawn}. A file is found by a key that samples the
+ * points and checked against all of them after the graph is delivered; if it belongs to
+ * other points it is deleted and the source is loaded again.
+ */
+public class GraphLoader {
+    private static final int THREAD_COUNT = 2;
+
+    private static ExecutorService sharedExecutor;
+
+    public interface Source {
+        GraphItem load() throws IOException;
+    }
+
+    public interface Listener {
+        /**
+         * @param scrollPreview the preview requested with the load, or null if none was
+         */
+        void onGraphLoaded(GraphData graphData, ScrollPreview scrollPreview);
+
+        /**
+         * @param e the {@link IOException} of the source, or what a bug in building the
+         *          graph threw
+         */
+        void onGraphLoadFailed(Exception e);
+
+        void onScrollPreviewBuilt(ScrollPreview scrollPreview);
+
+        void onScrollPreviewFailed(RuntimeException e);
+
+        /**
+         * @param build finished, to be added to its {@link GraphRollups}
+         */
+        void onRollupBuilt(GraphRollups.Build build);
+
+        void onRollupFailed(GraphRollups.Build build, RuntimeException e);
+    }
+
+    private final Executor mainExecutor;
+    private final ExecutorService executor;
+    private final AtomicInteger loadGeneration = new AtomicInteger();
+    private final AtomicInteger previewGeneration = new AtomicInteger();
+    private final AtomicInteger rollupGeneration = new AtomicInteger();
+    private final Listener listener;
+
+    private Future<?> loadTask;
+    private Future<?> previewTask;
+    private Future<?> rollupTask;
+    private GraphStateDiskCache diskCache;
+    private PendingStore pendingStore;
+
+    public GraphLoader(Listener listener) {
+        this(listener, new Executor() {
+            private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+            @Override
+            public void execute(Runnable runnable) {
+                mainHandler.post(runnable);
+            }
+        }, getExecutor());
+    }
+
+    /**
+     * @param mainExecutor runs results in place of the main looper, for tests
+     */
+    GraphLoader(Listener listener, Executor mainExecutor, ExecutorService executor) {
+        this.listener = listener;
+        this.mainExecutor = mainExecutor;
+        this.executor = executor;
+    }
+
+    /**
+     * Used by loads started after this call, null to derive everything on every load.
+     */
+    public void setDiskCache(GraphStateDiskCache diskCache) {
+        this.diskCache = diskCache;
+    }
+
+    /**
+     * Loads {@code source} and, if {@code scrollPreview} is not null, builds it for the
+     * loaded data. Replaces any load or preview build in progress.
+     */
+    public void load(final Source source, final ScrollPreview scrollPreview) {
+        cancel();
+        final int generation = loadGeneration.get();
+        final GraphStateDiskCache diskCache = this.diskCache;
+
+        loadTask = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    GraphItem graphItem = source.load();
+                    if (generation != loadGeneration.get()) {
+                        return;
+                    }
+
+                    long key = 0;
+                    GraphData cachedGraphData = null;
+                    if (diskCache != null) {
+                        key = diskCache.getKey(graphItem);
+                        cachedGraphData = diskCache.load(graphItem, key, scrollPreview);
+                    }
+                    //as loaded, appends on the main thread only write past pointCount or into grown copies
+                    final long[] dateList = graphItem.getDateList();
+                    final long[][] graphList = graphItem.getGraphList().clone();
+                    final int pointCount = graphItem.getPointCount();
+
+                    final GraphData graphData = cachedGraphData != null ? cachedGraphData : new GraphData(graphItem);
+                    boolean previewBuilt = scrollPreview != null && scrollPreview.getVertices() == null;
+                    if (previewBuilt) {
+                        scrollPreview.build(
+                                graphList,
+                                graphData.getPyramids(),
+                                graphData.getVisibility().getVisibleList(),
+                                pointCount,
+                                graphData.getVisibleMax()
+                        );
+                    }
+
+                    final PendingStore store = diskCache != null && cachedGraphData == null
+                            ? new PendingStore(diskCache, key, diskCache.getContentHash(dateList, graphList, pointCount), graphData, scrollPreview)
+                            : null;
+                    postIfCurrent(loadGeneration, generation, new Runnable() {
+                        @Override
+                        public void run() {
+                            pendingStore = store;
+                            listener.onGraphLoaded(graphData, scrollPreview);
+                        }
+                    });
+
+                    if (cachedGraphData != null) {
+                        verify(source, diskCache, key, dateList, graphList, pointCount, graphData, scrollPreview, previewBuilt, generation);
+                    }
+                } catch (final Exception e) {
+                    //IOException of the source, RuntimeException would be lost in the Future
+                    postIfCurrent(loadGeneration, generation, new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onGraphLoadFailed(e);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    //on the loader thread, after a graph read from its file was delivered
+    private void verify(
+            final Source source,
+            final GraphStateDiskCache diskCache,
+            final long key,
+            long[] dateList,
+            long[][] graphList,
+            final int pointCount,
+            final GraphData graphData,
+            final ScrollPreview scrollPreview,
+            final boolean previewBuilt,
+            final int generation
+    ) {
+        final long contentHash = diskCache.getContentHash(dateList, graphList, pointCount);
+        if (generation != loadGeneration.get()) {
+            return;
+        }
+
+        if (!diskCache.verify(key, contentHash, scrollPreview)) {
+            //the file is gone, the load derives everything and stores it again
+            postIfCurrent(loadGeneration, generation, new Runnable() {
+                @Override
+                public void run() {
+                    load(source, scrollPreview != null ? scrollPreview.createEmpty() : null);
+                }
+            });
+        } else if (previewBuilt) {
+            //the file had no preview of this size
+            postIfCurrent(loadGeneration, generation, new Runnable() {
+                @Override
+                public void run() {
+                    if (graphData.getPointCount() == pointCount) {
+                        pendingStore = new PendingStore(diskCache, key, contentHash, graphData, scrollPreview);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Builds {@code scrollPreview} for the points {@code graphData} has now; points appended
+     * while it is built are left to {@link ScrollPreview#append}. Replaces any preview build
+     * in progress, a load in progress is kept.
+     */
+    public void buildPreview(GraphData graphData, final ScrollPreview scrollPreview) {
+        cancelPreview();
+        final int generation = previewGeneration.get();
+        //appends on the main thread only write past pointCount or into grown copies
+        final long[][] graphList = graphData.getGraphItem().getGraphList().clone();
+        final SeriesPyramid[] pyramids = snapshot(graphData.getPyramids());
+        final boolean[] visibleList = graphData.getVisibility().getVisibleList();
+        final int pointCount = graphData.getPointCount();
+        final long maxY = graphData.getVisibleMax();
+
+        previewTask = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    scrollPreview.build(graphList, pyramids, visibleList, pointCount, maxY);
+                } catch (final RuntimeException e) {
+                    postIfCurrent(previewGeneration, generation, new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onScrollPreviewFailed(e);
+                        }
+                    });
+                    return;
+                }
+
+                postIfCurrent(previewGeneration, generation, new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onScrollPreviewBuilt(scrollPreview);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Runs {@code build} of a rollup. Replaces any rollup build in progress, a load or a
+     * preview build in progress is kept.
+     */
+    public void buildRollup(final GraphRollups.Build build) {
+        cancelRollup();
+        final int generation = rollupGeneration.get();
+
+        rollupTask = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    build.run();
+                } catch (final RuntimeException e) {
+                    postIfCurrent(rollupGeneration, generation, new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onRollupFailed(build, e);
+                        }
+                    });
+                    return;
+                }
+
+                postIfCurrent(rollupGeneration, generation, new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onRollupBuilt(build);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Called after every frame the view draws. The first frame of a graph loaded without
+     * a usable cache file stores its state there, written in the background; a graph
+     * appended to before it was drawn no longer matches its source and is not stored.
+     */
+    public void onGraphDrawn(GraphData graphData) {
+        PendingStore store = pendingStore;
+        if (store == null) {
+            return;
+        }
+
+        pendingStore = null;
+        if (store.graphData == graphData && graphData.getPointCount() == store.pointCount) {
+            store.diskCache.store(store.key, store.contentHash, graphData, store.scrollPreview);
+        }
+    }
+
+    public void cancel() {
+        pendingStore = null;
+        loadGeneration.incrementAndGet();
+        if (loadTask != null) {
+            loadTask.cancel(true);
+            loadTask = null;
+        }
+        cancelPreview();
+        cancelRollup();
+    }
+
+    public void cancelRollup() {
+        rollupGeneration.incrementAndGet();
+        if (rollupTask != null) {
+            rollupTask.cancel(true);
+            rollupTask = null;
+        }
+    }
+
+    private void cancelPreview() {
+        previewGeneration.incrementAndGet();
+        if (previewTask != null) {
+            previewTask.cancel(true);
+            previewTask = null;
+        }
+    }
+
+    static SeriesPyramid[] snapshot(SeriesPyramid[] pyramids) {
+        SeriesPyramid[] snapshots = new SeriesPyramid[pyramids.length];
+        for (int i = 0; i < pyramids.length; i++) {
+            snapshots[i] = pyramids[i].snapshot();
+        }
+        return snapshots;
+    }
+
+    //a loaded graph waiting for its first frame to be stored
+    private static class PendingStore {
+        private final GraphStateDiskCache diskCache;
+        private final long key;
+        private final long contentHash;
+        private final GraphData graphData;
+        private final ScrollPreview scrollPreview;
+        private final int pointCount;
+
+        PendingStore(GraphStateDiskCache diskCache, long key, long contentHash, GraphData graphData, ScrollPreview scrollPreview) {
+            this.diskCache = diskCache;
+            this.key = key;
+            this.contentHash = contentHash;
+            this.graphData = graphData;
+            this.scrollPreview = scrollPreview;
+            this.pointCount = graphData.getPointCount();
+        }
+    }
+
+    private void postIfCurrent(final AtomicInteger counter, final int generation, final Runnable result) {
+        mainExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation == counter.get()) {
+                    result.run();
+                }
+            }
+        });
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (sharedExecutor == null) {
+            sharedExecutor = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+                private final AtomicInteger threadCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "GraphLoader-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sharedExecutor;
+    }
+}
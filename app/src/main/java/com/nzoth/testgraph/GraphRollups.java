@@ -0,0 +1,176 @@
+package com.nzoth.testgraph;
+
+import com.nzoth.testgraph.chart.Rollup;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * {@link Rollup}s of one graph, as {@link GraphData} of their own that {@link GraphView}
+ * can show in place of the raw points. Each {@link Rollup.Granularity} is built off the
+ * main thread by a {@link Build}, see {@link GraphLoader#buildRollup}, and kept once
+ * added; {@link #append} adds a raw point and hands every bucket it closes to the rollups
+ * added so far.
+ * <p>
+ * Like {@link GraphData}, only used from the main thread once created.
+ */
+public class GraphRollups {
+    private final GraphData rawGraphData;
+    private final Rollup.Aggregation aggregation;
+    private final TimeZone timeZone;
+    private final Map<Rollup.Granularity, Rollup> rollups = new EnumMap<>(Rollup.Granularity.class);
+    private final Map<Rollup.Granularity, GraphData> graphDataMap = new EnumMap<>(Rollup.Granularity.class);
+
+    public GraphRollups(GraphData rawGraphData, Rollup.Aggregation aggregation, TimeZone timeZone) {
+        this.rawGraphData = rawGraphData;
+        this.aggregation = aggregation;
+        this.timeZone = timeZone;
+    }
+
+    public GraphData getRawGraphData() {
+        return rawGraphData;
+    }
+
+    public Rollup.Aggregation getAggregation() {
+        return aggregation;
+    }
+
+    /**
+     * @return the rollup at {@code granularity}, null until its {@link Build} is added
+     */
+    public GraphData getGraphData(Rollup.Granularity granularity) {
+        return graphDataMap.get(granularity);
+    }
+
+    /**
+     * Starts a build of the rollup at {@code granularity} from the raw points there are now,
+     * to be run on any thread.
+     */
+    public Build createBuild(Rollup.Granularity granularity) {
+        return new Build(this, granularity);
+    }
+
+    /**
+     * Keeps the rollup of {@code build}, with the raw points appended since it started.
+     */
+    public void add(Build build) {
+        if (build.graphRollups != this || build.graphData == null) {
+            throw new IllegalArgumentException("Not a finished build of these rollups");
+        }
+        if (graphDataMap.containsKey(build.granularity)) {
+            return;
+        }
+
+        GraphItem rawItem = rawGraphData.getGraphItem();
+        long[] values = new long[rawItem.getGraphList().length];
+        for (int i = build.rollup.getPointCount(); i < rawItem.getPointCount(); i++) {
+            for (int series = 0; series < values.length; series++) {
+                values[series] = rawItem.getGraphList()[series][i];
+            }
+            append(build.rollup, build.graphData, rawItem.getDateList()[i], values);
+        }
+        rollups.put(build.granularity, build.rollup);
+        graphDataMap.put(build.granularity, build.graphData);
+    }
+
+    /**
+     * @return time from the first to the last raw point
+     */
+    public long getTimeSpan() {
+        GraphItem rawItem = rawGraphData.getGraphItem();
+        int pointCount = rawItem.getPointCount();
+        return pointCount > 1 ? rawItem.getDateList()[pointCount - 1] - rawItem.getDateList()[0] : 0;
+    }
+
+    /**
+     * Appends a raw point, and to every rollup built so far the bucket it closed, if any.
+     */
+    public void append(long date, long[] values) {
+        rawGraphData.append(date, values);
+        for (Map.Entry<Rollup.Granularity, Rollup> entry : rollups.entrySet()) {
+            append(entry.getValue(), graphDataMap.get(entry.getKey()), date, values);
+        }
+    }
+
+    private static void append(Rollup rollup, GraphData graphData, long date, long[] values) {
+        if (rollup.append(date, values)) {
+            int last = rollup.size() - 1;
+            long[][] graphList = rollup.getGraphList();
+            long[] closedValues = new long[graphList.length];
+            for (int i = 0; i < graphList.length; i++) {
+                closedValues[i] = graphList[i][last];
+            }
+            graphData.append(rollup.getDateList()[last], closedValues);
+        }
+    }
+
+    //own copies, the graph item and the rollup grow their arrays separately
+    private static GraphItem createGraphItem(GraphItem rawItem, Rollup rollup) {
+        long[][] graphList = new long[rollup.getGraphList().length][];
+        for (int i = 0; i < graphList.length; i++) {
+            graphList[i] = Arrays.copyOf(rollup.getGraphList()[i], rollup.size());
+        }
+
+        GraphItem graphItem = new GraphItem();
+        graphItem.setDateList(Arrays.copyOf(rollup.getDateList(), rollup.size()));
+        graphItem.setGraphList(graphList);
+        graphItem.setGraphColorList(rawItem.getGraphColorList());
+        graphItem.setGraphTitleList(rawItem.getGraphTitleList());
+        graphItem.setChartType(rawItem.getChartType());
+        return graphItem;
+    }
+
+    /**
+     * A rollup and its {@link GraphData} built from the raw points there were when
+     * {@link #createBuild} was called; appends on the main thread only write past them or
+     * into grown copies. The series are rolled up one after another, the build already
+     * runs on a {@link GraphLoader} thread.
+     */
+    public static class Build {
+        private final GraphRollups graphRollups;
+        private final Rollup.Granularity granularity;
+        private final GraphItem rawItem;
+        private final long[] dateList;
+        private final long[][] graphList;
+        private final int pointCount;
+
+        private Rollup rollup;
+        private GraphData graphData;
+
+        Build(GraphRollups graphRollups, Rollup.Granularity granularity) {
+            this.graphRollups = graphRollups;
+            this.granularity = granularity;
+            this.rawItem = graphRollups.rawGraphData.getGraphItem();
+            this.dateList = rawItem.getDateList();
+            this.graphList = rawItem.getGraphList().clone();
+            this.pointCount = rawItem.getPointCount();
+        }
+
+        public GraphRollups getGraphRollups() {
+            return graphRollups;
+        }
+
+        public Rollup.Granularity getGranularity() {
+            return granularity;
+        }
+
+        /**
+         * Builds the rollup in O(n), on any thread.
+         */
+        public void run() {
+            Rollup rollup = Rollup.build(
+                    granularity,
+                    graphRollups.aggregation,
+                    graphRollups.timeZone,
+                    dateList,
+                    graphList,
+                    pointCount,
+                    null
+            );
+            this.graphData = new GraphData(createGraphItem(rawItem, rollup));
+            this.rollup = rollup;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.nzoth.testgraph;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.support.v4.widget.CompoundButtonCompat;
+import android.view.ViewGroup;
+import android.widget.CheckBox;
+import android.widget.CompoundButton;
+import android.widget.LinearLayout;
+
+import com.nzoth.testgraph.chart.SeriesVisibility;
+
+/**
+ * A {@link GraphView} with a check box per series below it that shows or hides the series.
+ * The check boxes appear once the graph data is there.
+ */
+public class GraphRowView extends LinearLayout {
+    private final GraphView graphView;
+    private final LinearLayout checkBoxLayout;
+
+    public GraphRowView(Context context, int graphHeight) {
+        super(context);
+        setOrientation(VERTICAL);
+
+        graphView = new GraphView(context);
+        graphView.setOnGraphDataChangedListener(new GraphView.OnGraphDataChangedListener() {
+            @Override
+            public void onGraphDataChanged(GraphData graphData) {
+                bindCheckBoxes(graphData);
+            }
+        });
+        addView(graphView, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, graphHeight));
+
+        checkBoxLayout = new LinearLayout(context);
+        checkBoxLayout.setOrientation(HORIZONTAL);
+        addView(checkBoxLayout, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+    }
+
+    public GraphView getGraphView() {
+        return graphView;
+    }
+
+    private void bindCheckBoxes(GraphData graphData) {
+        checkBoxLayout.removeAllViews();
+        if (graphData == null) {
+            return;
+        }
+
+        String[] titleList = graphData.getGraphItem().getGraphTitleList();
+        int[] colorList = graphData.getGraphColorList();
+        SeriesVisibility visibility = graphData.getVisibility();
+        for (int i = 0; i < titleList.length; i++) {
+            final int series = i;
+            CheckBox checkBox = new CheckBox(getContext());
+            checkBox.setText(titleList[i]);
+            CompoundButtonCompat.setButtonTintList(checkBox, ColorStateList.valueOf(colorList[i]));
+            checkBox.setChecked(visibility.isVisible(i));
+            checkBox.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+                @Override
+                public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                    graphView.setSeriesVisible(series, isChecked);
+                }
+            });
+            checkBoxLayout.addView(checkBox);
+        }
+    }
+}
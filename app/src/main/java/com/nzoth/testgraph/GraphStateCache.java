@@ -0,0 +1,53 @@
+package com.nzoth.testgraph;
+
+import com.nzoth.testgraph.chart.ScrollPreview;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the prepared state of the last {@code maxSize} charts that left the screen, so
+ * scrolling back to them does not prepare them again.
+ */
+public class GraphStateCache {
+    private final LinkedHashMap<Integer, Entry> entries;
+
+    public static class Entry {
+        private final GraphData graphData;
+        private final ScrollPreview scrollPreview;
+
+        public Entry(GraphData graphData, ScrollPreview scrollPreview) {
+            this.graphData = graphData;
+            this.scrollPreview = scrollPreview;
+        }
+
+        public GraphData getGraphData() {
+            return graphData;
+        }
+
+        public ScrollPreview getScrollPreview() {
+            return scrollPreview;
+        }
+    }
+
+    public GraphStateCache(final int maxSize) {
+        this.entries = new LinkedHashMap<Integer, Entry>(maxSize, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, GraphStateCache.Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public Entry get(int position) {
+        return entries.get(position);
+    }
+
+    public void put(int position, Entry entry) {
+        entries.put(position, entry);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,192 @@
+package com.nzoth.testgraph;
+
+import android.util.Log;
+
+import com.nzoth.testgraph.chart.DerivedStateFile;
+import com.nzoth.testgraph.chart.ScrollPreview;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Keeps the state {@link GraphData} derives from a chart, with its scroll block preview,
+ * in a {@link DerivedStateFile} per chart and view size, so a chart shown before is ready
+ * after a restart without indexing its points again.
+ * <p>
+ * Files are named by a key that samples the points, the preview size and
+ * {@link DerivedStateFile#VERSION}, so a warm start finds its file without reading every
+ * point; another size or another version never finds a stale file. Points that changed
+ * without changing the key are caught by {@link #verify}, with the hash of every point,
+ * once the graph is shown. {@link #load} and {@link #verify} run on the loader thread and
+ * delete a file they can't use; {@link #store} is called on the main thread and writes on
+ * a background thread of its own. At most
+ * {@link #MAX_FILE_COUNT} files are kept, the least recently used are deleted.
+ */
+public class GraphStateDiskCache {
+    public static final int MAX_FILE_COUNT = 32;
+
+    private static final String TAG = "GraphStateDiskCache";
+    private static final String FILE_SUFFIX = ".state";
+
+    private static ExecutorService executor;
+
+    private final File directory;
+
+    public GraphStateDiskCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return what the file of {@code graphItem} is found by, O(series count)
+     */
+    public long getKey(GraphItem graphItem) {
+        return DerivedStateFile.hashKey(graphItem.getDateList(), graphItem.getGraphList(), graphItem.getPointCount());
+    }
+
+    /**
+     * @return hash of every point, what a file is checked against, O(n)
+     */
+    public long getContentHash(long[] dateList, long[][] graphList, int pointCount) {
+        return DerivedStateFile.hashContent(dateList, graphList, pointCount);
+    }
+
+    /**
+     * Reads the state of {@code graphItem} and the preview vertices saved with it into
+     * {@code scrollPreview}, which has {@link ScrollPreview#getVertices() vertices} afterwards
+     * only if they were saved.
+     *
+     * @param scrollPreview preview of the view size, or null if the view has no size yet
+     * @return the graph, or null if there is no usable file
+     */
+    public GraphData load(GraphItem graphItem, long key, ScrollPreview scrollPreview) {
+        File file = getFile(key, scrollPreview);
+        if (!file.exists()) {
+            return null;
+        }
+
+        try {
+            DerivedStateFile.State state = DerivedStateFile.read(
+                    file,
+                    key,
+                    graphItem.getGraphList(),
+                    graphItem.getPointCount(),
+                    scrollPreview
+            );
+            //least recently used go first when trimming
+            file.setLastModified(System.currentTimeMillis());
+            return new GraphData(graphItem, state);
+        } catch (IOException e) {
+            Log.w(TAG, "Can't read " + file + ", deriving the state again", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Checks that the file {@link #load} read was written for points with
+     * {@code contentHash}, deleting it if not.
+     *
+     * @return false if the file is gone or was written for other points with the same key
+     */
+    public boolean verify(long key, long contentHash, ScrollPreview scrollPreview) {
+        File file = getFile(key, scrollPreview);
+        try {
+            if (DerivedStateFile.readContentHash(file) == contentHash) {
+                return true;
+            }
+            Log.w(TAG, file + " is the state of other points with the same key");
+        } catch (IOException e) {
+            Log.w(TAG, "Can't verify " + file, e);
+        }
+        file.delete();
+        return false;
+    }
+
+    /**
+     * Writes the state {@code graphData} has now in the background, for loads with a
+     * preview of the size of {@code scrollPreview}.
+     */
+    public void store(final long key, final long contentHash, GraphData graphData, ScrollPreview scrollPreview) {
+        final File file = getFile(key, scrollPreview);
+        final DerivedStateFile.Snapshot snapshot = graphData.snapshotState(scrollPreview);
+
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                write(file, key, contentHash, snapshot);
+                trim();
+            }
+        });
+    }
+
+    //written next to it and renamed, a load never sees half a file
+    private void write(File file, long key, long contentHash, DerivedStateFile.Snapshot snapshot) {
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Can't create " + directory);
+            }
+            DerivedStateFile.write(tempFile, key, contentHash, snapshot);
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Can't write " + file, e);
+            tempFile.delete();
+        }
+    }
+
+    private void trim() {
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.getName().endsWith(FILE_SUFFIX);
+            }
+        });
+        if (files == null || files.length <= MAX_FILE_COUNT) {
+            return;
+        }
+
+        final long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                long difference = lastModified[first] - lastModified[second];
+                return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+            }
+        });
+        for (int i = 0; i < files.length - MAX_FILE_COUNT; i++) {
+            files[order[i]].delete();
+        }
+    }
+
+    private File getFile(long key, ScrollPreview scrollPreview) {
+        return new File(directory, DerivedStateFile.getFileName(key, scrollPreview) + FILE_SUFFIX);
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, TAG);
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,328 @@
+package com.nzoth.testgraph;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.nzoth.testgraph.chart.LineDownsampler;
+import com.nzoth.testgraph.chart.SeriesPyramid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Lines of the main graph rendered into bitmap tiles, so panning at a fixed zoom blits a
+ * few bitmaps a frame instead of stroking every segment of every series.
+ * <p>
+ * Tiles are {@link #TILE_WIDTH_PX} wide and laid out from array position 0, so what a
+ * tile shows depends only on the line weight, the max Y and the {@link Content} it is
+ * drawn from, which together with its index key it. Panning just moves the tiles; a zoom
+ * or another max Y asks for other tiles, and a new content, set when series are shown,
+ * hidden or appended, makes all of them stale.
+ * <p>
+ * At most a few screens of bitmaps exist, the tile drawn least recently is reused for
+ * the next one. Tiles are rendered on a background thread only, along with the ones next
+ * to the visible range; until all visible tiles are ready the owner draws directly.
+ * Everything but the rendering happens on the main thread.
+ */
+public class GraphTileCache {
+    public static final int TILE_WIDTH_PX = 256;
+    //rendered ahead on each side of the visible tiles
+    private static final int ADJACENT_TILE_COUNT = 2;
+
+    private static ExecutorService executor;
+
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Paint tilePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final List<Tile> tiles = new ArrayList<>();
+    private Content content;
+    private long frame;
+
+    public interface Listener {
+        void onTileRendered();
+    }
+
+    /**
+     * What tiles are drawn from. The arrays are read on the render thread, so they must
+     * not change below {@code pointCount}; appends only write past it or into grown copies.
+     */
+    public static class Content {
+        private final long[][] graphList;
+        private final SeriesPyramid[] pyramids;
+        private final boolean[] visibleList;
+        private final int[] colorList;
+        private final int pointCount;
+        private final float width;
+        private final float height;
+        private final float lineWidth;
+        private final LineDownsampler.Mode mode;
+
+        /**
+         * @param width  width of the graph on screen, it bounds the number of tiles
+         * @param height height of the graph and of every tile
+         */
+        public Content(
+                long[][] graphList,
+                SeriesPyramid[] pyramids,
+                boolean[] visibleList,
+                int[] colorList,
+                int pointCount,
+                float width,
+                float height,
+                float lineWidth,
+                LineDownsampler.Mode mode
+        ) {
+            this.graphList = graphList;
+            this.pyramids = pyramids;
+            this.visibleList = visibleList;
+            this.colorList = colorList;
+            this.pointCount = pointCount;
+            this.width = width;
+            this.height = height;
+            this.lineWidth = lineWidth;
+            this.mode = mode;
+        }
+    }
+
+    private static class Tile {
+        private Bitmap bitmap;
+        private Content content;
+        private float lineWeight;
+        private float maxY;
+        private int index;
+        private boolean ready;
+        private boolean rendering;
+        private long drawnFrame;
+    }
+
+    public GraphTileCache(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Replaces what tiles are drawn from, all tiles become stale. Null keeps no tiles at all.
+     */
+    public void setContent(Content content) {
+        this.content = content;
+        for (int i = tiles.size() - 1; i >= 0; i--) {
+            Tile tile = tiles.get(i);
+            tile.ready = false;
+            //tiles being rendered are released when they are done
+            if (!tile.rendering && (content == null || tile.bitmap.getHeight() != getTileHeight(content))) {
+                tile.bitmap.recycle();
+                tiles.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Draws the tiles covering {@code [0, width)} of the content, with array position 0 at
+     * {@code originX}. Missing tiles and the ones next to them are rendered in the
+     * background, the listener is called as each one is done.
+     *
+     * @return false if a visible tile isn't ready, nothing is drawn then
+     */
+    public boolean draw(Canvas canvas, float originX, float lineWeight, float maxY) {
+        if (content == null || content.pointCount < 2) {
+            return false;
+        }
+        frame++;
+        int lastIndex = getTileIndex(lineWeight * (content.pointCount - 1) + content.lineWidth);
+        int from = Math.max(getTileIndex(-originX), 0);
+        int to = Math.min(getTileIndex(content.width - originX), lastIndex);
+
+        //visible tiles are marked before any is requested, so none of them is reused
+        boolean ready = true;
+        for (int index = from; index <= to; index++) {
+            Tile tile = find(index, lineWeight, maxY);
+            if (tile != null) {
+                tile.drawnFrame = frame;
+            }
+            ready &= tile != null && tile.ready;
+        }
+        for (int index = from; index <= to && !ready; index++) {
+            if (find(index, lineWeight, maxY) == null) {
+                request(index, lineWeight, maxY);
+            }
+        }
+        for (int i = 1; i <= ADJACENT_TILE_COUNT; i++) {
+            if (from - i >= 0 && find(from - i, lineWeight, maxY) == null) {
+                request(from - i, lineWeight, maxY);
+            }
+            if (to + i <= lastIndex && find(to + i, lineWeight, maxY) == null) {
+                request(to + i, lineWeight, maxY);
+            }
+        }
+        if (!ready) {
+            return false;
+        }
+
+        for (int index = from; index <= to; index++) {
+            Tile tile = find(index, lineWeight, maxY);
+            canvas.drawBitmap(tile.bitmap, originX + index * (float) TILE_WIDTH_PX, 0, tilePaint);
+        }
+        return true;
+    }
+
+    private Tile find(int index, float lineWeight, float maxY) {
+        for (int i = 0; i < tiles.size(); i++) {
+            Tile tile = tiles.get(i);
+            if (tile.index == index
+                    && tile.content == content
+                    && tile.lineWeight == lineWeight
+                    && tile.maxY == maxY
+                    && (tile.ready || tile.rendering)) {
+                return tile;
+            }
+        }
+        return null;
+    }
+
+    //skipped if every tile is visible or being rendered
+    private void request(int index, float lineWeight, float maxY) {
+        Tile tile = obtainTile();
+        if (tile == null) {
+            return;
+        }
+        tile.content = content;
+        tile.lineWeight = lineWeight;
+        tile.maxY = maxY;
+        tile.index = index;
+        tile.ready = false;
+        tile.rendering = true;
+        tile.drawnFrame = frame;
+        render(tile);
+    }
+
+    //a new bitmap until there are enough for the screen and its neighbours, then the least recently drawn one
+    private Tile obtainTile() {
+        int tileHeight = getTileHeight(content);
+        if (tiles.size() < getMaxTileCount(content)) {
+            Tile tile = new Tile();
+            tile.bitmap = Bitmap.createBitmap(TILE_WIDTH_PX, tileHeight, Bitmap.Config.ARGB_8888);
+            tiles.add(tile);
+            return tile;
+        }
+
+        Tile oldest = null;
+        for (int i = 0; i < tiles.size(); i++) {
+            Tile tile = tiles.get(i);
+            if (tile.rendering || tile.drawnFrame == frame) {
+                continue;
+            }
+            //stale tiles first
+            if (oldest == null
+                    || (oldest.content == content && tile.content != content)
+                    || ((oldest.content == content) == (tile.content == content) && tile.drawnFrame < oldest.drawnFrame)) {
+                oldest = tile;
+            }
+        }
+        return oldest;
+    }
+
+    private void render(final Tile tile) {
+        final Bitmap bitmap = tile.bitmap;
+        final Content content = tile.content;
+        final int index = tile.index;
+        final float lineWeight = tile.lineWeight;
+        final float maxY = tile.maxY;
+
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                renderTile(bitmap, content, index, lineWeight, maxY);
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onTileRendered(tile);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onTileRendered(Tile tile) {
+        tile.rendering = false;
+        if (tile.content == content) {
+            tile.ready = true;
+            listener.onTileRendered();
+        } else if (content == null || tile.bitmap.getHeight() != getTileHeight(content)) {
+            tile.bitmap.recycle();
+            tiles.remove(tile);
+        }
+    }
+
+    /**
+     * Draws the lines crossing a tile, on the render thread.
+     */
+    private static void renderTile(Bitmap bitmap, Content content, int index, float lineWeight, float maxY) {
+        bitmap.eraseColor(Color.TRANSPARENT);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setStrokeWidth(content.lineWidth);
+
+        //a line width and a point more on both sides, so lines crossing an edge are drawn on both tiles
+        float left = index * (float) TILE_WIDTH_PX;
+        int fromPoint = Math.max((int) Math.floor((left - content.lineWidth) / lineWeight) - 1, 0);
+        int toPoint = Math.min((int) Math.ceil((left + TILE_WIDTH_PX + content.lineWidth) / lineWeight) + 2, content.pointCount);
+        float itemY = content.height / maxY;
+
+        LineDownsampler downsampler = new LineDownsampler(content.mode);
+        float[] vertices = new float[downsampler.getMaxFloatCount(toPoint - fromPoint, lineWeight)];
+        for (int i = 0; i < content.graphList.length; i++) {
+            if (!content.visibleList[i]) {
+                continue;
+            }
+            int size = downsampler.build(
+                    content.graphList[i],
+                    content.pyramids[i],
+                    fromPoint,
+                    toPoint,
+                    -left,
+                    lineWeight,
+                    content.height,
+                    itemY,
+                    vertices
+            );
+            paint.setColor(content.colorList[i]);
+            canvas.drawLines(vertices, 0, size, paint);
+        }
+    }
+
+    private static int getTileIndex(float x) {
+        return (int) Math.floor(x / TILE_WIDTH_PX);
+    }
+
+    private static int getTileHeight(Content content) {
+        return Math.max((int) Math.ceil(content.height), 1);
+    }
+
+    //a partly visible tile on both ends, and the adjacent ones
+    private static int getMaxTileCount(Content content) {
+        return (int) Math.ceil(content.width / TILE_WIDTH_PX) + 1 + ADJACENT_TILE_COUNT * 2;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "GraphTileCache");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+}
@@ -5,18 +5,39 @@ import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Picture;
+import android.os.Build;
+import android.os.SystemClock;
 import android.support.v4.view.GestureDetectorCompat;
 import android.support.v4.view.ViewCompat;
+import android.util.Log;
 import android.util.TypedValue;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.View;
+import android.widget.OverScroller;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
+import com.nzoth.testgraph.chart.AxisTicks;
+import com.nzoth.testgraph.chart.ChartViewport;
+import com.nzoth.testgraph.chart.DrawMetrics;
+import com.nzoth.testgraph.chart.LabelCache;
+import com.nzoth.testgraph.chart.LabelFormat;
+import com.nzoth.testgraph.chart.LineDownsampler;
+import com.nzoth.testgraph.chart.RangeMaxIndex;
+import com.nzoth.testgraph.chart.Rollup;
+import com.nzoth.testgraph.chart.ScrollPreview;
+import com.nzoth.testgraph.chart.SeriesPyramid;
+import com.nzoth.testgraph.chart.SeriesVisibility;
+import com.nzoth.testgraph.chart.StackedSeries;
+
+
+import java.util.TimeZone;
 
 public class GraphView extends View {
+    private static final String TAG = "GraphView";
+
     private static final int TABLE_LINE_COUNT = 6;
     private static final int TABLE_TEXT_PADDING_DP = 10;
     private static final int TABLE_TEXT_SIZE_SP = 12;
@@ -31,22 +52,71 @@ public class GraphView extends View {
 
     private static final float DATE_WIDTH_COEFICIENT_DP = 2F;
 
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("MMM d", Locale.US);
+    private static final float PINNED_TOLERANCE_PX = 1F;
+
+    //pixel columns of the main graph while it flings, refined when it stops
+    private static final float FLING_COLUMN_WIDTH_PX = 2F;
+
+    private static final float DOUBLE_TAP_ZOOM = 2F;
+
+    private static final int SELECTION_POINT_RADIUS_DP = 4;
+    private static final int TOOLTIP_PADDING_DP = 8;
+
+    private static final int LABEL_CACHE_SIZE = 32;
+
+    //a rollup is shown once the window holds more points than fit this far apart
+    private static final int MIN_BUCKET_WIDTH_DP = 4;
 
 
     private Paint linePaint;
     private Paint tablePaint;
     private Paint scrollPaint;
+    private Paint selectionPaint;
+    private Paint areaPaint;
 
     private GestureDetectorCompat gestureDetector;
+    private ScaleGestureDetector scaleGestureDetector;
+    private OverScroller scroller;
+    private boolean flinging;
+    private float flingScale;
+    private int flingLastX;
+    private ChartViewport viewport;
 
     private float mXScrollingSpeed = 1f;
 
 
+    private GraphLoader graphLoader;
+    private GraphData graphData;
     private GraphItem graphItem;
+    private Rollup.Aggregation aggregation;
+    private GraphRollups rollups;
+    //null while the raw points are shown
+    private Rollup.Granularity shownGranularity;
+    //the rollup being built, the shown data stays until it is
+    private Rollup.Granularity buildingGranularity;
+    private float minBucketWidth;
     private ScrollType scrollTypeAction = ScrollType.NONE;
 
-    private float[][] canvasScrollGraphArray;
+    private ScrollPreview scrollPreview;
+    private boolean scrollPreviewRebuilding;
+    private float[] chainArray = new float[0];
+    private float[] areaEdge = new float[0];
+    private float[] lowerAreaEdge = new float[0];
+    private final Path areaPath = new Path();
+    private float[] tableArray = new float[TABLE_LINE_COUNT * 4];
+    private int tableLineCount;
+    private final AxisTicks axisTicks = new AxisTicks(TABLE_LINE_COUNT);
+    private float shownMaxY = Float.NaN;
+    private int[] graphColorList;
+    private final LabelCache dateLabels = LabelCache.forDates(LABEL_CACHE_SIZE, TimeZone.getDefault());
+    private final LabelCache valueLabels = LabelCache.forBigValues(LABEL_CACHE_SIZE);
+    private int[] tableYTextSlots = new int[TABLE_LINE_COUNT];
+    private RangeMaxIndex combinedMaxIndex;
+    private SeriesVisibility visibility;
+    private StackedSeries stackedSeries;
+    private int selectedPosition = -1;
+    private char[][] selectionTextList;
+    private int[] selectionTextLengths;
 
     private float screenWidth;
     private float screenHeight;
@@ -57,6 +127,8 @@ public class GraphView extends View {
     private float graphBlockTextSize;
     private float graphBlockTextPadding;
     private float graphBlockLineWidth;
+    private float selectionPointRadius;
+    private float tooltipPadding;
 
 
     private float scrollBlockHeight;
@@ -67,52 +139,491 @@ public class GraphView extends View {
     private float holdLineLeftX;
     private float holdLineRightX;
 
-    private float sizeCoeficient;
-    private float graphBlockLineWeight;
-
     private int dateArrayLength;
     private float dateWidthCoeficient;
 
+    private Picture staticLayer;
+    private boolean staticLayerEnabled = true;
+    private boolean staticLayerDirty = true;
+    private GraphTileCache tileCache;
+    private boolean tileContentDirty = true;
+    private OnFrameDrawnListener onFrameDrawnListener;
+    private OnGraphDataChangedListener onGraphDataChangedListener;
+    private DrawMetrics.Listener drawMetricsListener;
+    private DrawMetrics drawMetrics;
+
+    /**
+     * Called after every {@link #onDraw}, for measuring draw cost on a device.
+     */
+    public interface OnFrameDrawnListener {
+        void onFrameDrawn(long drawTimeNanos);
+    }
+
+    /**
+     * Called when the view gets new graph data, loaded or set, and with null when it is
+     * released.
+     */
+    public interface OnGraphDataChangedListener {
+        void onGraphDataChanged(GraphData graphData);
+    }
+
     private enum ScrollType {
-        NONE, GRAPH, SCROLL_BLOCK, HOLD_LINE_LEFT, HOLD_LINE_RIGHT
+        NONE, GRAPH, SELECTION, SCALE, SCROLL_BLOCK, HOLD_LINE_LEFT, HOLD_LINE_RIGHT
     }
 
     public GraphView(Context context, GraphItem graphItem) {
+        this(context);
+        setGraphData(new GraphData(graphItem));
+    }
+
+    /**
+     * Creates an empty view, data is set later with {@link #loadGraph} or {@link #setGraphData}.
+     */
+    public GraphView(Context context) {
         super(context);
-        this.graphItem = graphItem;
         this.gestureDetector = new GestureDetectorCompat(context, gestureListener);
-        this.dateArrayLength = graphItem.getDateList().length;
-        this.canvasScrollGraphArray = new float[graphItem.getGraphList().length][dateArrayLength * 4];
+        this.scaleGestureDetector = new ScaleGestureDetector(context, scaleListener);
+        this.scroller = new OverScroller(context);
+        this.graphLoader = new GraphLoader(loaderListener);
         this.scrollBlockHeight = getPixelsFromDp(SCROLL_BLOCK_HEIGHT_DP);
         this.scrollBlockMinWidth = getPixelsFromDp(SCROLL_BLOCK_MIN_WIDTH_DP);
         this.holdLineWidth = getPixelsFromDp(SCROLL_BLOCK_HOLD_LINE_WIDTH_DP);
         this.holdLineWidthHalf = holdLineWidth / 2;
+        this.viewport = new ChartViewport(holdLineWidth);
         this.graphBlockTextSize = getPixelsFromSp(TABLE_TEXT_SIZE_SP);
         this.graphBlockTextPadding = getPixelsFromDp(TABLE_TEXT_PADDING_DP);
         this.graphLineMarginTopBottom = getPixelsFromDp(GRAPH_LINE_MARGIN_DP);
         this.graphBlockLineWidth = getPixelsFromDp(GRAPH_BLOCK_LINE_WIDTH_DP);
         this.scrollBlockLineWidth = getPixelsFromDp(SCROLL_BLOCK_LINE_WIDTH_DP);
         this.dateWidthCoeficient = getPixelsFromDp(DATE_WIDTH_COEFICIENT_DP);
+        this.selectionPointRadius = getPixelsFromDp(SELECTION_POINT_RADIUS_DP);
+        this.tooltipPadding = getPixelsFromDp(TOOLTIP_PADDING_DP);
+        this.minBucketWidth = getPixelsFromDp(MIN_BUCKET_WIDTH_DP);
 
         initLinePaint();
         initTablePaint();
         initScrollPaint();
+        initSelectionPaint();
+        initAreaPaint();
     }
 
 
     @Override
     protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
         super.onLayout(changed, left, top, right, bottom);
+        //layout passes of the same size keep the window where it was scrolled or appended to
+        boolean sizeChanged = getWidth() != screenWidth || getHeight() != screenHeight;
         screenWidth = getWidth();
         screenHeight = getHeight();
         graphBlockHeight = screenHeight - (scrollBlockHeight + graphBlockTextSize + graphBlockTextPadding * 2);
-        holdLineLeftX = screenWidth - scrollBlockMinWidth + holdLineWidthHalf;
-        holdLineRightX = screenWidth - holdLineWidthHalf;
-        graphBlockLineWeight = getGraphBlockWidth();
-        sizeCoeficient = getSizeCoeficient();
-        rebuildCanvasScrollGraphArray();
+        viewport.setSize(screenWidth, graphBlockHeight);
+        if (sizeChanged) {
+            resetHoldLines();
+        }
+        rebuildTableArray();
+        invalidateStaticLayer();
+        invalidateTileContent();
+
+        if (graphData != null) {
+            updateScale();
+            if (scrollPreview == null || !scrollPreview.hasSize(screenWidth, screenHeight)) {
+                rebuildScrollPreview();
+            }
+        }
+    }
+
+    /**
+     * Reads graphs loaded after this call from files of {@code diskCache} when it has them
+     * and stores the others there once drawn, see {@link GraphLoader}. Null, the default,
+     * derives everything on every load.
+     */
+    public void setDiskCache(GraphStateDiskCache diskCache) {
+        graphLoader.setDiskCache(diskCache);
+    }
+
+    /**
+     * Loads the graph on a background thread, the view stays empty until it arrives.
+     * A load still in progress is cancelled. For a {@link PackedGraphItem} line chart the
+     * Y axis of the window the graph opens at is shown right away.
+     */
+    public void loadGraph(GraphLoader.Source source) {
+        graphLoader.load(source, screenWidth > 0 ? createScrollPreview() : null);
+        if (source instanceof PackedGraphItem) {
+            showLoadingAxis((PackedGraphItem) source);
+        }
+    }
+
+    //the max of the opening window from the block headers, so the grid and its labels are
+    //in place while the points are decoded and don't move when they arrive
+    private void showLoadingAxis(PackedGraphItem packedItem) {
+        int pointCount = packedItem.getPointCount();
+        if (graphData != null || screenWidth <= 0 || pointCount < 2
+                || packedItem.getChartType() != GraphItem.ChartType.LINE) {
+            return;
+        }
+
+        resetHoldLines();
+        viewport.setPointCount(pointCount);
+        viewport.updateScale(holdLineLeftX, holdLineRightX);
+        viewport.updateVisibleRange(holdLineLeftX, holdLineRightX);
+        long max = packedItem.getMax(
+                viewport.getArrayPosition(viewport.getEndScreenPoint() - 1),
+                viewport.getArrayPosition(viewport.getStartScreenPoint()) + 1);
+        viewport.setPointCount(0);
+
+        if (axisTicks.update(Math.max(max, 0))) {
+            bindTickLabels();
+            rebuildTableArray();
+            invalidateStaticLayer();
+            ViewCompat.postInvalidateOnAnimation(this);
+        }
+    }
+
+    /**
+     * Shows {@code graphData} right away, cancelling a {@link #loadGraph} in progress.
+     */
+    public void setGraphData(GraphData graphData) {
+        setGraphData(graphData, null);
+    }
+
+    /**
+     * Like {@link #setGraphData(GraphData)}, reusing {@code scrollPreview} if it was built
+     * for the current size of the view.
+     */
+    public void setGraphData(GraphData graphData, ScrollPreview scrollPreview) {
+        graphLoader.cancel();
+        applyGraphData(graphData, scrollPreview);
+    }
+
+    /**
+     * Appends a point to the shown graph. Only the new tail is indexed and added to the
+     * scroll block preview; a view pinned to the newest point follows it, otherwise the
+     * visible range stays on the same points.
+     *
+     * @param values one value per series
+     */
+    public void append(long date, long[] values) {
+        if (graphData == null) {
+            throw new IllegalStateException("No graph to append to");
+        }
+
+        int previousLength = dateArrayLength;
+        if (rollups != null) {
+            rollups.append(date, values);
+        } else {
+            graphData.append(date, values);
+        }
+        dateArrayLength = graphData.getPointCount();
+        viewport.setPointCount(dateArrayLength);
+
+        if (screenWidth > 0) {
+            moveHoldLinesOnAppend(previousLength, dateArrayLength);
+            updateScale();
+            appendScrollPreview();
+        }
+        invalidateStaticLayer();
+        invalidateTileContent();
+        ViewCompat.postInvalidateOnAnimation(this);
+    }
+
+    /**
+     * Shows or hides a series. Its line fades and the Y scale moves to the max of the
+     * visible series, stacked areas are summed again without hidden series; the scroll
+     * block preview is rebuilt without them.
+     */
+    public void setSeriesVisible(int series, boolean visible) {
+        if (graphData == null) {
+            throw new IllegalStateException("No graph to change");
+        }
+
+        if (graphData.setSeriesVisible(series, visible, SystemClock.uptimeMillis())) {
+            if (shownGranularity != null) {
+                rollups.getRawGraphData().setSeriesVisible(series, visible, 0);
+            }
+            if (screenWidth > 0) {
+                rebuildScrollPreview();
+            }
+            invalidateStaticLayer();
+            invalidateTileContent();
+            ViewCompat.postInvalidateOnAnimation(this);
+        }
+    }
+
+    public boolean isSeriesVisible(int series) {
+        return visibility != null && visibility.isVisible(series);
+    }
+
+    /**
+     * @return the raw points, also while a rollup of them is shown
+     */
+    public GraphData getGraphData() {
+        return rollups != null ? rollups.getRawGraphData() : graphData;
+    }
+
+    /**
+     * @return the preview of the raw points, null while a rollup is shown
+     */
+    public ScrollPreview getScrollPreview() {
+        return shownGranularity == null ? scrollPreview : null;
+    }
+
+    /**
+     * Shows calendar rollups of the points, each series reduced by {@code aggregation},
+     * once the window holds more points than fit its width: hours, days or weeks in the
+     * default time zone, the finest that fits as the window is zoomed. Rollups are built
+     * in the background the first time they are needed, what is shown stays until they
+     * are ready, and appended to as points arrive; null shows the raw points only, the
+     * default.
+     */
+    public void setAggregation(Rollup.Aggregation aggregation) {
+        if (this.aggregation == aggregation) {
+            return;
+        }
+
+        this.aggregation = aggregation;
+        GraphData rawGraphData = getGraphData();
+        if (rawGraphData == null) {
+            return;
+        }
+        graphLoader.cancelRollup();
+        buildingGranularity = null;
+        rollups = createRollups(rawGraphData);
+        if (shownGranularity != null) {
+            shownGranularity = null;
+            showGraphData(rawGraphData);
+        }
+        if (screenWidth > 0) {
+            updateScale();
+        }
+    }
+
+    public Rollup.Aggregation getAggregation() {
+        return aggregation;
+    }
+
+    /**
+     * @return granularity of the rollup shown, null while the raw points are
+     */
+    public Rollup.Granularity getShownGranularity() {
+        return shownGranularity;
+    }
+
+    /**
+     * Drops the graph and everything derived from it, the view stays empty until new
+     * data is set.
+     */
+    public void releaseGraph() {
+        graphLoader.cancel();
+        stopFling();
+
+        graphData = null;
+        graphItem = null;
+        rollups = null;
+        shownGranularity = null;
+        buildingGranularity = null;
+        dateArrayLength = 0;
+        viewport.setPointCount(0);
+        combinedMaxIndex = null;
+        visibility = null;
+        stackedSeries = null;
+        graphColorList = null;
+        selectedPosition = -1;
+        selectionTextList = null;
+        selectionTextLengths = null;
+        scrollPreview = null;
+        scrollPreviewRebuilding = false;
+        axisTicks.reset();
+        shownMaxY = Float.NaN;
+        rebuildTableArray();
+        invalidateStaticLayer();
+        if (tileCache != null) {
+            tileCache.setContent(null);
+        }
+        invalidateTileContent();
+        ViewCompat.postInvalidateOnAnimation(this);
+
+        if (onGraphDataChangedListener != null) {
+            onGraphDataChangedListener.onGraphDataChanged(null);
+        }
+    }
+
+    public void setOnGraphDataChangedListener(OnGraphDataChangedListener onGraphDataChangedListener) {
+        this.onGraphDataChangedListener = onGraphDataChangedListener;
+    }
+
+    private void applyGraphData(GraphData graphData, ScrollPreview scrollPreview) {
+        stopFling();
+        this.rollups = createRollups(graphData);
+        this.shownGranularity = null;
+        this.buildingGranularity = null;
+        bindGraphData(graphData);
+        this.selectionTextList = new char[graphColorList.length][];
+        this.selectionTextLengths = new int[graphColorList.length];
+        String[] titleList = graphItem.getGraphTitleList();
+        for (int i = 0; i < titleList.length; i++) {
+            //"value title"
+            selectionTextList[i] = new char[LabelFormat.BIG_VALUE_MAX_LENGTH + 1 + titleList[i].length()];
+        }
+        this.scrollPreview = scrollPreview != null
+                && scrollPreview.hasSize(screenWidth, screenHeight)
+                && scrollPreview.hasVisibility(visibility.getVisibleList()) ? scrollPreview : null;
+        this.scrollPreviewRebuilding = false;
+
+        if (screenWidth > 0) {
+            resetHoldLines();
+            updateScale();
+            if (this.scrollPreview == null) {
+                rebuildScrollPreview();
+            } else {
+                appendScrollPreview();
+            }
+        }
+        invalidateStaticLayer();
+        invalidateTileContent();
+        ViewCompat.postInvalidateOnAnimation(this);
+
+        if (onGraphDataChangedListener != null) {
+            onGraphDataChangedListener.onGraphDataChanged(graphData);
+        }
+    }
+
+    //the raw points or one of their rollups, everything drawn is read from it
+    private void bindGraphData(GraphData graphData) {
+        this.graphData = graphData;
+        this.graphItem = graphData.getGraphItem();
+        this.dateArrayLength = graphData.getPointCount();
+        this.viewport.setPointCount(dateArrayLength);
+        this.combinedMaxIndex = graphData.getCombinedMaxIndex();
+        this.visibility = graphData.getVisibility();
+        this.stackedSeries = graphData.getStackedSeries();
+        this.graphColorList = graphData.getGraphColorList();
+        this.selectedPosition = -1;
+        this.axisTicks.reset();
+        this.shownMaxY = Float.NaN;
+    }
+
+    private GraphRollups createRollups(GraphData rawGraphData) {
+        return aggregation != null ? new GraphRollups(rawGraphData, aggregation, TimeZone.getDefault()) : null;
+    }
+
+    //the zoom of the window, at the granularity that fits it
+    private void updateScale() {
+        updateGranularity();
+        viewport.updateScale(holdLineLeftX, holdLineRightX);
     }
 
+    //raw points while they fit the width, then the finest rollup that does
+    private void updateGranularity() {
+        if (rollups == null) {
+            return;
+        }
+
+        GraphData rawGraphData = rollups.getRawGraphData();
+        float windowPart = (holdLineRightX - holdLineLeftX + holdLineWidth) / screenWidth;
+        float windowPointCount = rawGraphData.getPointCount() * windowPart;
+        int maxBucketCount = Math.max((int) (screenWidth / minBucketWidth), 2);
+        Rollup.Granularity granularity = null;
+        if (windowPointCount > maxBucketCount) {
+            //the window is a part of the points, the same part of the time if they are evenly spaced
+            long windowSpan = (long) (rollups.getTimeSpan() * (double) windowPart);
+            granularity = Rollup.Granularity.getFinest(windowSpan, maxBucketCount);
+            //points sparser than the buckets are shown as they are
+            if (windowSpan / granularity.getMillis() >= windowPointCount) {
+                granularity = null;
+            }
+        }
+        if (granularity == shownGranularity) {
+            return;
+        }
+
+        GraphData shown = rawGraphData;
+        if (granularity != null) {
+            shown = rollups.getGraphData(granularity);
+            if (shown == null) {
+                if (granularity != buildingGranularity) {
+                    buildingGranularity = granularity;
+                    graphLoader.buildRollup(rollups.createBuild(granularity));
+                }
+                return;
+            }
+        }
+        //a line needs two closed buckets
+        if (shown.getPointCount() < 2) {
+            return;
+        }
+        shownGranularity = granularity;
+        showGraphData(shown);
+    }
+
+    //another granularity of the same points, the window and the visible series stay
+    private void showGraphData(GraphData shown) {
+        boolean[] visibleList = visibility.getVisibleList();
+        for (int i = 0; i < visibleList.length; i++) {
+            shown.setSeriesVisible(i, visibleList[i], 0);
+        }
+        bindGraphData(shown);
+        if (screenWidth > 0) {
+            scrollPreview = null;
+            rebuildScrollPreview();
+        }
+        invalidateStaticLayer();
+        invalidateTileContent();
+        ViewCompat.postInvalidateOnAnimation(this);
+    }
+
+    private final GraphLoader.Listener loaderListener = new GraphLoader.Listener() {
+        @Override
+        public void onGraphLoaded(GraphData graphData, ScrollPreview scrollPreview) {
+            applyGraphData(graphData, scrollPreview);
+        }
+
+        @Override
+        public void onGraphLoadFailed(Exception e) {
+            Log.e(TAG, "Can't load graph", e);
+        }
+
+        @Override
+        public void onScrollPreviewBuilt(ScrollPreview scrollPreview) {
+            GraphView.this.scrollPreview = scrollPreview;
+            scrollPreviewRebuilding = false;
+            //points appended while it was built
+            appendScrollPreview();
+            invalidateStaticLayer();
+            ViewCompat.postInvalidateOnAnimation(GraphView.this);
+        }
+
+        @Override
+        public void onScrollPreviewFailed(RuntimeException e) {
+            Log.e(TAG, "Can't build scroll preview", e);
+            //the next append or size change asks again
+            scrollPreviewRebuilding = false;
+        }
+
+        @Override
+        public void onRollupBuilt(GraphRollups.Build build) {
+            if (build.getGraphRollups() != rollups) {
+                return;
+            }
+
+            rollups.add(build);
+            buildingGranularity = null;
+            //shown if the window still wants it
+            if (screenWidth > 0) {
+                updateScale();
+                ViewCompat.postInvalidateOnAnimation(GraphView.this);
+            }
+        }
+
+        @Override
+        public void onRollupFailed(GraphRollups.Build build, RuntimeException e) {
+            Log.e(TAG, "Can't build " + build.getGranularity() + " rollup", e);
+            if (build.getGraphRollups() == rollups) {
+                //the raw points stay shown, the next zoom asks again
+                buildingGranularity = null;
+            }
+        }
+    };
+
     private final GestureDetector.SimpleOnGestureListener gestureListener = new GestureDetector.SimpleOnGestureListener() {
         @Override
         public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
@@ -120,10 +631,14 @@ public class GraphView extends View {
             float holdRightX;
             float scrolledDistance = mXScrollingSpeed * distanceX;
 
+            if (scrollTypeAction != ScrollType.NONE && getParent() != null) {
+                getParent().requestDisallowInterceptTouchEvent(true);
+            }
+
             switch (scrollTypeAction) {
                 case GRAPH:
-                    holdLeftX = holdLineLeftX + scrolledDistance / sizeCoeficient;
-                    holdRightX = holdLineRightX + scrolledDistance / sizeCoeficient;
+                    holdLeftX = holdLineLeftX + scrolledDistance / viewport.getSizeCoeficient();
+                    holdRightX = holdLineRightX + scrolledDistance / viewport.getSizeCoeficient();
 
                     if (holdLeftX >= holdLineWidthHalf
                             && holdRightX <= screenWidth - holdLineWidthHalf
@@ -152,8 +667,7 @@ public class GraphView extends View {
                     if (holdLeftX >= holdLineWidthHalf
                             && holdLeftX <= holdLineRightX - scrollBlockMinWidth + holdLineWidthHalf) {
                         holdLineLeftX = holdLeftX;
-                        graphBlockLineWeight = getGraphBlockWidth();
-                        sizeCoeficient = getSizeCoeficient();
+                        updateScale();
 
                         ViewCompat.postInvalidateOnAnimation(GraphView.this);
                     }
@@ -164,8 +678,7 @@ public class GraphView extends View {
                     if (holdRightX <= screenWidth - holdLineWidthHalf
                             && holdRightX >= holdLineLeftX + scrollBlockMinWidth - holdLineWidthHalf) {
                         holdLineRightX = holdRightX;
-                        graphBlockLineWeight = getGraphBlockWidth();
-                        sizeCoeficient = getSizeCoeficient();
+                        updateScale();
 
                         ViewCompat.postInvalidateOnAnimation(GraphView.this);
                     }
@@ -178,6 +691,62 @@ public class GraphView extends View {
             return true;
         }
 
+        @Override
+        public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
+            switch (scrollTypeAction) {
+                case GRAPH:
+                    //the scroller counts whole pixels, so the main graph flings in its own
+                    //pixels and stays smooth when zoomed in
+                    startFling(-velocityX * mXScrollingSpeed, Math.min(viewport.getSizeCoeficient(), Integer.MAX_VALUE / 2F / screenWidth));
+                    return true;
+                case SCROLL_BLOCK:
+                    startFling(velocityX * mXScrollingSpeed, 1F);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        @Override
+        public boolean onSingleTapConfirmed(MotionEvent e) {
+            //scrollTypeAction is already reset on up
+            if (e.getY() > graphBlockHeight) {
+                return false;
+            }
+
+            //tapping the selected point again hides the tooltip
+            int position = getPositionAt(e.getX());
+            setSelectedPosition(position != selectedPosition ? position : -1);
+            return true;
+        }
+
+        @Override
+        public boolean onDoubleTap(MotionEvent e) {
+            if (e.getY() > graphBlockHeight) {
+                return false;
+            }
+
+            //zoomed in as far as it goes, show everything again
+            float windowWidth = holdLineRightX - holdLineLeftX + holdLineWidth;
+            boolean zoomedIn = windowWidth <= getMinWindowWidth() + PINNED_TOLERANCE_PX;
+            zoomAround(e.getX(), zoomedIn ? windowWidth / screenWidth : DOUBLE_TAP_ZOOM);
+            return true;
+        }
+
+        @Override
+        public void onLongPress(MotionEvent e) {
+            if (scrollTypeAction != ScrollType.GRAPH) {
+                return;
+            }
+
+            //the detector sends no scrolls after a long press, onTouchEvent tracks the finger
+            scrollTypeAction = ScrollType.SELECTION;
+            if (getParent() != null) {
+                getParent().requestDisallowInterceptTouchEvent(true);
+            }
+            setSelectedPosition(getPositionAt(e.getX()));
+        }
+
         @Override
         public boolean onDown(MotionEvent e) {
             return true;
@@ -185,11 +754,65 @@ public class GraphView extends View {
     };
 
 
+    private final ScaleGestureDetector.SimpleOnScaleGestureListener scaleListener = new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+        @Override
+        public boolean onScaleBegin(ScaleGestureDetector detector) {
+            if (scrollTypeAction != ScrollType.GRAPH) {
+                return false;
+            }
+
+            //no panning until every finger is up
+            scrollTypeAction = ScrollType.SCALE;
+            if (getParent() != null) {
+                getParent().requestDisallowInterceptTouchEvent(true);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean onScale(ScaleGestureDetector detector) {
+            zoomAround(detector.getFocusX(), detector.getScaleFactor());
+            return true;
+        }
+    };
+
+    /**
+     * Zooms the main graph by {@code zoom} keeping the point under {@code focusX} in place,
+     * within the bounds the hold lines can be dragged to. Only the window changes, so this
+     * is O(1) whatever the number of points.
+     */
+    private void zoomAround(float focusX, float zoom) {
+        //the main graph shows the scroll block between the outer edges of the hold lines
+        float windowLeft = holdLineLeftX - holdLineWidthHalf;
+        float windowWidth = holdLineRightX - holdLineLeftX + holdLineWidth;
+        float focusPart = focusX / screenWidth;
+        float focus = windowLeft + windowWidth * focusPart;
+
+        float newWidth = Math.max(getMinWindowWidth(), Math.min(windowWidth / zoom, screenWidth));
+        float newLeft = Math.max(0, Math.min(focus - newWidth * focusPart, screenWidth - newWidth));
+
+        holdLineLeftX = newLeft + holdLineWidthHalf;
+        holdLineRightX = newLeft + newWidth - holdLineWidthHalf;
+        updateScale();
+        ViewCompat.postInvalidateOnAnimation(this);
+    }
+
+    //the narrowest window the hold lines can be dragged to
+    private float getMinWindowWidth() {
+        return scrollBlockMinWidth + holdLineWidthHalf;
+    }
+
     @SuppressLint("ClickableViewAccessibility")
     @Override
     public boolean onTouchEvent(MotionEvent event) {
+        if (graphData == null) {
+            return false;
+        }
+
         switch (event.getAction()) {
             case MotionEvent.ACTION_DOWN:
+                stopFling();
+
                 float eventX = event.getX();
                 float eventY = event.getY();
 
@@ -206,50 +829,222 @@ public class GraphView extends View {
                 } else {
                     scrollTypeAction = ScrollType.NONE;
                 }
-
+                updateTileContent();
                 break;
-            case MotionEvent.ACTION_UP:
-                scrollTypeAction = ScrollType.NONE;
+            case MotionEvent.ACTION_MOVE:
+                if (scrollTypeAction == ScrollType.SELECTION) {
+                    setSelectedPosition(getPositionAt(event.getX()));
+                }
                 break;
         }
 
-        return gestureDetector.onTouchEvent(event);
+        scaleGestureDetector.onTouchEvent(event);
+        boolean handled = gestureDetector.onTouchEvent(event);
+
+        //after the detectors, a fling on up still needs to know what was dragged
+        if (event.getAction() == MotionEvent.ACTION_UP || event.getAction() == MotionEvent.ACTION_CANCEL) {
+            scrollTypeAction = ScrollType.NONE;
+        }
+        return handled;
+    }
+
+    /**
+     * Moves the window with the fling, the scroller is in hold line pixels times
+     * {@code scale}.
+     */
+    private void startFling(float velocity, float scale) {
+        float windowWidth = holdLineRightX - holdLineLeftX;
+        flingScale = scale;
+        flingLastX = Math.round(holdLineLeftX * scale);
+        scroller.fling(
+                flingLastX,
+                0,
+                Math.round(velocity * scale),
+                0,
+                Math.round(holdLineWidthHalf * scale),
+                Math.round((screenWidth - holdLineWidthHalf - windowWidth) * scale),
+                0,
+                0
+        );
+        flinging = true;
+        viewport.getLineDownsampler().setColumnWidth(FLING_COLUMN_WIDTH_PX);
+        updateTileContent();
+        ViewCompat.postInvalidateOnAnimation(this);
+    }
+
+    private void stopFling() {
+        if (!flinging) {
+            return;
+        }
+        scroller.forceFinished(true);
+        flinging = false;
+        viewport.getLineDownsampler().setColumnWidth(1F);
+        //one more frame in full detail
+        ViewCompat.postInvalidateOnAnimation(this);
+    }
+
+    @Override
+    public void computeScroll() {
+        if (!flinging) {
+            return;
+        }
+        if (!scroller.computeScrollOffset()) {
+            stopFling();
+            return;
+        }
+
+        //by the distance moved, appends may have moved the window since the fling started
+        int currX = scroller.getCurrX();
+        float windowWidth = holdLineRightX - holdLineLeftX;
+        float holdLeftX = holdLineLeftX + (currX - flingLastX) / flingScale;
+        flingLastX = currX;
+        float minLeftX = holdLineWidthHalf;
+        float maxLeftX = screenWidth - holdLineWidthHalf - windowWidth;
+        holdLineLeftX = Math.max(minLeftX, Math.min(holdLeftX, maxLeftX));
+        holdLineRightX = holdLineLeftX + windowWidth;
+
+        if (holdLineLeftX != holdLeftX) {
+            stopFling();
+        } else {
+            ViewCompat.postInvalidateOnAnimation(this);
+        }
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
+        long drawStartTime = onFrameDrawnListener != null || drawMetrics != null ? System.nanoTime() : 0;
+        if (drawMetrics != null) {
+            drawMetrics.reset();
+        }
         super.onDraw(canvas);
 
-        drawTable(canvas);
-        drawLines(canvas);
-        drawScrollBlock(canvas);
+        long now = SystemClock.uptimeMillis();
+        if (graphData != null) {
+            //before the static layer, which has the grid of the ticks
+            updateMaxY(now);
+        }
+        drawStaticLayer(canvas);
+        if (graphData != null) {
+            drawLines(canvas, now);
+            drawScrollBlock(canvas);
+            graphLoader.onGraphDrawn(getGraphData());
+        } else if (axisTicks.hasTicks()) {
+            drawTableYText(canvas);
+        }
+
+        if (onFrameDrawnListener != null) {
+            onFrameDrawnListener.onFrameDrawn(System.nanoTime() - drawStartTime);
+        }
+        if (drawMetrics != null) {
+            drawMetrics.setTotalTime(System.nanoTime() - drawStartTime);
+            drawMetricsListener.onDrawMetrics(drawMetrics);
+        }
     }
 
-    private void drawTable(Canvas canvas) {
-        float rowHeight = graphBlockHeight / (float) TABLE_LINE_COUNT;
+    public void setOnFrameDrawnListener(OnFrameDrawnListener onFrameDrawnListener) {
+        this.onFrameDrawnListener = onFrameDrawnListener;
+    }
 
-        float[] table = new float[TABLE_LINE_COUNT * 4];
-        for (int i = 0; i < TABLE_LINE_COUNT; i++) {
-            int position = i * 4;
-            float y = (i + 1) * rowHeight;
-            table[position] = 0;
-            table[position + 1] = y;
-            table[position + 2] = screenWidth;
-            table[position + 3] = y;
+    /**
+     * Reports the cost of every frame split by phase, see {@link DrawMetrics}.
+     * Without a listener the phases are not timed.
+     */
+    public void setDrawMetricsListener(DrawMetrics.Listener drawMetricsListener) {
+        this.drawMetricsListener = drawMetricsListener;
+        this.drawMetrics = drawMetricsListener != null ? new DrawMetrics() : null;
+    }
+
+    /**
+     * Records the grid and the scroll block preview, which don't change while panning, once
+     * into a {@link Picture} and replays it every frame. Enabled by default.
+     */
+    public void setStaticLayerEnabled(boolean staticLayerEnabled) {
+        this.staticLayerEnabled = staticLayerEnabled;
+        this.staticLayer = null;
+        invalidateStaticLayer();
+        ViewCompat.postInvalidateOnAnimation(this);
+    }
+
+    /**
+     * Pans line charts by blitting bitmap tiles of the main graph instead of drawing its
+     * lines every frame, see {@link GraphTileCache}. Off by default, the tiles take a few
+     * screens of bitmaps; areas, zooms and fades are always drawn directly.
+     */
+    public void setTileCacheEnabled(boolean tileCacheEnabled) {
+        if (tileCacheEnabled == (tileCache != null)) {
+            return;
+        }
+        if (tileCacheEnabled) {
+            tileCache = new GraphTileCache(tileListener);
+            invalidateTileContent();
+        } else {
+            tileCache.setContent(null);
+            tileCache = null;
+        }
+        ViewCompat.postInvalidateOnAnimation(this);
+    }
+
+    public boolean isTileCacheEnabled() {
+        return tileCache != null;
+    }
+
+    private final GraphTileCache.Listener tileListener = new GraphTileCache.Listener() {
+        @Override
+        public void onTileRendered() {
+            ViewCompat.postInvalidateOnAnimation(GraphView.this);
+        }
+    };
+
+    /**
+     * Re-records the static layer on the next frame, for changes the view can't see,
+     * like a new theme.
+     */
+    public void invalidateStaticLayer() {
+        staticLayerDirty = true;
+    }
+
+    private void drawStaticLayer(Canvas canvas) {
+        //hardware canvases replay pictures only since M
+        if (!staticLayerEnabled
+                || (canvas.isHardwareAccelerated() && Build.VERSION.SDK_INT < Build.VERSION_CODES.M)) {
+            drawStaticContent(canvas);
+            return;
         }
 
+        if (staticLayer == null) {
+            staticLayer = new Picture();
+        }
+        if (staticLayerDirty) {
+            Canvas recordingCanvas = staticLayer.beginRecording((int) screenWidth, (int) screenHeight);
+            drawStaticContent(recordingCanvas);
+            staticLayer.endRecording();
+            staticLayerDirty = false;
+        }
+        canvas.drawPicture(staticLayer);
+    }
+
+    private void drawStaticContent(Canvas canvas) {
+        drawTable(canvas);
+        if (graphData != null) {
+            drawScrollPreview(canvas);
+        }
+    }
+
+    private void drawTable(Canvas canvas) {
         tablePaint.setColor(Color.LTGRAY);
-        canvas.drawLines(table, tablePaint);
+        canvas.drawLines(tableArray, 0, tableLineCount * 4, tablePaint);
     }
 
-    private void drawTableYText(Canvas canvas, int maxYPoints) {
-        float rowHeight = graphBlockHeight / (float) TABLE_LINE_COUNT;
-        int partOfPoints = maxYPoints / TABLE_LINE_COUNT;
+    private void drawTableYText(Canvas canvas) {
+        float rowHeight = graphBlockHeight / (float) tableLineCount;
 
         tablePaint.setColor(Color.GRAY);
-        for (int i = 0; i < TABLE_LINE_COUNT; i++) {
+        for (int i = 0; i < tableLineCount; i++) {
+            int slot = tableYTextSlots[i];
             canvas.drawText(
-                    FormatUtils.formatBigValue(i > 0 ? i * partOfPoints : 0),
+                    valueLabels.getChars(slot),
+                    0,
+                    valueLabels.getLength(slot),
                     graphBlockTextPadding,
                     (graphBlockHeight - i * rowHeight) - graphBlockTextPadding,
                     tablePaint
@@ -257,68 +1052,375 @@ public class GraphView extends View {
         }
     }
 
-    private void drawTableDateText(
-            Canvas canvas,
-            float scrollX,
-            int startScreenPoint,
-            int endScreenPoint
-    ) {
-        float visibleDateValue = screenWidth / graphBlockLineWeight / dateWidthCoeficient;
+    private void drawTableDateText(Canvas canvas) {
+        float scrollX = viewport.getScrollX();
+        float lineWeight = viewport.getLineWeight();
+        float visibleDateValue = viewport.getDateLabelStep(dateWidthCoeficient);
         float height = graphBlockHeight + graphBlockTextSize + graphBlockTextPadding;
-        float startPosition = startScreenPoint - startScreenPoint % visibleDateValue;
+        float startPosition = viewport.getDateLabelStart(visibleDateValue);
 
-        for (int i = 0; i < endScreenPoint - startPosition; i += visibleDateValue) {
+        for (int i = 0; i < viewport.getEndScreenPoint() - startPosition; i += visibleDateValue) {
             float rootArrayPosition = i + startPosition;
-            float positionX = scrollX - (i > 0 ? graphBlockLineWeight * rootArrayPosition : 0);
+            float positionX = scrollX - (i > 0 ? lineWeight * rootArrayPosition : 0);
+
+            int slot = getDateSlot((int) rootArrayPosition);
+            char[] text = dateLabels.getChars(slot);
+            int length = dateLabels.getLength(slot);
+
+            float x = positionX - tablePaint.measureText(text, 0, length);
+            canvas.drawText(text, 0, length, x, height, tablePaint);
+        }
+    }
+
+    /**
+     * Finds the visible range and the max Y it is drawn with. The Y axis snaps to the
+     * {@link AxisTicks}, so the grid and its labels change only when the max leaves them.
+     */
+    private void updateMaxY(long now) {
+        viewport.updateVisibleRange(holdLineLeftX, holdLineRightX);
+        if (viewport.getVisibleCount() <= 0) {
+            shownMaxY = Float.NaN;
+            return;
+        }
+
+        long time = getMetricsTime();
+        long[][] graphArray = graphItem.getGraphList();
+        float targetMaxY;
+        if (stackedSeries != null) {
+            targetMaxY = getStackedMaxY();
+        } else {
+            targetMaxY = visibility.isAllVisible()
+                    ? viewport.getMaxY(graphArray, combinedMaxIndex)
+                    : viewport.getMaxY(graphArray, graphData.getPyramids(), visibility);
+        }
+        if (drawMetrics != null) {
+            drawMetrics.addMaxYTime(getMetricsTime() - time);
+        }
 
-            Date date = new Date(graphItem.getDateList()[(int) rootArrayPosition]);
-            String text = DATE_FORMAT.format(date);
+        if (axisTicks.update(targetMaxY)) {
+            time = getMetricsTime();
+            bindTickLabels();
+            if (drawMetrics != null) {
+                drawMetrics.addLabelTime(getMetricsTime() - time);
+            }
+            rebuildTableArray();
+            invalidateStaticLayer();
+        }
+        shownMaxY = visibility.getShownMaxY(Float.isNaN(targetMaxY) ? Float.NaN : axisTicks.getAxisMax(), now);
+    }
 
-            float x = positionX - tablePaint.measureText(text);
-            canvas.drawText(text, x, height, tablePaint);
+    private void bindTickLabels() {
+        for (int i = 0; i < axisTicks.getTickCount(); i++) {
+            tableYTextSlots[i] = valueLabels.get(axisTicks.getTickValue(i));
         }
     }
 
-    private void drawLines(Canvas canvas) {
-        float startScrollX = (-holdLineRightX - holdLineWidthHalf + screenWidth) * sizeCoeficient;
-        float endScrollX = (-holdLineLeftX + holdLineWidthHalf + screenWidth) * sizeCoeficient;
+    //the total is the top of the stack, percentage charts always show the whole axis
+    private float getStackedMaxY() {
+        if (!visibility.isAnyVisible()) {
+            return Float.NaN;
+        }
+        if (stackedSeries.isPercentage()) {
+            return StackedSeries.PERCENTAGE_MAX;
+        }
+        return viewport.getMaxY(stackedSeries.getTotal(), stackedSeries.getTotalMaxIndex());
+    }
 
-        int startScreenPoint = getPreviousPosition((int) Math.ceil(startScrollX / graphBlockLineWeight));
-        int endScreenPointTerm = (int) Math.ceil(endScrollX / graphBlockLineWeight) + 1;
-        int endScreenPoint = dateArrayLength > endScreenPointTerm ? endScreenPointTerm : dateArrayLength;
-        int toArrayCount = endScreenPoint - startScreenPoint;
+    private void drawLines(Canvas canvas, long now) {
+        if (!Float.isNaN(shownMaxY)) {
+            if (stackedSeries != null) {
+                drawAreas(canvas, now);
+            } else {
+                drawSeriesLines(canvas, now);
+            }
+
+            if (axisTicks.hasTicks()) {
+                drawTableYText(canvas);
+            }
+            drawSelection(canvas, shownMaxY, now);
+        }
+
+        drawTableDateText(canvas);
+
+        if (visibility.isAnimating(now)) {
+            ViewCompat.postInvalidateOnAnimation(this);
+        }
+    }
+
+    private void drawSeriesLines(Canvas canvas, long now) {
+        if (tileCache != null && isPanning() && !visibility.isAnimating(now) && drawTiles(canvas)) {
+            return;
+        }
+
+        int toArrayCount = viewport.getVisibleCount();
 
         long[][] graphArray = graphItem.getGraphList();
+        SeriesPyramid[] pyramids = graphData.getPyramids();
 
-        if (toArrayCount > 0) {
-            float maxYPoints = getMaxYHeight(graphArray, startScreenPoint, endScreenPoint, startScrollX, endScrollX);
+        for (int graphCount = 0; graphCount < graphArray.length; graphCount++) {
+            float alpha = visibility.getAlpha(graphCount, now);
+            if (alpha <= 0) {
+                continue;
+            }
 
-            for (int graphCount = 0; graphCount < graphArray.length; graphCount++) {
-                String title = graphItem.getGraphTitleList()[graphCount];
-                int color = Color.parseColor(graphItem.getGraphColorList()[graphCount]);
+            long time = getMetricsTime();
+            float[] toArray = obtainChainArray(viewport.getVertexFloatCount());
+            int toArraySize = viewport.buildVertices(toArray, graphArray[graphCount], pyramids[graphCount], shownMaxY);
+            if (drawMetrics != null) {
+                drawMetrics.addVertexTime(getMetricsTime() - time);
+                drawMetrics.addVisiblePointCount(toArrayCount + 1);
+                drawMetrics.addSegmentCount(toArraySize / 4);
+            }
 
-                float[] toArray = getChainArrayFromArray(graphArray[graphCount], toArrayCount, startScreenPoint, endScrollX, maxYPoints);
+            linePaint.setColor(graphColorList[graphCount]);
+            if (alpha < 1) {
+                linePaint.setAlpha(Math.round(Color.alpha(graphColorList[graphCount]) * alpha));
+            }
+            linePaint.setStrokeWidth(graphBlockLineWidth);
+            canvas.drawLines(toArray, 0, toArraySize, linePaint);
+        }
+    }
 
-                linePaint.setColor(color);
-                linePaint.setStrokeWidth(graphBlockLineWidth);
-                canvas.drawLines(toArray, linePaint);
+    //only the window moves while panning, so the zoom and the tiles stay the same
+    private boolean isPanning() {
+        return flinging || scrollTypeAction == ScrollType.GRAPH || scrollTypeAction == ScrollType.SCROLL_BLOCK;
+    }
+
+    /**
+     * Snapshots what the tiles are drawn from once the content changed and the graph is
+     * being panned. Called where either happens, so onDraw doesn't allocate it.
+     */
+    private void updateTileContent() {
+        if (!tileContentDirty || tileCache == null || graphData == null || stackedSeries != null || !isPanning()) {
+            return;
+        }
+        //snapshots, appends keep growing the originals on this thread
+        tileCache.setContent(new GraphTileCache.Content(
+                graphItem.getGraphList().clone(),
+                GraphLoader.snapshot(graphData.getPyramids()),
+                visibility.getVisibleList(),
+                graphColorList,
+                dateArrayLength,
+                screenWidth,
+                graphBlockHeight,
+                graphBlockLineWidth,
+                getDownsamplingMode()
+        ));
+        tileContentDirty = false;
+    }
+
+    private void invalidateTileContent() {
+        tileContentDirty = true;
+        updateTileContent();
+    }
+
+    /**
+     * Blits the tiles of the visible range, or asks for them and returns false so the
+     * lines are drawn directly this frame. Without a content snapshot they are always
+     * drawn directly, see {@link #updateTileContent()}.
+     */
+    private boolean drawTiles(Canvas canvas) {
+        if (tileContentDirty) {
+            return false;
+        }
+
+        float lineWeight = viewport.getLineWeight();
+        float originX = viewport.getScrollX() - lineWeight * (dateArrayLength - 1);
+        long time = getMetricsTime();
+        boolean drawn = tileCache.draw(canvas, originX, lineWeight, shownMaxY);
+        if (drawn && drawMetrics != null) {
+            drawMetrics.addVertexTime(getMetricsTime() - time);
+        }
+        return drawn;
+    }
+
+    /**
+     * Fills every visible series between the edge of the visible series below it, or the
+     * bottom of the graph, and its own edge. The columns are summed in advance, a frame
+     * only reads their visible range; a hidden series has no height and is skipped.
+     */
+    //a toggled series grows from or shrinks to the edge below it while it fades
+    private void drawAreas(Canvas canvas, long now) {
+        stackedSeries.setFades(visibility, now);
+        int floatCount = viewport.getAreaEdgeFloatCount();
+        int lowerEdgeSize = 0;
+
+        for (int i = 0; i < stackedSeries.getSeriesCount(); i++) {
+            float alpha = visibility.getAlpha(i, now);
+            if (alpha <= 0) {
+                continue;
+            }
+
+            long time = getMetricsTime();
+            if (areaEdge.length < floatCount) {
+                areaEdge = new float[floatCount];
+            }
+            int edgeSize = viewport.buildAreaEdge(areaEdge, stackedSeries, i, shownMaxY);
+            buildAreaPath(areaEdge, edgeSize, lowerEdgeSize > 0 ? lowerAreaEdge : null, lowerEdgeSize);
+            if (drawMetrics != null) {
+                drawMetrics.addVertexTime(getMetricsTime() - time);
+                drawMetrics.addVisiblePointCount(viewport.getVisibleCount() + 1);
+                drawMetrics.addSegmentCount(edgeSize / 2);
+            }
+
+            areaPaint.setColor(graphColorList[i]);
+            if (alpha < 1) {
+                areaPaint.setAlpha(Math.round(Color.alpha(graphColorList[i]) * alpha));
             }
+            canvas.drawPath(areaPath, areaPaint);
 
-            drawTableYText(canvas, (int) maxYPoints);
+            //this edge is the lower one of the next visible series
+            float[] edge = areaEdge;
+            areaEdge = lowerAreaEdge;
+            lowerAreaEdge = edge;
+            lowerEdgeSize = edgeSize;
+        }
+    }
+
+    //reuses one path, its points stay allocated between frames
+    private void buildAreaPath(float[] edge, int edgeSize, float[] lowerEdge, int lowerEdgeSize) {
+        areaPath.rewind();
+        if (edgeSize < 4) {
+            return;
         }
 
-        drawTableDateText(canvas, endScrollX, startScreenPoint, endScreenPoint);
+        areaPath.moveTo(edge[0], edge[1]);
+        for (int i = 2; i < edgeSize; i += 2) {
+            areaPath.lineTo(edge[i], edge[i + 1]);
+        }
+        if (lowerEdge == null) {
+            float bottom = viewport.getGraphHeight();
+            areaPath.lineTo(edge[edgeSize - 2], bottom);
+            areaPath.lineTo(edge[0], bottom);
+        } else {
+            for (int i = lowerEdgeSize - 2; i >= 0; i -= 2) {
+                areaPath.lineTo(lowerEdge[i], lowerEdge[i + 1]);
+            }
+        }
+        areaPath.close();
     }
 
-    private void drawScrollBlock(Canvas canvas) {
-        //draw graph
-        for (int i = 0; i < canvasScrollGraphArray.length; i++) {
-            int color = Color.parseColor(graphItem.getGraphColorList()[i]);
-            linePaint.setColor(color);
-            linePaint.setStrokeWidth(scrollBlockLineWidth);
-            canvas.drawLines(canvasScrollGraphArray[i], linePaint);
+    /**
+     * Selects the point at the given array position, or nothing for -1, and shows a
+     * crosshair and a tooltip with its date and values.
+     */
+    public void setSelectedPosition(int selectedPosition) {
+        if (this.selectedPosition == selectedPosition) {
+            return;
         }
+        this.selectedPosition = selectedPosition;
+        if (selectedPosition >= 0) {
+            //formatted once per selected point, not per frame
+            long time = getMetricsTime();
+            long[][] graphArray = graphItem.getGraphList();
+            String[] titleList = graphItem.getGraphTitleList();
+            for (int i = 0; i < graphArray.length; i++) {
+                char[] text = selectionTextList[i];
+                int length = LabelFormat.formatBigValue(graphArray[i][selectedPosition], text, 0);
+                text[length++] = ' ';
+                titleList[i].getChars(0, titleList[i].length(), text, length);
+                selectionTextLengths[i] = length + titleList[i].length();
+            }
+            if (drawMetrics != null) {
+                drawMetrics.addLabelTime(getMetricsTime() - time);
+            }
+        }
+        ViewCompat.postInvalidateOnAnimation(this);
+    }
 
+    /**
+     * @return array position of the selected point, or -1
+     */
+    public int getSelectedPosition() {
+        return selectedPosition;
+    }
+
+    private int getPositionAt(float x) {
+        return viewport.getArrayPosition(viewport.getScreenPointAt(x));
+    }
+
+    private void drawSelection(Canvas canvas, float maxYPoints, long now) {
+        if (selectedPosition < 0) {
+            return;
+        }
+        int screenPoint = viewport.getArrayPosition(selectedPosition);
+        float x = viewport.getScreenPointX(screenPoint);
+        if (x < 0 || x > screenWidth) {
+            return;
+        }
+
+        tablePaint.setColor(Color.LTGRAY);
+        canvas.drawLine(x, 0, x, graphBlockHeight, tablePaint);
+
+        long[][] graphArray = graphItem.getGraphList();
+        int dateSlot = getDateSlot(screenPoint);
+        float textWidth = tablePaint.measureText(dateLabels.getChars(dateSlot), 0, dateLabels.getLength(dateSlot));
+        int lineCount = 1;
+        for (int i = 0; i < graphArray.length; i++) {
+            if (visibility.getAlpha(i, now) <= 0) {
+                continue;
+            }
+            lineCount++;
+            //areas have no points to mark, the crosshair cuts through them
+            if (stackedSeries == null) {
+                float y = viewport.getValueY(graphArray[i][selectedPosition], maxYPoints);
+                selectionPaint.setColor(Color.WHITE);
+                canvas.drawCircle(x, y, selectionPointRadius, selectionPaint);
+                linePaint.setColor(graphColorList[i]);
+                linePaint.setStrokeWidth(graphBlockLineWidth);
+                canvas.drawCircle(x, y, selectionPointRadius, linePaint);
+            }
+            textWidth = Math.max(textWidth, tablePaint.measureText(selectionTextList[i], 0, selectionTextLengths[i]));
+        }
+
+        //next to the crosshair, on the side with room for it
+        float lineHeight = graphBlockTextSize + graphBlockTextPadding / 2;
+        float tooltipWidth = textWidth + tooltipPadding * 2;
+        float tooltipHeight = lineHeight * lineCount - graphBlockTextPadding / 2 + tooltipPadding * 2;
+        float left = x + tooltipPadding + tooltipWidth <= screenWidth ? x + tooltipPadding : x - tooltipPadding - tooltipWidth;
+        float top = tooltipPadding;
+        selectionPaint.setColor(Color.WHITE);
+        canvas.drawRect(left, top, left + tooltipWidth, top + tooltipHeight, selectionPaint);
+        tablePaint.setColor(Color.LTGRAY);
+        tablePaint.setStyle(Paint.Style.STROKE);
+        canvas.drawRect(left, top, left + tooltipWidth, top + tooltipHeight, tablePaint);
+        tablePaint.setStyle(Paint.Style.FILL_AND_STROKE);
+
+        float textX = left + tooltipPadding;
+        float textY = top + tooltipPadding + graphBlockTextSize;
+        tablePaint.setColor(Color.DKGRAY);
+        canvas.drawText(dateLabels.getChars(dateSlot), 0, dateLabels.getLength(dateSlot), textX, textY, tablePaint);
+        for (int i = 0; i < graphArray.length; i++) {
+            if (visibility.getAlpha(i, now) <= 0) {
+                continue;
+            }
+            textY += lineHeight;
+            tablePaint.setColor(graphColorList[i]);
+            canvas.drawText(selectionTextList[i], 0, selectionTextLengths[i], textX, textY, tablePaint);
+        }
+    }
+
+    private void drawScrollPreview(Canvas canvas) {
+        float[][] scrollGraphArray = scrollPreview != null ? scrollPreview.getVertices() : null;
+        if (scrollGraphArray != null) {
+            long maxY = graphData.getVisibleMax();
+            canvas.save();
+            canvas.translate(scrollPreview.getTranslateX(dateArrayLength), scrollPreview.getTranslateY(maxY));
+            canvas.scale(scrollPreview.getScaleX(dateArrayLength), scrollPreview.getScaleY(maxY));
+            for (int i = 0; i < scrollGraphArray.length; i++) {
+                //hidden since the build, the rebuilt preview drops it
+                if (scrollGraphArray[i] == null || !visibility.isVisible(i)) {
+                    continue;
+                }
+                linePaint.setColor(graphColorList[i]);
+                linePaint.setStrokeWidth(scrollBlockLineWidth);
+                canvas.drawLines(scrollGraphArray[i], 0, scrollPreview.getFloatCount(i), linePaint);
+            }
+            canvas.restore();
+        }
+    }
+
+    private void drawScrollBlock(Canvas canvas) {
         //lines for change graph sizing
         scrollPaint.setAlpha(50);
         scrollPaint.setStrokeWidth(holdLineWidth);
@@ -343,109 +1445,96 @@ public class GraphView extends View {
         canvas.drawLine(screenWidth, scrollBackgroundY, holdLineRightX + holdLineWidthHalf, scrollBackgroundY, scrollPaint);
     }
 
-    //for big graph
-    private float[] getChainArrayFromArray(
-            long[] fromArray,
-            int toArrayCount,
-            int startScreenPoint,
-            float scrollX,
-            float maxYPoints
-    ) {
-        float itemY = graphBlockHeight / maxYPoints;
-        float[] toArray = new float[toArrayCount * 4];
+    public LineDownsampler.Mode getDownsamplingMode() {
+        return viewport.getLineDownsampler().getMode();
+    }
 
-        for (int i = 0; i < toArrayCount; i++) {
-            int toArrayPosition = i * 4;
-            int rootArrayPosition = i + startScreenPoint;
-            int previousPosition = getPreviousPosition(rootArrayPosition);
+    public void setDownsamplingMode(LineDownsampler.Mode mode) {
+        viewport.getLineDownsampler().setMode(mode);
+        invalidateTileContent();
+        ViewCompat.postInvalidateOnAnimation(this);
+    }
 
-            toArray[toArrayPosition] = scrollX - (previousPosition > 0 ? graphBlockLineWeight * previousPosition : 0);
-            toArray[toArrayPosition + 1] = graphBlockHeight - (fromArray[previousPosition] * itemY);
-            toArray[toArrayPosition + 2] = scrollX - (i > 0 ? graphBlockLineWeight * rootArrayPosition : 0);
-            toArray[toArrayPosition + 3] = graphBlockHeight - (fromArray[rootArrayPosition] * itemY);
+    private float[] obtainChainArray(int size) {
+        if (chainArray.length < size) {
+            chainArray = new float[size];
         }
-        return toArray;
+        return chainArray;
     }
 
-    private void rebuildCanvasScrollGraphArray() {
-        float lineHeight = getScrollBlockLineHeight(graphItem.getGraphList());
-
-        for (int graphCount = 0; graphCount < canvasScrollGraphArray.length; graphCount++) {
-            long[] fromArray = graphItem.getGraphList()[graphCount];
-            float[] toArray = canvasScrollGraphArray[graphCount];
+    //one line per tick, or even rows until there are ticks
+    private void rebuildTableArray() {
+        tableLineCount = axisTicks.hasTicks() ? axisTicks.getTickCount() : TABLE_LINE_COUNT;
+        float rowHeight = graphBlockHeight / (float) tableLineCount;
 
-            int arrayLength = fromArray.length;
-            float lineWidth = screenWidth / (arrayLength - 1);
-
-            for (int i = 0; i < arrayLength; i++) {
-                int toArrayPosition = i * 4;
-                int previousPosition = getPreviousPosition(i);
-
-                toArray[toArrayPosition] = screenWidth - (previousPosition > 0 ? lineWidth * previousPosition : 0);
-                toArray[toArrayPosition + 1] = screenHeight - graphLineMarginTopBottom - (fromArray[previousPosition] * lineHeight);
-                toArray[toArrayPosition + 2] = screenWidth - (i > 0 ? lineWidth * i : 0);
-                toArray[toArrayPosition + 3] = screenHeight - graphLineMarginTopBottom - (fromArray[i] * lineHeight);
-            }
+        for (int i = 0; i < tableLineCount; i++) {
+            int position = i * 4;
+            float y = (i + 1) * rowHeight;
+            tableArray[position] = 0;
+            tableArray[position + 1] = y;
+            tableArray[position + 2] = screenWidth;
+            tableArray[position + 3] = y;
         }
     }
 
-    private float getScrollBlockLineHeight(long[][] graphArray) {
-        float maxY = 0;
-        for (long[] array : graphArray) {
-            for (long i : array) {
-                maxY = maxY < i ? i : maxY;
-            }
-        }
-        return (scrollBlockHeight - graphLineMarginTopBottom * 2) / maxY;
+    private void resetHoldLines() {
+        holdLineLeftX = screenWidth - scrollBlockMinWidth + holdLineWidthHalf;
+        holdLineRightX = screenWidth - holdLineWidthHalf;
     }
 
-    private float getMaxYHeight(long[][] graphArray, int startScreenPoint, int endScreenPoint, float startScrollX, float endScrollX) {
-        float maxY = 0;
-        int toArrayCount = endScreenPoint - startScreenPoint;
-
-        for (long[] array : graphArray) {
+    private void moveHoldLinesOnAppend(int previousLength, int length) {
+        float ratio = (float) previousLength / length;
+        float rightDistance = screenWidth - holdLineWidthHalf - holdLineRightX;
+        float blockWidth = (holdLineRightX - holdLineLeftX + holdLineWidth) * ratio - holdLineWidth;
 
-            int arrayLength = array.length;
-            float startY1 = array[arrayLength - 1 > startScreenPoint ? startScreenPoint + 1 : arrayLength - 1];
-            float startY2 = array[startScreenPoint];
-            float startX3 = 1 - (startScrollX / graphBlockLineWeight - startScreenPoint);
-            float startPosition = getPointOnLine(startY1, startY2, startX3);
-            maxY = maxY < startPosition ? startPosition : maxY;
+        //not pinned to the newest point, keep the same points in the window
+        if (rightDistance > PINNED_TOLERANCE_PX) {
+            rightDistance = rightDistance * ratio + (length - previousLength) * screenWidth / length;
+        } else {
+            rightDistance = 0;
+        }
 
-            float endY1 = array[endScreenPoint >= 2 ? endScreenPoint - 2 : endScreenPoint];
-            float endY2 = array[endScreenPoint >= 1 ? endScreenPoint - 1 : endScreenPoint];
-            float endX3 = endScrollX / graphBlockLineWeight - (float) Math.floor(endScrollX / graphBlockLineWeight);
-            float endPosition = getPointOnLine(endY1, endY2, endX3);
-            maxY = maxY < endPosition ? endPosition : maxY;
+        blockWidth = Math.max(blockWidth, scrollBlockMinWidth - holdLineWidthHalf);
+        holdLineRightX = screenWidth - holdLineWidthHalf - rightDistance;
+        holdLineLeftX = holdLineRightX - blockWidth;
+        if (holdLineLeftX < holdLineWidthHalf) {
+            holdLineLeftX = holdLineWidthHalf;
+            holdLineRightX = Math.min(holdLineLeftX + blockWidth, screenWidth - holdLineWidthHalf);
+        }
+    }
 
-            for (int i = 1; i < toArrayCount - 1; i++) {
-                int fromArrayItem = (int) array[i + startScreenPoint];
-                maxY = maxY < fromArrayItem ? fromArrayItem : maxY;
-            }
+    private void appendScrollPreview() {
+        if (scrollPreview == null) {
+            return;
         }
 
-        return maxY;
+        scrollPreview.append(graphItem.getGraphList(), dateArrayLength);
+        if (!scrollPreviewRebuilding && scrollPreview.needsRebuild(dateArrayLength, graphData.getVisibleMax())) {
+            rebuildScrollPreview();
+        }
     }
 
-    private float getPointOnLine(float y1, float y2, float x3) {
-        float x1 = 0F;
-        float x2 = 1F;
-        return (x3 - x1) * (y1 - y2) / (x1 - x2) + y1;
+    private void rebuildScrollPreview() {
+        scrollPreviewRebuilding = true;
+        graphLoader.buildPreview(graphData, createScrollPreview());
     }
 
-    private int getPreviousPosition(int position) {
-        return position <= 0 ? 0 : position - 1;
+    private ScrollPreview createScrollPreview() {
+        return new ScrollPreview(screenWidth, screenHeight, scrollBlockHeight, graphLineMarginTopBottom);
     }
 
-    private float getGraphBlockWidth() {
-        float itemsInScrollBlock = (holdLineRightX - holdLineLeftX + holdLineWidth) / (screenWidth / dateArrayLength);
-        return screenWidth / itemsInScrollBlock;
+    //valid until the next date label is asked for
+    private int getDateSlot(int screenPoint) {
+        long time = getMetricsTime();
+        int slot = dateLabels.get(graphItem.getDateList()[viewport.getArrayPosition(screenPoint)]);
+        if (drawMetrics != null) {
+            drawMetrics.addLabelTime(getMetricsTime() - time);
+        }
+        return slot;
     }
 
-    private float getSizeCoeficient() {
-        float linesCount = dateArrayLength - 1;
-        float visibleGraphLinesCount = screenWidth / graphBlockLineWeight;
-        return linesCount / visibleGraphLinesCount;
+    private long getMetricsTime() {
+        return drawMetrics != null ? System.nanoTime() : 0;
     }
 
     private float getPixelsFromDp(float dp) {
@@ -470,6 +1559,16 @@ public class GraphView extends View {
         tablePaint.setTextSize(graphBlockTextSize);
     }
 
+    private void initSelectionPaint() {
+        selectionPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        selectionPaint.setStyle(Paint.Style.FILL);
+    }
+
+    private void initAreaPaint() {
+        areaPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        areaPaint.setStyle(Paint.Style.FILL);
+    }
+
     private void initScrollPaint() {
         scrollPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         scrollPaint.setStyle(Paint.Style.STROKE);
@@ -1,77 +1,223 @@
 package com.nzoth.testgraph;
 
-import android.content.Context;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
+import android.util.TypedValue;
 import android.view.ViewGroup;
+import android.widget.ListView;
 
-import com.google.gson.Gson;
-import com.google.gson.stream.JsonReader;
-import com.nzoth.testgraph.models.GraphModel;
+import com.nzoth.testgraph.chart.DrawMetricsRecorder;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
 
 public class MainActivity extends AppCompatActivity {
-    private static final String DATA_TYPE = "x";
+    /**
+     * Debug builds show {@link SyntheticGraphItems} with this many points instead of
+     * chart_data.json, e.g. {@code adb shell am start -n com.nzoth.testgraph/.MainActivity
+     * --ei synthetic_points 10000000}.
+     */
+    public static final String EXTRA_SYNTHETIC_POINTS = "synthetic_points";
+    public static final String EXTRA_SYNTHETIC_SERIES = "synthetic_series";
 
+    private static final String TAG = "MainActivity";
+    private static final String CHART_DATA_ASSET = "chart_data.json";
+    private static final String CHART_DATA_BINARY_PREFIX = "chart_data_";
+    private static final String CHART_DATA_BINARY_SUFFIX = ".bin";
+    private static final String DRAW_METRICS_FILE = "draw_metrics.txt";
+    private static final String GRAPH_STATE_DIRECTORY = "graph_state";
+    private static final int GRAPH_HEIGHT_DP = 360;
+    private static final int DEFAULT_SYNTHETIC_SERIES_COUNT = 2;
+
+    private ListView listView;
+    private LoadTask loadTask;
+    private DrawMetricsRecorder drawMetricsRecorder;
+    private int syntheticPointCount;
+    private int syntheticSeriesCount;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        Gson gson = new Gson();
+        listView = new ListView(this);
+        listView.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        setContentView(listView);
+
+        if (BuildConfig.DEBUG) {
+            drawMetricsRecorder = new DrawMetricsRecorder();
+            syntheticPointCount = getIntent().getIntExtra(EXTRA_SYNTHETIC_POINTS, 0);
+            syntheticSeriesCount = getIntent().getIntExtra(EXTRA_SYNTHETIC_SERIES, DEFAULT_SYNTHETIC_SERIES_COUNT);
+        }
+
+        loadTask = new LoadTask(this);
+        loadTask.execute();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (drawMetricsRecorder != null && drawMetricsRecorder.getFrameCount() > 0) {
+            dumpDrawMetrics();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        loadTask.cancel(true);
+    }
+
+    private void showGraphItems(List<? extends GraphLoader.Source> itemList) {
+        int graphHeight = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, GRAPH_HEIGHT_DP, getResources().getDisplayMetrics());
+        GraphListAdapter adapter = new GraphListAdapter(itemList, graphHeight);
+        adapter.setDrawMetricsListener(drawMetricsRecorder);
+        adapter.setDiskCache(new GraphStateDiskCache(new File(getCacheDir(), GRAPH_STATE_DIRECTORY)));
+        listView.setRecyclerListener(adapter);
+        listView.setAdapter(adapter);
+    }
+
+    private void dumpDrawMetrics() {
+        DrawMetricsDump.toLog(TAG, drawMetricsRecorder);
+        File file = new File(getFilesDir(), DRAW_METRICS_FILE);
         try {
-            JsonReader reader = gson.newJsonReader(new InputStreamReader(getAssets().open("chart_data.json")));
-            GraphModel[] modelList = gson.fromJson(reader, GraphModel[].class);
-            List<GraphItem> itemList = new ArrayList<>();
-
-            for (GraphModel model : modelList) {
-                GraphItem graphItem = new GraphItem();
-
-                int counter = 0;
-                int graphSize = model.names.size();
-                String[] colors = new String[graphSize];
-                String[] titles = new String[graphSize];
-                long[][] graphs = new long[graphSize][];
-
-                for (List<String> graphList : model.columns) {
-                    String type = graphList.get(0);
-                    long[] list = convertToLongList(graphList);
-                    if (type.equalsIgnoreCase(DATA_TYPE)) {
-                        graphItem.setDateList(list);
-                    } else {
-                        colors[counter] = model.colors.get(type);
-                        titles[counter] = String.valueOf(model.names.get(type));
-                        graphs[counter] = list;
-                        counter++;
-                    }
-                }
+            DrawMetricsDump.toFile(file, drawMetricsRecorder);
+        } catch (IOException e) {
+            Log.w(TAG, "Can't write " + file, e);
+        }
+    }
 
-                graphItem.setGraphColorList(colors);
-                graphItem.setGraphTitleList(titles);
-                graphItem.setGraphList(graphs);
+    //mapped charts are copied out of the file only when bound, the others are packed one by one
+    private List<? extends GraphLoader.Source> loadGraphItems() throws IOException {
+        if (syntheticPointCount > 0) {
+            return pack(SyntheticGraphItems.create(syntheticPointCount, syntheticSeriesCount));
+        }
 
-                itemList.add(graphItem);
+        File binaryFile = new File(getFilesDir(), getBinaryName());
+        if (binaryFile.exists()) {
+            try {
+                return toSources(new GraphItemBinaryReader().map(binaryFile));
+            } catch (IOException e) {
+                Log.w(TAG, "Broken " + binaryFile + ", reading " + CHART_DATA_ASSET, e);
+                binaryFile.delete();
             }
+        }
 
+        InputStreamReader reader = new InputStreamReader(getAssets().open(CHART_DATA_ASSET));
+        List<GraphItem> itemList = new GraphItemJsonReader().read(reader);
+        writeBinary(itemList, binaryFile);
+        return pack(itemList);
+    }
 
-            GraphView graphView = new GraphView(this, itemList.get(0));
-            graphView.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
-            setContentView(graphView);
+    //copied out of the mapped file on the loader thread when the row is bound
+    private static List<GraphLoader.Source> toSources(List<MappedGraphItem> mappedList) {
+        List<GraphLoader.Source> sourceList = new ArrayList<>(mappedList.size());
+        for (final MappedGraphItem mappedItem : mappedList) {
+            sourceList.add(new GraphLoader.Source() {
+                @Override
+                public GraphItem load() {
+                    return mappedItem.toGraphItem();
+                }
+            });
+        }
+        return sourceList;
+    }
+
+    private static List<PackedGraphItem> pack(List<GraphItem> itemList) {
+        List<PackedGraphItem> packedList = new ArrayList<>(itemList.size());
+        for (GraphItem graphItem : itemList) {
+            packedList.add(PackedGraphItem.pack(graphItem));
+        }
+        return packedList;
+    }
+
+    /**
+     * The binary copy is named by the length and CRC32 of the asset, so a changed
+     * chart_data.json is read again even if the version code stays the same. Hashing
+     * streams the bytes without parsing them.
+     */
+    private String getBinaryName() throws IOException {
+        InputStream input = getAssets().open(CHART_DATA_ASSET);
+        try {
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[8192];
+            long length = 0;
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                crc.update(buffer, 0, count);
+                length += count;
+            }
+            return String.format(Locale.US, "%s%d_%08x%s",
+                    CHART_DATA_BINARY_PREFIX, length, crc.getValue(), CHART_DATA_BINARY_SUFFIX);
+        } finally {
+            input.close();
+        }
+    }
+
+    private void writeBinary(List<GraphItem> itemList, File binaryFile) {
+        File tempFile = new File(binaryFile.getPath() + ".tmp");
+        try {
+            new GraphItemBinaryWriter(false).write(itemList, tempFile);
+            if (!tempFile.renameTo(binaryFile)) {
+                tempFile.delete();
+                return;
+            }
+            deleteOtherBinaries(binaryFile);
         } catch (IOException e) {
-            e.printStackTrace();
+            Log.w(TAG, "Can't write " + binaryFile, e);
+            tempFile.delete();
+        }
+    }
+
+    //copies of an earlier chart_data.json
+    private static void deleteOtherBinaries(File binaryFile) {
+        File[] fileList = binaryFile.getParentFile().listFiles();
+        if (fileList == null) {
+            return;
+        }
+        for (File file : fileList) {
+            String name = file.getName();
+            if (!file.equals(binaryFile) && name.startsWith(CHART_DATA_BINARY_PREFIX) && name.endsWith(CHART_DATA_BINARY_SUFFIX)) {
+                file.delete();
+            }
         }
     }
 
-    private long[] convertToLongList(List<String> stringList) {
-        long[] result = new long[stringList.size() - 1];
-        for (int i = result.length; i > 0; i--) {
-            result[result.length - i] = Long.parseLong(stringList.get(i));
+    private static class LoadTask extends AsyncTask<Void, Void, List<? extends GraphLoader.Source>> {
+        private final WeakReference<MainActivity> activityReference;
+
+        LoadTask(MainActivity activity) {
+            this.activityReference = new WeakReference<>(activity);
+        }
+
+        @Override
+        protected List<? extends GraphLoader.Source> doInBackground(Void... params) {
+            MainActivity activity = activityReference.get();
+            if (activity == null) {
+                return null;
+            }
+            try {
+                return activity.loadGraphItems();
+            } catch (IOException e) {
+                Log.e(TAG, "Can't load " + CHART_DATA_ASSET, e);
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(List<? extends GraphLoader.Source> itemList) {
+            MainActivity activity = activityReference.get();
+            if (activity != null && itemList != null) {
+                activity.showGraphItems(itemList);
+            }
         }
-        return result;
     }
 }
@@ -0,0 +1,81 @@
+package com.nzoth.testgraph;
+
+import java.nio.LongBuffer;
+
+/**
+ * A chart read by {@link GraphItemBinaryReader}. Columns are {@link LongBuffer} views of
+ * the mapped file, nothing is copied into the heap until {@link #toGraphItem()}.
+ */
+public class MappedGraphItem {
+    private final LongBuffer dateBuffer;
+    private final LongBuffer[] graphBufferList;
+    private final String[] graphColorList;
+    private final String[] graphTitleList;
+    private final GraphItem.ChartType chartType;
+
+    MappedGraphItem(
+            LongBuffer dateBuffer,
+            LongBuffer[] graphBufferList,
+            String[] graphColorList,
+            String[] graphTitleList,
+            GraphItem.ChartType chartType
+    ) {
+        this.dateBuffer = dateBuffer;
+        this.graphBufferList = graphBufferList;
+        this.graphColorList = graphColorList;
+        this.graphTitleList = graphTitleList;
+        this.chartType = chartType;
+    }
+
+    public int getPointCount() {
+        return dateBuffer.limit();
+    }
+
+    public int getGraphCount() {
+        return graphBufferList.length;
+    }
+
+    /**
+     * @return the dates, a heap buffer if the file stores them delta-encoded
+     */
+    public LongBuffer getDateBuffer() {
+        return dateBuffer.duplicate();
+    }
+
+    public LongBuffer getGraphBuffer(int graph) {
+        return graphBufferList[graph].duplicate();
+    }
+
+    public String[] getGraphColorList() {
+        return graphColorList;
+    }
+
+    public String[] getGraphTitleList() {
+        return graphTitleList;
+    }
+
+    public GraphItem.ChartType getChartType() {
+        return chartType;
+    }
+
+    public GraphItem toGraphItem() {
+        long[][] graphList = new long[graphBufferList.length][];
+        for (int i = 0; i < graphBufferList.length; i++) {
+            graphList[i] = toArray(graphBufferList[i]);
+        }
+
+        GraphItem graphItem = new GraphItem();
+        graphItem.setDateList(toArray(dateBuffer));
+        graphItem.setGraphList(graphList);
+        graphItem.setGraphColorList(graphColorList);
+        graphItem.setGraphTitleList(graphTitleList);
+        graphItem.setChartType(chartType);
+        return graphItem;
+    }
+
+    private long[] toArray(LongBuffer buffer) {
+        long[] array = new long[buffer.limit()];
+        buffer.duplicate().get(array);
+        return array;
+    }
+}
@@ -0,0 +1,121 @@
+package com.nzoth.testgraph;
+
+import com.nzoth.testgraph.chart.PackedColumn;
+
+/**
+ * A chart kept compressed while its row is off screen. Dates and series are
+ * {@link PackedColumn}s, usually a fifth of the size of the {@link GraphItem} arrays or
+ * less; {@link #toGraphItem()} decodes them when the row is bound. {@link #getMax} reads
+ * the block headers of the columns without decoding them.
+ */
+public class PackedGraphItem implements GraphLoader.Source {
+    private final PackedColumn dateColumn;
+    private final PackedColumn[] graphColumnList;
+    private final String[] graphColorList;
+    private final String[] graphTitleList;
+    private final GraphItem.ChartType chartType;
+
+    private PackedGraphItem(
+            PackedColumn dateColumn,
+            PackedColumn[] graphColumnList,
+            String[] graphColorList,
+            String[] graphTitleList,
+            GraphItem.ChartType chartType
+    ) {
+        this.dateColumn = dateColumn;
+        this.graphColumnList = graphColumnList;
+        this.graphColorList = graphColorList;
+        this.graphTitleList = graphTitleList;
+        this.chartType = chartType;
+    }
+
+    /**
+     * Packs the points of {@code graphItem}, which isn't referenced afterwards.
+     */
+    public static PackedGraphItem pack(GraphItem graphItem) {
+        int pointCount = graphItem.getPointCount();
+        long[][] graphList = graphItem.getGraphList();
+        PackedColumn[] graphColumnList = new PackedColumn[graphList.length];
+        for (int i = 0; i < graphList.length; i++) {
+            graphColumnList[i] = PackedColumn.pack(graphList[i], pointCount);
+        }
+        return new PackedGraphItem(
+                PackedColumn.pack(graphItem.getDateList(), pointCount),
+                graphColumnList,
+                graphItem.getGraphColorList(),
+                graphItem.getGraphTitleList(),
+                graphItem.getChartType()
+        );
+    }
+
+    public int getPointCount() {
+        return dateColumn.size();
+    }
+
+    public int getGraphCount() {
+        return graphColumnList.length;
+    }
+
+    public PackedColumn getDateColumn() {
+        return dateColumn;
+    }
+
+    public PackedColumn getGraphColumn(int graph) {
+        return graphColumnList[graph];
+    }
+
+    public String[] getGraphColorList() {
+        return graphColorList;
+    }
+
+    public String[] getGraphTitleList() {
+        return graphTitleList;
+    }
+
+    public GraphItem.ChartType getChartType() {
+        return chartType;
+    }
+
+    /**
+     * @return bytes held by the packed columns
+     */
+    public long getByteCount() {
+        long byteCount = dateColumn.getByteCount();
+        for (PackedColumn column : graphColumnList) {
+            byteCount += column.getByteCount();
+        }
+        return byteCount;
+    }
+
+    /**
+     * @return max of all series over points {@code [from, to)}, or {@link Long#MIN_VALUE}
+     * if the range is empty
+     */
+    public long getMax(int from, int to) {
+        long max = Long.MIN_VALUE;
+        for (PackedColumn column : graphColumnList) {
+            max = Math.max(max, column.getMax(from, to));
+        }
+        return max;
+    }
+
+    public GraphItem toGraphItem() {
+        long[][] graphList = new long[graphColumnList.length][];
+        for (int i = 0; i < graphColumnList.length; i++) {
+            graphList[i] = graphColumnList[i].toArray();
+        }
+
+        GraphItem graphItem = new GraphItem();
+        graphItem.setDateList(dateColumn.toArray());
+        graphItem.setGraphList(graphList);
+        graphItem.setGraphColorList(graphColorList);
+        graphItem.setGraphTitleList(graphTitleList);
+        graphItem.setChartType(chartType);
+        return graphItem;
+    }
+
+    @Override
+    public GraphItem load() {
+        return toGraphItem();
+    }
+}
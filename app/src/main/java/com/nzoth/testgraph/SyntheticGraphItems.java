@@ -0,0 +1,46 @@
+package com.nzoth.testgraph;
+
+import com.nzoth.testgraph.chart.SyntheticSeries;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@link GraphItem}s of {@link SyntheticSeries} data, one per distribution, for trying the
+ * charts with more points than chart_data.json has.
+ */
+public class SyntheticGraphItems {
+    private static final String[] COLORS = {"#3DC23F", "#F34C44", "#4682B4", "#FFA500", "#9370DB"};
+
+    private SyntheticGraphItems() {
+    }
+
+    public static List<GraphItem> create(int pointCount, int seriesCount) {
+        List<GraphItem> itemList = new ArrayList<>();
+        for (SyntheticSeries.Distribution distribution : SyntheticSeries.Distribution.values()) {
+            SyntheticSeries series = new SyntheticSeries();
+            series.setPointCount(pointCount);
+            series.setSeriesCount(seriesCount);
+            series.setDistribution(distribution);
+            itemList.add(create(series));
+        }
+        return itemList;
+    }
+
+    public static GraphItem create(SyntheticSeries series) {
+        String[] colors = new String[series.getSeriesCount()];
+        String[] titles = new String[series.getSeriesCount()];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = COLORS[i % COLORS.length];
+            titles[i] = series.getDistribution().name().toLowerCase(Locale.US) + " #" + i;
+        }
+
+        GraphItem graphItem = new GraphItem();
+        graphItem.setDateList(series.createDates());
+        graphItem.setGraphList(series.createValues());
+        graphItem.setGraphColorList(colors);
+        graphItem.setGraphTitleList(titles);
+        return graphItem;
+    }
+}
@@ -24,4 +24,12 @@ public class GraphModel {
     @Expose
     public HashMap<String, String>  colors;
 
+    @SerializedName("stacked")
+    @Expose
+    public boolean stacked;
+
+    @SerializedName("percentage")
+    @Expose
+    public boolean percentage;
+
 }
@@ -0,0 +1,179 @@
+package com.nzoth.testgraph;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class GraphItemBinaryFormatTest {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("chart_data", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void mapsWhatWasWritten() throws IOException {
+        List<GraphItem> itemList = createGraphItems();
+        new GraphItemBinaryWriter(false).write(itemList, file);
+        assertSameItems(itemList, new GraphItemBinaryReader().map(file));
+    }
+
+    @Test
+    public void mapsDeltaDates() throws IOException {
+        List<GraphItem> itemList = createGraphItems();
+        new GraphItemBinaryWriter(true).write(itemList, file);
+        assertSameItems(itemList, new GraphItemBinaryReader().map(file));
+    }
+
+    @Test
+    public void truncatedFileIsRejected() throws IOException {
+        for (boolean deltaDates : new boolean[]{false, true}) {
+            new GraphItemBinaryWriter(deltaDates).write(createGraphItems(), file);
+            long length = file.length();
+            for (long cutLength : new long[]{0, 6, 20, length / 2, length - 1}) {
+                new GraphItemBinaryWriter(deltaDates).write(createGraphItems(), file);
+                setLength(cutLength);
+                assertRejected();
+            }
+        }
+    }
+
+    @Test
+    public void otherMagicOrVersionIsRejected() throws IOException {
+        new GraphItemBinaryWriter(false).write(createGraphItems(), file);
+        writeIntAt(0, 0x4E4F534A);
+        assertRejected();
+
+        new GraphItemBinaryWriter(false).write(createGraphItems(), file);
+        writeIntAt(4, GraphItemBinaryFormat.VERSION + 1);
+        assertRejected();
+    }
+
+    @Test
+    public void hugeCountsAreRejectedBeforeAllocating() throws IOException {
+        //chart count, then point and graph count of the first chart
+        for (int position : new int[]{8, 12, 16}) {
+            for (boolean deltaDates : new boolean[]{false, true}) {
+                new GraphItemBinaryWriter(deltaDates).write(createGraphItems(), file);
+                writeIntAt(position, Integer.MAX_VALUE);
+                assertRejected();
+            }
+        }
+    }
+
+    private static List<GraphItem> createGraphItems() {
+        Random random = new Random(5);
+        GraphItem lineItem = createGraphItem(1001, 3, random);
+        lineItem.getGraphTitleList()[1] = null;
+        lineItem.getGraphColorList()[2] = "";
+        GraphItem stackedItem = createGraphItem(17, 2, random);
+        stackedItem.setChartType(GraphItem.ChartType.STACKED);
+        GraphItem percentageItem = createGraphItem(1, 4, random);
+        percentageItem.setChartType(GraphItem.ChartType.PERCENTAGE);
+        percentageItem.getGraphTitleList()[0] = "\u00DCn\u00EFc\u00F6d\u00E9";
+        GraphItem emptyItem = createGraphItem(0, 1, random);
+        return Arrays.asList(lineItem, stackedItem, percentageItem, emptyItem);
+    }
+
+    private static GraphItem createGraphItem(int pointCount, int graphCount, Random random) {
+        long[] dateList = new long[pointCount];
+        long[][] graphList = new long[graphCount][pointCount];
+        String[] colors = new String[graphCount];
+        String[] titles = new String[graphCount];
+        long date = 1542412800000L;
+        for (int i = 0; i < pointCount; i++) {
+            //mostly even steps, some gaps and one step back
+            date += i == pointCount / 2 ? -1000 : 86400000L * (1 + random.nextInt(3) / 2);
+            dateList[i] = date;
+            for (int graph = 0; graph < graphCount; graph++) {
+                graphList[graph][i] = random.nextInt(3) == 0 ? random.nextLong() : random.nextInt(1000);
+            }
+        }
+        for (int graph = 0; graph < graphCount; graph++) {
+            colors[graph] = "#3DC23" + graph;
+            titles[graph] = "#" + graph;
+        }
+
+        GraphItem graphItem = new GraphItem();
+        graphItem.setDateList(dateList);
+        graphItem.setGraphList(graphList);
+        graphItem.setGraphColorList(colors);
+        graphItem.setGraphTitleList(titles);
+        return graphItem;
+    }
+
+    private static void assertSameItems(List<GraphItem> itemList, List<MappedGraphItem> mappedList) {
+        assertEquals(itemList.size(), mappedList.size());
+        for (int i = 0; i < itemList.size(); i++) {
+            GraphItem graphItem = itemList.get(i);
+            MappedGraphItem mappedItem = mappedList.get(i);
+            assertEquals(graphItem.getPointCount(), mappedItem.getPointCount());
+            assertEquals(graphItem.getGraphList().length, mappedItem.getGraphCount());
+            assertEquals(graphItem.getChartType(), mappedItem.getChartType());
+            assertArrayEquals(graphItem.getGraphColorList(), mappedItem.getGraphColorList());
+            assertArrayEquals(graphItem.getGraphTitleList(), mappedItem.getGraphTitleList());
+            assertArrayEquals(graphItem.getDateList(), toArray(mappedItem.getDateBuffer()));
+            for (int graph = 0; graph < mappedItem.getGraphCount(); graph++) {
+                assertArrayEquals(graphItem.getGraphList()[graph], toArray(mappedItem.getGraphBuffer(graph)));
+            }
+
+            GraphItem loaded = mappedItem.toGraphItem();
+            assertArrayEquals(graphItem.getDateList(), loaded.getDateList());
+            assertArrayEquals(graphItem.getGraphList(), loaded.getGraphList());
+            assertEquals(graphItem.getChartType(), loaded.getChartType());
+        }
+    }
+
+    private static long[] toArray(LongBuffer buffer) {
+        long[] array = new long[buffer.remaining()];
+        buffer.get(array);
+        return array;
+    }
+
+    private void assertRejected() {
+        try {
+            new GraphItemBinaryReader().map(file);
+            fail("Mapped a broken chart file");
+        } catch (IOException expected) {
+            //MainActivity reads chart_data.json again
+        }
+    }
+
+    private void setLength(long length) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(length);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    //little-endian, like the format
+    private void writeIntAt(long position, int value) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.seek(position);
+            randomAccessFile.writeInt(Integer.reverseBytes(value));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+}
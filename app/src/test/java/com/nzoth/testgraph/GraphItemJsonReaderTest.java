@@ -0,0 +1,101 @@
+package com.nzoth.testgraph;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class GraphItemJsonReaderTest {
+    //longer than the initial column buffer
+    private static final int POINT_COUNT = 300;
+
+    private static final String COLUMNS = "\"columns\": [" + column("x", 1000) + ", " + column("y0", 7) + ", " + column("y1", -3) + "]";
+    private static final String TYPES = "\"types\": {\"y0\": \"line\", \"y1\": \"line\", \"x\": \"x\"}";
+    private static final String NAMES = "\"names\": {\"y1\": \"#1\", \"y0\": \"#0\"}";
+    private static final String COLORS = "\"colors\": {\"y0\": \"#3DC23F\", \"y1\": \"#F34C44\"}";
+    private static final String UNKNOWN = "\"y_scaled\": true";
+
+    @Test
+    public void keysMayComeInAnyOrder() throws IOException {
+        List<GraphItem> itemList = read("["
+                + chart(COLUMNS, TYPES, NAMES, COLORS) + ", "
+                + chart(COLORS, NAMES, TYPES, COLUMNS) + ", "
+                + chart(NAMES, UNKNOWN, COLUMNS, COLORS, TYPES) + "]");
+
+        assertEquals(3, itemList.size());
+        for (GraphItem graphItem : itemList) {
+            assertArrayEquals(values(1000), graphItem.getDateList());
+            assertEquals(2, graphItem.getGraphList().length);
+            assertArrayEquals(values(7), graphItem.getGraphList()[0]);
+            assertArrayEquals(values(-3), graphItem.getGraphList()[1]);
+            assertArrayEquals(new String[]{"#0", "#1"}, graphItem.getGraphTitleList());
+            assertArrayEquals(new String[]{"#3DC23F", "#F34C44"}, graphItem.getGraphColorList());
+            assertEquals(GraphItem.ChartType.LINE, graphItem.getChartType());
+        }
+    }
+
+    @Test
+    public void dateColumnIsFoundThroughTypes() throws IOException {
+        GraphItem graphItem = read("[" + chart(
+                "\"columns\": [" + column("y0", 7) + ", " + column("d", 1000) + "]",
+                "\"types\": {\"d\": \"x\", \"y0\": \"line\"}",
+                "\"names\": {\"y0\": \"#0\"}",
+                "\"colors\": {\"y0\": \"#3DC23F\"}") + "]").get(0);
+
+        assertArrayEquals(values(1000), graphItem.getDateList());
+        assertEquals(1, graphItem.getGraphList().length);
+        assertArrayEquals(values(7), graphItem.getGraphList()[0]);
+    }
+
+    @Test
+    public void flagsGiveChartType() throws IOException {
+        String areaTypes = "\"types\": {\"y0\": \"area\", \"y1\": \"area\", \"x\": \"x\"}";
+        List<GraphItem> itemList = read("["
+                + chart(COLUMNS, TYPES, NAMES, COLORS, "\"stacked\": true") + ", "
+                + chart("\"percentage\": true", COLUMNS, TYPES, NAMES, COLORS, "\"stacked\": true") + ", "
+                + chart(COLUMNS, areaTypes, NAMES, COLORS) + ", "
+                + chart(COLUMNS, areaTypes, NAMES, COLORS, "\"percentage\": true") + ", "
+                + chart(COLUMNS, TYPES, NAMES, COLORS, "\"percentage\": true") + ", "
+                + chart(COLUMNS, TYPES, NAMES, COLORS, "\"stacked\": false", "\"percentage\": false") + "]");
+
+        assertEquals(GraphItem.ChartType.STACKED, itemList.get(0).getChartType());
+        assertEquals(GraphItem.ChartType.PERCENTAGE, itemList.get(1).getChartType());
+        assertEquals(GraphItem.ChartType.STACKED, itemList.get(2).getChartType());
+        assertEquals(GraphItem.ChartType.PERCENTAGE, itemList.get(3).getChartType());
+        //percentage of lines that aren't stacked
+        assertEquals(GraphItem.ChartType.LINE, itemList.get(4).getChartType());
+        assertEquals(GraphItem.ChartType.LINE, itemList.get(5).getChartType());
+    }
+
+    private static List<GraphItem> read(String json) throws IOException {
+        return new GraphItemJsonReader().read(new StringReader(json));
+    }
+
+    private static String chart(String... entries) {
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < entries.length; i++) {
+            builder.append(i == 0 ? "" : ", ").append(entries[i]);
+        }
+        return builder.append('}').toString();
+    }
+
+    private static String column(String label, long step) {
+        StringBuilder builder = new StringBuilder("[\"").append(label).append('"');
+        for (long value : values(step)) {
+            builder.append(", ").append(value);
+        }
+        return builder.append(']').toString();
+    }
+
+    private static long[] values(long step) {
+        long[] values = new long[POINT_COUNT];
+        for (int i = 0; i < POINT_COUNT; i++) {
+            values[i] = i * step;
+        }
+        return values;
+    }
+}
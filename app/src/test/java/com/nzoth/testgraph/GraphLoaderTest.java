@@ -0,0 +1,427 @@
+package com.nzoth.testgraph;
+
+import com.nzoth.testgraph.chart.DerivedStateFile;
+import com.nzoth.testgraph.chart.Rollup;
+import com.nzoth.testgraph.chart.ScrollPreview;
+import com.nzoth.testgraph.chart.SeriesPyramid;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.TimeZone;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link GraphLoader} with both its worker and its main thread replaced by queues the test
+ * runs by hand, so every interleaving of a load with a rebind is reproducible.
+ */
+public class GraphLoaderTest {
+    private final TaskQueue worker = new TaskQueue();
+    private final TaskQueue main = new TaskQueue();
+    private final RecordingListener listener = new RecordingListener();
+    private GraphLoader graphLoader;
+
+    @Before
+    public void setUp() {
+        graphLoader = new GraphLoader(listener, main, worker);
+    }
+
+    @Test
+    public void staleLoadIsDroppedOnRebind() {
+        GraphItem first = createGraphItem(100);
+        GraphItem second = createGraphItem(200);
+
+        graphLoader.load(new ItemSource(first), null);
+        //finished and posted, but the row is bound to another chart before the post runs
+        worker.runAll();
+        graphLoader.load(new ItemSource(second), null);
+        worker.runAll();
+        main.runAll();
+
+        assertEquals(1, listener.loaded.size());
+        assertSame(second, listener.loaded.get(0).getGraphItem());
+    }
+
+    @Test
+    public void rebindCancelsLoadNotStarted() {
+        ItemSource first = new ItemSource(createGraphItem(100));
+        graphLoader.load(first, null);
+        graphLoader.load(new ItemSource(createGraphItem(200)), null);
+        worker.runAll();
+        main.runAll();
+
+        assertEquals(0, first.loadCount);
+        assertEquals(1, listener.loaded.size());
+    }
+
+    @Test
+    public void cancelledGenerationNeverPosts() {
+        GraphItem graphItem = createGraphItem(100);
+        graphLoader.load(new ItemSource(graphItem), null);
+        worker.runAll();
+        graphLoader.cancel();
+        main.runAll();
+        assertTrue(listener.loaded.isEmpty());
+
+        GraphData graphData = new GraphData(graphItem);
+        graphLoader.buildPreview(graphData, createScrollPreview());
+        GraphRollups rollups = new GraphRollups(graphData, Rollup.Aggregation.SUM, TimeZone.getTimeZone("UTC"));
+        graphLoader.buildRollup(rollups.createBuild(Rollup.Granularity.DAY));
+        worker.runAll();
+        graphLoader.cancel();
+        main.runAll();
+        assertTrue(listener.previews.isEmpty());
+        assertTrue(listener.rollups.isEmpty());
+
+        graphLoader.load(new FailingSource(), null);
+        worker.runAll();
+        graphLoader.cancel();
+        main.runAll();
+        assertTrue(listener.failures.isEmpty());
+    }
+
+    @Test
+    public void bugInLoadIsDelivered() {
+        graphLoader.load(new GraphLoader.Source() {
+            @Override
+            public GraphItem load() {
+                throw new IllegalStateException("Bug in source");
+            }
+        }, null);
+        worker.runAll();
+        main.runAll();
+        assertEquals(1, listener.failures.size());
+        assertTrue(listener.failures.get(0) instanceof IllegalStateException);
+        assertTrue(listener.loaded.isEmpty());
+    }
+
+    @Test
+    public void bugInPreviewOrRollupIsDelivered() {
+        GraphData graphData = new GraphData(createGraphItem(100));
+        graphLoader.buildPreview(graphData, new ScrollPreview(1080, 1500, 150, 10) {
+            @Override
+            public void build(long[][] graphArray, SeriesPyramid[] pyramids, boolean[] visibleList, int pointCount, long maxY) {
+                throw new IllegalStateException("Bug in preview");
+            }
+        });
+        GraphRollups rollups = new GraphRollups(graphData, Rollup.Aggregation.SUM, TimeZone.getTimeZone("UTC"));
+        GraphRollups.Build build = new GraphRollups.Build(rollups, Rollup.Granularity.DAY) {
+            @Override
+            public void run() {
+                throw new IllegalStateException("Bug in rollup");
+            }
+        };
+        graphLoader.buildRollup(build);
+        worker.runAll();
+        main.runAll();
+
+        assertTrue(listener.previews.isEmpty());
+        assertEquals(1, listener.previewFailures.size());
+        assertTrue(listener.rollups.isEmpty());
+        assertEquals(1, listener.rollupFailures.size());
+        assertSame(build, listener.rollupFailures.get(0));
+    }
+
+    @Test
+    public void newPreviewReplacesOldOne() {
+        GraphData graphData = new GraphData(createGraphItem(100));
+        graphLoader.buildPreview(graphData, createScrollPreview());
+        worker.runAll();
+        ScrollPreview second = createScrollPreview();
+        graphLoader.buildPreview(graphData, second);
+        worker.runAll();
+        main.runAll();
+
+        assertEquals(1, listener.previews.size());
+        assertSame(second, listener.previews.get(0));
+    }
+
+    @Test
+    public void storeWaitsForFirstFrame() {
+        RecordingDiskCache diskCache = new RecordingDiskCache();
+        graphLoader.setDiskCache(diskCache);
+        graphLoader.load(new ItemSource(createGraphItem(100)), createScrollPreview());
+        worker.runAll();
+        main.runAll();
+        GraphData graphData = listener.loaded.get(0);
+        assertEquals(0, diskCache.storeCount);
+
+        graphLoader.onGraphDrawn(graphData);
+        assertEquals(1, diskCache.storeCount);
+        assertSame(graphData, diskCache.storedGraphData);
+
+        graphLoader.onGraphDrawn(graphData);
+        assertEquals(1, diskCache.storeCount);
+    }
+
+    @Test
+    public void otherGraphDrawnIsNotStored() {
+        RecordingDiskCache diskCache = new RecordingDiskCache();
+        graphLoader.setDiskCache(diskCache);
+        graphLoader.load(new ItemSource(createGraphItem(100)), null);
+        worker.runAll();
+        main.runAll();
+
+        graphLoader.onGraphDrawn(new GraphData(createGraphItem(100)));
+        graphLoader.onGraphDrawn(listener.loaded.get(0));
+        assertEquals(0, diskCache.storeCount);
+    }
+
+    @Test
+    public void graphAppendedBeforeFirstFrameIsNotStored() {
+        RecordingDiskCache diskCache = new RecordingDiskCache();
+        graphLoader.setDiskCache(diskCache);
+        graphLoader.load(new ItemSource(createGraphItem(100)), null);
+        worker.runAll();
+        main.runAll();
+
+        GraphData graphData = listener.loaded.get(0);
+        graphData.append(Long.MAX_VALUE / 2, new long[]{1, 2});
+        graphLoader.onGraphDrawn(graphData);
+        assertEquals(0, diskCache.storeCount);
+    }
+
+    @Test
+    public void cachedGraphIsNotStoredAgain() {
+        RecordingDiskCache diskCache = new RecordingDiskCache();
+        GraphItem graphItem = createGraphItem(100);
+        diskCache.cachedGraphData = new GraphData(graphItem);
+        graphLoader.setDiskCache(diskCache);
+        graphLoader.load(new ItemSource(graphItem), null);
+        worker.runAll();
+        main.runAll();
+
+        GraphData graphData = listener.loaded.get(0);
+        assertSame(diskCache.cachedGraphData, graphData);
+        graphLoader.onGraphDrawn(graphData);
+        assertEquals(0, diskCache.storeCount);
+    }
+
+    @Test
+    public void cachedGraphIsVerifiedAfterDelivery() {
+        RecordingDiskCache diskCache = new RecordingDiskCache();
+        GraphItem graphItem = createGraphItem(100);
+        diskCache.cachedGraphData = new GraphData(graphItem);
+        graphLoader.setDiskCache(diskCache);
+        graphLoader.load(new ItemSource(graphItem), null);
+        worker.runAll();
+        main.runAll();
+
+        assertEquals(1, listener.loaded.size());
+        assertEquals(1, diskCache.verifiedHashes.size());
+        long contentHash = DerivedStateFile.hashContent(graphItem.getDateList(), graphItem.getGraphList(), graphItem.getPointCount());
+        assertEquals(contentHash, (long) diskCache.verifiedHashes.get(0));
+        assertTrue(main.isEmpty() && worker.isEmpty());
+    }
+
+    @Test
+    public void cachedGraphOfOtherPointsIsLoadedAgain() {
+        RecordingDiskCache diskCache = new RecordingDiskCache();
+        GraphItem graphItem = createGraphItem(100);
+        diskCache.cachedGraphData = new GraphData(createGraphItem(100));
+        diskCache.matching = false;
+        graphLoader.setDiskCache(diskCache);
+        ItemSource source = new ItemSource(graphItem);
+        graphLoader.load(source, createScrollPreview());
+        worker.runAll();
+        main.runAll();
+        worker.runAll();
+        main.runAll();
+
+        assertEquals(2, source.loadCount);
+        assertEquals(2, listener.loaded.size());
+        GraphData graphData = listener.loaded.get(1);
+        assertNotSame(listener.loaded.get(0), graphData);
+        assertSame(graphItem, graphData.getGraphItem());
+
+        graphLoader.onGraphDrawn(graphData);
+        assertEquals(1, diskCache.storeCount);
+        assertSame(graphData, diskCache.storedGraphData);
+    }
+
+    @Test
+    public void cancelDropsPendingStore() {
+        RecordingDiskCache diskCache = new RecordingDiskCache();
+        graphLoader.setDiskCache(diskCache);
+        graphLoader.load(new ItemSource(createGraphItem(100)), null);
+        worker.runAll();
+        main.runAll();
+
+        GraphData graphData = listener.loaded.get(0);
+        graphLoader.cancel();
+        graphLoader.onGraphDrawn(graphData);
+        assertEquals(0, diskCache.storeCount);
+    }
+
+    private static GraphItem createGraphItem(int pointCount) {
+        long[] dateList = new long[pointCount];
+        long[][] graphList = new long[2][pointCount];
+        for (int i = 0; i < pointCount; i++) {
+            dateList[i] = i * 60 * 60 * 1000L;
+            graphList[0][i] = i % 7;
+            graphList[1][i] = i % 13;
+        }
+        GraphItem graphItem = new GraphItem();
+        graphItem.setDateList(dateList);
+        graphItem.setGraphList(graphList);
+        graphItem.setGraphColorList(new String[]{"#3DC23F", "#F34C44"});
+        graphItem.setGraphTitleList(new String[]{"#0", "#1"});
+        return graphItem;
+    }
+
+    private static ScrollPreview createScrollPreview() {
+        return new ScrollPreview(1080, 1500, 150, 10);
+    }
+
+    //runs what was handed to it only when told to, in order
+    private static class TaskQueue extends AbstractExecutorService implements Executor {
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable runnable) {
+            tasks.add(runnable);
+        }
+
+        boolean isEmpty() {
+            return tasks.isEmpty();
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return new ArrayList<>(tasks);
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+
+    private static class ItemSource implements GraphLoader.Source {
+        private final GraphItem graphItem;
+        private int loadCount;
+
+        ItemSource(GraphItem graphItem) {
+            this.graphItem = graphItem;
+        }
+
+        @Override
+        public GraphItem load() {
+            loadCount++;
+            return graphItem;
+        }
+    }
+
+    private static class FailingSource implements GraphLoader.Source {
+        @Override
+        public GraphItem load() throws IOException {
+            throw new IOException("Failing source");
+        }
+    }
+
+    private static class RecordingListener implements GraphLoader.Listener {
+        private final List<GraphData> loaded = new ArrayList<>();
+        private final List<Exception> failures = new ArrayList<>();
+        private final List<ScrollPreview> previews = new ArrayList<>();
+        private final List<RuntimeException> previewFailures = new ArrayList<>();
+        private final List<GraphRollups.Build> rollups = new ArrayList<>();
+        private final List<GraphRollups.Build> rollupFailures = new ArrayList<>();
+
+        @Override
+        public void onGraphLoaded(GraphData graphData, ScrollPreview scrollPreview) {
+            loaded.add(graphData);
+        }
+
+        @Override
+        public void onGraphLoadFailed(Exception e) {
+            failures.add(e);
+        }
+
+        @Override
+        public void onScrollPreviewBuilt(ScrollPreview scrollPreview) {
+            previews.add(scrollPreview);
+        }
+
+        @Override
+        public void onScrollPreviewFailed(RuntimeException e) {
+            previewFailures.add(e);
+        }
+
+        @Override
+        public void onRollupBuilt(GraphRollups.Build build) {
+            rollups.add(build);
+        }
+
+        @Override
+        public void onRollupFailed(GraphRollups.Build build, RuntimeException e) {
+            rollupFailures.add(build);
+        }
+    }
+
+    //no files, loads what it is given and records checks and stores
+    private static class RecordingDiskCache extends GraphStateDiskCache {
+        private final List<Long> verifiedHashes = new ArrayList<>();
+        private boolean matching = true;
+        private GraphData cachedGraphData;
+        private GraphData storedGraphData;
+        private int storeCount;
+
+        RecordingDiskCache() {
+            super(new File("unused"));
+        }
+
+        @Override
+        public GraphData load(GraphItem graphItem, long contentHash, ScrollPreview scrollPreview) {
+            return cachedGraphData;
+        }
+
+        @Override
+        public boolean verify(long key, long contentHash, ScrollPreview scrollPreview) {
+            verifiedHashes.add(contentHash);
+            if (!matching) {
+                cachedGraphData = null;
+            }
+            return matching;
+        }
+
+        @Override
+        public void store(long key, long contentHash, GraphData graphData, ScrollPreview scrollPreview) {
+            storeCount++;
+            storedGraphData = graphData;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.nzoth.testgraph.benchmark;
+
+import com.nzoth.testgraph.chart.RangeMaxIndex;
+import com.nzoth.testgraph.chart.ScrollPreview;
+import com.nzoth.testgraph.chart.SeriesPyramid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One live point appended to a history of {@code pointCount} points, with the work
+ * {@code GraphData.append} and the scroll preview do for it: arrays grow by doubling, the
+ * combined max index, the pyramids and the preview only take the new tail. The time per
+ * point should not grow with the history; a live chart at 1k points/sec has 1ms for each.
+ * <p>
+ * Every iteration starts again from {@code pointCount} points, so the history doesn't
+ * keep growing across iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AppendBenchmark {
+    private static final int SERIES_COUNT = 2;
+    private static final float HEIGHT = 1500;
+    private static final float SCROLL_BLOCK_HEIGHT = 150;
+    private static final float MARGIN = 10;
+    private static final int STEP = 50;
+
+    @Param({"1000", "100000", "10000000"})
+    public int pointCount;
+
+    private long[][] graphArray;
+    private long[] combinedValues;
+    private int size;
+    private RangeMaxIndex combinedMaxIndex;
+    private SeriesPyramid[] pyramids;
+    private ScrollPreview scrollPreview;
+    private Random random;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        graphArray = SeriesData.randomWalk(SERIES_COUNT, pointCount, 42);
+        combinedValues = SeriesData.combinedMax(graphArray, pointCount);
+        size = pointCount;
+        combinedMaxIndex = new RangeMaxIndex(combinedValues, size);
+        pyramids = new SeriesPyramid[SERIES_COUNT];
+        for (int i = 0; i < SERIES_COUNT; i++) {
+            pyramids[i] = new SeriesPyramid(graphArray[i], size);
+        }
+
+        boolean[] visibleList = new boolean[SERIES_COUNT];
+        Arrays.fill(visibleList, true);
+        scrollPreview = new ScrollPreview(ChartViewportBenchmark.WIDTH, HEIGHT, SCROLL_BLOCK_HEIGHT, MARGIN);
+        scrollPreview.build(graphArray, pyramids, visibleList, size, combinedMaxIndex.getMax());
+        random = new Random(7);
+    }
+
+    @Benchmark
+    public long append() {
+        if (size == combinedValues.length) {
+            int capacity = size * 2;
+            combinedValues = Arrays.copyOf(combinedValues, capacity);
+            for (int i = 0; i < SERIES_COUNT; i++) {
+                graphArray[i] = Arrays.copyOf(graphArray[i], capacity);
+            }
+        }
+
+        long max = Long.MIN_VALUE;
+        for (long[] array : graphArray) {
+            long value = Math.max(array[size - 1] + random.nextInt(STEP * 2 + 1) - STEP, 0);
+            array[size] = value;
+            max = Math.max(max, value);
+        }
+        combinedValues[size] = max;
+        size++;
+
+        combinedMaxIndex.update(combinedValues, size);
+        for (int i = 0; i < SERIES_COUNT; i++) {
+            pyramids[i].append(graphArray[i], size);
+        }
+        scrollPreview.append(graphArray, size);
+        return combinedMaxIndex.getMax();
+    }
+}
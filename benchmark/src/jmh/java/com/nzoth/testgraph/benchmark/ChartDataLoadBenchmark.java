@@ -0,0 +1,167 @@
+package com.nzoth.testgraph.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.nzoth.testgraph.GraphItem;
+import com.nzoth.testgraph.GraphItemBinaryReader;
+import com.nzoth.testgraph.GraphItemBinaryWriter;
+import com.nzoth.testgraph.GraphItemJsonReader;
+import com.nzoth.testgraph.MappedGraphItem;
+import com.nzoth.testgraph.models.GraphModel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the charts of chart_data.json at startup: the Gson binding MainActivity used,
+ * kept here as {@link #readGson}, against the streaming {@link GraphItemJsonReader} and
+ * against mapping the binary copy MainActivity now writes once. {@link #mapBinary} is what
+ * startup does, {@link #mapBinaryAndCopy} adds copying every chart to the heap as if all
+ * rows were bound. {@code copies} repeats the charts of the asset to get a larger file.
+ * <p>
+ * {@code ./gradlew :benchmark:jmh -PjmhInclude=ChartDataLoadBenchmark -PjmhProfilers=gc}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChartDataLoadBenchmark {
+    private static final String CHART_DATA_ASSET = "/chart_data.json";
+    private static final String DATA_TYPE = "x";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({"1", "50"})
+    public int copies;
+
+    private String json;
+    private File binaryFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        json = readChartData(copies);
+        binaryFile = File.createTempFile("chart_data", ".bin");
+        new GraphItemBinaryWriter(false).convert(new StringReader(json), binaryFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        binaryFile.delete();
+    }
+
+    @Benchmark
+    public List<GraphItem> parseGson() {
+        return readGson(json);
+    }
+
+    @Benchmark
+    public List<GraphItem> parseStreaming() throws IOException {
+        return new GraphItemJsonReader().read(new StringReader(json));
+    }
+
+    @Benchmark
+    public List<MappedGraphItem> mapBinary() throws IOException {
+        return new GraphItemBinaryReader().map(binaryFile);
+    }
+
+    @Benchmark
+    public long mapBinaryAndCopy() throws IOException {
+        long sum = 0;
+        for (MappedGraphItem mappedItem : new GraphItemBinaryReader().map(binaryFile)) {
+            GraphItem graphItem = mappedItem.toGraphItem();
+            sum += graphItem.getDateList()[graphItem.getPointCount() - 1];
+        }
+        return sum;
+    }
+
+    /**
+     * The asset with its charts repeated {@code copies} times.
+     */
+    static String readChartData(int copies) throws IOException {
+        InputStream input = ChartDataLoadBenchmark.class.getResourceAsStream(CHART_DATA_ASSET);
+        if (input == null) {
+            throw new IOException(CHART_DATA_ASSET + " is not on the classpath");
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                output.write(buffer, 0, count);
+            }
+        } finally {
+            input.close();
+        }
+
+        String asset = new String(output.toByteArray(), UTF_8).trim();
+        String charts = asset.substring(1, asset.length() - 1);
+        StringBuilder builder = new StringBuilder(asset.length() * copies);
+        builder.append('[');
+        for (int i = 0; i < copies; i++) {
+            builder.append(i == 0 ? "" : ",").append(charts);
+        }
+        return builder.append(']').toString();
+    }
+
+    //MainActivity before GraphItemJsonReader
+    static List<GraphItem> readGson(String json) {
+        Gson gson = new Gson();
+        JsonReader reader = gson.newJsonReader(new StringReader(json));
+        GraphModel[] modelList = gson.fromJson(reader, GraphModel[].class);
+        List<GraphItem> itemList = new ArrayList<>();
+
+        for (GraphModel model : modelList) {
+            GraphItem graphItem = new GraphItem();
+
+            int counter = 0;
+            int graphSize = model.names.size();
+            String[] colors = new String[graphSize];
+            String[] titles = new String[graphSize];
+            long[][] graphs = new long[graphSize][];
+
+            for (List<String> graphList : model.columns) {
+                String type = graphList.get(0);
+                long[] list = convertToLongList(graphList);
+                if (type.equalsIgnoreCase(DATA_TYPE)) {
+                    graphItem.setDateList(list);
+                } else {
+                    colors[counter] = model.colors.get(type);
+                    titles[counter] = String.valueOf(model.names.get(type));
+                    graphs[counter] = list;
+                    counter++;
+                }
+            }
+
+            graphItem.setGraphColorList(colors);
+            graphItem.setGraphTitleList(titles);
+            graphItem.setGraphList(graphs);
+
+            itemList.add(graphItem);
+        }
+        return itemList;
+    }
+
+    private static long[] convertToLongList(List<String> stringList) {
+        long[] result = new long[stringList.size() - 1];
+        for (int i = result.length; i > 0; i--) {
+            result[result.length - i] = Long.parseLong(stringList.get(i));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,90 @@
+package com.nzoth.testgraph.benchmark;
+
+import com.nzoth.testgraph.chart.ChartViewport;
+import com.nzoth.testgraph.chart.RangeMaxIndex;
+import com.nzoth.testgraph.chart.SeriesPyramid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-frame work of the main graph: visible max Y and vertices of every series,
+ * for a window showing {@code windowFraction} of the history at the newest end.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChartViewportBenchmark {
+    static final float WIDTH = 1080;
+    static final float GRAPH_HEIGHT = 1200;
+    static final float HOLD_LINE_WIDTH = 10;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int pointCount;
+
+    @Param({"1", "5", "20"})
+    public int seriesCount;
+
+    @Param({"0.05", "1"})
+    public float windowFraction;
+
+    private long[][] graphArray;
+    private RangeMaxIndex combinedMaxIndex;
+    private SeriesPyramid[] pyramids;
+    private ChartViewport viewport;
+    private float maxY;
+    private float[] vertices;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        graphArray = SeriesData.randomWalk(seriesCount, pointCount, 42);
+        combinedMaxIndex = new RangeMaxIndex(SeriesData.combinedMax(graphArray, pointCount));
+        pyramids = new SeriesPyramid[seriesCount];
+        for (int i = 0; i < seriesCount; i++) {
+            pyramids[i] = new SeriesPyramid(graphArray[i], pointCount);
+        }
+
+        viewport = new ChartViewport(HOLD_LINE_WIDTH);
+        viewport.setSize(WIDTH, GRAPH_HEIGHT);
+        viewport.setPointCount(pointCount);
+        float holdLineRightX = WIDTH - HOLD_LINE_WIDTH / 2;
+        float holdLineLeftX = Math.max(holdLineRightX - WIDTH * windowFraction + HOLD_LINE_WIDTH, HOLD_LINE_WIDTH / 2);
+        viewport.updateScale(holdLineLeftX, holdLineRightX);
+        viewport.updateVisibleRange(holdLineLeftX, holdLineRightX);
+
+        maxY = viewport.getMaxY(graphArray, combinedMaxIndex);
+        vertices = new float[viewport.getVertexFloatCount()];
+    }
+
+    @Benchmark
+    public float maxY() {
+        return viewport.getMaxY(graphArray, combinedMaxIndex);
+    }
+
+    @Benchmark
+    public int buildVertices() {
+        int floatCount = 0;
+        for (long[] array : graphArray) {
+            floatCount += viewport.buildVertices(vertices, array, null, maxY);
+        }
+        return floatCount;
+    }
+
+    @Benchmark
+    public int buildVerticesFromPyramid() {
+        int floatCount = 0;
+        for (int i = 0; i < graphArray.length; i++) {
+            floatCount += viewport.buildVertices(vertices, graphArray[i], pyramids[i], maxY);
+        }
+        return floatCount;
+    }
+}
@@ -0,0 +1,149 @@
+package com.nzoth.testgraph.benchmark;
+
+import com.nzoth.testgraph.chart.LineDownsampler;
+import com.nzoth.testgraph.chart.RangeMaxIndex;
+import com.nzoth.testgraph.chart.ScrollPreview;
+import com.nzoth.testgraph.chart.SeriesPyramid;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Time to first frame and memory of a list of charts as the chart count grows, with the
+ * state of each chart (combined max index, pyramids, scroll preview) prepared either for
+ * every chart up front or only for the rows on screen, as {@code GraphListAdapter} does.
+ * The first frame is the M4 lines of every visible chart across the view.
+ * <p>
+ * Memory is the heap the prepared state keeps after a GC, the points themselves are not
+ * counted since both ways hold them. Runs are single shot, the median of
+ * {@code RUN_COUNT} is printed after {@code WARMUP_COUNT} unrecorded ones.
+ * <p>
+ * {@code ./gradlew :benchmark:dashboard -PdashboardPoints=100000 -PdashboardSeries=2}
+ */
+public class DashboardBenchmark {
+    private static final float WIDTH = ChartViewportBenchmark.WIDTH;
+    private static final float HEIGHT = 600;
+    private static final float SCROLL_BLOCK_HEIGHT = 150;
+    private static final float MARGIN = 10;
+
+    //rows of GraphListAdapter on a phone screen
+    private static final int VISIBLE_ROW_COUNT = 3;
+    private static final int[] CHART_COUNTS = {1, 5, 10, 25, 50};
+
+    private static final int WARMUP_COUNT = 3;
+    private static final int RUN_COUNT = 7;
+
+    private final long[][][] charts;
+    private final int pointCount;
+    private final LineDownsampler lineDownsampler = new LineDownsampler(LineDownsampler.Mode.M4);
+
+    private static final class PreparedChart {
+        private final RangeMaxIndex combinedMaxIndex;
+        private final SeriesPyramid[] pyramids;
+        private final ScrollPreview scrollPreview;
+
+        PreparedChart(RangeMaxIndex combinedMaxIndex, SeriesPyramid[] pyramids, ScrollPreview scrollPreview) {
+            this.combinedMaxIndex = combinedMaxIndex;
+            this.pyramids = pyramids;
+            this.scrollPreview = scrollPreview;
+        }
+    }
+
+    public DashboardBenchmark(int chartCount, int pointCount, int seriesCount) {
+        this.charts = new long[chartCount][][];
+        for (int i = 0; i < chartCount; i++) {
+            charts[i] = SeriesData.randomWalk(seriesCount, pointCount, i);
+        }
+        this.pointCount = pointCount;
+    }
+
+    /**
+     * Prepares the first {@code preparedCount} of {@code chartCount} charts and draws the
+     * visible ones.
+     *
+     * @return the prepared state, kept so its memory can be measured
+     */
+    private PreparedChart[] open(int chartCount, int preparedCount) {
+        PreparedChart[] prepared = new PreparedChart[chartCount];
+        for (int i = 0; i < preparedCount; i++) {
+            prepared[i] = prepare(charts[i]);
+        }
+
+        float stepX = WIDTH / (pointCount - 1);
+        float[] vertices = new float[lineDownsampler.getMaxFloatCount(pointCount, stepX)];
+        for (int i = 0; i < Math.min(chartCount, VISIBLE_ROW_COUNT); i++) {
+            float itemY = HEIGHT / prepared[i].combinedMaxIndex.getMax();
+            for (long[] values : charts[i]) {
+                lineDownsampler.build(values, 0, pointCount, 0, stepX, HEIGHT, itemY, vertices);
+            }
+        }
+        return prepared;
+    }
+
+    private PreparedChart prepare(long[][] graphArray) {
+        long[] combinedValues = SeriesData.combinedMax(graphArray, pointCount);
+        RangeMaxIndex combinedMaxIndex = new RangeMaxIndex(combinedValues, pointCount);
+        SeriesPyramid[] pyramids = new SeriesPyramid[graphArray.length];
+        for (int i = 0; i < graphArray.length; i++) {
+            pyramids[i] = new SeriesPyramid(graphArray[i], pointCount);
+        }
+        ScrollPreview scrollPreview = new ScrollPreview(WIDTH, HEIGHT, SCROLL_BLOCK_HEIGHT, MARGIN);
+        boolean[] visibleList = new boolean[graphArray.length];
+        Arrays.fill(visibleList, true);
+        scrollPreview.build(graphArray, pyramids, visibleList, pointCount, combinedMaxIndex.getMax());
+        return new PreparedChart(combinedMaxIndex, pyramids, scrollPreview);
+    }
+
+    //median milliseconds
+    private double measureMillis(int chartCount, int preparedCount) {
+        for (int i = 0; i < WARMUP_COUNT; i++) {
+            open(chartCount, preparedCount);
+        }
+        double[] millis = new double[RUN_COUNT];
+        for (int i = 0; i < RUN_COUNT; i++) {
+            long start = System.nanoTime();
+            open(chartCount, preparedCount);
+            millis[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(millis);
+        return millis[RUN_COUNT / 2];
+    }
+
+    private double measureMegabytes(int chartCount, int preparedCount) {
+        long before = getUsedHeap();
+        PreparedChart[] prepared = open(chartCount, preparedCount);
+        long after = getUsedHeap();
+        if (prepared.length != chartCount) {
+            throw new IllegalStateException("Charts missing");
+        }
+        return (after - before) / 1e6;
+    }
+
+    private static long getUsedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) {
+        int pointCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int seriesCount = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int maxChartCount = CHART_COUNTS[CHART_COUNTS.length - 1];
+        DashboardBenchmark benchmark = new DashboardBenchmark(maxChartCount, pointCount, seriesCount);
+
+        System.out.println(String.format(Locale.US, "%d points x %d series per chart, %d visible rows",
+                pointCount, seriesCount, VISIBLE_ROW_COUNT));
+        System.out.println("charts   all first frame / MB   visible first frame / MB");
+        for (int chartCount : CHART_COUNTS) {
+            int visibleCount = Math.min(chartCount, VISIBLE_ROW_COUNT);
+            System.out.println(String.format(Locale.US, "%6d   %9.2f ms %7.1f   %13.2f ms %7.1f",
+                    chartCount,
+                    benchmark.measureMillis(chartCount, chartCount),
+                    benchmark.measureMegabytes(chartCount, chartCount),
+                    benchmark.measureMillis(chartCount, visibleCount),
+                    benchmark.measureMegabytes(chartCount, visibleCount)));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.nzoth.testgraph.benchmark;
+
+import com.nzoth.testgraph.chart.LabelCache;
+import com.nzoth.testgraph.chart.LabelFormat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LabelFormat} and {@link LabelCache} against the String formatting they replaced,
+ * kept here as {@link #formatBigValueString}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LabelFormatBenchmark {
+    private static final int VALUE_COUNT = 1024;
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private static final NavigableMap<Long, String> suffixes = new TreeMap<>();
+    static {
+        suffixes.put(1_000L, "k");
+        suffixes.put(1_000_000L, "M");
+        suffixes.put(1_000_000_000L, "G");
+        suffixes.put(1_000_000_000_000L, "T");
+        suffixes.put(1_000_000_000_000_000L, "P");
+        suffixes.put(1_000_000_000_000_000_000L, "E");
+    }
+
+    private long[] values;
+    private long[] dates;
+    private int index;
+    private final char[] chars = new char[LabelFormat.DATE_MAX_LENGTH];
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM d", Locale.US);
+    private LabelCache valueLabels;
+    private LabelCache dateLabels;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        values = new long[VALUE_COUNT];
+        dates = new long[VALUE_COUNT];
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            values[i] = random.nextLong() >> random.nextInt(64);
+            dates[i] = 1546300800000L + random.nextInt(365) * DAY_MILLIS;
+        }
+        valueLabels = LabelCache.forBigValues(32);
+        dateLabels = LabelCache.forDates(32, TimeZone.getDefault());
+    }
+
+    @Benchmark
+    public String formatBigValueString() {
+        return formatBigValueString(values[index++ & (VALUE_COUNT - 1)]);
+    }
+
+    @Benchmark
+    public int formatBigValueChars() {
+        return LabelFormat.formatBigValue(values[index++ & (VALUE_COUNT - 1)], chars, 0);
+    }
+
+    //the six Y labels of a frame, all hits after the first
+    @Benchmark
+    public int bigValueCacheHit() {
+        int length = 0;
+        for (int i = 0; i < 6; i++) {
+            length += valueLabels.getLength(valueLabels.get(i * 41600L));
+        }
+        return length;
+    }
+
+    @Benchmark
+    public String formatDateString() {
+        return dateFormat.format(new Date(dates[index++ & (VALUE_COUNT - 1)]));
+    }
+
+    @Benchmark
+    public int formatDateChars() {
+        long day = LabelFormat.getDay(dates[index++ & (VALUE_COUNT - 1)], TimeZone.getDefault());
+        return LabelFormat.formatDay(day, chars, 0);
+    }
+
+    //a frame of date labels while panning, mostly hits
+    @Benchmark
+    public int dateCacheFrame() {
+        int from = (index++ & 63) * 4;
+        int length = 0;
+        for (int i = 0; i < 8; i++) {
+            length += dateLabels.getLength(dateLabels.get(1546300800000L + (from + i * 3) * DAY_MILLIS));
+        }
+        return length;
+    }
+
+    private static String formatBigValueString(long value) {
+        //Long.MIN_VALUE == -Long.MIN_VALUE so we need an adjustment here
+        if (value == Long.MIN_VALUE) return formatBigValueString(Long.MIN_VALUE + 1);
+        if (value < 0) return "-" + formatBigValueString(-value);
+        if (value < 1000) return Long.toString(value); //deal with easy case
+
+        Map.Entry<Long, String> e = suffixes.floorEntry(value);
+        Long divideBy = e.getKey();
+        String suffix = e.getValue();
+
+        long truncated = value / (divideBy / 10); //the number part of the output times 10
+        boolean hasDecimal = truncated < 100 && (truncated / 10d) != (truncated / 10);
+        return hasDecimal ? (truncated / 10d) + suffix : (truncated / 10) + suffix;
+    }
+}
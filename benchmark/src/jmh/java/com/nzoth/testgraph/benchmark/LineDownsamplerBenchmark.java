@@ -0,0 +1,65 @@
+package com.nzoth.testgraph.benchmark;
+
+import com.nzoth.testgraph.chart.LineDownsampler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One series squeezed into the view width by each downsampling mode. Next to the time,
+ * every trial prints the segments its mode emits, what {@code Canvas.drawLines} is
+ * handed per frame, e.g. {@code M4, 1000000 points: 4282 segments}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LineDownsamplerBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int pointCount;
+
+    @Param({"NONE", "M4", "LTTB"})
+    public LineDownsampler.Mode mode;
+
+    private long[] values;
+    private LineDownsampler lineDownsampler;
+    private float stepX;
+    private float itemY;
+    private float[] vertices;
+    private int floatCount;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        values = SeriesData.randomWalk(1, pointCount, 42)[0];
+        lineDownsampler = new LineDownsampler(mode);
+        stepX = ChartViewportBenchmark.WIDTH / (pointCount - 1);
+        long max = 0;
+        for (long value : values) {
+            max = Math.max(max, value);
+        }
+        itemY = ChartViewportBenchmark.GRAPH_HEIGHT / max;
+        vertices = new float[Math.max(lineDownsampler.getMaxFloatCount(pointCount, stepX), (pointCount - 1) * 4)];
+    }
+
+    @TearDown(Level.Trial)
+    public void printSegmentCount() {
+        System.out.println(String.format(Locale.US, "%s, %d points: %d segments", mode, pointCount, floatCount / 4));
+    }
+
+    @Benchmark
+    public int build() {
+        floatCount = lineDownsampler.build(values, 0, pointCount, 0, stepX, ChartViewportBenchmark.GRAPH_HEIGHT, itemY, vertices);
+        return floatCount;
+    }
+}
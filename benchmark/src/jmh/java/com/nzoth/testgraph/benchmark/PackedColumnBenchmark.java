@@ -0,0 +1,146 @@
+package com.nzoth.testgraph.benchmark;
+
+import com.nzoth.testgraph.chart.PackedColumn;
+import com.nzoth.testgraph.chart.SyntheticSeries;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads of a {@link PackedColumn} against the plain {@code long[]} it was packed from:
+ * a full sequential scan, scattered single reads and the max of a window of the size the
+ * main graph shows. {@link #main} prints the memory both take.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PackedColumnBenchmark {
+    private static final int RANDOM_READ_COUNT = 1024;
+    private static final int WINDOW_FRACTION = 20;
+
+    @Param({"100000", "10000000"})
+    public int pointCount;
+
+    @Param({"RANDOM_WALK", "SPIKES"})
+    public SyntheticSeries.Distribution distribution;
+
+    private long[] values;
+    private PackedColumn column;
+    private int[] positions;
+    private int windowFrom;
+    private int windowTo;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        values = createSeries(pointCount, distribution).createValues()[0];
+        column = PackedColumn.pack(values, pointCount);
+
+        Random random = new Random(42);
+        positions = new int[RANDOM_READ_COUNT];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = random.nextInt(pointCount);
+        }
+        windowFrom = pointCount / 3 + 1;
+        windowTo = windowFrom + pointCount / WINDOW_FRACTION;
+    }
+
+    @Benchmark
+    public long scanArray() {
+        long sum = 0;
+        for (int i = 0; i < pointCount; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long scanPacked() {
+        long sum = 0;
+        PackedColumn.Cursor cursor = column.newCursor(0);
+        while (cursor.hasNext()) {
+            sum += cursor.next();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long randomReadArray() {
+        long sum = 0;
+        for (int position : positions) {
+            sum += values[position];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long randomReadPacked() {
+        long sum = 0;
+        for (int position : positions) {
+            sum += column.get(position);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long windowMaxArray() {
+        long max = Long.MIN_VALUE;
+        for (int i = windowFrom; i < windowTo; i++) {
+            max = max < values[i] ? values[i] : max;
+        }
+        return max;
+    }
+
+    @Benchmark
+    public long windowMaxPacked() {
+        return column.getMax(windowFrom, windowTo);
+    }
+
+    @Benchmark
+    public PackedColumn pack() {
+        return PackedColumn.pack(values, pointCount);
+    }
+
+    private static SyntheticSeries createSeries(int pointCount, SyntheticSeries.Distribution distribution) {
+        SyntheticSeries series = new SyntheticSeries();
+        series.setPointCount(pointCount);
+        series.setSeriesCount(1);
+        series.setDistribution(distribution);
+        return series;
+    }
+
+    /**
+     * Prints bytes per value of packed dates and series next to the 8 of a long[].
+     */
+    public static void main(String[] args) {
+        int pointCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        System.out.println(String.format(Locale.US, "%d points, long[]: 8.000 bytes/value", pointCount));
+
+        SyntheticSeries series = createSeries(pointCount, SyntheticSeries.Distribution.RANDOM_WALK);
+        printByteCount("dates, even", series.createDates(), pointCount);
+        series.setDateJitter(SyntheticSeries.DAY_MILLIS / 24);
+        printByteCount("dates, jitter 1h", series.createDates(), pointCount);
+        for (SyntheticSeries.Distribution distribution : SyntheticSeries.Distribution.values()) {
+            long[] values = createSeries(pointCount, distribution).createValues()[0];
+            printByteCount(distribution.name().toLowerCase(Locale.US), values, pointCount);
+        }
+    }
+
+    private static void printByteCount(String name, long[] values, int pointCount) {
+        PackedColumn column = PackedColumn.pack(values, pointCount);
+        System.out.println(String.format(Locale.US, "%-17s %.3f bytes/value", name + ":",
+                column.getByteCount() / (double) pointCount));
+    }
+}
@@ -0,0 +1,74 @@
+package com.nzoth.testgraph.benchmark;
+
+import com.nzoth.testgraph.chart.RangeMaxIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Visible window max from the index against the per-frame scan it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RangeMaxIndexBenchmark {
+    private static final int QUERY_COUNT = 1024;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int pointCount;
+
+    private long[] values;
+    private RangeMaxIndex index;
+    private int[] queryFrom;
+    private int[] queryTo;
+    private int query;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        values = SeriesData.randomWalk(1, pointCount, 42)[0];
+        index = new RangeMaxIndex(values);
+
+        Random random = new Random(7);
+        queryFrom = new int[QUERY_COUNT];
+        queryTo = new int[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            int from = random.nextInt(pointCount);
+            queryFrom[i] = from;
+            queryTo[i] = from + 1 + random.nextInt(pointCount - from);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public RangeMaxIndex build() {
+        return new RangeMaxIndex(values);
+    }
+
+    @Benchmark
+    public long getMax() {
+        int i = query++ & (QUERY_COUNT - 1);
+        return index.getMax(queryFrom[i], queryTo[i]);
+    }
+
+    //the scan GraphView.getMaxYHeight did every frame, casting every visible value to int
+    @Benchmark
+    public float linearScan() {
+        int i = query++ & (QUERY_COUNT - 1);
+        float maxY = 0;
+        for (int j = queryFrom[i]; j < queryTo[i]; j++) {
+            int value = (int) values[j];
+            maxY = maxY < value ? value : maxY;
+        }
+        return maxY;
+    }
+}
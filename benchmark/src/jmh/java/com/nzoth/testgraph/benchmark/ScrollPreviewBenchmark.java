@@ -0,0 +1,69 @@
+package com.nzoth.testgraph.benchmark;
+
+import com.nzoth.testgraph.chart.ScrollPreview;
+import com.nzoth.testgraph.chart.SeriesPyramid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the scroll block preview of the whole history, from the raw series and from
+ * their pyramids.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ScrollPreviewBenchmark {
+    private static final float HEIGHT = 1500;
+    private static final float SCROLL_BLOCK_HEIGHT = 150;
+    private static final float MARGIN = 10;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int pointCount;
+
+    @Param({"1", "5", "20"})
+    public int seriesCount;
+
+    private long[][] graphArray;
+    private SeriesPyramid[] pyramids;
+    private boolean[] visibleList;
+    private long maxY;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        graphArray = SeriesData.randomWalk(seriesCount, pointCount, 42);
+        visibleList = new boolean[seriesCount];
+        Arrays.fill(visibleList, true);
+        pyramids = new SeriesPyramid[seriesCount];
+        for (int i = 0; i < seriesCount; i++) {
+            pyramids[i] = new SeriesPyramid(graphArray[i], pointCount);
+        }
+        for (long value : SeriesData.combinedMax(graphArray, pointCount)) {
+            maxY = Math.max(maxY, value);
+        }
+    }
+
+    @Benchmark
+    public ScrollPreview build() {
+        ScrollPreview scrollPreview = new ScrollPreview(ChartViewportBenchmark.WIDTH, HEIGHT, SCROLL_BLOCK_HEIGHT, MARGIN);
+        scrollPreview.build(graphArray, null, visibleList, pointCount, maxY);
+        return scrollPreview;
+    }
+
+    @Benchmark
+    public ScrollPreview buildFromPyramid() {
+        ScrollPreview scrollPreview = new ScrollPreview(ChartViewportBenchmark.WIDTH, HEIGHT, SCROLL_BLOCK_HEIGHT, MARGIN);
+        scrollPreview.build(graphArray, pyramids, visibleList, pointCount, maxY);
+        return scrollPreview;
+    }
+}
@@ -0,0 +1,40 @@
+package com.nzoth.testgraph.benchmark;
+
+import java.util.Random;
+
+/**
+ * Random walk series shaped like chart_data.json: non-negative, with occasional spikes.
+ */
+final class SeriesData {
+    private static final long START_VALUE = 1000;
+    private static final int STEP = 50;
+    private static final int SPIKE_EVERY = 997;
+
+    private SeriesData() {
+    }
+
+    static long[][] randomWalk(int seriesCount, int pointCount, long seed) {
+        Random random = new Random(seed);
+        long[][] graphArray = new long[seriesCount][pointCount];
+        for (long[] array : graphArray) {
+            long value = START_VALUE;
+            for (int i = 0; i < pointCount; i++) {
+                value = Math.max(value + random.nextInt(STEP * 2 + 1) - STEP, 0);
+                array[i] = i % SPIKE_EVERY == 0 ? value * 3 : value;
+            }
+        }
+        return graphArray;
+    }
+
+    static long[] combinedMax(long[][] graphArray, int pointCount) {
+        long[] combined = new long[pointCount];
+        for (int i = 0; i < pointCount; i++) {
+            long max = Long.MIN_VALUE;
+            for (long[] array : graphArray) {
+                max = max < array[i] ? array[i] : max;
+            }
+            combined[i] = max;
+        }
+        return combined;
+    }
+}
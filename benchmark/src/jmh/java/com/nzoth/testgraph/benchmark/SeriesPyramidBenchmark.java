@@ -0,0 +1,65 @@
+package com.nzoth.testgraph.benchmark;
+
+import com.nzoth.testgraph.chart.ParallelPyramidBuilder;
+import com.nzoth.testgraph.chart.SeriesPyramid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SeriesPyramidBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int pointCount;
+
+    private long[] values;
+    private SeriesPyramid appendPyramid;
+    private int appendSize;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        values = SeriesData.randomWalk(1, pointCount, 42)[0];
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpAppend() {
+        appendSize = pointCount / 2;
+        appendPyramid = new SeriesPyramid(values, appendSize);
+    }
+
+    @Benchmark
+    public SeriesPyramid build() {
+        return new SeriesPyramid(values, pointCount);
+    }
+
+    @Benchmark
+    public SeriesPyramid buildParallel() {
+        return ParallelPyramidBuilder.build(values, pointCount);
+    }
+
+    /**
+     * One appended point, restarting from half the series once it is full; the restart
+     * adds a constant to the amortized cost.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public SeriesPyramid append() {
+        if (appendSize == pointCount) {
+            appendSize = pointCount / 2;
+            appendPyramid = new SeriesPyramid(values, appendSize);
+        }
+        appendPyramid.append(values, ++appendSize);
+        return appendPyramid;
+    }
+}
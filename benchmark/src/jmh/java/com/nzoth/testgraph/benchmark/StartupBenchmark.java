@@ -0,0 +1,222 @@
+package com.nzoth.testgraph.benchmark;
+
+import com.nzoth.testgraph.chart.DerivedStateFile;
+import com.nzoth.testgraph.chart.RangeMaxIndex;
+import com.nzoth.testgraph.chart.ScrollPreview;
+import com.nzoth.testgraph.chart.SeriesPyramid;
+import com.nzoth.testgraph.chart.SyntheticSeries;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Time from loaded points to a chart ready to draw, the way a load derives its state:
+ * <ul>
+ * <li>cold: no {@link DerivedStateFile}, everything is built from the points, which are
+ * hashed for the file it is stored in</li>
+ * <li>warm: the state is read from the file found by its key</li>
+ * <li>corrupt: the file fails its checksum, everything is built after the failed read</li>
+ * </ul>
+ * Every path computes the key of the points first, as a load does to find the file. The
+ * hash of every point a warm load is checked against once it is shown is printed apart.
+ * Runs are single shot, like a start, and the median of {@code RUN_COUNT} is printed after
+ * {@code WARMUP_COUNT} unrecorded ones; the file stays in the page cache between runs.
+ * <p>
+ * {@code ./gradlew :benchmark:startup -PstartupPoints=10000000 -PstartupSeries=5}
+ */
+public class StartupBenchmark {
+    private static final float WIDTH = ChartViewportBenchmark.WIDTH;
+    private static final float HEIGHT = 1500;
+    private static final float SCROLL_BLOCK_HEIGHT = 150;
+    private static final float MARGIN = 10;
+
+    private static final int WARMUP_COUNT = 5;
+    private static final int RUN_COUNT = 15;
+
+    private final long[] dates;
+    private final long[][] graphArray;
+    private final int pointCount;
+    private final File file;
+    private final File corruptFile;
+    private ScrollPreview writtenPreview;
+
+    public StartupBenchmark(SyntheticSeries series, File directory) {
+        this.dates = series.createDates();
+        this.graphArray = series.createValues();
+        this.pointCount = dates.length;
+        this.file = new File(directory, "startup.state");
+        this.corruptFile = new File(directory, "startup_corrupt.state");
+    }
+
+    /**
+     * Writes the files the warm and corrupt paths read.
+     *
+     * @return milliseconds the write took, what the first render leaves to the background
+     */
+    public double writeFiles() throws IOException {
+        long key = DerivedStateFile.hashKey(dates, graphArray, pointCount);
+        long contentHash = DerivedStateFile.hashContent(dates, graphArray, pointCount);
+        long[] combinedValues = SeriesData.combinedMax(graphArray, pointCount);
+        RangeMaxIndex combinedMaxIndex = new RangeMaxIndex(combinedValues, pointCount);
+        SeriesPyramid[] pyramids = buildPyramids();
+        ScrollPreview scrollPreview = buildPreview(pyramids, combinedMaxIndex.getMax());
+        writtenPreview = scrollPreview;
+
+        long start = System.nanoTime();
+        DerivedStateFile.write(file, key, contentHash,
+                new DerivedStateFile.Snapshot(combinedValues, combinedMaxIndex, pyramids, pointCount, scrollPreview));
+        double writeMillis = (System.nanoTime() - start) / 1e6;
+
+        DerivedStateFile.write(corruptFile, key, contentHash,
+                new DerivedStateFile.Snapshot(combinedValues, combinedMaxIndex, pyramids, pointCount, scrollPreview));
+        RandomAccessFile randomAccessFile = new RandomAccessFile(corruptFile, "rw");
+        try {
+            //one flipped bit in the middle of the series
+            long position = randomAccessFile.length() / 2;
+            randomAccessFile.seek(position);
+            int b = randomAccessFile.read();
+            randomAccessFile.seek(position);
+            randomAccessFile.write(b ^ 1);
+        } finally {
+            randomAccessFile.close();
+        }
+        return writeMillis;
+    }
+
+    public void deleteFiles() {
+        file.delete();
+        corruptFile.delete();
+    }
+
+    /**
+     * @return the chart's preview, so the work can't be skipped
+     */
+    public ScrollPreview cold() {
+        DerivedStateFile.hashKey(dates, graphArray, pointCount);
+        ScrollPreview scrollPreview = derive();
+        DerivedStateFile.hashContent(dates, graphArray, pointCount);
+        return scrollPreview;
+    }
+
+    public ScrollPreview warm() throws IOException {
+        long key = DerivedStateFile.hashKey(dates, graphArray, pointCount);
+        ScrollPreview scrollPreview = createPreview();
+        DerivedStateFile.read(file, key, graphArray, pointCount, scrollPreview);
+        return scrollPreview;
+    }
+
+    /**
+     * @return the preview written to the file, or null if the file is of other points
+     */
+    public ScrollPreview verify() throws IOException {
+        long contentHash = DerivedStateFile.hashContent(dates, graphArray, pointCount);
+        return DerivedStateFile.readContentHash(file) == contentHash ? writtenPreview : null;
+    }
+
+    public ScrollPreview corrupt() {
+        long key = DerivedStateFile.hashKey(dates, graphArray, pointCount);
+        try {
+            DerivedStateFile.read(corruptFile, key, graphArray, pointCount, createPreview());
+            throw new IllegalStateException("Corrupt file read");
+        } catch (IOException e) {
+            return derive();
+        }
+    }
+
+    private ScrollPreview derive() {
+        long[] combinedValues = SeriesData.combinedMax(graphArray, pointCount);
+        RangeMaxIndex combinedMaxIndex = new RangeMaxIndex(combinedValues, pointCount);
+        return buildPreview(buildPyramids(), combinedMaxIndex.getMax());
+    }
+
+    private SeriesPyramid[] buildPyramids() {
+        SeriesPyramid[] pyramids = new SeriesPyramid[graphArray.length];
+        for (int i = 0; i < graphArray.length; i++) {
+            pyramids[i] = new SeriesPyramid(graphArray[i], pointCount);
+        }
+        return pyramids;
+    }
+
+    private ScrollPreview buildPreview(SeriesPyramid[] pyramids, long maxY) {
+        ScrollPreview scrollPreview = createPreview();
+        boolean[] visibleList = new boolean[graphArray.length];
+        Arrays.fill(visibleList, true);
+        scrollPreview.build(graphArray, pyramids, visibleList, pointCount, maxY);
+        return scrollPreview;
+    }
+
+    private static ScrollPreview createPreview() {
+        return new ScrollPreview(WIDTH, HEIGHT, SCROLL_BLOCK_HEIGHT, MARGIN);
+    }
+
+    private interface Path {
+        ScrollPreview run() throws IOException;
+    }
+
+    //median milliseconds
+    private static double measure(Path path) throws IOException {
+        for (int i = 0; i < WARMUP_COUNT; i++) {
+            path.run();
+        }
+        double[] millis = new double[RUN_COUNT];
+        for (int i = 0; i < RUN_COUNT; i++) {
+            long start = System.nanoTime();
+            ScrollPreview scrollPreview = path.run();
+            if (scrollPreview == null || scrollPreview.getVertices() == null) {
+                throw new IllegalStateException("No preview");
+            }
+            millis[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(millis);
+        return millis[RUN_COUNT / 2];
+    }
+
+    public static void main(String[] args) throws IOException {
+        SyntheticSeries series = new SyntheticSeries();
+        series.setPointCount(args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+        series.setSeriesCount(args.length > 1 ? Integer.parseInt(args[1]) : 2);
+        File directory = new File(args.length > 2 ? args[2] : System.getProperty("java.io.tmpdir"));
+
+        final StartupBenchmark benchmark = new StartupBenchmark(series, directory);
+        try {
+            double writeMillis = benchmark.writeFiles();
+            double coldMillis = measure(new Path() {
+                @Override
+                public ScrollPreview run() {
+                    return benchmark.cold();
+                }
+            });
+            double warmMillis = measure(new Path() {
+                @Override
+                public ScrollPreview run() throws IOException {
+                    return benchmark.warm();
+                }
+            });
+            double verifyMillis = measure(new Path() {
+                @Override
+                public ScrollPreview run() throws IOException {
+                    return benchmark.verify();
+                }
+            });
+            double corruptMillis = measure(new Path() {
+                @Override
+                public ScrollPreview run() {
+                    return benchmark.corrupt();
+                }
+            });
+
+            System.out.println(String.format(Locale.US, "%d points x %d series, state file %.1f MB",
+                    series.getPointCount(), series.getSeriesCount(), benchmark.file.length() / 1e6));
+            System.out.println(String.format(Locale.US, "cold:    %8.2f ms", coldMillis));
+            System.out.println(String.format(Locale.US, "warm:    %8.2f ms", warmMillis));
+            System.out.println(String.format(Locale.US, "verify:  %8.2f ms, after a warm load is shown", verifyMillis));
+            System.out.println(String.format(Locale.US, "corrupt: %8.2f ms", corruptMillis));
+            System.out.println(String.format(Locale.US, "write:   %8.2f ms, in the background", writeMillis));
+        } finally {
+            benchmark.deleteFiles();
+        }
+    }
+}
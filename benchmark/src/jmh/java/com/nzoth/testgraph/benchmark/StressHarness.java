@@ -0,0 +1,243 @@
+package com.nzoth.testgraph.benchmark;
+
+import com.nzoth.testgraph.chart.AxisTicks;
+import com.nzoth.testgraph.chart.ChartViewport;
+import com.nzoth.testgraph.chart.DrawMetrics;
+import com.nzoth.testgraph.chart.DrawMetricsRecorder;
+import com.nzoth.testgraph.chart.LabelCache;
+import com.nzoth.testgraph.chart.SeriesPyramid;
+import com.nzoth.testgraph.chart.SeriesVisibility;
+import com.nzoth.testgraph.chart.SyntheticSeries;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Draws the main graph headless through a scripted pan, zoom and fling over synthetic
+ * data, and prints per-frame percentiles of {@link DrawMetrics} plus bytes allocated per
+ * frame. Unlike the JMH benchmarks the window moves every frame, so label caches, tick
+ * changes and pyramid levels are hit the way scrolling hits them.
+ * <p>
+ * {@code ./gradlew :benchmark:stress -PstressPoints=10000000 -PstressSeries=5 -PstressDistribution=SPIKES}
+ */
+public class StressHarness {
+    private static final float WIDTH = ChartViewportBenchmark.WIDTH;
+    private static final float GRAPH_HEIGHT = ChartViewportBenchmark.GRAPH_HEIGHT;
+    private static final float HOLD_LINE_WIDTH = ChartViewportBenchmark.HOLD_LINE_WIDTH;
+    private static final float MIN_WINDOW_WIDTH = 48;
+    private static final int MAX_TICK_COUNT = 6;
+    private static final int DATE_LABEL_COUNT = 6;
+    private static final int LABEL_CACHE_SIZE = 32;
+
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int PAN_FRAMES = 600;
+    private static final int ZOOM_FRAMES = 300;
+    private static final int FLING_FRAMES = 300;
+    private static final float FLING_FRICTION = 0.985F;
+
+    private final long[] dates;
+    private final long[][] graphArray;
+    private final SeriesPyramid[] pyramids;
+    private final SeriesVisibility visibility;
+    private final ChartViewport viewport = new ChartViewport(HOLD_LINE_WIDTH);
+    private final AxisTicks axisTicks = new AxisTicks(MAX_TICK_COUNT);
+    private final LabelCache dateLabels = LabelCache.forDates(LABEL_CACHE_SIZE, TimeZone.getTimeZone("UTC"));
+    private final LabelCache valueLabels = LabelCache.forBigValues(LABEL_CACHE_SIZE);
+    private final DrawMetrics metrics = new DrawMetrics();
+    private final DrawMetricsRecorder recorder = new DrawMetricsRecorder();
+    private final AllocationCounter allocationCounter = new AllocationCounter();
+    private float[] vertices = new float[0];
+    private long allocatedBytes;
+
+    public StressHarness(SyntheticSeries series) {
+        this.dates = series.createDates();
+        this.graphArray = series.createValues();
+        this.pyramids = new SeriesPyramid[graphArray.length];
+        for (int i = 0; i < graphArray.length; i++) {
+            pyramids[i] = new SeriesPyramid(graphArray[i], dates.length);
+        }
+        this.visibility = new SeriesVisibility(graphArray.length);
+
+        viewport.setSize(WIDTH, GRAPH_HEIGHT);
+        viewport.setPointCount(dates.length);
+    }
+
+    /**
+     * Runs the script {@code WARMUP_ROUNDS} times unrecorded, then once recorded.
+     */
+    public void run() {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runScript();
+        }
+        recorder.reset();
+        allocatedBytes = 0;
+        runScript();
+    }
+
+    public DrawMetricsRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * @return bytes allocated per recorded frame, or -1 if the JVM doesn't count them
+     */
+    public double getAllocatedBytesPerFrame() {
+        if (!allocationCounter.isSupported()) {
+            return -1;
+        }
+        return recorder.getFrameCount() > 0 ? allocatedBytes / (double) recorder.getFrameCount() : 0;
+    }
+
+    private void runScript() {
+        float windowWidth = WIDTH * 0.05F;
+        float right = WIDTH - HOLD_LINE_WIDTH / 2;
+
+        //pan a narrow window from the newest point to the oldest
+        float panDistance = right - windowWidth - HOLD_LINE_WIDTH / 2;
+        for (int frame = 0; frame <= PAN_FRAMES; frame++) {
+            float r = right - panDistance * frame / PAN_FRAMES;
+            drawFrame(r - windowWidth, r);
+        }
+
+        //zoom out around the middle to the whole history, then back in to the narrowest window
+        float centerX = WIDTH / 2;
+        float fullWidth = WIDTH - HOLD_LINE_WIDTH;
+        for (int frame = 0; frame <= ZOOM_FRAMES; frame++) {
+            float width = getZoomWidth(windowWidth, fullWidth, frame / (float) ZOOM_FRAMES);
+            drawFrame(centerX - width / 2, centerX + width / 2);
+        }
+        for (int frame = 0; frame <= ZOOM_FRAMES; frame++) {
+            float width = getZoomWidth(fullWidth, MIN_WINDOW_WIDTH, frame / (float) ZOOM_FRAMES);
+            drawFrame(centerX - width / 2, centerX + width / 2);
+        }
+
+        //fling the narrowest window to the newest end, slowing down every frame
+        float left = centerX - MIN_WINDOW_WIDTH / 2;
+        float maxLeft = right - MIN_WINDOW_WIDTH;
+        float velocity = (maxLeft - left) * (1 - FLING_FRICTION) * 1.5F;
+        for (int frame = 0; frame < FLING_FRAMES; frame++) {
+            left = Math.min(left + velocity, maxLeft);
+            velocity *= FLING_FRICTION;
+            drawFrame(left, left + MIN_WINDOW_WIDTH);
+        }
+    }
+
+    //geometric, so every frame changes the zoom by the same factor
+    private static float getZoomWidth(float from, float to, float progress) {
+        return (float) (from * Math.pow(to / from, progress));
+    }
+
+    /**
+     * Does what GraphView.onDraw does for the main graph, minus the canvas.
+     */
+    private void drawFrame(float holdLineLeftX, float holdLineRightX) {
+        long allocatedStart = allocationCounter.getAllocatedBytes();
+        long startTime = System.nanoTime();
+        metrics.reset();
+
+        viewport.updateScale(holdLineLeftX, holdLineRightX);
+        viewport.updateVisibleRange(holdLineLeftX, holdLineRightX);
+
+        long time = System.nanoTime();
+        float maxY = viewport.getMaxY(graphArray, pyramids, visibility);
+        boolean ticksChanged = axisTicks.update(maxY);
+        metrics.addMaxYTime(System.nanoTime() - time);
+
+        time = System.nanoTime();
+        int floatCount = viewport.getVertexFloatCount();
+        if (vertices.length < floatCount) {
+            vertices = new float[floatCount];
+        }
+        float axisMax = axisTicks.getAxisMax();
+        for (int i = 0; i < graphArray.length; i++) {
+            int written = viewport.buildVertices(vertices, graphArray[i], pyramids[i], axisMax);
+            metrics.addSegmentCount(written / 4);
+            metrics.addVisiblePointCount(viewport.getVisibleCount());
+        }
+        metrics.addVertexTime(System.nanoTime() - time);
+
+        time = System.nanoTime();
+        if (ticksChanged) {
+            for (int tick = 0; tick < axisTicks.getTickCount(); tick++) {
+                valueLabels.get(axisTicks.getTickValue(tick));
+            }
+        }
+        float step = Math.max(viewport.getDateLabelStep(DATE_LABEL_COUNT), 1);
+        for (float screenPoint = viewport.getDateLabelStart(step); screenPoint < viewport.getEndScreenPoint(); screenPoint += step) {
+            long date = dates[viewport.getArrayPosition((int) screenPoint)];
+            dateLabels.get(date);
+        }
+        metrics.addLabelTime(System.nanoTime() - time);
+
+        metrics.setTotalTime(System.nanoTime() - startTime);
+        allocatedBytes += allocationCounter.getAllocatedBytes() - allocatedStart;
+        recorder.onDrawMetrics(metrics);
+    }
+
+    /**
+     * Reads bytes allocated by the current thread from HotSpot's ThreadMXBean. It is looked
+     * up by reflection, the type isn't part of the Java 7 API the module compiles against.
+     */
+    private static class AllocationCounter {
+        private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        private final java.lang.reflect.Method method;
+
+        AllocationCounter() {
+            java.lang.reflect.Method method = null;
+            try {
+                method = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+                method.invoke(threadBean, Thread.currentThread().getId());
+            } catch (Exception e) {
+                //not HotSpot, or allocation counting is off
+                method = null;
+            }
+            this.method = method;
+        }
+
+        boolean isSupported() {
+            return method != null;
+        }
+
+        long getAllocatedBytes() {
+            if (method == null) {
+                return 0;
+            }
+            try {
+                return (Long) method.invoke(threadBean, Thread.currentThread().getId());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * @param args point count, series count and {@link SyntheticSeries.Distribution} name,
+     *             all optional
+     */
+    public static void main(String[] args) throws IOException {
+        SyntheticSeries series = new SyntheticSeries();
+        series.setPointCount(args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+        series.setSeriesCount(args.length > 1 ? Integer.parseInt(args[1]) : 2);
+        if (args.length > 2) {
+            series.setDistribution(SyntheticSeries.Distribution.valueOf(args[2].toUpperCase(Locale.US)));
+        }
+
+        StressHarness harness = new StressHarness(series);
+        harness.run();
+
+        Writer writer = new OutputStreamWriter(System.out, "UTF-8");
+        writer.write(String.format(Locale.US, "%d points x %d series, %s%n",
+                series.getPointCount(), series.getSeriesCount(), series.getDistribution()));
+        harness.getRecorder().writeSummary(writer);
+        double allocated = harness.getAllocatedBytesPerFrame();
+        writer.write(allocated < 0
+                ? String.format(Locale.US, "allocated: not supported by this JVM%n")
+                : String.format(Locale.US, "allocated: %.1f bytes/frame%n", allocated));
+        writer.flush();
+    }
+}
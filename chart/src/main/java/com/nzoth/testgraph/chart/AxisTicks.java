@@ -0,0 +1,108 @@
+package com.nzoth.testgraph.chart;
+
+/**
+ * Y axis ticks at a "nice" step of 1, 2 or 5 times a power of ten, starting at 0. The axis
+ * ends at the first multiple of the step above the visible max, with at most
+ * {@code maxTickCount} ticks below it.
+ * <p>
+ * Ticks hold until the max leaves them: right away when it grows past the axis, but only
+ * once it is well inside a smaller axis when it shrinks, so a max moving around a boundary
+ * while panning doesn't flip the labels and grid back and forth.
+ */
+public class AxisTicks {
+    /**
+     * A smaller axis is taken once the max is below this part of it.
+     */
+    static final double SHRINK_FRACTION = 0.9;
+
+    private final int maxTickCount;
+    private long step;
+    private int tickCount;
+
+    public AxisTicks(int maxTickCount) {
+        this.maxTickCount = maxTickCount;
+    }
+
+    /**
+     * Drops the ticks, the next {@link #update} takes whatever fits.
+     */
+    public void reset() {
+        step = 0;
+        tickCount = 0;
+    }
+
+    /**
+     * @param maxY the visible max, or NaN to keep the ticks
+     * @return true if the ticks changed
+     */
+    public boolean update(float maxY) {
+        if (Float.isNaN(maxY)) {
+            return false;
+        }
+
+        long axisMax = getAxisMax();
+        //shrinking, only to an axis the max stays clearly inside of; without ticks, a zero
+        //or negative max is not inside the empty axis, it takes whatever fits
+        boolean shrinking = hasTicks() && maxY <= axisMax;
+        double fitMaxY = shrinking ? maxY / SHRINK_FRACTION : maxY;
+
+        long newStep = getStep(fitMaxY, maxTickCount);
+        int newTickCount = getTickCount(fitMaxY, newStep);
+        long newAxisMax = newStep * newTickCount;
+        if (hasTicks() && (shrinking ? newAxisMax >= axisMax : newAxisMax == axisMax)) {
+            return false;
+        }
+        step = newStep;
+        tickCount = newTickCount;
+        return true;
+    }
+
+    public boolean hasTicks() {
+        return tickCount > 0;
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    /**
+     * @return number of ticks from 0 up, the axis max itself has none
+     */
+    public int getTickCount() {
+        return tickCount;
+    }
+
+    public long getTickValue(int tick) {
+        return tick * step;
+    }
+
+    /**
+     * @return value at the top of the axis
+     */
+    public long getAxisMax() {
+        return step * tickCount;
+    }
+
+    /**
+     * @return the smallest nice step that needs at most {@code maxTickCount} ticks below
+     * {@code maxY}
+     */
+    static long getStep(double maxY, int maxTickCount) {
+        double minStep = maxY / maxTickCount;
+        long magnitude = 1;
+        while (magnitude <= Long.MAX_VALUE / 10 && magnitude * 10 <= minStep) {
+            magnitude *= 10;
+        }
+        if (magnitude >= minStep) {
+            return magnitude;
+        }
+        if (magnitude * 2 >= minStep) {
+            return magnitude * 2;
+        }
+        return magnitude * 5 >= minStep ? magnitude * 5 : magnitude * 10;
+    }
+
+    static int getTickCount(double maxY, long step) {
+        return Math.max((int) Math.ceil(maxY / step), 1);
+    }
+}
@@ -0,0 +1,159 @@
+package com.nzoth.testgraph.chart;
+
+import java.util.TimeZone;
+
+/**
+ * Lays out a still image of a range of a chart the way {@code GraphView} draws its main
+ * graph: grid lines at the {@link AxisTicks}, the lines of every series built by
+ * {@link ChartViewport#buildVertices}, value labels over the grid and date labels below
+ * it. What is drawn goes to a {@link Sink}, so the same layout ends up on an Android
+ * canvas or in an SVG file.
+ * <p>
+ * Not thread safe, but images are independent; use one instance per thread.
+ */
+public class ChartImage {
+    public static final int GRID_COLOR = 0xFFCCCCCC;
+    public static final int LABEL_COLOR = 0xFF888888;
+    public static final int BACKGROUND_COLOR = 0xFFFFFFFF;
+
+    private static final int MAX_TICK_COUNT = 6;
+    //date labels across the width
+    private static final int DATE_LABEL_COUNT = 5;
+    private static final int LABEL_CACHE_SIZE = 16;
+
+    private final int width;
+    private final int height;
+    private final float textSize;
+    private final float textPadding;
+    private final float lineWidth;
+    private final float graphHeight;
+    private final ChartViewport viewport = new ChartViewport(0);
+    private final AxisTicks axisTicks = new AxisTicks(MAX_TICK_COUNT);
+    private final LabelCache valueLabels = LabelCache.forBigValues(LABEL_CACHE_SIZE);
+    private final LabelCache dateLabels;
+    private final float[] gridLine = new float[4];
+    private float[] vertices = new float[0];
+
+    /**
+     * Receives the image in drawing order. Colors are ARGB.
+     */
+    public interface Sink {
+        void drawLines(float[] segments, int count, int color, float lineWidth);
+
+        /**
+         * @param alignRight true if {@code x} is where the text ends instead of where it starts
+         */
+        void drawText(char[] text, int length, float x, float y, int color, boolean alignRight);
+    }
+
+    /**
+     * @param textSize    size of the labels, the graph takes the height above the date labels
+     * @param textPadding space around the labels
+     * @param lineWidth   width of the series lines
+     */
+    public ChartImage(int width, int height, float textSize, float textPadding, float lineWidth, TimeZone timeZone) {
+        this.width = width;
+        this.height = height;
+        this.textSize = textSize;
+        this.textPadding = textPadding;
+        this.lineWidth = lineWidth;
+        this.graphHeight = height - (textSize + textPadding * 2);
+        this.dateLabels = LabelCache.forDates(LABEL_CACHE_SIZE, timeZone);
+        this.viewport.setSize(width, graphHeight);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public LineDownsampler getLineDownsampler() {
+        return viewport.getLineDownsampler();
+    }
+
+    /**
+     * Draws array positions {@code [from, to)} of all series across the whole width.
+     *
+     * @param pyramids   one per series, or null to reduce the range from the points
+     *                   themselves, which is O(range) instead of O(log n)
+     * @param pointCount number of points, arrays may be longer
+     * @throws IllegalArgumentException if the range has fewer than 2 points
+     */
+    public void draw(
+            long[] dateList,
+            long[][] graphList,
+            SeriesPyramid[] pyramids,
+            int[] colorList,
+            int pointCount,
+            int from,
+            int to,
+            Sink sink
+    ) {
+        if (from < 0 || to > pointCount || to - from < 2) {
+            throw new IllegalArgumentException("Can't draw points " + from + " to " + to + " of " + pointCount);
+        }
+
+        viewport.setPointCount(pointCount);
+        viewport.setVisibleRange(from, to);
+        float maxY = 0;
+        for (long[] graph : graphList) {
+            for (int i = from; i < to; i++) {
+                maxY = Math.max(maxY, graph[i]);
+            }
+        }
+        axisTicks.reset();
+        axisTicks.update(maxY);
+        //all values 0 or below get no ticks
+        float axisMax = axisTicks.hasTicks() ? axisTicks.getAxisMax() : 1;
+
+        drawGrid(sink);
+        int floatCount = viewport.getVertexFloatCount();
+        if (vertices.length < floatCount) {
+            vertices = new float[floatCount];
+        }
+        for (int i = 0; i < graphList.length; i++) {
+            int size = viewport.buildVertices(vertices, graphList[i], pyramids != null ? pyramids[i] : null, axisMax);
+            sink.drawLines(vertices, size, colorList[i], lineWidth);
+        }
+        drawValueLabels(sink);
+        drawDateLabels(dateList, sink);
+    }
+
+    private void drawGrid(Sink sink) {
+        float rowHeight = graphHeight / axisTicks.getTickCount();
+        for (int i = 0; i < axisTicks.getTickCount(); i++) {
+            float y = (i + 1) * rowHeight;
+            gridLine[0] = 0;
+            gridLine[1] = y;
+            gridLine[2] = width;
+            gridLine[3] = y;
+            sink.drawLines(gridLine, 4, GRID_COLOR, 1);
+        }
+    }
+
+    private void drawValueLabels(Sink sink) {
+        float rowHeight = graphHeight / axisTicks.getTickCount();
+        for (int i = 0; i < axisTicks.getTickCount(); i++) {
+            int slot = valueLabels.get(axisTicks.getTickValue(i));
+            float y = graphHeight - i * rowHeight - textPadding;
+            sink.drawText(valueLabels.getChars(slot), valueLabels.getLength(slot), textPadding, y, LABEL_COLOR, false);
+        }
+    }
+
+    //aligned to the step like GraphView, labels end at their point
+    private void drawDateLabels(long[] dateList, Sink sink) {
+        float step = Math.max(viewport.getDateLabelStep(DATE_LABEL_COUNT), 1);
+        float y = graphHeight + textSize + textPadding;
+        for (float screenPoint = viewport.getDateLabelStart(step); screenPoint < viewport.getEndScreenPoint(); screenPoint += step) {
+            float x = viewport.getScreenPointX((int) screenPoint);
+            if (x > width) {
+                continue;
+            }
+            int slot = dateLabels.get(dateList[viewport.getArrayPosition((int) screenPoint)]);
+            sink.drawText(dateLabels.getChars(slot), dateLabels.getLength(slot), x, y, LABEL_COLOR, true);
+        }
+    }
+}
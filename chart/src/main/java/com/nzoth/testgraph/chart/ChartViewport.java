@@ -0,0 +1,410 @@
+package com.nzoth.testgraph.chart;
+
+/**
+ * Maps the window selected in the scroll block to the main graph and builds what the
+ * main graph draws for it.
+ * <p>
+ * Points are addressed as screen points, counting from the newest point at 0, while
+ * series arrays are in chronological order; {@link #getArrayPosition} converts between
+ * them. The window is given by the x of the left and right hold lines of the scroll
+ * block, both are centres of lines {@code holdLineWidth} wide.
+ */
+public class ChartViewport {
+    private final float holdLineWidth;
+    private final float holdLineWidthHalf;
+    private final LineDownsampler lineDownsampler = new LineDownsampler(LineDownsampler.Mode.M4);
+
+    private float width;
+    private float graphHeight;
+    private int pointCount;
+
+    private float lineWeight;
+    private float sizeCoeficient;
+
+    private float startScrollX;
+    private float endScrollX;
+    private int startScreenPoint;
+    private int endScreenPoint;
+
+    public ChartViewport(float holdLineWidth) {
+        this.holdLineWidth = holdLineWidth;
+        this.holdLineWidthHalf = holdLineWidth / 2;
+    }
+
+    public LineDownsampler getLineDownsampler() {
+        return lineDownsampler;
+    }
+
+    /**
+     * @param width       width of the view, the scroll block spans all of it
+     * @param graphHeight height of the main graph, values are drawn from its bottom up
+     */
+    public void setSize(float width, float graphHeight) {
+        this.width = width;
+        this.graphHeight = graphHeight;
+    }
+
+    public float getWidth() {
+        return width;
+    }
+
+    public float getGraphHeight() {
+        return graphHeight;
+    }
+
+    public void setPointCount(int pointCount) {
+        this.pointCount = pointCount;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * Updates the zoom for a window of a new width. Panning keeps the width, so it only
+     * needs {@link #updateVisibleRange}.
+     */
+    public void updateScale(float holdLineLeftX, float holdLineRightX) {
+        float itemsInScrollBlock = (holdLineRightX - holdLineLeftX + holdLineWidth) / (width / pointCount);
+        lineWeight = width / itemsInScrollBlock;
+
+        float linesCount = pointCount - 1;
+        float visibleGraphLinesCount = width / lineWeight;
+        sizeCoeficient = linesCount / visibleGraphLinesCount;
+    }
+
+    /**
+     * @return width of one line of the main graph
+     */
+    public float getLineWeight() {
+        return lineWeight;
+    }
+
+    /**
+     * @return how many pixels the main graph moves per pixel of the scroll block
+     */
+    public float getSizeCoeficient() {
+        return sizeCoeficient;
+    }
+
+    /**
+     * Finds the points drawn for the window at its current position.
+     */
+    public void updateVisibleRange(float holdLineLeftX, float holdLineRightX) {
+        startScrollX = (-holdLineRightX - holdLineWidthHalf + width) * sizeCoeficient;
+        endScrollX = (-holdLineLeftX + holdLineWidthHalf + width) * sizeCoeficient;
+
+        startScreenPoint = getPreviousPosition((int) Math.ceil(startScrollX / lineWeight));
+        int endScreenPointTerm = (int) Math.ceil(endScrollX / lineWeight) + 1;
+        endScreenPoint = pointCount > endScreenPointTerm ? endScreenPointTerm : pointCount;
+    }
+
+    /**
+     * Spreads array positions {@code [from, to)} over the whole width, for drawing a fixed
+     * range without a scroll block, like an export. Takes the place of both
+     * {@link #updateScale} and {@link #updateVisibleRange}.
+     */
+    public void setVisibleRange(int from, int to) {
+        lineWeight = width / (to - 1 - from);
+        sizeCoeficient = (pointCount - 1) / (width / lineWeight);
+        endScrollX = width + lineWeight * (pointCount - to);
+        startScrollX = endScrollX - width;
+
+        //what updateVisibleRange finds for these scrolls, without the rounding
+        startScreenPoint = getPreviousPosition(pointCount - to);
+        endScreenPoint = pointCount - from;
+    }
+
+    /**
+     * @return x of the newest point
+     */
+    public float getScrollX() {
+        return endScrollX;
+    }
+
+    public int getStartScreenPoint() {
+        return startScreenPoint;
+    }
+
+    public int getEndScreenPoint() {
+        return endScreenPoint;
+    }
+
+    /**
+     * @return the screen point drawn nearest to {@code x}. Points are drawn
+     * {@link #getLineWeight} apart whatever their dates, so this is O(1) and matches what
+     * {@link #buildVertices} drew.
+     */
+    public int getScreenPointAt(float x) {
+        int screenPoint = Math.round((endScrollX - x) / lineWeight);
+        if (screenPoint < 0) {
+            return 0;
+        }
+        return screenPoint < pointCount ? screenPoint : pointCount - 1;
+    }
+
+    /**
+     * @return x the screen point is drawn at
+     */
+    public float getScreenPointX(int screenPoint) {
+        return endScrollX - lineWeight * screenPoint;
+    }
+
+    /**
+     * @return y a value is drawn at for the given max
+     */
+    public float getValueY(long value, float maxY) {
+        return graphHeight - value * (graphHeight / maxY);
+    }
+
+    /**
+     * @return number of lines in the visible range
+     */
+    public int getVisibleCount() {
+        return endScreenPoint - startScreenPoint;
+    }
+
+    /**
+     * @return the highest value in the visible range, with the lines cut by the edges of
+     * the window interpolated at the edge
+     */
+    public float getMaxY(long[][] graphArray, RangeMaxIndex combinedMaxIndex) {
+        float maxY = 0;
+
+        for (long[] array : graphArray) {
+            maxY = getEdgeMaxY(array, maxY);
+        }
+
+        //points between the edges are taken as they are
+        float innerMaxY = combinedMaxIndex.getMax(getInnerFrom(), getInnerTo());
+        return maxY < innerMaxY ? innerMaxY : maxY;
+    }
+
+    /**
+     * Like {@link #getMaxY(long[][], RangeMaxIndex)} over the visible series only, with the
+     * inner range read from their pyramids in O(log n) each.
+     *
+     * @return the max, or NaN if no series is visible
+     */
+    public float getMaxY(long[][] graphArray, SeriesPyramid[] pyramids, SeriesVisibility visibility) {
+        float maxY = 0;
+        boolean anyVisible = false;
+
+        for (int i = 0; i < graphArray.length; i++) {
+            if (!visibility.isVisible(i)) {
+                continue;
+            }
+            anyVisible = true;
+            maxY = getEdgeMaxY(graphArray[i], maxY);
+            float innerMaxY = pyramids[i].getMax(getInnerFrom(), getInnerTo());
+            maxY = maxY < innerMaxY ? innerMaxY : maxY;
+        }
+        return anyVisible ? maxY : Float.NaN;
+    }
+
+    /**
+     * Like {@link #getMaxY(long[][], RangeMaxIndex)} for one array, the total of a
+     * {@link StackedSeries}.
+     */
+    public float getMaxY(long[] array, RangeMaxIndex maxIndex) {
+        float maxY = getEdgeMaxY(array, 0);
+        float innerMaxY = maxIndex.getMax(getInnerFrom(), getInnerTo());
+        return maxY < innerMaxY ? innerMaxY : maxY;
+    }
+
+    private float getEdgeMaxY(long[] array, float maxY) {
+        float startY1 = array[getArrayPosition(pointCount - 1 > startScreenPoint ? startScreenPoint + 1 : pointCount - 1)];
+        float startY2 = array[getArrayPosition(startScreenPoint)];
+        float startX3 = 1 - (startScrollX / lineWeight - startScreenPoint);
+        float startPosition = getPointOnLine(startY1, startY2, startX3);
+        maxY = maxY < startPosition ? startPosition : maxY;
+
+        float endY1 = array[getArrayPosition(endScreenPoint >= 2 ? endScreenPoint - 2 : endScreenPoint)];
+        float endY2 = array[getArrayPosition(endScreenPoint >= 1 ? endScreenPoint - 1 : endScreenPoint)];
+        float endX3 = endScrollX / lineWeight - (float) Math.floor(endScrollX / lineWeight);
+        float endPosition = getPointOnLine(endY1, endY2, endX3);
+        return maxY < endPosition ? endPosition : maxY;
+    }
+
+    private int getInnerFrom() {
+        return getArrayPosition(endScreenPoint - 2);
+    }
+
+    private int getInnerTo() {
+        return getArrayPosition(startScreenPoint + 1) + 1;
+    }
+
+    /**
+     * @return the array size {@link #buildVertices} needs for the visible range
+     */
+    public int getVertexFloatCount() {
+        int visibleCount = getVisibleCount();
+        if (lineDownsampler.shouldDownsample(visibleCount + 1, lineWeight)) {
+            return lineDownsampler.getMaxFloatCount(visibleCount + 1, lineWeight);
+        }
+        return visibleCount * 4;
+    }
+
+    /**
+     * Writes the visible lines of a series as {@code drawLines} segments.
+     *
+     * @param pyramid pyramid of {@code fromArray} used when zoomed out, or null
+     * @param maxY    value drawn at the top of the graph
+     * @return the number of floats written
+     */
+    public int buildVertices(float[] toArray, long[] fromArray, SeriesPyramid pyramid, float maxY) {
+        int visibleCount = getVisibleCount();
+        float itemY = graphHeight / maxY;
+
+        //more points than pixels, keep only what is visible per pixel column
+        if (lineDownsampler.shouldDownsample(visibleCount + 1, lineWeight)) {
+            return lineDownsampler.build(
+                    fromArray,
+                    pyramid,
+                    getArrayPosition(startScreenPoint + visibleCount - 1),
+                    getArrayPosition(getPreviousPosition(startScreenPoint)) + 1,
+                    endScrollX - lineWeight * (pointCount - 1),
+                    lineWeight,
+                    graphHeight,
+                    itemY,
+                    toArray
+            );
+        }
+
+        for (int i = 0; i < visibleCount; i++) {
+            int toArrayPosition = i * 4;
+            int rootArrayPosition = i + startScreenPoint;
+            int previousPosition = getPreviousPosition(rootArrayPosition);
+
+            toArray[toArrayPosition] = endScrollX - (previousPosition > 0 ? lineWeight * previousPosition : 0);
+            toArray[toArrayPosition + 1] = graphHeight - (fromArray[getArrayPosition(previousPosition)] * itemY);
+            toArray[toArrayPosition + 2] = endScrollX - (i > 0 ? lineWeight * rootArrayPosition : 0);
+            toArray[toArrayPosition + 3] = graphHeight - (fromArray[getArrayPosition(rootArrayPosition)] * itemY);
+        }
+        return visibleCount * 4;
+    }
+
+    /**
+     * @return the array size {@link #buildAreaEdge} needs for the visible range
+     */
+    public int getAreaEdgeFloatCount() {
+        int edgePointCount = getVisibleCount() + 1;
+        int columnCount = (int) (lineWeight * (edgePointCount - 1) / lineDownsampler.getColumnWidth()) + 2;
+        return Math.min(edgePointCount, columnCount + 2) * 2;
+    }
+
+    /**
+     * Writes the top edge of a stacked area over the visible range as {@code x, y} pairs
+     * from left to right. Edges of all series of a chart get the same x, so the area
+     * between two of them is the edge of one followed by the other one reversed.
+     * <p>
+     * With several points per pixel column a stacked edge takes the max of every column
+     * from its pyramid, so spikes stay visible, and a percentage edge its first point;
+     * either way an edge never drops below the one of the series under it. Fading series
+     * count by their alpha, see {@link StackedSeries#getShownValue}.
+     *
+     * @param series column of {@code stackedSeries} to draw, percentage charts draw it as
+     *               a percentage of the total
+     * @param maxY   value drawn at the top of the graph
+     * @return the number of floats written
+     */
+    public int buildAreaEdge(float[] toArray, StackedSeries stackedSeries, int series, float maxY) {
+        int from = getArrayPosition(endScreenPoint - 1);
+        int to = getArrayPosition(getPreviousPosition(startScreenPoint)) + 1;
+        float originX = endScrollX - lineWeight * (pointCount - 1);
+        float itemY = graphHeight / maxY;
+        float columnWidth = lineDownsampler.getColumnWidth();
+
+        int position = 0;
+        if (lineWeight >= columnWidth) {
+            for (int i = from; i < to; i++) {
+                toArray[position] = originX + lineWeight * i;
+                toArray[position + 1] = graphHeight - getStackValue(stackedSeries, series, i) * itemY;
+                position += 2;
+            }
+            return position;
+        }
+
+        SeriesPyramid pyramid = stackedSeries.getPyramid(series);
+
+        int i = from;
+        int column = Integer.MIN_VALUE;
+        while (i < to) {
+            //in double, float rounding at millions of points would split columns
+            float x = originX + lineWeight * i;
+            column = Math.max(column + 1, (int) Math.floor((originX + (double) lineWeight * i) / columnWidth));
+            int next = (int) Math.ceil(((column + 1) * (double) columnWidth - originX) / lineWeight);
+            next = Math.min(Math.max(next, i + 1), to);
+
+            //fades are taken at the first point, they last only a moment
+            float value;
+            if (stackedSeries.isPercentage()) {
+                value = getStackValue(stackedSeries, series, i);
+            } else if (pyramid != null) {
+                value = pyramid.getMax(i, next) + stackedSeries.getFadeOffset(series, i);
+            } else {
+                value = scanMax(stackedSeries.getStack(series), i, next) + stackedSeries.getFadeOffset(series, i);
+            }
+            toArray[position] = x;
+            toArray[position + 1] = graphHeight - value * itemY;
+            position += 2;
+
+            //the newest point too, so the area reaches the edge of the range
+            if (next == to && i < to - 1) {
+                toArray[position] = originX + lineWeight * (to - 1);
+                toArray[position + 1] = graphHeight - getStackValue(stackedSeries, series, to - 1) * itemY;
+                position += 2;
+            }
+            i = next;
+        }
+        return position;
+    }
+
+    private float getStackValue(StackedSeries stackedSeries, int series, int position) {
+        float value = stackedSeries.getShownValue(series, position);
+        if (!stackedSeries.isPercentage()) {
+            return value;
+        }
+        float sum = stackedSeries.getShownValue(stackedSeries.getSeriesCount() - 1, position);
+        return sum > 0 ? value * StackedSeries.PERCENTAGE_MAX / sum : 0;
+    }
+
+    private long scanMax(long[] array, int from, int to) {
+        long max = Long.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            max = max < array[i] ? array[i] : max;
+        }
+        return max;
+    }
+
+    /**
+     * @param labelDistance how many label widths fit across the view
+     * @return screen points between two date labels
+     */
+    public float getDateLabelStep(float labelDistance) {
+        return width / lineWeight / labelDistance;
+    }
+
+    /**
+     * @return screen point of the first date label, aligned to the step so labels
+     * don't move while panning
+     */
+    public float getDateLabelStart(float step) {
+        return startScreenPoint - startScreenPoint % step;
+    }
+
+    //screen points count from the newest point, arrays are in chronological order
+    public int getArrayPosition(int screenPoint) {
+        return pointCount - 1 - screenPoint;
+    }
+
+    private float getPointOnLine(float y1, float y2, float x3) {
+        float x1 = 0F;
+        float x2 = 1F;
+        return (x3 - x1) * (y1 - y2) / (x1 - x2) + y1;
+    }
+
+    private int getPreviousPosition(int position) {
+        return position <= 0 ? 0 : position - 1;
+    }
+}
@@ -0,0 +1,512 @@
+package com.nzoth.testgraph.chart;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+
+/**
+ * Saves what is derived from the points of a chart, so a warm start reads it instead of
+ * indexing every point again: the element-wise max of the series with the block maxima
+ * of its {@link RangeMaxIndex}, the {@link SeriesPyramid} of every series and, if one was
+ * built, the {@link ScrollPreview} vertices.
+ * <p>
+ * A file is found by a {@link #hashKey key} of the points, cheap to compute before it is
+ * read, and belongs to the size of the preview and one {@link #VERSION} of this class.
+ * {@link #read} maps the whole file once, checks all of that and a checksum of the rest,
+ * and throws an {@link IOException} for any mismatch, so the caller builds the state from
+ * the points instead. The key only samples the points; the {@link #hashContent content
+ * hash} of all of them is saved too, for the caller to check once the state is in use,
+ * see {@link #readContentHash}. Layout, little-endian, every field a long:
+ * <pre>
+ * header:   magic, version, key, contentHash, pointCount, seriesCount,
+ *           preview width and height, preview scroll block height and margin,
+ *           checksum of the rest
+ * combined: pointCount values, block maxima
+ * pyramids: seriesCount * (levelCount, levelCount * (bucket minima, bucket maxima))
+ * preview:  0, or 1, builtMaxY, line width and height,
+ *           seriesCount * (floatCount or -1 if hidden, floats two to a long)
+ * </pre>
+ * Two floats share a long, the first in the low half. Counts of blocks and buckets follow
+ * from {@code pointCount} and are not stored.
+ */
+public class DerivedStateFile {
+    public static final int VERSION = 2;
+
+    //"GCHSTATE"
+    private static final long MAGIC = 0x4554415453484347L;
+    private static final int HEADER_SIZE = 9 * 8;
+    private static final int CONTENT_HASH_OFFSET = 3 * 8;
+    //points of every series sampled into a key
+    private static final int KEY_SAMPLE_COUNT = 64;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long HASH_SEED = 0x2545F4914F6CDD1DL;
+
+    private DerivedStateFile() {
+    }
+
+    /**
+     * The state read by {@link #read}, referencing the arrays it was read for.
+     */
+    public static class State {
+        private final long[] combinedValues;
+        private final RangeMaxIndex combinedMaxIndex;
+        private final SeriesPyramid[] pyramids;
+
+        State(long[] combinedValues, RangeMaxIndex combinedMaxIndex, SeriesPyramid[] pyramids) {
+            this.combinedValues = combinedValues;
+            this.combinedMaxIndex = combinedMaxIndex;
+            this.pyramids = pyramids;
+        }
+
+        /**
+         * @return the element-wise max of all series, exactly {@code pointCount} longs
+         */
+        public long[] getCombinedValues() {
+            return combinedValues;
+        }
+
+        public RangeMaxIndex getCombinedMaxIndex() {
+            return combinedMaxIndex;
+        }
+
+        public SeriesPyramid[] getPyramids() {
+            return pyramids;
+        }
+    }
+
+    /**
+     * The state of a chart as it is when created, to be written on another thread while
+     * the chart keeps growing: appends only write past the captured points, into the last
+     * block and buckets, which {@link #read} fills again, or into grown copies.
+     */
+    public static class Snapshot {
+        private final int pointCount;
+        private final long[] combinedValues;
+        private final long[] tree;
+        private final int leafCount;
+        private final SeriesPyramid[] pyramids;
+        private final float width;
+        private final float height;
+        private final float scrollBlockHeight;
+        private final float margin;
+        private final float[][] vertices;
+        private final int[] floatCounts;
+        private final long builtMaxY;
+        private final float lineWidth;
+        private final float lineHeight;
+
+        /**
+         * @param combinedValues   element-wise max of all series, indexed by {@code combinedMaxIndex}
+         * @param pyramids         pyramid of every series, all of {@code pointCount} points
+         * @param scrollPreview    preview the file is for, or null; its vertices are saved only
+         *                         if it was built for exactly {@code pointCount} points
+         */
+        public Snapshot(
+                long[] combinedValues,
+                RangeMaxIndex combinedMaxIndex,
+                SeriesPyramid[] pyramids,
+                int pointCount,
+                ScrollPreview scrollPreview
+        ) {
+            this.pointCount = pointCount;
+            this.combinedValues = combinedValues;
+            this.tree = combinedMaxIndex.getTree();
+            this.leafCount = combinedMaxIndex.getLeafCount();
+            this.pyramids = new SeriesPyramid[pyramids.length];
+            for (int i = 0; i < pyramids.length; i++) {
+                this.pyramids[i] = pyramids[i].snapshot();
+            }
+
+            this.width = scrollPreview != null ? scrollPreview.getWidth() : 0;
+            this.height = scrollPreview != null ? scrollPreview.getHeight() : 0;
+            this.scrollBlockHeight = scrollPreview != null ? scrollPreview.getScrollBlockHeight() : 0;
+            this.margin = scrollPreview != null ? scrollPreview.getMargin() : 0;
+            if (scrollPreview != null
+                    && scrollPreview.getVertices() != null
+                    && scrollPreview.getPointCount() == pointCount
+                    && scrollPreview.getBuiltPointCount() == pointCount) {
+                this.vertices = scrollPreview.getVertices().clone();
+                this.floatCounts = new int[vertices.length];
+                for (int i = 0; i < vertices.length; i++) {
+                    floatCounts[i] = scrollPreview.getFloatCount(i);
+                }
+                this.builtMaxY = scrollPreview.getBuiltMaxY();
+                this.lineWidth = scrollPreview.getLineWidth();
+                this.lineHeight = scrollPreview.getLineHeight();
+            } else {
+                this.vertices = null;
+                this.floatCounts = null;
+                this.builtMaxY = 0;
+                this.lineWidth = 0;
+                this.lineHeight = 0;
+            }
+        }
+
+        private void writePayload(Output output) throws IOException {
+            output.putLongs(combinedValues, 0, pointCount);
+            output.putLongs(tree, leafCount, RangeMaxIndex.getBlockCount(pointCount));
+
+            for (SeriesPyramid pyramid : pyramids) {
+                output.putLong(pyramid.getLevelCount());
+                for (int level = 0; level < pyramid.getLevelCount(); level++) {
+                    int bucketCount = SeriesPyramid.getBucketCount(level, pointCount);
+                    output.putLongs(pyramid.getMinLevel(level), 0, bucketCount);
+                    output.putLongs(pyramid.getMaxLevel(level), 0, bucketCount);
+                }
+            }
+
+            if (vertices == null) {
+                output.putLong(0);
+                return;
+            }
+            output.putLong(1);
+            output.putLong(builtMaxY);
+            output.putLong(packFloats(lineWidth, lineHeight));
+            for (int i = 0; i < vertices.length; i++) {
+                if (vertices[i] == null) {
+                    output.putLong(-1);
+                } else {
+                    output.putLong(floatCounts[i]);
+                    output.putFloats(vertices[i], floatCounts[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return hash of the first {@code pointCount} points, what a file is matched to
+     */
+    public static long hashContent(long[] dateList, long[][] graphList, int pointCount) {
+        long hash = hash(mix(mix(HASH_SEED, pointCount), graphList.length), dateList, 0, pointCount);
+        for (long[] values : graphList) {
+            hash = hash(hash, values, 0, pointCount);
+        }
+        return hash;
+    }
+
+    /**
+     * @return hash of the point and series count, the first and last date and
+     * {@code KEY_SAMPLE_COUNT} evenly spaced points, what a file is found by; in
+     * O(series count) whatever the point count
+     */
+    public static long hashKey(long[] dateList, long[][] graphList, int pointCount) {
+        long hash = mix(mix(HASH_SEED, pointCount), graphList.length);
+        if (pointCount == 0) {
+            return hash;
+        }
+
+        hash = mix(mix(hash, dateList[0]), dateList[pointCount - 1]);
+        int sampleCount = Math.min(pointCount, KEY_SAMPLE_COUNT);
+        for (int sample = 0; sample < sampleCount; sample++) {
+            int i = (int) ((long) sample * (pointCount - 1) / Math.max(sampleCount - 1, 1));
+            hash = mix(hash, dateList[i]);
+            for (long[] values : graphList) {
+                hash = mix(hash, values[i]);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @param scrollPreview preview the file is for, or null
+     * @return a file name for the state of points with this {@link #hashKey key} and this
+     * size in this version, without an extension
+     */
+    public static String getFileName(long key, ScrollPreview scrollPreview) {
+        return String.format(Locale.US, "%016x_%dx%d_v%d",
+                key,
+                scrollPreview != null ? Math.round(scrollPreview.getWidth()) : 0,
+                scrollPreview != null ? Math.round(scrollPreview.getHeight()) : 0,
+                VERSION);
+    }
+
+    /**
+     * Writes {@code snapshot}, the header last, so a file cut short has no magic.
+     */
+    public static void write(File file, long key, long contentHash, Snapshot snapshot) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(0);
+            FileChannel channel = randomAccessFile.getChannel();
+            channel.position(HEADER_SIZE);
+            Output output = new Output(channel);
+            snapshot.writePayload(output);
+            output.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(MAGIC);
+            header.putLong(VERSION);
+            header.putLong(key);
+            header.putLong(contentHash);
+            header.putLong(snapshot.pointCount);
+            header.putLong(snapshot.pyramids.length);
+            header.putLong(packFloats(snapshot.width, snapshot.height));
+            header.putLong(packFloats(snapshot.scrollBlockHeight, snapshot.margin));
+            header.putLong(output.checksum);
+            header.flip();
+            channel.position(0);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Reads the state of the first {@code pointCount} points of {@code graphList} with one
+     * memory map. Saved preview vertices are restored into {@code scrollPreview}; it has
+     * {@link ScrollPreview#getVertices() vertices} afterwards only if the file had them.
+     *
+     * @param key           {@link #hashKey} of the points
+     * @param scrollPreview preview of the size the file was written for, or null if it was
+     *                      written without one
+     * @throws IOException if the file is not the state of points with this key and this
+     * size, is of another version or is corrupt
+     */
+    public static State read(File file, long key, long[][] graphList, int pointCount, ScrollPreview scrollPreview) throws IOException {
+        ByteBuffer buffer;
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            //the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            randomAccessFile.close();
+        }
+
+        try {
+            return read(buffer.order(ByteOrder.LITTLE_ENDIAN), key, graphList, pointCount, scrollPreview);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated state file", e);
+        }
+    }
+
+    /**
+     * Reads only the header of a file {@link #read} accepted.
+     *
+     * @return {@link #hashContent} of the points the file was written for
+     * @throws IOException if the file is gone, cut short or not a state file of this version
+     */
+    public static long readContentHash(File file) throws IOException {
+        byte[] bytes = new byte[HEADER_SIZE];
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            randomAccessFile.readFully(bytes);
+        } finally {
+            randomAccessFile.close();
+        }
+        ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getLong() != MAGIC || header.getLong() != VERSION) {
+            throw new IOException("Not a state file of version " + VERSION);
+        }
+        return header.getLong(CONTENT_HASH_OFFSET);
+    }
+
+    private static State read(ByteBuffer buffer, long key, long[][] graphList, int pointCount, ScrollPreview scrollPreview) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getLong() != MAGIC) {
+            throw new IOException("Not a state file");
+        }
+        long version = buffer.getLong();
+        if (version != VERSION) {
+            throw new IOException("Unsupported state file version " + version);
+        }
+        if (buffer.getLong() != key) {
+            throw new IOException("State of other points");
+        }
+        //checked by the caller, see readContentHash
+        buffer.getLong();
+        if (buffer.getLong() != pointCount || buffer.getLong() != graphList.length) {
+            throw new IOException("State of other points");
+        }
+        boolean hasPreview = scrollPreview != null;
+        if (buffer.getLong() != packFloats(hasPreview ? scrollPreview.getWidth() : 0, hasPreview ? scrollPreview.getHeight() : 0)
+                || buffer.getLong() != packFloats(hasPreview ? scrollPreview.getScrollBlockHeight() : 0, hasPreview ? scrollPreview.getMargin() : 0)) {
+            throw new IOException("State of another size");
+        }
+        long checksum = buffer.getLong();
+        Input input = new Input(buffer.slice().order(ByteOrder.LITTLE_ENDIAN));
+
+        long[] combinedValues = input.getLongs(pointCount);
+        long[] blockMaxs = input.getLongs(RangeMaxIndex.getBlockCount(pointCount));
+
+        int levelCount = SeriesPyramid.getLevelCount(pointCount);
+        long[][][] minLevelList = new long[graphList.length][levelCount][];
+        long[][][] maxLevelList = new long[graphList.length][levelCount][];
+        for (int i = 0; i < graphList.length; i++) {
+            if (input.getLong() != levelCount) {
+                throw new IOException("Corrupt pyramid");
+            }
+            for (int level = 0; level < levelCount; level++) {
+                int bucketCount = SeriesPyramid.getBucketCount(level, pointCount);
+                minLevelList[i][level] = input.getLongs(bucketCount);
+                maxLevelList[i][level] = input.getLongs(bucketCount);
+            }
+        }
+
+        boolean restorePreview = input.getLong() != 0 && hasPreview;
+        long builtMaxY = 0;
+        long lineSize = 0;
+        float[][] vertices = new float[graphList.length][];
+        if (restorePreview) {
+            builtMaxY = input.getLong();
+            lineSize = input.getLong();
+            for (int i = 0; i < graphList.length; i++) {
+                long floatCount = input.getLong();
+                vertices[i] = floatCount >= 0 ? input.getFloats(floatCount) : null;
+            }
+        }
+        //a preview that isn't restored isn't read, and isn't summed either
+        if (input.checksum != checksum) {
+            throw new IOException("Corrupt state file");
+        }
+
+        RangeMaxIndex combinedMaxIndex = new RangeMaxIndex(combinedValues, pointCount, blockMaxs);
+        SeriesPyramid[] pyramids = new SeriesPyramid[graphList.length];
+        for (int i = 0; i < graphList.length; i++) {
+            pyramids[i] = new SeriesPyramid(graphList[i], pointCount, minLevelList[i], maxLevelList[i]);
+        }
+        if (restorePreview) {
+            int[] floatCounts = new int[graphList.length];
+            boolean[] visibleList = new boolean[graphList.length];
+            for (int i = 0; i < graphList.length; i++) {
+                floatCounts[i] = vertices[i] != null ? vertices[i].length : 0;
+                visibleList[i] = vertices[i] != null;
+            }
+            scrollPreview.restore(vertices, floatCounts, visibleList, pointCount, builtMaxY,
+                    Float.intBitsToFloat((int) lineSize), Float.intBitsToFloat((int) (lineSize >>> 32)));
+        }
+        return new State(combinedValues, combinedMaxIndex, pyramids);
+    }
+
+    private static long packFloats(float low, float high) {
+        return (Float.floatToRawIntBits(low) & 0xFFFFFFFFL) | (long) Float.floatToRawIntBits(high) << 32;
+    }
+
+    private static long mix(long hash, long value) {
+        hash = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    //four lanes, so the multiplies of neighbouring values don't wait for each other
+    private static long hash(long hash, long[] values, int from, int to) {
+        long lane0 = hash;
+        long lane1 = hash + 1;
+        long lane2 = hash + 2;
+        long lane3 = hash + 3;
+        int i = from;
+        for (; i + 4 <= to; i += 4) {
+            lane0 = mix(lane0, values[i]);
+            lane1 = mix(lane1, values[i + 1]);
+            lane2 = mix(lane2, values[i + 2]);
+            lane3 = mix(lane3, values[i + 3]);
+        }
+        for (; i < to; i++) {
+            lane0 = mix(lane0, values[i]);
+        }
+        return mix(mix(mix(lane0, lane1), lane2), lane3);
+    }
+
+    private static long hash(long hash, float[] values, int count) {
+        long lane0 = hash;
+        long lane1 = hash + 1;
+        int i = 0;
+        for (; i + 4 <= count; i += 4) {
+            lane0 = mix(lane0, packFloats(values[i], values[i + 1]));
+            lane1 = mix(lane1, packFloats(values[i + 2], values[i + 3]));
+        }
+        for (; i < count; i++) {
+            lane0 = mix(lane0, Float.floatToRawIntBits(values[i]));
+        }
+        return mix(lane0, lane1);
+    }
+
+    //the mapped payload, summed into the checksum as it is copied out
+    private static class Input {
+        private final ByteBuffer payload;
+        private final LongBuffer longs;
+        private long checksum = HASH_SEED;
+
+        Input(ByteBuffer payload) {
+            this.payload = payload;
+            this.longs = payload.asLongBuffer();
+        }
+
+        long getLong() {
+            long value = longs.get();
+            checksum = mix(checksum, value);
+            return value;
+        }
+
+        long[] getLongs(int count) {
+            long[] values = new long[count];
+            longs.get(values);
+            checksum = hash(checksum, values, 0, count);
+            return values;
+        }
+
+        float[] getFloats(long count) throws IOException {
+            if (count > longs.remaining() * 2L) {
+                throw new IOException("Truncated state file");
+            }
+            float[] values = new float[(int) count];
+            ByteBuffer floats = payload.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            floats.position(longs.position() * 8);
+            floats.asFloatBuffer().get(values);
+            longs.position(longs.position() + (int) ((count + 1) / 2));
+            checksum = hash(checksum, values, values.length);
+            return values;
+        }
+    }
+
+    //longs through a buffer into the channel, summed into the checksum on the way
+    private static class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long checksum = HASH_SEED;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putLong(long value) throws IOException {
+            write(value);
+            checksum = mix(checksum, value);
+        }
+
+        void putLongs(long[] values, int offset, int count) throws IOException {
+            checksum = hash(checksum, values, offset, offset + count);
+            for (int i = offset; i < offset + count; i++) {
+                write(values[i]);
+            }
+        }
+
+        void putFloats(float[] values, int count) throws IOException {
+            checksum = hash(checksum, values, count);
+            for (int i = 0; i < count; i += 2) {
+                write(packFloats(values[i], i + 1 < count ? values[i + 1] : 0));
+            }
+        }
+
+        private void write(long value) throws IOException {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.putLong(value);
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.nzoth.testgraph.chart;
+
+/**
+ * What one frame of a chart cost, split by phase. The instance is reused for every frame,
+ * so a {@link Listener} has to copy out what it keeps.
+ */
+public class DrawMetrics {
+    private long totalTime;
+    private long maxYTime;
+    private long vertexTime;
+    private long labelTime;
+    private int visiblePointCount;
+    private int segmentCount;
+
+    public interface Listener {
+        void onDrawMetrics(DrawMetrics metrics);
+    }
+
+    public void reset() {
+        totalTime = 0;
+        maxYTime = 0;
+        vertexTime = 0;
+        labelTime = 0;
+        visiblePointCount = 0;
+        segmentCount = 0;
+    }
+
+    /**
+     * @return nanoseconds spent in the whole draw
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    public void setTotalTime(long totalTime) {
+        this.totalTime = totalTime;
+    }
+
+    /**
+     * @return nanoseconds spent finding the max Y of the visible range
+     */
+    public long getMaxYTime() {
+        return maxYTime;
+    }
+
+    public void addMaxYTime(long time) {
+        maxYTime += time;
+    }
+
+    /**
+     * @return nanoseconds spent building line vertices
+     */
+    public long getVertexTime() {
+        return vertexTime;
+    }
+
+    public void addVertexTime(long time) {
+        vertexTime += time;
+    }
+
+    /**
+     * @return nanoseconds spent formatting label text
+     */
+    public long getLabelTime() {
+        return labelTime;
+    }
+
+    public void addLabelTime(long time) {
+        labelTime += time;
+    }
+
+    /**
+     * @return nanoseconds of the draw not spent in the measured phases, mostly canvas calls
+     */
+    public long getCanvasTime() {
+        return Math.max(totalTime - maxYTime - vertexTime - labelTime, 0);
+    }
+
+    /**
+     * @return points in the visible range, summed over all series
+     */
+    public int getVisiblePointCount() {
+        return visiblePointCount;
+    }
+
+    public void addVisiblePointCount(int count) {
+        visiblePointCount += count;
+    }
+
+    /**
+     * @return line segments handed to the canvas, summed over all series
+     */
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    public void addSegmentCount(int count) {
+        segmentCount += count;
+    }
+}
@@ -0,0 +1,124 @@
+package com.nzoth.testgraph.chart;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Keeps rolling p50/p95/p99 of every {@link DrawMetrics} value of the last frames.
+ * One recorder can be shared by several views drawn on the same thread.
+ */
+public class DrawMetricsRecorder implements DrawMetrics.Listener {
+    public static final int DEFAULT_WINDOW_SIZE = 512;
+
+    private static final double[] PERCENTILES = {50, 95, 99};
+
+    private final RollingHistogram totalTime;
+    private final RollingHistogram maxYTime;
+    private final RollingHistogram vertexTime;
+    private final RollingHistogram labelTime;
+    private final RollingHistogram canvasTime;
+    private final RollingHistogram visiblePointCount;
+    private final RollingHistogram segmentCount;
+
+    public DrawMetricsRecorder() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize frames kept per histogram generation, see {@link RollingHistogram}
+     */
+    public DrawMetricsRecorder(int windowSize) {
+        this.totalTime = new RollingHistogram(windowSize);
+        this.maxYTime = new RollingHistogram(windowSize);
+        this.vertexTime = new RollingHistogram(windowSize);
+        this.labelTime = new RollingHistogram(windowSize);
+        this.canvasTime = new RollingHistogram(windowSize);
+        this.visiblePointCount = new RollingHistogram(windowSize);
+        this.segmentCount = new RollingHistogram(windowSize);
+    }
+
+    @Override
+    public void onDrawMetrics(DrawMetrics metrics) {
+        totalTime.record(metrics.getTotalTime());
+        maxYTime.record(metrics.getMaxYTime());
+        vertexTime.record(metrics.getVertexTime());
+        labelTime.record(metrics.getLabelTime());
+        canvasTime.record(metrics.getCanvasTime());
+        visiblePointCount.record(metrics.getVisiblePointCount());
+        segmentCount.record(metrics.getSegmentCount());
+    }
+
+    public long getFrameCount() {
+        return totalTime.getTotalCount();
+    }
+
+    public RollingHistogram getTotalTime() {
+        return totalTime;
+    }
+
+    public RollingHistogram getMaxYTime() {
+        return maxYTime;
+    }
+
+    public RollingHistogram getVertexTime() {
+        return vertexTime;
+    }
+
+    public RollingHistogram getLabelTime() {
+        return labelTime;
+    }
+
+    public RollingHistogram getCanvasTime() {
+        return canvasTime;
+    }
+
+    public RollingHistogram getVisiblePointCount() {
+        return visiblePointCount;
+    }
+
+    public RollingHistogram getSegmentCount() {
+        return segmentCount;
+    }
+
+    public void reset() {
+        totalTime.reset();
+        maxYTime.reset();
+        vertexTime.reset();
+        labelTime.reset();
+        canvasTime.reset();
+        visiblePointCount.reset();
+        segmentCount.reset();
+    }
+
+    /**
+     * Writes one line per value, times in microseconds.
+     */
+    public void writeSummary(Writer writer) throws IOException {
+        writer.write(String.format(Locale.US, "frames: %d%n", getFrameCount()));
+        writeTimeLine(writer, "total", totalTime);
+        writeTimeLine(writer, "maxY", maxYTime);
+        writeTimeLine(writer, "vertices", vertexTime);
+        writeTimeLine(writer, "labels", labelTime);
+        writeTimeLine(writer, "canvas", canvasTime);
+        writeCountLine(writer, "points", visiblePointCount);
+        writeCountLine(writer, "segments", segmentCount);
+        writer.flush();
+    }
+
+    private void writeTimeLine(Writer writer, String name, RollingHistogram histogram) throws IOException {
+        writer.write(String.format(Locale.US, "%-9s", name + ":"));
+        for (double percentile : PERCENTILES) {
+            writer.write(String.format(Locale.US, " p%.0f=%.1fus", percentile, histogram.getPercentile(percentile) / 1000D));
+        }
+        writer.write(String.format(Locale.US, " max=%.1fus%n", histogram.getMax() / 1000D));
+    }
+
+    private void writeCountLine(Writer writer, String name, RollingHistogram histogram) throws IOException {
+        writer.write(String.format(Locale.US, "%-9s", name + ":"));
+        for (double percentile : PERCENTILES) {
+            writer.write(String.format(Locale.US, " p%.0f=%d", percentile, histogram.getPercentile(percentile)));
+        }
+        writer.write(String.format(Locale.US, " max=%d%n", histogram.getMax()));
+    }
+}
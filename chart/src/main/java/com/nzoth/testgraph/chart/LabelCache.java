@@ -0,0 +1,103 @@
+package com.nzoth.testgraph.chart;
+
+import java.util.TimeZone;
+
+/**
+ * A small LRU of formatted labels, read as {@code char[]} for {@code Canvas.drawText}.
+ * A chart keeps a few dozen labels on screen, so entries are found with a scan; a miss
+ * formats into the least recently used slot, nothing is allocated after construction.
+ */
+public abstract class LabelCache {
+    private final long[] keys;
+    private final long[] useTimes;
+    private final char[][] labels;
+    private final int[] lengths;
+    private int size;
+    private long useTime;
+
+    /**
+     * @param maxLength longest label {@link #format} writes
+     */
+    protected LabelCache(int capacity, int maxLength) {
+        this.keys = new long[capacity];
+        this.useTimes = new long[capacity];
+        this.labels = new char[capacity][maxLength];
+        this.lengths = new int[capacity];
+    }
+
+    /**
+     * Labels formatted with {@link LabelFormat#formatBigValue}, keyed by value.
+     */
+    public static LabelCache forBigValues(int capacity) {
+        return new LabelCache(capacity, LabelFormat.BIG_VALUE_MAX_LENGTH) {
+            @Override
+            protected int format(long value, char[] out) {
+                return LabelFormat.formatBigValue(value, out, 0);
+            }
+        };
+    }
+
+    /**
+     * Labels of the local date of a time formatted with {@link LabelFormat#formatDay},
+     * keyed by day so every point of a day shares one.
+     */
+    public static LabelCache forDates(int capacity, final TimeZone timeZone) {
+        return new LabelCache(capacity, LabelFormat.DATE_MAX_LENGTH) {
+            @Override
+            protected long getKey(long time) {
+                return LabelFormat.getDay(time, timeZone);
+            }
+
+            @Override
+            protected int format(long time, char[] out) {
+                return LabelFormat.formatDay(getKey(time), out, 0);
+            }
+        };
+    }
+
+    /**
+     * @return slot of the label for {@code value}; it may be reused by the next
+     * {@code capacity} misses, so read it before asking for many more
+     */
+    public int get(long value) {
+        long key = getKey(value);
+        useTime++;
+        for (int slot = 0; slot < size; slot++) {
+            if (keys[slot] == key) {
+                useTimes[slot] = useTime;
+                return slot;
+            }
+        }
+
+        int slot = size;
+        if (size < keys.length) {
+            size++;
+        } else {
+            slot = 0;
+            for (int i = 1; i < size; i++) {
+                slot = useTimes[i] < useTimes[slot] ? i : slot;
+            }
+        }
+        keys[slot] = key;
+        useTimes[slot] = useTime;
+        lengths[slot] = format(value, labels[slot]);
+        return slot;
+    }
+
+    public char[] getChars(int slot) {
+        return labels[slot];
+    }
+
+    public int getLength(int slot) {
+        return lengths[slot];
+    }
+
+    protected long getKey(long value) {
+        return value;
+    }
+
+    /**
+     * @return number of chars written
+     */
+    protected abstract int format(long value, char[] out);
+}
@@ -0,0 +1,120 @@
+package com.nzoth.testgraph.chart;
+
+import java.util.TimeZone;
+
+/**
+ * Formats labels into {@code char[]} buffers without allocating, so they can be drawn with
+ * {@code Canvas.drawText(char[], ...)}. Output is the same as the String formatting the app
+ * used before: {@code FormatUtils.formatBigValue} and {@code SimpleDateFormat("MMM d", Locale.US)}.
+ */
+public class LabelFormat {
+    /**
+     * Longest {@link #formatBigValue} output, like "-9.2E".
+     */
+    public static final int BIG_VALUE_MAX_LENGTH = 5;
+
+    /**
+     * Longest {@link #formatDay} output, like "Sep 30".
+     */
+    public static final int DATE_MAX_LENGTH = 6;
+
+    static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+    private static final char[] MONTH_CHARS = "JanFebMarAprMayJunJulAugSepOctNovDec".toCharArray();
+
+    private LabelFormat() {
+    }
+
+    /**
+     * Writes {@code value} shortened with a metric suffix, like 999, 1.2k or 12M.
+     *
+     * @return offset after the last char written
+     */
+    public static int formatBigValue(long value, char[] out, int offset) {
+        //-Long.MIN_VALUE overflows, the value above it formats the same
+        if (value == Long.MIN_VALUE) {
+            value = Long.MIN_VALUE + 1;
+        }
+        if (value < 0) {
+            out[offset++] = '-';
+            value = -value;
+        }
+        if (value < 1000) {
+            return formatDigits(value, out, offset);
+        }
+
+        long divideBy;
+        char suffix;
+        if (value >= 1000000000000000000L) {
+            divideBy = 1000000000000000000L;
+            suffix = 'E';
+        } else if (value >= 1000000000000000L) {
+            divideBy = 1000000000000000L;
+            suffix = 'P';
+        } else if (value >= 1000000000000L) {
+            divideBy = 1000000000000L;
+            suffix = 'T';
+        } else if (value >= 1000000000L) {
+            divideBy = 1000000000L;
+            suffix = 'G';
+        } else if (value >= 1000000L) {
+            divideBy = 1000000L;
+            suffix = 'M';
+        } else {
+            divideBy = 1000L;
+            suffix = 'k';
+        }
+
+        //the number part of the output times 10, one decimal is kept below 10
+        long truncated = value / (divideBy / 10);
+        offset = formatDigits(truncated / 10, out, offset);
+        if (truncated < 100 && truncated % 10 != 0) {
+            out[offset++] = '.';
+            out[offset++] = (char) ('0' + truncated % 10);
+        }
+        out[offset++] = suffix;
+        return offset;
+    }
+
+    /**
+     * @return days since the epoch of the local date of {@code time}
+     */
+    public static long getDay(long time, TimeZone timeZone) {
+        long localTime = time + timeZone.getOffset(time);
+        long day = localTime / MILLIS_PER_DAY;
+        return localTime % MILLIS_PER_DAY < 0 ? day - 1 : day;
+    }
+
+    /**
+     * Writes a day from {@link #getDay} like "Jan 5". Days are in the proleptic Gregorian
+     * calendar, which differs from {@code SimpleDateFormat} only before 1582.
+     *
+     * @return offset after the last char written
+     */
+    public static int formatDay(long day, char[] out, int offset) {
+        //civil from days, with years starting in March so leap days come last
+        long shifted = day + 719468;
+        long era = (shifted >= 0 ? shifted : shifted - 146096) / 146097;
+        long dayOfEra = shifted - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int marchMonth = (int) ((5 * dayOfYear + 2) / 153);
+        long dayOfMonth = dayOfYear - (153 * marchMonth + 2) / 5 + 1;
+        int month = marchMonth < 10 ? marchMonth + 2 : marchMonth - 10;
+
+        System.arraycopy(MONTH_CHARS, month * 3, out, offset, 3);
+        out[offset + 3] = ' ';
+        return formatDigits(dayOfMonth, out, offset + 4);
+    }
+
+    private static int formatDigits(long value, char[] out, int offset) {
+        int length = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            length++;
+        }
+        for (int i = offset + length - 1; i >= offset; i--) {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + length;
+    }
+}
@@ -0,0 +1,429 @@
+package com.nzoth.testgraph.chart;
+
+/**
+ * Reduces a visible range of a series to a number of line segments bounded by the
+ * pixel width of that range instead of by the number of points in it.
+ * <p>
+ * Point {@code i} of a series is placed at {@code x = originX + stepX * i} and
+ * {@code y = baseY - value * itemY}, the same mapping {@code GraphView} uses for the
+ * main graph. Output is written as {@code x0, y0, x1, y1} segment quadruples, ready for
+ * {@code Canvas.drawLines}.
+ */
+public class LineDownsampler {
+    private static final int M4_POINTS_PER_COLUMN = 4;
+    //pyramid buckets drawn as one point are at most this part of a column wide, so x is off by a fraction of a column
+    private static final float MAX_BUCKET_WIDTH_PX = 1F / M4_POINTS_PER_COLUMN;
+
+    public enum Mode {
+        /**
+         * One segment per data point.
+         */
+        NONE,
+        /**
+         * First, min, max and last point of every pixel column, so peaks stay visible.
+         */
+        M4,
+        /**
+         * Largest-Triangle-Three-Buckets with one bucket per pixel column.
+         */
+        LTTB
+    }
+
+    private Mode mode;
+    private float columnWidth = 1F;
+    private float columnScale = 1F;
+
+    //column being collected by buildM4 from a pyramid, and the last emitted point
+    private float firstX;
+    private float firstY;
+    private float minX;
+    private long min;
+    private float maxX;
+    private long max;
+    private float lastX;
+    private float lastY;
+    private boolean hasEmitted;
+    private float emittedX;
+    private float emittedY;
+
+    public LineDownsampler(Mode mode) {
+        this.mode = mode;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public float getColumnWidth() {
+        return columnWidth;
+    }
+
+    /**
+     * Sets the width of the columns points are reduced to, 1 pixel by default. Wider
+     * columns draw fewer segments and read coarser pyramid levels, for frames that are
+     * on screen too briefly for the detail to show.
+     */
+    public void setColumnWidth(float columnWidth) {
+        this.columnWidth = columnWidth;
+        this.columnScale = 1F / columnWidth;
+    }
+
+    /**
+     * @return true if {@link #build} would emit fewer segments than one per point
+     */
+    public boolean shouldDownsample(int pointCount, float lineWeight) {
+        switch (mode) {
+            case M4:
+                return pointCount > M4_POINTS_PER_COLUMN * getColumnCount(pointCount, lineWeight);
+            case LTTB:
+                return pointCount > getColumnCount(pointCount, lineWeight);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return the number of floats {@link #build} may write for {@code pointCount} points
+     */
+    public int getMaxFloatCount(int pointCount, float lineWeight) {
+        int segmentCount = pointCount - 1;
+        if (shouldDownsample(pointCount, lineWeight)) {
+            int columnCount = getColumnCount(pointCount, lineWeight);
+            int maxPoints = mode == Mode.M4 ? columnCount * M4_POINTS_PER_COLUMN : columnCount;
+            segmentCount = Math.min(segmentCount, maxPoints - 1);
+        }
+        return Math.max(segmentCount, 0) * 4;
+    }
+
+    /**
+     * Writes segments connecting points {@code [fromPoint, toPoint)} into {@code toArray}.
+     *
+     * @return the number of floats written
+     */
+    public int build(
+            long[] fromArray,
+            int fromPoint,
+            int toPoint,
+            float originX,
+            float stepX,
+            float baseY,
+            float itemY,
+            float[] toArray
+    ) {
+        int pointCount = toPoint - fromPoint;
+        if (pointCount < 2) {
+            return 0;
+        }
+
+        float lineWeight = Math.abs(stepX);
+        if (!shouldDownsample(pointCount, lineWeight)) {
+            return buildAll(fromArray, fromPoint, toPoint, originX, stepX, baseY, itemY, toArray);
+        }
+        if (mode == Mode.LTTB) {
+            int threshold = getColumnCount(pointCount, lineWeight);
+            return buildLttb(fromArray, fromPoint, toPoint, threshold, originX, stepX, baseY, itemY, toArray);
+        }
+        return buildM4(fromArray, fromPoint, toPoint, originX, stepX, baseY, itemY, toArray);
+    }
+
+    /**
+     * Like {@link #build(long[], int, int, float, float, float, float, float[])}, but in
+     * {@link Mode#M4} full buckets of {@code pyramid} narrow enough to lie in one pixel
+     * column are read as one point each, so the cost depends on the width in pixels and not
+     * on the number of points. Min and max of such a bucket are drawn at its centre.
+     *
+     * @param pyramid pyramid of {@code fromArray}, or null
+     */
+    public int build(
+            long[] fromArray,
+            SeriesPyramid pyramid,
+            int fromPoint,
+            int toPoint,
+            float originX,
+            float stepX,
+            float baseY,
+            float itemY,
+            float[] toArray
+    ) {
+        int pointCount = toPoint - fromPoint;
+        float lineWeight = Math.abs(stepX);
+        int level = pyramid != null && mode == Mode.M4 && stepX > 0 ? pyramid.getLevel(stepX, MAX_BUCKET_WIDTH_PX * columnWidth) : -1;
+        if (level < 0 || pointCount < 2 || !shouldDownsample(pointCount, lineWeight)) {
+            return build(fromArray, fromPoint, toPoint, originX, stepX, baseY, itemY, toArray);
+        }
+        return buildM4(fromArray, pyramid, level, fromPoint, toPoint, originX, stepX, baseY, itemY, toArray);
+    }
+
+    private int buildAll(
+            long[] fromArray,
+            int fromPoint,
+            int toPoint,
+            float originX,
+            float stepX,
+            float baseY,
+            float itemY,
+            float[] toArray
+    ) {
+        int position = 0;
+        for (int i = fromPoint + 1; i < toPoint; i++) {
+            toArray[position] = originX + stepX * (i - 1);
+            toArray[position + 1] = baseY - fromArray[i - 1] * itemY;
+            toArray[position + 2] = originX + stepX * i;
+            toArray[position + 3] = baseY - fromArray[i] * itemY;
+            position += 4;
+        }
+        return position;
+    }
+
+    private int buildM4(
+            long[] fromArray,
+            int fromPoint,
+            int toPoint,
+            float originX,
+            float stepX,
+            float baseY,
+            float itemY,
+            float[] toArray
+    ) {
+        int position = 0;
+        int lastEmitted = -1;
+
+        int column = getColumn(originX, stepX, fromPoint);
+        int first = fromPoint;
+        int min = fromPoint;
+        int max = fromPoint;
+
+        for (int i = fromPoint + 1; i <= toPoint; i++) {
+            int nextColumn = i < toPoint ? getColumn(originX, stepX, i) : Integer.MIN_VALUE;
+            if (nextColumn != column) {
+                int last = i - 1;
+                int low = min < max ? min : max;
+                int high = min < max ? max : min;
+
+                position = emit(fromArray, lastEmitted, first, originX, stepX, baseY, itemY, toArray, position);
+                lastEmitted = first;
+                if (low > lastEmitted) {
+                    position = emit(fromArray, lastEmitted, low, originX, stepX, baseY, itemY, toArray, position);
+                    lastEmitted = low;
+                }
+                if (high > lastEmitted) {
+                    position = emit(fromArray, lastEmitted, high, originX, stepX, baseY, itemY, toArray, position);
+                    lastEmitted = high;
+                }
+                if (last > lastEmitted) {
+                    position = emit(fromArray, lastEmitted, last, originX, stepX, baseY, itemY, toArray, position);
+                    lastEmitted = last;
+                }
+
+                column = nextColumn;
+                first = i;
+                min = i;
+                max = i;
+            } else {
+                long value = fromArray[i];
+                if (value < fromArray[min]) {
+                    min = i;
+                }
+                if (value > fromArray[max]) {
+                    max = i;
+                }
+            }
+        }
+        return position;
+    }
+
+    private int buildM4(
+            long[] fromArray,
+            SeriesPyramid pyramid,
+            int level,
+            int fromPoint,
+            int toPoint,
+            float originX,
+            float stepX,
+            float baseY,
+            float itemY,
+            float[] toArray
+    ) {
+        int bucketShift = pyramid.getBucketShift(level);
+        int bucketSize = 1 << bucketShift;
+        float bucketCentre = (bucketSize - 1) / 2F;
+        //buckets past the pyramid size may still be filling up
+        int pyramidSize = Math.min(pyramid.size(), toPoint);
+
+        int position = 0;
+        hasEmitted = false;
+        boolean hasColumn = false;
+        int column = 0;
+
+        int i = fromPoint;
+        while (i < toPoint) {
+            int bucketEnd = ((i >> bucketShift) + 1) << bucketShift;
+            boolean wholeBucket = (i & (bucketSize - 1)) == 0 && bucketEnd <= pyramidSize;
+            int next = wholeBucket ? bucketEnd : i + 1;
+
+            int unitColumn = getColumn(originX, stepX, i);
+            if (hasColumn && unitColumn != column) {
+                position = emitColumn(baseY, itemY, toArray, position);
+                hasColumn = false;
+            }
+
+            long unitMin = wholeBucket ? pyramid.getBucketMin(level, i >> bucketShift) : fromArray[i];
+            long unitMax = wholeBucket ? pyramid.getBucketMax(level, i >> bucketShift) : fromArray[i];
+            float unitX = originX + stepX * i;
+            float unitCentreX = wholeBucket ? originX + stepX * (i + bucketCentre) : unitX;
+            if (!hasColumn) {
+                column = unitColumn;
+                firstX = unitX;
+                firstY = baseY - fromArray[i] * itemY;
+                min = unitMin;
+                minX = unitCentreX;
+                max = unitMax;
+                maxX = unitCentreX;
+                hasColumn = true;
+            } else {
+                if (unitMin < min) {
+                    min = unitMin;
+                    minX = unitCentreX;
+                }
+                if (unitMax > max) {
+                    max = unitMax;
+                    maxX = unitCentreX;
+                }
+            }
+            lastX = originX + stepX * (next - 1);
+            lastY = baseY - fromArray[next - 1] * itemY;
+
+            i = next;
+        }
+        if (hasColumn) {
+            position = emitColumn(baseY, itemY, toArray, position);
+        }
+        return position;
+    }
+
+    private int emitColumn(float baseY, float itemY, float[] toArray, int position) {
+        float minY = baseY - min * itemY;
+        float maxY = baseY - max * itemY;
+        //min and max of one bucket share x, go to the one nearer to the first point first
+        boolean minFirst = minX < maxX || (minX == maxX && Math.abs(minY - firstY) < Math.abs(maxY - firstY));
+
+        position = emitPoint(firstX, firstY, toArray, position);
+        if (minFirst) {
+            position = emitPoint(minX, minY, toArray, position);
+            position = emitPoint(maxX, maxY, toArray, position);
+        } else {
+            position = emitPoint(maxX, maxY, toArray, position);
+            position = emitPoint(minX, minY, toArray, position);
+        }
+        return emitPoint(lastX, lastY, toArray, position);
+    }
+
+    private int emitPoint(float x, float y, float[] toArray, int position) {
+        if (hasEmitted && (x < emittedX || (x == emittedX && y == emittedY))) {
+            return position;
+        }
+        if (hasEmitted) {
+            toArray[position] = emittedX;
+            toArray[position + 1] = emittedY;
+            toArray[position + 2] = x;
+            toArray[position + 3] = y;
+            position += 4;
+        }
+        hasEmitted = true;
+        emittedX = x;
+        emittedY = y;
+        return position;
+    }
+
+    private int buildLttb(
+            long[] fromArray,
+            int fromPoint,
+            int toPoint,
+            int threshold,
+            float originX,
+            float stepX,
+            float baseY,
+            float itemY,
+            float[] toArray
+    ) {
+        int pointCount = toPoint - fromPoint;
+        if (threshold < 3) {
+            return emit(fromArray, fromPoint, toPoint - 1, originX, stepX, baseY, itemY, toArray, 0);
+        }
+
+        double bucketSize = (double) (pointCount - 2) / (threshold - 2);
+        int position = 0;
+        int selected = fromPoint;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int averageFrom = fromPoint + (int) ((bucket + 1) * bucketSize) + 1;
+            int averageTo = Math.min(fromPoint + (int) ((bucket + 2) * bucketSize) + 1, toPoint);
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = averageFrom; i < averageTo; i++) {
+                averageX += i;
+                averageY += fromArray[i];
+            }
+            int averageCount = averageTo - averageFrom;
+            if (averageCount > 0) {
+                averageX /= averageCount;
+                averageY /= averageCount;
+            } else {
+                averageX = toPoint - 1;
+                averageY = fromArray[toPoint - 1];
+            }
+
+            int rangeFrom = fromPoint + (int) (bucket * bucketSize) + 1;
+            int rangeTo = fromPoint + (int) ((bucket + 1) * bucketSize) + 1;
+            double selectedX = selected;
+            double selectedY = fromArray[selected];
+            double maxArea = -1;
+            int next = rangeFrom;
+            for (int i = rangeFrom; i < rangeTo; i++) {
+                double area = Math.abs((selectedX - averageX) * (fromArray[i] - selectedY)
+                        - (selectedX - i) * (averageY - selectedY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = i;
+                }
+            }
+
+            position = emit(fromArray, selected, next, originX, stepX, baseY, itemY, toArray, position);
+            selected = next;
+        }
+        return emit(fromArray, selected, toPoint - 1, originX, stepX, baseY, itemY, toArray, position);
+    }
+
+    private int emit(
+            long[] fromArray,
+            int previous,
+            int current,
+            float originX,
+            float stepX,
+            float baseY,
+            float itemY,
+            float[] toArray,
+            int position
+    ) {
+        if (previous < 0 || previous == current) {
+            return position;
+        }
+        toArray[position] = originX + stepX * previous;
+        toArray[position + 1] = baseY - fromArray[previous] * itemY;
+        toArray[position + 2] = originX + stepX * current;
+        toArray[position + 3] = baseY - fromArray[current] * itemY;
+        return position + 4;
+    }
+
+    private int getColumn(float originX, float stepX, int point) {
+        return (int) Math.floor((originX + stepX * point) * columnScale);
+    }
+
+    private int getColumnCount(int pointCount, float lineWeight) {
+        return (int) (lineWeight * (pointCount - 1) * columnScale) + 2;
+    }
+}
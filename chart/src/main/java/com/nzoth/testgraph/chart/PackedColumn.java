@@ -0,0 +1,297 @@
+package com.nzoth.testgraph.chart;
+
+/**
+ * A column of longs compressed in blocks of {@link #BLOCK_SIZE} values.
+ * <p>
+ * Every block stores the line through its first and last value and bit-packs what each
+ * value is off that line, offset by the smallest such residual, in as many bits as the
+ * largest one needs. Evenly spaced dates take no bits at all, series that move by a few
+ * hundred per point a dozen or so. Arithmetic wraps, so any long round-trips; blocks
+ * that don't compress just take 64 bits per value.
+ * <p>
+ * Block min and max are kept next to the bits, so {@link #getMax} decodes only the partial
+ * blocks at both ends of a range. Sequential reads go through a {@link Cursor}, which
+ * decodes a block at a time.
+ */
+public class PackedColumn {
+    public static final int BLOCK_SHIFT = 7;
+    public static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    private final int size;
+    private final long[] blockBases;
+    private final long[] blockSlopes;
+    private final long[] blockMins;
+    private final long[] blockMaxs;
+    private final int[] blockOffsets;
+    private final byte[] blockBitWidths;
+    private long[] words;
+
+    private PackedColumn(int size) {
+        int blockCount = (size + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+        this.size = size;
+        this.blockBases = new long[blockCount];
+        this.blockSlopes = new long[blockCount];
+        this.blockMins = new long[blockCount];
+        this.blockMaxs = new long[blockCount];
+        this.blockOffsets = new int[blockCount];
+        this.blockBitWidths = new byte[blockCount];
+    }
+
+    /**
+     * Packs the first {@code size} values, the array is not referenced afterwards.
+     */
+    public static PackedColumn pack(long[] values, int size) {
+        PackedColumn column = new PackedColumn(size);
+        //headers first, they give the offsets of the bits
+        long wordCount = 0;
+        for (int block = 0; block < column.getBlockCount(); block++) {
+            column.blockOffsets[block] = (int) wordCount;
+            int bitWidth = column.packHeader(values, block);
+            wordCount += getWordCount(getBlockLength(block, size), bitWidth);
+            if (wordCount >= Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many values to pack: " + size);
+            }
+        }
+
+        //one spare word, so decoding may always read the word after a value
+        column.words = new long[(int) wordCount + 1];
+        for (int block = 0; block < column.getBlockCount(); block++) {
+            column.packBits(values, block);
+        }
+        return column;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getBlockCount() {
+        return blockBases.length;
+    }
+
+    /**
+     * @return bits per value of a block, 0 to 64
+     */
+    public int getBitWidth(int block) {
+        return blockBitWidths[block];
+    }
+
+    /**
+     * @return bytes held by the arrays of this column, without object headers
+     */
+    public long getByteCount() {
+        int blockCount = blockBases.length;
+        return blockCount * (4L * 8 + 4 + 1) + words.length * 8L;
+    }
+
+    /**
+     * Decodes one value in O(1), for scattered reads; use a {@link Cursor} for runs.
+     */
+    public long get(int position) {
+        int block = position >> BLOCK_SHIFT;
+        int index = position & (BLOCK_SIZE - 1);
+        return blockBases[block] + blockSlopes[block] * index
+                + readBits(blockOffsets[block], index, blockBitWidths[block]);
+    }
+
+    /**
+     * Decodes {@code [from, to)} into {@code toArray} starting at {@code offset}.
+     */
+    public void get(int from, int to, long[] toArray, int offset) {
+        while (from < to) {
+            int block = from >> BLOCK_SHIFT;
+            int blockTo = Math.min((block + 1) << BLOCK_SHIFT, to);
+            decode(block, from & (BLOCK_SIZE - 1), blockTo - (block << BLOCK_SHIFT), toArray, offset);
+            offset += blockTo - from;
+            from = blockTo;
+        }
+    }
+
+    public long[] toArray() {
+        long[] values = new long[size];
+        get(0, size, values, 0);
+        return values;
+    }
+
+    public long getBlockMin(int block) {
+        return blockMins[block];
+    }
+
+    public long getBlockMax(int block) {
+        return blockMaxs[block];
+    }
+
+    /**
+     * @return max of {@code [from, to)}, or {@link Long#MIN_VALUE} if the range is empty.
+     * Whole blocks are read from their headers, only the blocks at the ends are decoded.
+     */
+    public long getMax(int from, int to) {
+        from = Math.max(from, 0);
+        to = Math.min(to, size);
+        long max = Long.MIN_VALUE;
+        while (from < to) {
+            int block = from >> BLOCK_SHIFT;
+            int blockFrom = block << BLOCK_SHIFT;
+            int blockTo = Math.min(blockFrom + BLOCK_SIZE, size);
+            if (from == blockFrom && blockTo <= to) {
+                max = Math.max(max, blockMaxs[block]);
+            } else {
+                int end = Math.min(blockTo, to);
+                for (int i = from; i < end; i++) {
+                    max = Math.max(max, get(i));
+                }
+            }
+            from = blockTo;
+        }
+        return max;
+    }
+
+    public Cursor newCursor(int position) {
+        Cursor cursor = new Cursor();
+        cursor.seek(position);
+        return cursor;
+    }
+
+    /**
+     * Reads values in order, decoding a whole block when it enters one. A cursor is not
+     * thread safe, but any number of them may read one column.
+     */
+    public class Cursor {
+        private final long[] buffer = new long[BLOCK_SIZE];
+        private int bufferBlock = -1;
+        private int position;
+
+        public int getPosition() {
+            return position;
+        }
+
+        public void seek(int position) {
+            this.position = position;
+        }
+
+        public boolean hasNext() {
+            return position < size;
+        }
+
+        public long next() {
+            int block = position >> BLOCK_SHIFT;
+            if (block != bufferBlock) {
+                decode(block, 0, getBlockLength(block, size), buffer, 0);
+                bufferBlock = block;
+            }
+            return buffer[position++ & (BLOCK_SIZE - 1)];
+        }
+    }
+
+    //the line through the first and last value, so evenly spaced values have no residual
+    private int packHeader(long[] values, int block) {
+        int from = block << BLOCK_SHIFT;
+        int length = getBlockLength(block, size);
+        long first = values[from];
+        long slope = length > 1 ? (values[from + length - 1] - first) / (length - 1) : 0;
+
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        long minResidual = Long.MAX_VALUE;
+        long maxResidual = Long.MIN_VALUE;
+        long line = first;
+        for (int i = 0; i < length; i++) {
+            long value = values[from + i];
+            long residual = value - line;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            minResidual = Math.min(minResidual, residual);
+            maxResidual = Math.max(maxResidual, residual);
+            line += slope;
+        }
+        int bitWidth;
+        if (max - min < 0) {
+            //values span more than a long, residuals may have wrapped; store them from the min
+            slope = 0;
+            minResidual = min - first;
+            bitWidth = 64;
+        } else {
+            //the line stays between the first and last value, so residuals span at most
+            //twice the values and a wrapped span just means 64 bits
+            long span = maxResidual - minResidual;
+            bitWidth = span < 0 ? 64 : 64 - Long.numberOfLeadingZeros(span);
+        }
+
+        blockBases[block] = first + minResidual;
+        blockSlopes[block] = slope;
+        blockMins[block] = min;
+        blockMaxs[block] = max;
+        blockBitWidths[block] = (byte) bitWidth;
+        return bitWidth;
+    }
+
+    private void packBits(long[] values, int block) {
+        int bitWidth = blockBitWidths[block];
+        if (bitWidth == 0) {
+            return;
+        }
+        int from = block << BLOCK_SHIFT;
+        int length = getBlockLength(block, size);
+        int wordOffset = blockOffsets[block];
+        long base = blockBases[block];
+        long slope = blockSlopes[block];
+
+        long bit = 0;
+        for (int i = 0; i < length; i++) {
+            long packed = values[from + i] - base;
+            base += slope;
+            int word = wordOffset + (int) (bit >>> 6);
+            int shift = (int) (bit & 63);
+            words[word] |= packed << shift;
+            if (shift + bitWidth > 64) {
+                words[word + 1] |= packed >>> (64 - shift);
+            }
+            bit += bitWidth;
+        }
+    }
+
+    private void decode(int block, int fromIndex, int toIndex, long[] toArray, int offset) {
+        long slope = blockSlopes[block];
+        long value = blockBases[block] + slope * fromIndex;
+        int bitWidth = blockBitWidths[block];
+        if (bitWidth == 0) {
+            for (int i = fromIndex; i < toIndex; i++) {
+                toArray[offset++] = value;
+                value += slope;
+            }
+            return;
+        }
+
+        int wordOffset = blockOffsets[block];
+        long mask = bitWidth == 64 ? -1L : (1L << bitWidth) - 1;
+        long bit = (long) fromIndex * bitWidth;
+        for (int i = fromIndex; i < toIndex; i++) {
+            int word = wordOffset + (int) (bit >>> 6);
+            int shift = (int) (bit & 63);
+            //shifted in two steps, a shift by 64 would be a shift by 0
+            long bits = (words[word] >>> shift) | ((words[word + 1] << 1) << (63 - shift));
+            toArray[offset++] = value + (bits & mask);
+            value += slope;
+            bit += bitWidth;
+        }
+    }
+
+    private long readBits(int wordOffset, int index, int bitWidth) {
+        if (bitWidth == 0) {
+            return 0;
+        }
+        long bit = (long) index * bitWidth;
+        int word = wordOffset + (int) (bit >>> 6);
+        int shift = (int) (bit & 63);
+        long value = (words[word] >>> shift) | ((words[word + 1] << 1) << (63 - shift));
+        return bitWidth == 64 ? value : value & ((1L << bitWidth) - 1);
+    }
+
+    private static int getBlockLength(int block, int size) {
+        return Math.min(BLOCK_SIZE, size - (block << BLOCK_SHIFT));
+    }
+
+    private static int getWordCount(int length, int bitWidth) {
+        return (int) (((long) length * bitWidth + 63) >>> 6);
+    }
+}
@@ -0,0 +1,74 @@
+package com.nzoth.testgraph.chart;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Builds a {@link SeriesPyramid} of a long series with fork-join: the series is split into
+ * chunks of {@code 2^CHUNK_LEVEL} base buckets whose levels are filled in parallel, then
+ * the few levels above the chunks are filled on the calling thread.
+ * <p>
+ * Kept apart from {@link SeriesPyramid} because {@link ForkJoinPool} is missing on old
+ * Android versions.
+ */
+public class ParallelPyramidBuilder {
+    private static final int CHUNK_LEVEL = 14;
+
+    private static ForkJoinPool pool;
+
+    private ParallelPyramidBuilder() {
+    }
+
+    /**
+     * Builds on a shared pool with one thread per processor.
+     */
+    public static SeriesPyramid build(long[] values, int size) {
+        return build(getPool(), values, size);
+    }
+
+    public static SeriesPyramid build(ForkJoinPool pool, long[] values, int size) {
+        SeriesPyramid pyramid = new SeriesPyramid(values, size, SeriesPyramid.getLevelCount(size));
+        int toLevel = Math.min(CHUNK_LEVEL, pyramid.getLevelCount() - 1);
+        pool.invoke(new FillTask(pyramid, 0, SeriesPyramid.getBucketCount(0, size), toLevel));
+        pyramid.fillLevelsFrom(toLevel + 1);
+        return pyramid;
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool();
+        }
+        return pool;
+    }
+
+    private static class FillTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final SeriesPyramid pyramid;
+        private final int fromBucket;
+        private final int toBucket;
+        private final int toLevel;
+
+        FillTask(SeriesPyramid pyramid, int fromBucket, int toBucket, int toLevel) {
+            this.pyramid = pyramid;
+            this.fromBucket = fromBucket;
+            this.toBucket = toBucket;
+            this.toLevel = toLevel;
+        }
+
+        @Override
+        protected void compute() {
+            int chunkCount = (toBucket - fromBucket + (1 << CHUNK_LEVEL) - 1) >> CHUNK_LEVEL;
+            if (chunkCount <= 1) {
+                pyramid.fillLevels(fromBucket, toBucket, toLevel);
+                return;
+            }
+
+            int middle = fromBucket + (chunkCount / 2 << CHUNK_LEVEL);
+            invokeAll(
+                    new FillTask(pyramid, fromBucket, middle, toLevel),
+                    new FillTask(pyramid, middle, toBucket, toLevel)
+            );
+        }
+    }
+}
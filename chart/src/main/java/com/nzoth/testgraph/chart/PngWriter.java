@@ -0,0 +1,164 @@
+package com.nzoth.testgraph.chart;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Encodes an RGBA PNG a row at a time, so an image can be rendered and written in strips
+ * without ever holding all of its pixels. Rows are deflated as they come and flushed in
+ * {@code IDAT} chunks of at most {@link #CHUNK_SIZE} bytes.
+ * <p>
+ * Write exactly {@code height} rows with {@link #writeRow}, then {@link #finish}, and
+ * {@link #close} in any case, also when writing failed. The stream is not closed.
+ */
+public class PngWriter {
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int BIT_DEPTH = 8;
+    private static final int COLOR_TYPE_RGBA = 6;
+    //each row starts with its filter, Sub stores the difference to the pixel on the left
+    private static final int FILTER_SUB = 1;
+
+    private final DataOutputStream out;
+    private final int width;
+    private final int height;
+    private final byte[] row;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final ChunkStream chunkStream = new ChunkStream();
+    private final DeflaterOutputStream deflaterStream;
+    private int rowCount;
+
+    public PngWriter(OutputStream out, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Empty image " + width + "x" + height);
+        }
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.height = height;
+        this.row = new byte[1 + width * 4];
+        this.deflaterStream = new DeflaterOutputStream(chunkStream, deflater, CHUNK_SIZE);
+
+        try {
+            this.out.write(SIGNATURE);
+            ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+            DataOutputStream headerData = new DataOutputStream(header);
+            headerData.writeInt(width);
+            headerData.writeInt(height);
+            headerData.writeByte(BIT_DEPTH);
+            headerData.writeByte(COLOR_TYPE_RGBA);
+            //deflate, adaptive filtering, no interlace
+            headerData.writeByte(0);
+            headerData.writeByte(0);
+            headerData.writeByte(0);
+            writeChunk("IHDR", header.toByteArray(), header.size());
+        } catch (IOException e) {
+            //the caller has nothing to close
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param pixels {@code width} ARGB pixels from {@code offset}, not premultiplied
+     */
+    public void writeRow(int[] pixels, int offset) throws IOException {
+        if (rowCount == height) {
+            throw new IllegalStateException("All " + height + " rows are written");
+        }
+        row[0] = FILTER_SUB;
+        int previous = 0;
+        for (int x = 0; x < width; x++) {
+            int pixel = pixels[offset + x];
+            int position = 1 + x * 4;
+            row[position] = (byte) ((pixel >> 16) - (previous >> 16));
+            row[position + 1] = (byte) ((pixel >> 8) - (previous >> 8));
+            row[position + 2] = (byte) (pixel - previous);
+            row[position + 3] = (byte) ((pixel >>> 24) - (previous >>> 24));
+            previous = pixel;
+        }
+        deflaterStream.write(row);
+        rowCount++;
+    }
+
+    /**
+     * Writes the rest of the compressed rows and the end of the image.
+     */
+    public void finish() throws IOException {
+        if (rowCount != height) {
+            throw new IllegalStateException("Only " + rowCount + " of " + height + " rows are written");
+        }
+        deflaterStream.finish();
+        chunkStream.flush();
+        close();
+        writeChunk("IEND", new byte[0], 0);
+        out.flush();
+    }
+
+    /**
+     * Releases the native memory of the deflater, which otherwise waits for the finalizer.
+     * May be called more than once, after {@link #finish} or instead of it; no rows can be
+     * written afterwards.
+     */
+    public void close() {
+        deflater.end();
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    //what the deflater writes, cut into IDAT chunks
+    private class ChunkStream extends OutputStream {
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int size;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (size == buffer.length) {
+                flush();
+            }
+            buffer[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (size == buffer.length) {
+                    flush();
+                }
+                int count = Math.min(length, buffer.length - size);
+                System.arraycopy(bytes, offset, buffer, size, count);
+                size += count;
+                offset += count;
+                length -= count;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (size > 0) {
+                writeChunk("IDAT", buffer, size);
+                size = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
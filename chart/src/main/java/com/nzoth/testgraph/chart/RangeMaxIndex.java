@@ -0,0 +1,184 @@
+package com.nzoth.testgraph.chart;
+
+import java.util.Arrays;
+
+/**
+ * Answers "max value in {@code [from, to)}" for a series in O(log n).
+ * <p>
+ * Values are grouped into blocks of {@link #BLOCK_SIZE}; a segment tree is kept over
+ * the block maxima and the partial blocks at both ends of a query are scanned directly.
+ * This keeps the index at about n/8 longs while a query still touches at most
+ * {@code 2 * BLOCK_SIZE} raw values.
+ */
+public class RangeMaxIndex {
+    private static final int BLOCK_SHIFT = 4;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    private long[] values;
+    private int size;
+    private long[] tree;
+    private int leafCount;
+
+    public RangeMaxIndex(long[] values) {
+        this(values, values.length);
+    }
+
+    /**
+     * Indexes the first {@code size} values, the array is referenced, not copied.
+     */
+    public RangeMaxIndex(long[] values, int size) {
+        this.values = values;
+        this.size = size;
+        rebuild();
+    }
+
+    /**
+     * Restores an index of the first {@code size} values from the block maxima of
+     * {@link #getTree}, without scanning the values again. The last block is scanned, it
+     * may have grown since the maxima were read.
+     */
+    RangeMaxIndex(long[] values, int size, long[] blockMaxs) {
+        this.values = values;
+        this.size = size;
+        int blockCount = getBlockCount(size);
+        allocateTree(blockCount);
+        System.arraycopy(blockMaxs, 0, tree, leafCount, blockCount);
+        if (blockCount > 0) {
+            tree[leafCount + blockCount - 1] = scan((blockCount - 1) << BLOCK_SHIFT, size);
+        }
+        fillParents();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Indexes values appended since the last call. {@code values} may be a grown copy of
+     * the previous array; values below the previous size must not have changed.
+     * <p>
+     * Appending to a block can only raise the maxima above it, so propagation stops at the
+     * first ancestor that already holds a larger value and is O(1) for most appends.
+     */
+    public void update(long[] values, int size) {
+        int previousSize = this.size;
+        this.values = values;
+        this.size = size;
+
+        if (size < previousSize || getBlockCount(size) > leafCount) {
+            rebuild();
+            return;
+        }
+
+        int toBlock = getBlockCount(size);
+        for (int block = previousSize >> BLOCK_SHIFT; block < toBlock; block++) {
+            int node = leafCount + block;
+            long max = scan(block << BLOCK_SHIFT, Math.min((block + 1) << BLOCK_SHIFT, size));
+            tree[node] = max;
+            for (node >>= 1; node > 0 && tree[node] < max; node >>= 1) {
+                tree[node] = max;
+            }
+        }
+    }
+
+    /**
+     * Indexes all values again after they were changed in place, in O(n) and into the same
+     * tree.
+     */
+    public void refill() {
+        int blockCount = getBlockCount(size);
+        for (int block = 0; block < blockCount; block++) {
+            int from = block << BLOCK_SHIFT;
+            tree[leafCount + block] = scan(from, Math.min(from + BLOCK_SIZE, size));
+        }
+        fillParents();
+    }
+
+    /**
+     * @return max of the whole series, or {@link Long#MIN_VALUE} if it is empty
+     */
+    public long getMax() {
+        return size > 0 ? tree[1] : Long.MIN_VALUE;
+    }
+
+    /**
+     * @return max of {@code [from, to)}, or {@link Long#MIN_VALUE} if the range is empty
+     */
+    public long getMax(int from, int to) {
+        from = Math.max(from, 0);
+        to = Math.min(to, size);
+        if (from >= to) {
+            return Long.MIN_VALUE;
+        }
+
+        int fromBlock = from >> BLOCK_SHIFT;
+        int toBlock = (to - 1) >> BLOCK_SHIFT;
+        if (fromBlock == toBlock) {
+            return scan(from, to);
+        }
+
+        long max = Math.max(
+                scan(from, (fromBlock + 1) << BLOCK_SHIFT),
+                scan(toBlock << BLOCK_SHIFT, to)
+        );
+
+        int left = fromBlock + 1 + leafCount;
+        int right = toBlock + leafCount;
+        while (left < right) {
+            if ((left & 1) == 1) {
+                max = Math.max(max, tree[left++]);
+            }
+            if ((right & 1) == 1) {
+                max = Math.max(max, tree[--right]);
+            }
+            left >>= 1;
+            right >>= 1;
+        }
+        return max;
+    }
+
+    /**
+     * @return the tree, block {@code b} has its max at {@code getLeafCount() + b}; an
+     * update only writes the last block and past it, or into a new tree
+     */
+    long[] getTree() {
+        return tree;
+    }
+
+    int getLeafCount() {
+        return leafCount;
+    }
+
+    private void rebuild() {
+        allocateTree(getBlockCount(size));
+        refill();
+    }
+
+    private void allocateTree(int blockCount) {
+        leafCount = 1;
+        while (leafCount < blockCount) {
+            leafCount <<= 1;
+        }
+
+        tree = new long[leafCount * 2];
+        Arrays.fill(tree, Long.MIN_VALUE);
+    }
+
+    private void fillParents() {
+        for (int i = leafCount - 1; i > 0; i--) {
+            tree[i] = Math.max(tree[i * 2], tree[i * 2 + 1]);
+        }
+    }
+
+    static int getBlockCount(int size) {
+        return (size + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+    }
+
+    private long scan(int from, int to) {
+        long max = Long.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            max = max < values[i] ? values[i] : max;
+        }
+        return max;
+    }
+}
@@ -0,0 +1,123 @@
+package com.nzoth.testgraph.chart;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Percentiles of the latest recorded values, kept in fixed log-linear buckets.
+ * <p>
+ * Every power of two is split into {@link #SUB_BUCKET_COUNT} buckets, so a reported value
+ * is at most 12.5% above the recorded one. Values go into one of two generations of
+ * {@code windowSize} values each; when a generation fills up the older one is cleared and
+ * reused, so percentiles always cover the last {@code windowSize} to
+ * {@code 2 * windowSize} values.
+ * <p>
+ * {@link #record} doesn't lock or allocate. It is meant to be called from one thread,
+ * while any thread may read.
+ */
+public class RollingHistogram {
+    private static final int SUB_BUCKET_SHIFT = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_SHIFT;
+    private static final int BUCKET_COUNT = getBucket(Long.MAX_VALUE) + 1;
+
+    private final int windowSize;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT * 2);
+    private final AtomicLong recordCount = new AtomicLong();
+
+    public RollingHistogram(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be positive: " + windowSize);
+        }
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * @param value a non-negative value, negative values are recorded as 0
+     */
+    public void record(long value) {
+        long index = recordCount.get();
+        int generation = (int) ((index / windowSize) & 1);
+        if (index % windowSize == 0 && index > 0) {
+            int offset = generation * BUCKET_COUNT;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts.set(offset + i, 0);
+            }
+        }
+        counts.incrementAndGet(generation * BUCKET_COUNT + getBucket(Math.max(value, 0)));
+        recordCount.lazySet(index + 1);
+    }
+
+    /**
+     * @return number of values recorded since creation or {@link #reset}
+     */
+    public long getTotalCount() {
+        return recordCount.get();
+    }
+
+    /**
+     * @param percentile from 0 to 100
+     * @return the upper bound of the bucket holding the percentile of the window,
+     * or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long windowCount = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            windowCount += getCount(i);
+        }
+        if (windowCount == 0) {
+            return 0;
+        }
+
+        long rank = Math.max((long) Math.ceil(windowCount * percentile / 100), 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += getCount(i);
+            if (seen >= rank) {
+                return getBucketUpperBound(i);
+            }
+        }
+        return getBucketUpperBound(BUCKET_COUNT - 1);
+    }
+
+    /**
+     * @return the upper bound of the highest non-empty bucket of the window
+     */
+    public long getMax() {
+        for (int i = BUCKET_COUNT - 1; i >= 0; i--) {
+            if (getCount(i) > 0) {
+                return getBucketUpperBound(i);
+            }
+        }
+        return 0;
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        recordCount.set(0);
+    }
+
+    private long getCount(int bucket) {
+        return counts.get(bucket) + counts.get(BUCKET_COUNT + bucket);
+    }
+
+    private static int getBucket(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_SHIFT)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_SHIFT + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    private static long getBucketUpperBound(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKET_COUNT - 1;
+        long subBucket = bucket % SUB_BUCKET_COUNT;
+        long upperBound = ((SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+        return upperBound < 0 ? Long.MAX_VALUE : upperBound;
+    }
+}
@@ -0,0 +1,344 @@
+package com.nzoth.testgraph.chart;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Series aggregated into calendar buckets of a {@link Granularity}: local hours, days or
+ * weeks from Monday in a time zone, each reduced to one value per series by an
+ * {@link Aggregation}. A bucket is dated at its local start.
+ * <p>
+ * Only closed buckets are published, so the rollup only ever grows at its end like the
+ * series it is read from, and indexes over it can be appended to. The bucket of the last
+ * point stays open and is kept as running values; {@link #append} adds a point to it in
+ * O(series) and closes it when a point of a later bucket arrives.
+ * <p>
+ * A build reads the dates once to find the buckets, then every series once, in parallel
+ * across series if given an executor.
+ */
+public class Rollup {
+    private static final int MIN_CAPACITY = 16;
+
+    public enum Granularity {
+        HOUR(LabelFormat.MILLIS_PER_DAY / 24),
+        DAY(LabelFormat.MILLIS_PER_DAY),
+        WEEK(LabelFormat.MILLIS_PER_DAY * 7);
+
+        //epoch day 0 was a Thursday
+        private static final int MONDAY_DAY_OFFSET = 3;
+        //longer than any repeated span of local time
+        private static final long OFFSET_CHANGE_LOOKBACK = LabelFormat.MILLIS_PER_DAY / 4;
+
+        private final long millis;
+
+        Granularity(long millis) {
+            this.millis = millis;
+        }
+
+        /**
+         * @return length of a bucket, a local hour or day may be an hour off with daylight
+         * saving
+         */
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * @return the bucket of {@code time}, buckets are numbered in order of local time,
+         * which repeats an hour when clocks are turned back
+         */
+        public long getBucket(long time, TimeZone timeZone) {
+            switch (this) {
+                case HOUR:
+                    //the offset at the time itself, so buckets follow the local clock
+                    return floorDiv(time + timeZone.getOffset(time), millis);
+                case DAY:
+                    return LabelFormat.getDay(time, timeZone);
+                default:
+                    return floorDiv(LabelFormat.getDay(time, timeZone) + MONDAY_DAY_OFFSET, 7);
+            }
+        }
+
+        /**
+         * @return time of the local start of a bucket
+         */
+        public long getBucketStart(long bucket, TimeZone timeZone) {
+            long localStart;
+            switch (this) {
+                case HOUR:
+                    localStart = bucket * millis;
+                    break;
+                case DAY:
+                    localStart = bucket * LabelFormat.MILLIS_PER_DAY;
+                    break;
+                default:
+                    localStart = (bucket * 7 - MONDAY_DAY_OFFSET) * LabelFormat.MILLIS_PER_DAY;
+                    break;
+            }
+            //the offset at the start itself, which is a little after the start in UTC
+            long start = localStart - timeZone.getOffset(localStart - timeZone.getOffset(localStart));
+            //a local time that happens twice, when clocks were turned back, starts at the first
+            //one, under the offset from before the change
+            long earlierStart = localStart - timeZone.getOffset(start - OFFSET_CHANGE_LOOKBACK);
+            return earlierStart < start && earlierStart + timeZone.getOffset(earlierStart) == localStart
+                    ? earlierStart : start;
+        }
+
+        /**
+         * @return the finest granularity with at most {@code maxBucketCount} buckets in
+         * {@code spanMillis}, or the coarsest one if none has
+         */
+        public static Granularity getFinest(long spanMillis, int maxBucketCount) {
+            for (Granularity granularity : values()) {
+                if (spanMillis / granularity.millis <= maxBucketCount) {
+                    return granularity;
+                }
+            }
+            return WEEK;
+        }
+    }
+
+    public enum Aggregation {
+        SUM, AVG, MIN, MAX, LAST
+    }
+
+    private final Granularity granularity;
+    private final Aggregation aggregation;
+    private final TimeZone timeZone;
+
+    private long[] dateList;
+    private long[][] graphList;
+    private int size;
+
+    //the bucket of the last point, not published yet
+    private long openBucket;
+    private int openCount;
+    private final long[] openValues;
+    private int pointCount;
+
+    public Rollup(Granularity granularity, Aggregation aggregation, TimeZone timeZone, int seriesCount) {
+        this.granularity = granularity;
+        this.aggregation = aggregation;
+        this.timeZone = timeZone;
+        this.dateList = new long[MIN_CAPACITY];
+        this.graphList = new long[seriesCount][MIN_CAPACITY];
+        this.openValues = new long[seriesCount];
+    }
+
+    /**
+     * Rolls up the first {@code pointCount} points.
+     *
+     * @param executor runs one task per series, or null to build on the calling thread
+     */
+    public static Rollup build(
+            Granularity granularity,
+            Aggregation aggregation,
+            TimeZone timeZone,
+            long[] dateList,
+            final long[][] graphList,
+            int pointCount,
+            ExecutorService executor
+    ) {
+        final Rollup rollup = new Rollup(granularity, aggregation, timeZone, graphList.length);
+        if (pointCount == 0) {
+            return rollup;
+        }
+
+        //where every bucket starts, the last one stays open
+        int[] bucketStarts = new int[MIN_CAPACITY];
+        long[] buckets = new long[MIN_CAPACITY];
+        int bucketCount = 0;
+        long bucket = Long.MIN_VALUE;
+        for (int i = 0; i < pointCount; i++) {
+            long pointBucket = Math.max(granularity.getBucket(dateList[i], timeZone), bucket);
+            if (pointBucket != bucket) {
+                if (bucketCount == bucketStarts.length) {
+                    bucketStarts = Arrays.copyOf(bucketStarts, bucketCount * 2);
+                    buckets = Arrays.copyOf(buckets, bucketCount * 2);
+                }
+                bucketStarts[bucketCount] = i;
+                buckets[bucketCount] = pointBucket;
+                bucketCount++;
+                bucket = pointBucket;
+            }
+        }
+
+        final int closedCount = bucketCount - 1;
+        rollup.ensureCapacity(closedCount);
+        for (int i = 0; i < closedCount; i++) {
+            rollup.dateList[i] = granularity.getBucketStart(buckets[i], timeZone);
+        }
+        final int[] starts = Arrays.copyOf(bucketStarts, bucketCount + 1);
+        starts[bucketCount] = pointCount;
+
+        if (executor == null) {
+            for (int series = 0; series < graphList.length; series++) {
+                rollup.fillSeries(graphList[series], series, starts, closedCount);
+            }
+        } else {
+            List<Future<?>> futures = new ArrayList<>(graphList.length);
+            for (int i = 0; i < graphList.length; i++) {
+                final int series = i;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        rollup.fillSeries(graphList[series], series, starts, closedCount);
+                        return null;
+                    }
+                }));
+            }
+            await(futures);
+        }
+
+        rollup.size = closedCount;
+        rollup.openBucket = bucket;
+        rollup.openCount = pointCount - starts[closedCount];
+        rollup.pointCount = pointCount;
+        return rollup;
+    }
+
+    public Granularity getGranularity() {
+        return granularity;
+    }
+
+    public Aggregation getAggregation() {
+        return aggregation;
+    }
+
+    /**
+     * @return number of closed buckets
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of points rolled up, including the ones of the open bucket
+     */
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * @return starts of the closed buckets, the array may be longer than {@link #size}
+     */
+    public long[] getDateList() {
+        return dateList;
+    }
+
+    /**
+     * @return values of the closed buckets per series, arrays may be longer than
+     * {@link #size}
+     */
+    public long[][] getGraphList() {
+        return graphList;
+    }
+
+    /**
+     * Adds a point after the last one in O(series). Arrays grow by doubling, so references
+     * returned by the getters before the call may be stale afterwards.
+     *
+     * @return true if the point closed the open bucket, which is now the last one
+     */
+    public boolean append(long date, long[] values) {
+        long bucket = granularity.getBucket(date, timeZone);
+        //a local date may go back when clocks are turned back, it stays in the open bucket
+        bucket = pointCount > 0 ? Math.max(bucket, openBucket) : bucket;
+        boolean closed = false;
+        if (pointCount > 0 && bucket != openBucket) {
+            ensureCapacity(size + 1);
+            dateList[size] = granularity.getBucketStart(openBucket, timeZone);
+            for (int i = 0; i < openValues.length; i++) {
+                graphList[i][size] = getOpenValue(i);
+            }
+            size++;
+            openCount = 0;
+            closed = true;
+        }
+
+        openBucket = bucket;
+        for (int i = 0; i < openValues.length; i++) {
+            openValues[i] = openCount == 0 ? values[i] : accumulate(openValues[i], values[i]);
+        }
+        openCount++;
+        pointCount++;
+        return closed;
+    }
+
+    //closed buckets and the running value of the open one, each series on its own thread
+    private void fillSeries(long[] values, int series, int[] starts, int closedCount) {
+        long[] toArray = graphList[series];
+        for (int bucket = 0; bucket <= closedCount; bucket++) {
+            int from = starts[bucket];
+            int to = starts[bucket + 1];
+            long value = values[from];
+            for (int i = from + 1; i < to; i++) {
+                value = accumulate(value, values[i]);
+            }
+
+            if (bucket < closedCount) {
+                toArray[bucket] = finish(value, to - from);
+            } else {
+                openValues[series] = value;
+            }
+        }
+    }
+
+    //sums for both SUM and AVG, averages are only divided when a bucket is published
+    private long accumulate(long accumulated, long value) {
+        switch (aggregation) {
+            case SUM:
+            case AVG:
+                return accumulated + value;
+            case MIN:
+                return Math.min(accumulated, value);
+            case MAX:
+                return Math.max(accumulated, value);
+            default:
+                return value;
+        }
+    }
+
+    private long finish(long accumulated, int count) {
+        return aggregation == Aggregation.AVG ? Math.round(accumulated / (double) count) : accumulated;
+    }
+
+    private long getOpenValue(int series) {
+        return finish(openValues[series], openCount);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= dateList.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, dateList.length * 2);
+        dateList = Arrays.copyOf(dateList, newCapacity);
+        for (int i = 0; i < graphList.length; i++) {
+            graphList[i] = Arrays.copyOf(graphList[i], newCapacity);
+        }
+    }
+
+    private static void await(List<Future<?>> futures) {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rolling up", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Can't roll up", e.getCause());
+        }
+    }
+
+    private static long floorDiv(long value, long divisor) {
+        long quotient = value / divisor;
+        return value % divisor < 0 ? quotient - 1 : quotient;
+    }
+}
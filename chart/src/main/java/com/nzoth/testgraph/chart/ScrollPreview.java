@@ -0,0 +1,243 @@
+package com.nzoth.testgraph.chart;
+
+import java.util.Arrays;
+
+/**
+ * Line vertices of the whole history drawn in the scroll block, built for one view size.
+ * Long series are reduced to a few points per pixel column through their
+ * {@link SeriesPyramid}s.
+ * <p>
+ * Building touches every point of every series, so it is meant to run off the UI thread;
+ * an instance is handed to the view only after {@link #build} returns.
+ * <p>
+ * Points appended later are added with {@link #append} in the coordinates of the build,
+ * so they land right of the view. Drawing through {@link #getScaleX}/{@link #getTranslateX}
+ * and {@link #getScaleY}/{@link #getTranslateY} fits the grown history back into the
+ * block. Once that transform drifts past {@link #REBUILD_TOLERANCE},
+ * {@link #needsRebuild} asks for a fresh build so strokes don't visibly stretch.
+ */
+public class ScrollPreview {
+    private static final float REBUILD_TOLERANCE = 0.1F;
+
+    private final float width;
+    private final float height;
+    private final float scrollBlockHeight;
+    private final float margin;
+
+    private final LineDownsampler lineDownsampler = new LineDownsampler(LineDownsampler.Mode.M4);
+
+    private float[][] vertices;
+    private int[] floatCounts;
+    private boolean[] visibleList;
+    private int pointCount;
+    private int builtPointCount;
+    private long builtMaxY;
+    private float lineWidth;
+    private float lineHeight;
+
+    /**
+     * @param width             view width, the newest point is drawn at this x
+     * @param height            view height, the bottom of the scroll block
+     * @param scrollBlockHeight height of the scroll block
+     * @param margin            space kept free above and below the lines
+     */
+    public ScrollPreview(float width, float height, float scrollBlockHeight, float margin) {
+        this.width = width;
+        this.height = height;
+        this.scrollBlockHeight = scrollBlockHeight;
+        this.margin = margin;
+    }
+
+    /**
+     * @return a preview of the same size, not built
+     */
+    public ScrollPreview createEmpty() {
+        return new ScrollPreview(width, height, scrollBlockHeight, margin);
+    }
+
+    public boolean hasSize(float width, float height) {
+        return this.width == width && this.height == height;
+    }
+
+    /**
+     * @return true if built with the same series visible
+     */
+    public boolean hasVisibility(boolean[] visibleList) {
+        return Arrays.equals(this.visibleList, visibleList);
+    }
+
+    /**
+     * @return vertices per series, null for hidden series, or null until {@link #build} is done
+     */
+    public float[][] getVertices() {
+        return vertices;
+    }
+
+    /**
+     * @return number of floats used in array {@code graph} of {@link #getVertices()}
+     */
+    public int getFloatCount(int graph) {
+        return floatCounts[graph];
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    float getWidth() {
+        return width;
+    }
+
+    float getHeight() {
+        return height;
+    }
+
+    float getScrollBlockHeight() {
+        return scrollBlockHeight;
+    }
+
+    float getMargin() {
+        return margin;
+    }
+
+    int getBuiltPointCount() {
+        return builtPointCount;
+    }
+
+    long getBuiltMaxY() {
+        return builtMaxY;
+    }
+
+    float getLineWidth() {
+        return lineWidth;
+    }
+
+    float getLineHeight() {
+        return lineHeight;
+    }
+
+    boolean[] getVisibleList() {
+        return visibleList;
+    }
+
+    /**
+     * Builds vertices for the first {@code pointCount} points of every visible series.
+     *
+     * @param pyramids    pyramid of every series covering at least {@code pointCount} points,
+     *                    or null to read every point
+     * @param visibleList visibility of every series, hidden ones get no vertices
+     * @param maxY        max of the visible series
+     */
+    public void build(long[][] graphArray, SeriesPyramid[] pyramids, boolean[] visibleList, int pointCount, long maxY) {
+        float[][] toArrays = new float[graphArray.length][];
+        int[] toFloatCounts = new int[graphArray.length];
+
+        this.builtPointCount = pointCount;
+        this.builtMaxY = Math.max(maxY, 0);
+        this.lineWidth = width / (pointCount - 1);
+        this.lineHeight = (scrollBlockHeight - margin * 2) / builtMaxY;
+
+        float originX = width - lineWidth * (pointCount - 1);
+        int maxFloatCount = Math.max(lineDownsampler.getMaxFloatCount(pointCount, lineWidth), 0);
+        for (int graphCount = 0; graphCount < graphArray.length; graphCount++) {
+            if (!visibleList[graphCount]) {
+                continue;
+            }
+            toArrays[graphCount] = new float[maxFloatCount];
+            toFloatCounts[graphCount] = lineDownsampler.build(
+                    graphArray[graphCount],
+                    pyramids != null ? pyramids[graphCount] : null,
+                    0,
+                    pointCount,
+                    originX,
+                    lineWidth,
+                    height - margin,
+                    lineHeight,
+                    toArrays[graphCount]
+            );
+        }
+
+        this.vertices = toArrays;
+        this.floatCounts = toFloatCounts;
+        this.visibleList = visibleList.clone();
+        this.pointCount = pointCount;
+    }
+
+    /**
+     * Sets vertices saved from a build of this size instead of building them.
+     */
+    void restore(float[][] vertices, int[] floatCounts, boolean[] visibleList, int pointCount, long builtMaxY, float lineWidth, float lineHeight) {
+        this.builtPointCount = pointCount;
+        this.builtMaxY = builtMaxY;
+        this.lineWidth = lineWidth;
+        this.lineHeight = lineHeight;
+        this.vertices = vertices;
+        this.floatCounts = floatCounts;
+        this.visibleList = visibleList;
+        this.pointCount = pointCount;
+    }
+
+    /**
+     * Adds vertices for points appended since the last build or append.
+     */
+    public void append(long[][] graphArray, int pointCount) {
+        if (pointCount <= this.pointCount) {
+            return;
+        }
+
+        int appendFloatCount = (pointCount - this.pointCount) * 4;
+        for (int graphCount = 0; graphCount < vertices.length; graphCount++) {
+            float[] toArray = vertices[graphCount];
+            if (toArray == null) {
+                continue;
+            }
+            int floatCount = floatCounts[graphCount];
+            if (toArray.length < floatCount + appendFloatCount) {
+                toArray = Arrays.copyOf(toArray, Math.max(floatCount + appendFloatCount, toArray.length * 2));
+                vertices[graphCount] = toArray;
+            }
+            floatCounts[graphCount] = fill(graphArray[graphCount], toArray, floatCount, this.pointCount, pointCount);
+        }
+        this.pointCount = pointCount;
+    }
+
+    /**
+     * @return true if drawing {@code pointCount} points with the given max would stretch
+     * the built vertices by more than {@link #REBUILD_TOLERANCE}
+     */
+    public boolean needsRebuild(int pointCount, long maxY) {
+        return getScaleX(pointCount) < 1 - REBUILD_TOLERANCE
+                || getScaleY(maxY) < 1 - REBUILD_TOLERANCE;
+    }
+
+    public float getScaleX(int pointCount) {
+        return pointCount > builtPointCount ? (builtPointCount - 1) / (float) (pointCount - 1) : 1;
+    }
+
+    public float getTranslateX(int pointCount) {
+        float scaleX = getScaleX(pointCount);
+        return width - scaleX * (width + lineWidth * (pointCount - builtPointCount));
+    }
+
+    public float getScaleY(long maxY) {
+        return maxY > builtMaxY && builtMaxY > 0 ? builtMaxY / (float) maxY : 1;
+    }
+
+    public float getTranslateY(long maxY) {
+        return (height - margin) * (1 - getScaleY(maxY));
+    }
+
+    //appended points are added one segment each, until needsRebuild asks for a new build
+    private int fill(long[] fromArray, float[] toArray, int position, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int previousPosition = i <= 0 ? 0 : i - 1;
+
+            toArray[position] = width - lineWidth * (builtPointCount - 1 - previousPosition);
+            toArray[position + 1] = height - margin - (fromArray[previousPosition] * lineHeight);
+            toArray[position + 2] = width - lineWidth * (builtPointCount - 1 - i);
+            toArray[position + 3] = height - margin - (fromArray[i] * lineHeight);
+            position += 4;
+        }
+        return position;
+    }
+}
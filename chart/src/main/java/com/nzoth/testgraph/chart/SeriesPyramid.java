@@ -0,0 +1,305 @@
+package com.nzoth.testgraph.chart;
+
+import java.util.Arrays;
+
+/**
+ * Min and max of a series over buckets of {@code 2^(BASE_SHIFT + level)} points, for every
+ * level up to a single bucket. Drawing a zoomed out range reads one level instead of every
+ * point, see {@link LineDownsampler#build(long[], SeriesPyramid, int, int, float, float, float, float, float[])}.
+ * <p>
+ * First and last value of a bucket are the series values at its edges, so only min and
+ * max are stored; all levels together take about half as many longs as the series.
+ * <p>
+ * Buckets that were full when read never change; {@link #append} only rewrites the last,
+ * partial bucket of every level. A {@link #snapshot} keeps its own copy of those, so it can
+ * be read on another thread while the original keeps growing.
+ */
+public class SeriesPyramid {
+    static final int BASE_SHIFT = 3;
+
+    private long[] values;
+    private int size;
+    private int levelCount;
+    private long[][] minLevels;
+    private long[][] maxLevels;
+    //of a snapshot, its last bucket of every level, which the original rewrites in place
+    private long[] lastMins;
+    private long[] lastMaxs;
+
+    /**
+     * Builds levels for the first {@code size} values, the array is referenced, not copied.
+     */
+    public SeriesPyramid(long[] values, int size) {
+        this(values, size, getLevelCount(size));
+        fillLevels(0, getBucketCount(0, size), levelCount - 1);
+    }
+
+    SeriesPyramid(long[] values, int size, int levelCount) {
+        this.values = values;
+        this.size = size;
+        this.levelCount = levelCount;
+        this.minLevels = new long[levelCount][];
+        this.maxLevels = new long[levelCount][];
+        for (int level = 0; level < levelCount; level++) {
+            int bucketCount = getBucketCount(level, size);
+            minLevels[level] = new long[bucketCount];
+            maxLevels[level] = new long[bucketCount];
+        }
+    }
+
+    /**
+     * Restores the pyramid of the first {@code size} values from levels read from another
+     * pyramid of them, each with exactly {@link #getBucketCount} buckets. The last bucket
+     * of every level is filled again, it may have grown since the levels were read.
+     */
+    SeriesPyramid(long[] values, int size, long[][] minLevels, long[][] maxLevels) {
+        this.values = values;
+        this.size = size;
+        this.levelCount = minLevels.length;
+        this.minLevels = minLevels;
+        this.maxLevels = maxLevels;
+        for (int level = 0; level < levelCount; level++) {
+            int bucketCount = getBucketCount(level, size);
+            fillLevel(level, bucketCount - 1, bucketCount);
+        }
+    }
+
+    private SeriesPyramid(SeriesPyramid pyramid) {
+        this.values = pyramid.values;
+        this.size = pyramid.size;
+        this.levelCount = pyramid.levelCount;
+        this.minLevels = pyramid.minLevels.clone();
+        this.maxLevels = pyramid.maxLevels.clone();
+        this.lastMins = new long[levelCount];
+        this.lastMaxs = new long[levelCount];
+        for (int level = 0; level < levelCount; level++) {
+            int lastBucket = getBucketCount(level, size) - 1;
+            if (lastBucket >= 0) {
+                lastMins[level] = pyramid.getBucketMin(level, lastBucket);
+                lastMaxs[level] = pyramid.getBucketMax(level, lastBucket);
+            }
+        }
+    }
+
+    /**
+     * @return a copy that keeps the current size, for reading on another thread while this
+     * one is appended to. It shares the full buckets and copies the last one of every
+     * level, in O(log n); it can't be appended to itself.
+     */
+    public SeriesPyramid snapshot() {
+        return new SeriesPyramid(this);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getLevelCount() {
+        return levelCount;
+    }
+
+    public int getBucketShift(int level) {
+        return BASE_SHIFT + level;
+    }
+
+    public long getBucketMin(int level, int bucket) {
+        if (lastMins != null && bucket == getBucketCount(level, size) - 1) {
+            return lastMins[level];
+        }
+        return minLevels[level][bucket];
+    }
+
+    public long getBucketMax(int level, int bucket) {
+        if (lastMaxs != null && bucket == getBucketCount(level, size) - 1) {
+            return lastMaxs[level];
+        }
+        return maxLevels[level][bucket];
+    }
+
+    /**
+     * @return bucket minima of a level, the array may be longer than its bucket count. Of a
+     * snapshot, the last bucket may already hold points appended to the original since; a
+     * pyramid restored from the levels fills it again.
+     */
+    long[] getMinLevel(int level) {
+        return minLevels[level];
+    }
+
+    long[] getMaxLevel(int level) {
+        return maxLevels[level];
+    }
+
+    /**
+     * @return max of {@code [from, to)} in O(log n), or {@link Long#MIN_VALUE} if the range
+     * is empty
+     */
+    public long getMax(int from, int to) {
+        from = Math.max(from, 0);
+        to = Math.min(to, size);
+        int fromBucket = getCeilShifted(from, BASE_SHIFT);
+        int toBucket = to >> BASE_SHIFT;
+        if (fromBucket >= toBucket) {
+            return scan(from, to);
+        }
+
+        long max = Math.max(scan(from, fromBucket << BASE_SHIFT), scan(toBucket << BASE_SHIFT, to));
+        //full buckets only, which appends don't rewrite
+        for (int level = 0; fromBucket < toBucket; level++) {
+            long[] maxs = maxLevels[level];
+            if ((fromBucket & 1) == 1) {
+                max = Math.max(max, maxs[fromBucket++]);
+            }
+            if ((toBucket & 1) == 1) {
+                max = Math.max(max, maxs[--toBucket]);
+            }
+            fromBucket >>= 1;
+            toBucket >>= 1;
+        }
+        return max;
+    }
+
+    /**
+     * @param pointWidth     pixels between two points
+     * @param maxBucketWidth widest bucket in pixels that may be drawn as one
+     * @return the coarsest level with buckets no wider than {@code maxBucketWidth}, or -1
+     * if even the finest is wider
+     */
+    public int getLevel(float pointWidth, float maxBucketWidth) {
+        int level = -1;
+        while (level + 1 < levelCount
+                && (1L << getBucketShift(level + 1)) * pointWidth <= maxBucketWidth) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Indexes values appended since the last call in O(log n). {@code values} may be a grown
+     * copy of the previous array; values below the previous size must not have changed.
+     */
+    public void append(long[] values, int size) {
+        if (lastMins != null) {
+            throw new IllegalStateException("Snapshots can't be appended to");
+        }
+        int previousSize = this.size;
+        this.values = values;
+        this.size = size;
+        if (size <= previousSize) {
+            return;
+        }
+
+        int newLevelCount = getLevelCount(size);
+        if (newLevelCount > levelCount) {
+            minLevels = Arrays.copyOf(minLevels, newLevelCount);
+            maxLevels = Arrays.copyOf(maxLevels, newLevelCount);
+            for (int level = levelCount; level < newLevelCount; level++) {
+                minLevels[level] = new long[0];
+                maxLevels[level] = new long[0];
+            }
+            levelCount = newLevelCount;
+        }
+
+        for (int level = 0; level < levelCount; level++) {
+            int bucketCount = getBucketCount(level, size);
+            if (minLevels[level].length < bucketCount) {
+                int capacity = Math.max(bucketCount, minLevels[level].length * 2);
+                minLevels[level] = Arrays.copyOf(minLevels[level], capacity);
+                maxLevels[level] = Arrays.copyOf(maxLevels[level], capacity);
+            }
+            fillLevel(level, previousSize >> getBucketShift(level), bucketCount);
+        }
+    }
+
+    /**
+     * Indexes all values again after they were changed in place, in O(n) and into the same
+     * levels.
+     */
+    public void refill() {
+        if (lastMins != null) {
+            throw new IllegalStateException("Snapshots can't be refilled");
+        }
+        fillLevels(0, getBucketCount(0, size), levelCount - 1);
+    }
+
+    /**
+     * Fills buckets {@code [fromBucket, toBucket)} of level 0 and the buckets above them up
+     * to {@code toLevel}. Ranges aligned to {@code 2^toLevel} buckets don't share a bucket,
+     * so they can be filled in parallel.
+     */
+    void fillLevels(int fromBucket, int toBucket, int toLevel) {
+        for (int level = 0; level <= toLevel; level++) {
+            fillLevel(level, fromBucket >> level, Math.min(getBucketCount(level, size), getCeilShifted(toBucket, level)));
+        }
+    }
+
+    /**
+     * Fills levels above {@code fromLevel} from the one below them.
+     */
+    void fillLevelsFrom(int fromLevel) {
+        for (int level = fromLevel; level < levelCount; level++) {
+            fillLevel(level, 0, getBucketCount(level, size));
+        }
+    }
+
+    private void fillLevel(int level, int fromBucket, int toBucket) {
+        long[] mins = minLevels[level];
+        long[] maxs = maxLevels[level];
+
+        if (level == 0) {
+            for (int bucket = fromBucket; bucket < toBucket; bucket++) {
+                int from = bucket << BASE_SHIFT;
+                int to = Math.min(from + (1 << BASE_SHIFT), size);
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                for (int i = from; i < to; i++) {
+                    long value = values[i];
+                    min = value < min ? value : min;
+                    max = value > max ? value : max;
+                }
+                mins[bucket] = min;
+                maxs[bucket] = max;
+            }
+            return;
+        }
+
+        long[] childMins = minLevels[level - 1];
+        long[] childMaxs = maxLevels[level - 1];
+        int childCount = getBucketCount(level - 1, size);
+        for (int bucket = fromBucket; bucket < toBucket; bucket++) {
+            int child = bucket * 2;
+            long min = childMins[child];
+            long max = childMaxs[child];
+            if (child + 1 < childCount) {
+                min = Math.min(min, childMins[child + 1]);
+                max = Math.max(max, childMaxs[child + 1]);
+            }
+            mins[bucket] = min;
+            maxs[bucket] = max;
+        }
+    }
+
+    private long scan(int from, int to) {
+        long max = Long.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            max = max < values[i] ? values[i] : max;
+        }
+        return max;
+    }
+
+    static int getBucketCount(int level, int size) {
+        return getCeilShifted(size, BASE_SHIFT + level);
+    }
+
+    static int getLevelCount(int size) {
+        int levelCount = 0;
+        while (getBucketCount(levelCount, size) > 1) {
+            levelCount++;
+        }
+        //the level with a single bucket
+        return size > 0 ? levelCount + 1 : 0;
+    }
+
+    private static int getCeilShifted(int value, int shift) {
+        return (int) ((value + (1L << shift) - 1) >> shift);
+    }
+}
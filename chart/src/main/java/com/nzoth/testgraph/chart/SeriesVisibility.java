@@ -0,0 +1,119 @@
+package com.nzoth.testgraph.chart;
+
+import java.util.Arrays;
+
+/**
+ * Which series of a chart are shown, and the fade and Y rescale animation that runs after
+ * one is toggled. Animation values are computed from the time passed in, so the owner just
+ * draws frames until {@link #isAnimating} turns false.
+ */
+public class SeriesVisibility {
+    public static final long DURATION_MILLIS = 250;
+
+    private final boolean[] visibleList;
+    private final float[] fromAlphaList;
+    private long startTime = Long.MIN_VALUE;
+    private float fromMaxY = Float.NaN;
+    private float shownMaxY = Float.NaN;
+
+    public SeriesVisibility(int seriesCount) {
+        this.visibleList = new boolean[seriesCount];
+        this.fromAlphaList = new float[seriesCount];
+        Arrays.fill(visibleList, true);
+        Arrays.fill(fromAlphaList, 1F);
+    }
+
+    public int getSeriesCount() {
+        return visibleList.length;
+    }
+
+    public boolean isVisible(int series) {
+        return visibleList[series];
+    }
+
+    public boolean isAllVisible() {
+        for (boolean visible : visibleList) {
+            if (!visible) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isAnyVisible() {
+        for (boolean visible : visibleList) {
+            if (visible) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return a copy of the visibility of every series
+     */
+    public boolean[] getVisibleList() {
+        return visibleList.clone();
+    }
+
+    /**
+     * Shows or hides a series, starting a fade and a Y rescale from the values shown at
+     * {@code time}.
+     *
+     * @return false if the series already was in that state
+     */
+    public boolean setVisible(int series, boolean visible, long time) {
+        if (visibleList[series] == visible) {
+            return false;
+        }
+
+        for (int i = 0; i < visibleList.length; i++) {
+            fromAlphaList[i] = getAlpha(i, time);
+        }
+        fromMaxY = shownMaxY;
+        startTime = time;
+        visibleList[series] = visible;
+        return true;
+    }
+
+    public boolean isAnimating(long time) {
+        return time - startTime < DURATION_MILLIS;
+    }
+
+    /**
+     * @return opacity of a series from 0 to 1; hidden series at 0 need not be drawn
+     */
+    public float getAlpha(int series, long time) {
+        float toAlpha = visibleList[series] ? 1F : 0F;
+        if (!isAnimating(time)) {
+            return toAlpha;
+        }
+        float fromAlpha = fromAlphaList[series];
+        return fromAlpha + (toAlpha - fromAlpha) * getProgress(time);
+    }
+
+    /**
+     * @param targetMaxY max Y of the visible series over the visible range, or NaN if no
+     *                   series is visible
+     * @return max Y to draw with, moving from the value shown when the animation started
+     * to {@code targetMaxY}
+     */
+    public float getShownMaxY(float targetMaxY, long time) {
+        if (Float.isNaN(targetMaxY)) {
+            //nothing visible, keep the scale the fading series are drawn with
+            return Float.isNaN(shownMaxY) ? 0 : shownMaxY;
+        }
+        if (isAnimating(time) && !Float.isNaN(fromMaxY)) {
+            shownMaxY = fromMaxY + (targetMaxY - fromMaxY) * getProgress(time);
+        } else {
+            shownMaxY = targetMaxY;
+        }
+        return shownMaxY;
+    }
+
+    //decelerating, like DecelerateInterpolator
+    private float getProgress(long time) {
+        float progress = Math.min((time - startTime) / (float) DURATION_MILLIS, 1F);
+        return 1F - (1F - progress) * (1F - progress);
+    }
+}
@@ -0,0 +1,201 @@
+package com.nzoth.testgraph.chart;
+
+import java.util.Arrays;
+
+/**
+ * Running sums of the visible series of a stacked chart. Column {@code k} holds the sum of
+ * the visible series {@code 0..k} at every point, so area {@code k} lies between column
+ * {@code k - 1} and column {@code k}; a hidden series has the same column as the one below.
+ * <p>
+ * Columns are summed once; when a series is shown or hidden only the columns from it up
+ * are summed again, into the same arrays. A frame reads just the visible slice through
+ * {@link ChartViewport#buildAreaEdge}. For stacked charts every column also gets a
+ * {@link SeriesPyramid} and the top column, the total, a {@link RangeMaxIndex} for the max
+ * Y; both are refilled in place too. Percentage charts always show {@link #PERCENTAGE_MAX}
+ * and need neither.
+ * <p>
+ * Columns hold the sums of the series as they end up. While a toggled series fades,
+ * {@link #setFades} makes {@link #getShownValue} add the part of it that is still shown, or
+ * take away the part that isn't yet.
+ */
+public class StackedSeries {
+    public static final int PERCENTAGE_MAX = 100;
+
+    private final boolean percentage;
+    private final float[] fadeList;
+    private long[][] graphList;
+    private long[][] stackList;
+    private SeriesPyramid[] pyramids;
+    private RangeMaxIndex totalMaxIndex;
+    private int size;
+    private boolean fading;
+
+    /**
+     * @param size       number of points to sum, arrays may be longer
+     * @param percentage true to skip the indexes only stacked charts use
+     */
+    public StackedSeries(long[][] graphList, int size, SeriesVisibility visibility, boolean percentage) {
+        this.percentage = percentage;
+        this.fadeList = new float[graphList.length];
+        this.graphList = graphList;
+        this.size = size;
+        this.stackList = new long[graphList.length][size];
+        fill(0, 0, size, visibility);
+        buildIndexes();
+    }
+
+    public boolean isPercentage() {
+        return percentage;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getSeriesCount() {
+        return stackList.length;
+    }
+
+    /**
+     * @return sums of the visible series up to and including {@code series}
+     */
+    public long[] getStack(int series) {
+        return stackList[series];
+    }
+
+    /**
+     * @return sums of all visible series, or null if there are no series
+     */
+    public long[] getTotal() {
+        return stackList.length > 0 ? stackList[stackList.length - 1] : null;
+    }
+
+    /**
+     * @return pyramid of {@link #getStack}, or null for percentage charts
+     */
+    public SeriesPyramid getPyramid(int series) {
+        return pyramids != null ? pyramids[series] : null;
+    }
+
+    /**
+     * @return index over {@link #getTotal}, or null for percentage charts and charts
+     * without series
+     */
+    public RangeMaxIndex getTotalMaxIndex() {
+        return totalMaxIndex;
+    }
+
+    /**
+     * Sums the columns from {@code series} up again after it was shown or hidden, in
+     * O(n) per column and without allocating. The columns below don't include it.
+     */
+    public void update(long[][] graphList, SeriesVisibility visibility, int series) {
+        this.graphList = graphList;
+        fill(series, 0, size, visibility);
+
+        if (pyramids != null) {
+            for (int i = series; i < pyramids.length; i++) {
+                pyramids[i].refill();
+            }
+        }
+        if (totalMaxIndex != null) {
+            totalMaxIndex.refill();
+        }
+    }
+
+    /**
+     * Takes the alpha of every series at {@code time}, see {@link #getShownValue}.
+     *
+     * @return true if a series is fading
+     */
+    public boolean setFades(SeriesVisibility visibility, long time) {
+        fading = false;
+        for (int i = 0; i < fadeList.length; i++) {
+            //what the columns lack of the series, or hold too much of it
+            float fade = visibility.getAlpha(i, time) - (visibility.isVisible(i) ? 1 : 0);
+            fadeList[i] = fade;
+            fading |= fade != 0;
+        }
+        return fading;
+    }
+
+    /**
+     * @return column {@code series} at {@code position} with every fading series below or
+     * at it counted by its alpha
+     */
+    public float getShownValue(int series, int position) {
+        return stackList[series][position] + getFadeOffset(series, position);
+    }
+
+    /**
+     * @return what {@link #getShownValue} adds to the column, 0 when nothing fades
+     */
+    public float getFadeOffset(int series, int position) {
+        if (!fading) {
+            return 0;
+        }
+
+        float offset = 0;
+        for (int i = 0; i <= series; i++) {
+            if (fadeList[i] != 0) {
+                offset += fadeList[i] * graphList[i][position];
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Sums the points appended since the last call. Arrays grow by doubling, so references
+     * returned by {@link #getStack} before the call may be stale afterwards.
+     */
+    public void append(long[][] graphList, int size, SeriesVisibility visibility) {
+        int previousSize = this.size;
+        this.graphList = graphList;
+        this.size = size;
+        if (size <= previousSize) {
+            return;
+        }
+
+        for (int i = 0; i < stackList.length; i++) {
+            if (stackList[i].length < size) {
+                stackList[i] = Arrays.copyOf(stackList[i], Math.max(size, stackList[i].length * 2));
+            }
+        }
+        fill(0, previousSize, size, visibility);
+
+        if (pyramids != null) {
+            for (int i = 0; i < pyramids.length; i++) {
+                pyramids[i].append(stackList[i], size);
+            }
+        }
+        if (totalMaxIndex != null) {
+            totalMaxIndex.update(getTotal(), size);
+        }
+    }
+
+    private void fill(int fromSeries, int from, int to, SeriesVisibility visibility) {
+        for (int series = fromSeries; series < stackList.length; series++) {
+            long[] stack = stackList[series];
+            long[] below = series > 0 ? stackList[series - 1] : null;
+            long[] values = graphList[series];
+            boolean visible = visibility.isVisible(series);
+
+            for (int i = from; i < to; i++) {
+                long sum = below != null ? below[i] : 0;
+                stack[i] = visible ? sum + values[i] : sum;
+            }
+        }
+    }
+
+    private void buildIndexes() {
+        if (percentage || stackList.length == 0) {
+            return;
+        }
+
+        pyramids = new SeriesPyramid[stackList.length];
+        for (int i = 0; i < stackList.length; i++) {
+            pyramids[i] = new SeriesPyramid(stackList[i], size);
+        }
+        totalMaxIndex = new RangeMaxIndex(getTotal(), size);
+    }
+}
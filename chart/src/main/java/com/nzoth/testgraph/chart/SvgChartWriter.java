@@ -0,0 +1,153 @@
+package com.nzoth.testgraph.chart;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a {@link ChartImage} as SVG, streaming one path per series as it is drawn.
+ * Segments that continue where the previous one ended are joined into one polyline, so
+ * a series is a single {@code M ... L ...} path; coordinates are rounded to a tenth of a
+ * pixel.
+ * <p>
+ * Call {@link #begin}, then {@link ChartImage#draw} with this as the sink, then
+ * {@link #end}. The writer is not closed.
+ */
+public class SvgChartWriter implements ChartImage.Sink {
+    private static final String FONT_FAMILY = "sans-serif";
+
+    private final Writer writer;
+    private final float textSize;
+    private final char[] number = new char[24];
+    private IOException error;
+
+    public SvgChartWriter(Writer writer, float textSize) {
+        this.writer = writer;
+        this.textSize = textSize;
+    }
+
+    public void begin(int width, int height) throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width + "\" height=\"" + height
+                + "\" viewBox=\"0 0 " + width + " " + height + "\">\n");
+        writer.write("<rect width=\"100%\" height=\"100%\"");
+        writeColor("fill", ChartImage.BACKGROUND_COLOR);
+        writer.write("/>\n");
+    }
+
+    /**
+     * @throws IOException the first error the sink methods met, they can't throw it
+     */
+    public void end() throws IOException {
+        checkError();
+        writer.write("</svg>\n");
+        writer.flush();
+    }
+
+    @Override
+    public void drawLines(float[] segments, int count, int color, float lineWidth) {
+        if (error != null || count < 4) {
+            return;
+        }
+        try {
+            writer.write("<path fill=\"none\" stroke-linecap=\"round\" stroke-linejoin=\"round\"");
+            writeColor("stroke", color);
+            writer.write(" stroke-width=\"");
+            writeNumber(lineWidth);
+            writer.write("\" d=\"");
+            for (int i = 0; i < count; i += 4) {
+                //a segment starting where the last one ended continues the polyline
+                if (i == 0 || segments[i] != segments[i - 2] || segments[i + 1] != segments[i - 1]) {
+                    writer.write('M');
+                    writePoint(segments[i], segments[i + 1]);
+                }
+                writer.write('L');
+                writePoint(segments[i + 2], segments[i + 3]);
+            }
+            writer.write("\"/>\n");
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    @Override
+    public void drawText(char[] text, int length, float x, float y, int color, boolean alignRight) {
+        if (error != null) {
+            return;
+        }
+        try {
+            writer.write("<text x=\"");
+            writeNumber(x);
+            writer.write("\" y=\"");
+            writeNumber(y);
+            writer.write("\" font-family=\"" + FONT_FAMILY + "\" font-size=\"");
+            writeNumber(textSize);
+            writer.write('"');
+            if (alignRight) {
+                writer.write(" text-anchor=\"end\"");
+            }
+            writeColor("fill", color);
+            writer.write('>');
+            //labels are digits, letters and spaces, nothing to escape
+            writer.write(text, 0, length);
+            writer.write("</text>\n");
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    private void checkError() throws IOException {
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void writePoint(float x, float y) throws IOException {
+        writeNumber(x);
+        writer.write(' ');
+        writeNumber(y);
+    }
+
+    private void writeColor(String attribute, int color) throws IOException {
+        writer.write(' ');
+        writer.write(attribute);
+        writer.write("=\"#");
+        String hex = Integer.toHexString(color & 0xFFFFFF);
+        for (int i = hex.length(); i < 6; i++) {
+            writer.write('0');
+        }
+        writer.write(hex);
+        writer.write('"');
+        int alpha = color >>> 24;
+        if (alpha < 0xFF) {
+            writer.write(' ');
+            writer.write(attribute);
+            writer.write("-opacity=\"");
+            writeNumber(alpha / 255F);
+            writer.write('"');
+        }
+    }
+
+    //tenths without a trailing ".0", and without the garbage of String.valueOf for every point
+    private void writeNumber(float value) throws IOException {
+        long tenths = Math.round(value * 10.0);
+        int length = 0;
+        boolean negative = tenths < 0;
+        if (negative) {
+            tenths = -tenths;
+        }
+        long fraction = tenths % 10;
+        long whole = tenths / 10;
+        if (fraction != 0) {
+            number[number.length - 1 - length++] = (char) ('0' + fraction);
+            number[number.length - 1 - length++] = '.';
+        }
+        do {
+            number[number.length - 1 - length++] = (char) ('0' + whole % 10);
+            whole /= 10;
+        } while (whole > 0);
+        if (negative) {
+            number[number.length - 1 - length++] = '-';
+        }
+        writer.write(number, number.length - length, length);
+    }
+}
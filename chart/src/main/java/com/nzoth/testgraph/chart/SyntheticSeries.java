@@ -0,0 +1,159 @@
+package com.nzoth.testgraph.chart;
+
+import java.util.Random;
+
+/**
+ * Generates dates and series values for stress tests, from a few points up to tens of
+ * millions. Values are non-negative like chart_data.json, and the same settings give the
+ * same data.
+ */
+public class SyntheticSeries {
+    public static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private static final long START_VALUE = 1000;
+    private static final int WALK_STEP = 50;
+    private static final int SPIKE_CHANCE = 1000;
+    private static final int SPIKE_FACTOR = 20;
+
+    public enum Distribution {
+        /**
+         * Random walk with steps of up to {@value #WALK_STEP}.
+         */
+        RANDOM_WALK,
+        /**
+         * Small noise around a base value with a spike about every {@value #SPIKE_CHANCE}
+         * points, the case downsampling must not lose.
+         */
+        SPIKES,
+        /**
+         * One value per series, every point ties for the max.
+         */
+        FLAT
+    }
+
+    private int pointCount = 1000;
+    private int seriesCount = 2;
+    private Distribution distribution = Distribution.RANDOM_WALK;
+    private long startDate = 1546300800000L;
+    private long dateStep = DAY_MILLIS;
+    private long dateJitter;
+    private long seed = 42;
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public void setPointCount(int pointCount) {
+        this.pointCount = pointCount;
+    }
+
+    public int getSeriesCount() {
+        return seriesCount;
+    }
+
+    public void setSeriesCount(int seriesCount) {
+        this.seriesCount = seriesCount;
+    }
+
+    public Distribution getDistribution() {
+        return distribution;
+    }
+
+    public void setDistribution(Distribution distribution) {
+        this.distribution = distribution;
+    }
+
+    public long getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(long startDate) {
+        this.startDate = startDate;
+    }
+
+    public long getDateStep() {
+        return dateStep;
+    }
+
+    /**
+     * @param dateStep millis between two points, a day by default
+     */
+    public void setDateStep(long dateStep) {
+        this.dateStep = dateStep;
+    }
+
+    public long getDateJitter() {
+        return dateJitter;
+    }
+
+    /**
+     * @param dateJitter up to this many millis are added to every step, so points are
+     *                   unevenly spaced but still in order
+     */
+    public void setDateJitter(long dateJitter) {
+        this.dateJitter = dateJitter;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public long[] createDates() {
+        Random random = new Random(seed);
+        long[] dates = new long[pointCount];
+        long date = startDate;
+        for (int i = 0; i < pointCount; i++) {
+            dates[i] = date;
+            date += dateStep + (dateJitter > 0 ? (long) (random.nextDouble() * dateJitter) : 0);
+        }
+        return dates;
+    }
+
+    public long[][] createValues() {
+        long[][] graphArray = new long[seriesCount][];
+        for (int series = 0; series < seriesCount; series++) {
+            //own generator per series, so a series doesn't change with the series count
+            Random random = new Random(seed + series + 1);
+            long[] values = new long[pointCount];
+            switch (distribution) {
+                case RANDOM_WALK:
+                    fillRandomWalk(values, random);
+                    break;
+                case SPIKES:
+                    fillSpikes(values, random);
+                    break;
+                default:
+                    fillFlat(values, series);
+                    break;
+            }
+            graphArray[series] = values;
+        }
+        return graphArray;
+    }
+
+    private void fillRandomWalk(long[] values, Random random) {
+        long value = START_VALUE;
+        for (int i = 0; i < values.length; i++) {
+            value = Math.max(value + random.nextInt(WALK_STEP * 2 + 1) - WALK_STEP, 0);
+            values[i] = value;
+        }
+    }
+
+    private void fillSpikes(long[] values, Random random) {
+        for (int i = 0; i < values.length; i++) {
+            long value = START_VALUE + random.nextInt(WALK_STEP);
+            values[i] = random.nextInt(SPIKE_CHANCE) == 0 ? value * SPIKE_FACTOR : value;
+        }
+    }
+
+    private void fillFlat(long[] values, int series) {
+        long value = START_VALUE * (series + 1);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = value;
+        }
+    }
+}
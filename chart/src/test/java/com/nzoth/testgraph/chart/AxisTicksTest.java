@@ -0,0 +1,118 @@
+package com.nzoth.testgraph.chart;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AxisTicksTest {
+    //what GraphView draws
+    private static final int MAX_TICK_COUNT = 6;
+
+    @Test
+    public void stepsAreNice() {
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            double maxY = Math.pow(10, random.nextDouble() * 15);
+            long step = AxisTicks.getStep(maxY, MAX_TICK_COUNT);
+            long magnitude = 1;
+            while (step % (magnitude * 10) == 0) {
+                magnitude *= 10;
+            }
+            long mantissa = step / magnitude;
+            assertTrue(maxY + ": " + step, mantissa == 1 || mantissa == 2 || mantissa == 5);
+        }
+    }
+
+    @Test
+    public void axisCoversMaxWithOneToSixTicks() {
+        Random random = new Random(2);
+        for (int i = 0; i < 100000; i++) {
+            float maxY = (float) Math.pow(10, random.nextDouble() * 12);
+            AxisTicks axisTicks = new AxisTicks(MAX_TICK_COUNT);
+            assertTrue(axisTicks.update(maxY));
+            assertTrue(axisTicks.hasTicks());
+            assertTrue(axisTicks.getTickCount() >= 1 && axisTicks.getTickCount() <= MAX_TICK_COUNT);
+            assertTrue(maxY + " above " + axisTicks.getAxisMax(), axisTicks.getAxisMax() >= maxY);
+            //one tick less would not reach the max
+            assertTrue(axisTicks.getAxisMax() - axisTicks.getStep() < maxY);
+        }
+    }
+
+    @Test
+    public void stepIsTheSmallestThatFits() {
+        assertEquals(1, AxisTicks.getStep(6, MAX_TICK_COUNT));
+        assertEquals(2, AxisTicks.getStep(7, MAX_TICK_COUNT));
+        assertEquals(2, AxisTicks.getStep(12, MAX_TICK_COUNT));
+        assertEquals(5, AxisTicks.getStep(13, MAX_TICK_COUNT));
+        assertEquals(10, AxisTicks.getStep(31, MAX_TICK_COUNT));
+        assertEquals(200, AxisTicks.getStep(1000, MAX_TICK_COUNT));
+        assertEquals(500000, AxisTicks.getStep(3000000, MAX_TICK_COUNT));
+        assertEquals(2000000000000000000L, AxisTicks.getStep(Long.MAX_VALUE, MAX_TICK_COUNT));
+    }
+
+    @Test
+    public void smallChangesKeepTicks() {
+        AxisTicks axisTicks = new AxisTicks(MAX_TICK_COUNT);
+        axisTicks.update(950);
+        long step = axisTicks.getStep();
+        long axisMax = axisTicks.getAxisMax();
+        assertEquals(1000, axisMax);
+
+        //wobbling under the axis, even across a boundary a fresh fit would take
+        for (float maxY = 949; maxY <= 1000; maxY += 0.5F) {
+            assertFalse(axisTicks.update(maxY));
+            assertFalse(axisTicks.update(maxY - 50));
+        }
+        assertEquals(step, axisTicks.getStep());
+        assertEquals(axisMax, axisTicks.getAxisMax());
+    }
+
+    @Test
+    public void growsRightAwayAndShrinksLate() {
+        AxisTicks axisTicks = new AxisTicks(MAX_TICK_COUNT);
+        axisTicks.update(950);
+        assertTrue(axisTicks.update(1000.5F));
+        assertTrue(axisTicks.getAxisMax() >= 1000.5F);
+
+        long axisMax = axisTicks.getAxisMax();
+        //a fresh fit of 1000 ends at 1000, but the max is not well inside it yet
+        assertFalse(axisTicks.update(1000));
+        assertEquals(axisMax, axisTicks.getAxisMax());
+
+        assertTrue(axisTicks.update(400));
+        assertTrue(axisTicks.getAxisMax() >= 400 / AxisTicks.SHRINK_FRACTION);
+        assertTrue(axisTicks.getAxisMax() < axisMax);
+    }
+
+    @Test
+    public void zeroAndNegativeMaxKeepOneTick() {
+        for (float maxY : new float[]{0, -0.5F, -1000}) {
+            AxisTicks axisTicks = new AxisTicks(MAX_TICK_COUNT);
+            axisTicks.update(maxY);
+            assertTrue(axisTicks.hasTicks());
+            assertEquals(1, axisTicks.getTickCount());
+            assertEquals(1, axisTicks.getStep());
+            assertEquals(0, axisTicks.getTickValue(0));
+        }
+    }
+
+    @Test
+    public void nanAndResetKeepOrDropTicks() {
+        AxisTicks axisTicks = new AxisTicks(MAX_TICK_COUNT);
+        assertFalse(axisTicks.update(Float.NaN));
+        assertFalse(axisTicks.hasTicks());
+
+        axisTicks.update(300);
+        long axisMax = axisTicks.getAxisMax();
+        assertFalse(axisTicks.update(Float.NaN));
+        assertEquals(axisMax, axisTicks.getAxisMax());
+
+        axisTicks.reset();
+        assertFalse(axisTicks.hasTicks());
+        assertTrue(axisTicks.update(300));
+    }
+}
@@ -0,0 +1,97 @@
+package com.nzoth.testgraph.chart;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChartImageTest {
+    private static final int POINT_COUNT = 10;
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    @Test
+    public void rangesOutsideThePointsAreRejected() {
+        int[][] ranges = {{-1, 5}, {0, POINT_COUNT + 1}, {5, 5}, {5, 6}, {7, 3}, {POINT_COUNT - 1, POINT_COUNT + 1}};
+        for (int[] range : ranges) {
+            try {
+                draw(range[0], range[1], new CountingSink());
+                fail("Drew points " + range[0] + " to " + range[1]);
+            } catch (IllegalArgumentException expected) {
+                //GraphExporter reports it as a failed export
+            }
+        }
+    }
+
+    @Test
+    public void rangesOfTwoPointsOrMoreAreDrawn() {
+        for (int[] range : new int[][]{{0, 2}, {POINT_COUNT - 2, POINT_COUNT}, {0, POINT_COUNT}, {3, 7}}) {
+            CountingSink sink = new CountingSink();
+            draw(range[0], range[1], sink);
+            //the grid, then one line per series
+            assertEquals(sink.gridLineCount + 2, sink.lineCount);
+            assertTrue(sink.textCount > 0);
+        }
+    }
+
+    @Test
+    public void pointsPastTheCountAreNotDrawn() {
+        ChartImage image = createImage();
+        long[][] graphList = createGraphList(POINT_COUNT + 5);
+        try {
+            //the arrays are longer than pointCount
+            image.draw(createDates(POINT_COUNT + 5), graphList, null, new int[]{0xFF3DC23F, 0xFFF34C44},
+                    POINT_COUNT, 0, POINT_COUNT + 1, new CountingSink());
+            fail("Drew a point past the count");
+        } catch (IllegalArgumentException expected) {
+            //appends may write there
+        }
+    }
+
+    private static void draw(int from, int to, ChartImage.Sink sink) {
+        createImage().draw(createDates(POINT_COUNT), createGraphList(POINT_COUNT), null,
+                new int[]{0xFF3DC23F, 0xFFF34C44}, POINT_COUNT, from, to, sink);
+    }
+
+    private static ChartImage createImage() {
+        return new ChartImage(400, 300, 12, 10, 2, TimeZone.getTimeZone("UTC"));
+    }
+
+    private static long[] createDates(int length) {
+        long[] dates = new long[length];
+        for (int i = 0; i < length; i++) {
+            dates[i] = 1542412800000L + i * DAY_MILLIS;
+        }
+        return dates;
+    }
+
+    private static long[][] createGraphList(int length) {
+        long[][] graphList = new long[2][length];
+        for (int i = 0; i < length; i++) {
+            graphList[0][i] = i * 10;
+            graphList[1][i] = 100 - i;
+        }
+        return graphList;
+    }
+
+    private static class CountingSink implements ChartImage.Sink {
+        private int lineCount;
+        private int gridLineCount;
+        private int textCount;
+
+        @Override
+        public void drawLines(float[] segments, int count, int color, float lineWidth) {
+            lineCount++;
+            if (color == ChartImage.GRID_COLOR) {
+                gridLineCount++;
+            }
+        }
+
+        @Override
+        public void drawText(char[] text, int length, float x, float y, int color, boolean alignRight) {
+            textCount++;
+        }
+    }
+}
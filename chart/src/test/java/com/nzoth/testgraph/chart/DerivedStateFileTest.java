@@ -0,0 +1,146 @@
+package com.nzoth.testgraph.chart;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+
+public class DerivedStateFileTest {
+    private static final int POINT_COUNT = 10003;
+
+    private long[] dates;
+    private long[][] graphList;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dates = new long[POINT_COUNT];
+        for (int i = 0; i < POINT_COUNT; i++) {
+            dates[i] = i * 1000L;
+        }
+        graphList = new long[][]{RangeMaxIndexTest.randomValues(POINT_COUNT, 1), RangeMaxIndexTest.randomValues(POINT_COUNT, 2)};
+        file = File.createTempFile("state", ".state");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void readsWhatWasWritten() throws IOException {
+        long key = DerivedStateFile.hashKey(dates, graphList, POINT_COUNT);
+        long contentHash = DerivedStateFile.hashContent(dates, graphList, POINT_COUNT);
+        write(key, contentHash, POINT_COUNT);
+
+        DerivedStateFile.State state = DerivedStateFile.read(file, key, graphList, POINT_COUNT, null);
+        assertArrayEquals(combinedMax(POINT_COUNT), state.getCombinedValues());
+        assertEquals(RangeMaxIndexTest.scan(state.getCombinedValues(), 0, POINT_COUNT), state.getCombinedMaxIndex().getMax());
+        for (int i = 0; i < graphList.length; i++) {
+            SeriesPyramidTest.assertBuckets(graphList[i], state.getPyramids()[i]);
+        }
+        assertEquals(contentHash, DerivedStateFile.readContentHash(file));
+    }
+
+    @Test
+    public void keyOnlySamplesThePoints() {
+        long key = DerivedStateFile.hashKey(dates, graphList, POINT_COUNT);
+        long contentHash = DerivedStateFile.hashContent(dates, graphList, POINT_COUNT);
+
+        //a point between the samples
+        graphList[0][POINT_COUNT / 2 + 1]++;
+        assertEquals(key, DerivedStateFile.hashKey(dates, graphList, POINT_COUNT));
+        assertNotEquals(contentHash, DerivedStateFile.hashContent(dates, graphList, POINT_COUNT));
+
+        assertNotEquals(key, DerivedStateFile.hashKey(dates, graphList, POINT_COUNT - 1));
+        graphList[1][0]++;
+        assertNotEquals(key, DerivedStateFile.hashKey(dates, graphList, POINT_COUNT));
+        graphList[1][0]--;
+        dates[POINT_COUNT - 1]++;
+        assertNotEquals(key, DerivedStateFile.hashKey(dates, graphList, POINT_COUNT));
+        assertNotEquals(key, DerivedStateFile.hashKey(dates, new long[][]{graphList[0]}, POINT_COUNT));
+    }
+
+    @Test
+    public void otherKeyOrSizeIsRejected() throws IOException {
+        long key = DerivedStateFile.hashKey(dates, graphList, POINT_COUNT);
+        write(key, 0, POINT_COUNT);
+        assertRejected(key + 1, POINT_COUNT, null);
+        assertRejected(key, POINT_COUNT - 1, null);
+        assertRejected(key, POINT_COUNT, new ScrollPreview(1080, 1500, 150, 10));
+    }
+
+    @Test
+    public void truncatedOrFlippedFileIsRejected() throws IOException {
+        long key = DerivedStateFile.hashKey(dates, graphList, POINT_COUNT);
+        write(key, 0, POINT_COUNT);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.seek(randomAccessFile.length() / 2);
+            int b = randomAccessFile.read();
+            randomAccessFile.seek(randomAccessFile.length() / 2);
+            randomAccessFile.write(b ^ 1);
+        } finally {
+            randomAccessFile.close();
+        }
+        assertRejected(key, POINT_COUNT, null);
+
+        write(key, 0, POINT_COUNT);
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(randomAccessFile.length() - 8);
+        } finally {
+            randomAccessFile.close();
+        }
+        assertRejected(key, POINT_COUNT, null);
+
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(20);
+        } finally {
+            randomAccessFile.close();
+        }
+        assertRejected(key, POINT_COUNT, null);
+        try {
+            DerivedStateFile.readContentHash(file);
+            fail("Header cut short");
+        } catch (IOException expected) {
+            //header cut short
+        }
+    }
+
+    private void write(long key, long contentHash, int pointCount) throws IOException {
+        long[] combinedValues = combinedMax(pointCount);
+        SeriesPyramid[] pyramids = new SeriesPyramid[graphList.length];
+        for (int i = 0; i < graphList.length; i++) {
+            pyramids[i] = new SeriesPyramid(graphList[i], pointCount);
+        }
+        DerivedStateFile.write(file, key, contentHash, new DerivedStateFile.Snapshot(
+                combinedValues, new RangeMaxIndex(combinedValues, pointCount), pyramids, pointCount, null));
+    }
+
+    private void assertRejected(long key, int pointCount, ScrollPreview scrollPreview) {
+        try {
+            DerivedStateFile.read(file, key, graphList, pointCount, scrollPreview);
+            fail("Read state of other points");
+        } catch (IOException expected) {
+            //the caller derives the state again
+        }
+    }
+
+    private long[] combinedMax(int pointCount) {
+        long[] combined = new long[pointCount];
+        for (int i = 0; i < pointCount; i++) {
+            combined[i] = Math.max(graphList[0][i], graphList[1][i]);
+        }
+        return combined;
+    }
+}
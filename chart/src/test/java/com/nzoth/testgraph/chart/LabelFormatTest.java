@@ -0,0 +1,187 @@
+package com.nzoth.testgraph.chart;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link LabelFormat} against the String formatting it replaced: the old
+ * {@code FormatUtils.formatBigValue}, kept below as it was, and {@code SimpleDateFormat}.
+ */
+public class LabelFormatTest {
+    private static final String[] TIME_ZONES = {
+            "UTC", "America/New_York", "Europe/Moscow", "Asia/Kolkata", "Australia/Lord_Howe",
+            "Pacific/Chatham", "Pacific/Kiritimati", "America/St_Johns", "Pacific/Pago_Pago"
+    };
+    //defaults that format numbers or months differently, labels must not follow them
+    private static final Locale[] DEFAULT_LOCALES = {
+            Locale.US, new Locale("tr", "TR"), new Locale("ar", "EG"), new Locale("hi", "IN"), Locale.GERMANY
+    };
+    //1583-01-01 to 2400-01-01, SimpleDateFormat is Julian before 1582
+    private static final long FROM_TIME = -12212553600000L;
+    private static final long TO_TIME = 13569465600000L;
+    private static final long HOUR_MILLIS = 60 * 60 * 1000L;
+
+    private static final NavigableMap<Long, String> SUFFIXES = new TreeMap<>();
+
+    static {
+        SUFFIXES.put(1_000L, "k");
+        SUFFIXES.put(1_000_000L, "M");
+        SUFFIXES.put(1_000_000_000L, "G");
+        SUFFIXES.put(1_000_000_000_000L, "T");
+        SUFFIXES.put(1_000_000_000_000_000L, "P");
+        SUFFIXES.put(1_000_000_000_000_000_000L, "E");
+    }
+
+    private Locale defaultLocale;
+
+    @Before
+    public void setUp() {
+        defaultLocale = Locale.getDefault();
+    }
+
+    @After
+    public void tearDown() {
+        Locale.setDefault(defaultLocale);
+    }
+
+    @Test
+    public void bigValuesMatchOldFormat() {
+        for (Locale locale : DEFAULT_LOCALES) {
+            Locale.setDefault(locale);
+            for (long value : getBigValues()) {
+                assertEquals(String.valueOf(value), oldFormatBigValue(value), formatBigValue(value));
+            }
+        }
+    }
+
+    @Test
+    public void bigValuesFitMaxLength() {
+        char[] out = new char[LabelFormat.BIG_VALUE_MAX_LENGTH];
+        for (long value : getBigValues()) {
+            LabelFormat.formatBigValue(value, out, 0);
+        }
+    }
+
+    @Test
+    public void daysMatchSimpleDateFormat() {
+        Random random = new Random(1);
+        for (Locale locale : DEFAULT_LOCALES) {
+            Locale.setDefault(locale);
+            for (String id : TIME_ZONES) {
+                TimeZone timeZone = TimeZone.getTimeZone(id);
+                SimpleDateFormat dateFormat = new SimpleDateFormat("MMM d", Locale.US);
+                dateFormat.setTimeZone(timeZone);
+
+                //every hour around the epoch, where offsets and day boundaries change often
+                for (long time = -400 * 24 * HOUR_MILLIS; time < 400 * 24 * HOUR_MILLIS; time += HOUR_MILLIS) {
+                    assertDay(dateFormat, timeZone, time);
+                    assertDay(dateFormat, timeZone, time - 1);
+                }
+                for (int i = 0; i < 20000; i++) {
+                    long time = FROM_TIME + (long) (random.nextDouble() * (TO_TIME - FROM_TIME));
+                    assertDay(dateFormat, timeZone, time);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void leapDaysAndDaylightSavingEdges() {
+        TimeZone timeZone = TimeZone.getTimeZone("America/New_York");
+        SimpleDateFormat dateFormat = new SimpleDateFormat("MMM d", Locale.US);
+        dateFormat.setTimeZone(timeZone);
+        //2000-02-29, 1900-02-28 and 2100-03-01 in UTC, and around 2019's clock changes
+        long[] times = {951782400000L, -2203977600000L, 4107542400000L, 1552201200000L, 1572760800000L};
+        for (long time : times) {
+            for (long delta = -26 * HOUR_MILLIS; delta <= 26 * HOUR_MILLIS; delta += HOUR_MILLIS / 2) {
+                assertDay(dateFormat, timeZone, time + delta);
+            }
+        }
+    }
+
+    @Test
+    public void cachedLabelsMatchFormat() {
+        TimeZone timeZone = TimeZone.getTimeZone("Asia/Kolkata");
+        SimpleDateFormat dateFormat = new SimpleDateFormat("MMM d", Locale.US);
+        dateFormat.setTimeZone(timeZone);
+        LabelCache dates = LabelCache.forDates(4, timeZone);
+        LabelCache values = LabelCache.forBigValues(4);
+
+        Random random = new Random(2);
+        for (int i = 0; i < 10000; i++) {
+            //a few keys, so entries are both hit and evicted
+            long time = 1552201200000L + random.nextInt(8) * 24 * HOUR_MILLIS + random.nextInt(24) * HOUR_MILLIS;
+            int slot = dates.get(time);
+            assertEquals(dateFormat.format(new Date(time)), new String(dates.getChars(slot), 0, dates.getLength(slot)));
+
+            long value = random.nextInt(8) * 1234567L;
+            slot = values.get(value);
+            assertEquals(oldFormatBigValue(value), new String(values.getChars(slot), 0, values.getLength(slot)));
+        }
+    }
+
+    private static void assertDay(SimpleDateFormat dateFormat, TimeZone timeZone, long time) {
+        char[] out = new char[LabelFormat.DATE_MAX_LENGTH];
+        int length = LabelFormat.formatDay(LabelFormat.getDay(time, timeZone), out, 0);
+        assertEquals(timeZone.getID() + " " + time, dateFormat.format(new Date(time)), new String(out, 0, length));
+    }
+
+    private static String formatBigValue(long value) {
+        char[] out = new char[LabelFormat.BIG_VALUE_MAX_LENGTH];
+        return new String(out, 0, LabelFormat.formatBigValue(value, out, 0));
+    }
+
+    private static List<Long> getBigValues() {
+        List<Long> values = new ArrayList<>();
+        for (long value = -20000; value <= 120000; value++) {
+            values.add(value);
+        }
+        //both sides of every power of ten and of the one decimal cut-off
+        for (long power = 1; power <= Long.MAX_VALUE / 10; power *= 10) {
+            for (long value : new long[]{power, power * 10 - 1, power * 10, power + 1, power * 5 / 10 * 10 - 1}) {
+                for (long delta = -2; delta <= 2; delta++) {
+                    values.add(value + delta);
+                    values.add(-(value + delta));
+                }
+            }
+        }
+        values.add(Long.MAX_VALUE);
+        values.add(Long.MIN_VALUE);
+        values.add(Long.MIN_VALUE + 1);
+        Random random = new Random(3);
+        for (int i = 0; i < 100000; i++) {
+            long value = random.nextLong() >> random.nextInt(64);
+            values.add(value);
+        }
+        return values;
+    }
+
+    //FormatUtils.formatBigValue before it wrote into char buffers
+    private static String oldFormatBigValue(long value) {
+        if (value == Long.MIN_VALUE) return oldFormatBigValue(Long.MIN_VALUE + 1);
+        if (value < 0) return "-" + oldFormatBigValue(-value);
+        if (value < 1000) return Long.toString(value);
+
+        Map.Entry<Long, String> e = SUFFIXES.floorEntry(value);
+        Long divideBy = e.getKey();
+        String suffix = e.getValue();
+
+        long truncated = value / (divideBy / 10);
+        boolean hasDecimal = truncated < 100 && (truncated / 10d) != (truncated / 10);
+        return hasDecimal ? (truncated / 10d) + suffix : (truncated / 10) + suffix;
+    }
+}
@@ -0,0 +1,185 @@
+package com.nzoth.testgraph.chart;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LineDownsamplerTest {
+    private static final int[] POINT_COUNTS = {2, 3, 10, 1000, 100000};
+    private static final float[] STEPS = {0.001F, 0.013F, 0.37F, 1F, 5F};
+    private static final float[] ORIGINS = {0F, -123.4F};
+
+    //y = -value, so values can be read back from the vertices
+    private static final float BASE_Y = 0F;
+    private static final float ITEM_Y = 1F;
+
+    @Test
+    public void buildStaysInMaxFloatCount() {
+        for (LineDownsampler.Mode mode : LineDownsampler.Mode.values()) {
+            LineDownsampler lineDownsampler = new LineDownsampler(mode);
+            for (int pointCount : POINT_COUNTS) {
+                long[] values = randomWalk(pointCount, pointCount);
+                SeriesPyramid pyramid = new SeriesPyramid(values, pointCount);
+                for (float stepX : STEPS) {
+                    for (float originX : ORIGINS) {
+                        //an exact fit, writing past it throws
+                        float[] vertices = new float[lineDownsampler.getMaxFloatCount(pointCount, stepX)];
+                        int floatCount = lineDownsampler.build(values, 0, pointCount, originX, stepX, BASE_Y, ITEM_Y, vertices);
+                        int pyramidFloatCount = lineDownsampler.build(values, pyramid, 0, pointCount, originX, stepX, BASE_Y, ITEM_Y, vertices);
+                        assertTrue(floatCount <= vertices.length);
+                        assertTrue(pyramidFloatCount <= vertices.length);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void segmentCountIsBoundedByWidth() {
+        int pointCount = 100000;
+        long[] values = randomWalk(pointCount, 1);
+        float stepX = 0.01F;
+        int columnCount = (int) (stepX * (pointCount - 1)) + 2;
+
+        LineDownsampler m4 = new LineDownsampler(LineDownsampler.Mode.M4);
+        float[] vertices = new float[m4.getMaxFloatCount(pointCount, stepX)];
+        assertTrue(m4.build(values, 0, pointCount, 0, stepX, BASE_Y, ITEM_Y, vertices) / 4 < columnCount * 4);
+        assertTrue(m4.build(values, new SeriesPyramid(values, pointCount), 0, pointCount, 0, stepX, BASE_Y, ITEM_Y, vertices) / 4 < columnCount * 4);
+
+        LineDownsampler lttb = new LineDownsampler(LineDownsampler.Mode.LTTB);
+        vertices = new float[lttb.getMaxFloatCount(pointCount, stepX)];
+        assertTrue(lttb.build(values, 0, pointCount, 0, stepX, BASE_Y, ITEM_Y, vertices) / 4 < columnCount);
+
+        LineDownsampler wide = new LineDownsampler(LineDownsampler.Mode.M4);
+        wide.setColumnWidth(4F);
+        vertices = new float[wide.getMaxFloatCount(pointCount, stepX)];
+        assertTrue(wide.build(values, 0, pointCount, 0, stepX, BASE_Y, ITEM_Y, vertices) / 4 < columnCount);
+    }
+
+    @Test
+    public void noneDrawsEveryPoint() {
+        LineDownsampler lineDownsampler = new LineDownsampler(LineDownsampler.Mode.NONE);
+        long[] values = randomWalk(1000, 2);
+        float[] vertices = new float[lineDownsampler.getMaxFloatCount(1000, 0.01F)];
+        assertEquals(999 * 4, lineDownsampler.build(values, 0, 1000, 0, 0.01F, BASE_Y, ITEM_Y, vertices));
+        for (int i = 0; i < 999; i++) {
+            assertEquals(-values[i], vertices[i * 4 + 1], 0F);
+            assertEquals(-values[i + 1], vertices[i * 4 + 3], 0F);
+        }
+    }
+
+    @Test
+    public void m4KeepsMinAndMaxOfEveryColumn() {
+        LineDownsampler lineDownsampler = new LineDownsampler(LineDownsampler.Mode.M4);
+        for (float originX : ORIGINS) {
+            int pointCount = 50000;
+            float stepX = 0.013F;
+            long[] values = randomWalk(pointCount, 3);
+            float[] vertices = new float[lineDownsampler.getMaxFloatCount(pointCount, stepX)];
+            int floatCount = lineDownsampler.build(values, 0, pointCount, originX, stepX, BASE_Y, ITEM_Y, vertices);
+
+            Map<Integer, long[]> columns = new HashMap<>();
+            for (int i = 0; i < pointCount; i++) {
+                int column = (int) Math.floor(originX + stepX * i);
+                long[] minMax = columns.get(column);
+                if (minMax == null) {
+                    columns.put(column, new long[]{values[i], values[i]});
+                } else {
+                    minMax[0] = Math.min(minMax[0], values[i]);
+                    minMax[1] = Math.max(minMax[1], values[i]);
+                }
+            }
+            Map<Integer, long[]> drawnColumns = new HashMap<>();
+            for (int i = 0; i < floatCount; i += 2) {
+                int column = (int) Math.floor(vertices[i]);
+                long value = (long) -vertices[i + 1];
+                long[] minMax = drawnColumns.get(column);
+                if (minMax == null) {
+                    drawnColumns.put(column, new long[]{value, value});
+                } else {
+                    minMax[0] = Math.min(minMax[0], value);
+                    minMax[1] = Math.max(minMax[1], value);
+                }
+            }
+
+            assertEquals(columns.size(), drawnColumns.size());
+            for (Map.Entry<Integer, long[]> entry : columns.entrySet()) {
+                long[] drawn = drawnColumns.get(entry.getKey());
+                assertEquals(entry.getValue()[0], drawn[0]);
+                assertEquals(entry.getValue()[1], drawn[1]);
+            }
+        }
+    }
+
+    @Test
+    public void pyramidKeepsMinAndMax() {
+        LineDownsampler lineDownsampler = new LineDownsampler(LineDownsampler.Mode.M4);
+        int pointCount = 100000;
+        long[] values = randomWalk(pointCount, 4);
+        SeriesPyramid pyramid = new SeriesPyramid(values, pointCount);
+        float[] vertices = new float[lineDownsampler.getMaxFloatCount(pointCount, 0.01F)];
+
+        int from = 1234;
+        int to = 98765;
+        int floatCount = lineDownsampler.build(values, pyramid, from, to, 0, 0.01F, BASE_Y, ITEM_Y, vertices);
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 1; i < floatCount; i += 2) {
+            min = Math.min(min, (long) -vertices[i]);
+            max = Math.max(max, (long) -vertices[i]);
+        }
+        assertEquals(pyramid.getMax(from, to), max);
+        assertEquals(-values[from], vertices[1], 0F);
+        assertEquals(-values[to - 1], vertices[floatCount - 1], 0F);
+
+        long expectedMin = Long.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+            expectedMin = Math.min(expectedMin, values[i]);
+        }
+        assertEquals(expectedMin, min);
+    }
+
+    @Test
+    public void segmentsFormOneLine() {
+        for (LineDownsampler.Mode mode : LineDownsampler.Mode.values()) {
+            LineDownsampler lineDownsampler = new LineDownsampler(mode);
+            int pointCount = 20000;
+            long[] values = randomWalk(pointCount, 5);
+            float[] vertices = new float[lineDownsampler.getMaxFloatCount(pointCount, 0.05F)];
+            int floatCount = lineDownsampler.build(values, 0, pointCount, -7F, 0.05F, BASE_Y, ITEM_Y, vertices);
+
+            assertEquals(-values[0], vertices[1], 0F);
+            assertEquals(-values[pointCount - 1], vertices[floatCount - 1], 0F);
+            for (int i = 4; i < floatCount; i += 4) {
+                assertEquals(vertices[i - 2], vertices[i], 0F);
+                assertEquals(vertices[i - 1], vertices[i + 1], 0F);
+                assertTrue(vertices[i] <= vertices[i + 2]);
+            }
+        }
+    }
+
+    @Test
+    public void fewerThanTwoPointsDrawNothing() {
+        for (LineDownsampler.Mode mode : LineDownsampler.Mode.values()) {
+            LineDownsampler lineDownsampler = new LineDownsampler(mode);
+            assertEquals(0, lineDownsampler.getMaxFloatCount(1, 1F));
+            assertEquals(0, lineDownsampler.build(new long[]{5}, 0, 1, 0, 1F, BASE_Y, ITEM_Y, new float[0]));
+        }
+    }
+
+    static long[] randomWalk(int pointCount, long seed) {
+        Random random = new Random(seed);
+        long[] values = new long[pointCount];
+        long value = 1000;
+        for (int i = 0; i < pointCount; i++) {
+            value = Math.max(value + random.nextInt(101) - 50, 0);
+            values[i] = i % 997 == 0 ? value * 3 : value;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,142 @@
+package com.nzoth.testgraph.chart;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PackedColumnTest {
+    private static final int[] SIZES = {0, 1, 2, 127, 128, 129, 1000, 100003};
+
+    @Test
+    public void randomWalkRoundTrips() {
+        for (int size : SIZES) {
+            assertRoundTrip(LineDownsamplerTest.randomWalk(size, size));
+        }
+    }
+
+    @Test
+    public void evenDatesTakeNoBits() {
+        SyntheticSeries series = new SyntheticSeries();
+        series.setPointCount(1000);
+        long[] dates = series.createDates();
+        PackedColumn column = assertRoundTrip(dates);
+        for (int block = 0; block < column.getBlockCount(); block++) {
+            assertEquals(0, column.getBitWidth(block));
+        }
+    }
+
+    @Test
+    public void extremeValuesRoundTrip() {
+        long[] values = new long[300];
+        Random random = new Random(1);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextLong();
+        }
+        values[5] = Long.MIN_VALUE;
+        values[6] = Long.MAX_VALUE;
+        values[7] = Long.MIN_VALUE;
+        PackedColumn column = assertRoundTrip(values);
+        assertEquals(64, column.getBitWidth(0));
+
+        long[] constant = new long[200];
+        Arrays.fill(constant, Long.MAX_VALUE);
+        assertRoundTrip(constant);
+        Arrays.fill(constant, Long.MIN_VALUE);
+        assertRoundTrip(constant);
+    }
+
+    @Test
+    public void onlyThePackedPrefixIsKept() {
+        long[] values = LineDownsamplerTest.randomWalk(1000, 2);
+        PackedColumn column = PackedColumn.pack(values, 300);
+        assertEquals(300, column.size());
+        assertArrayEquals(Arrays.copyOf(values, 300), column.toArray());
+    }
+
+    @Test
+    public void cursorReadsInOrderFromAnyPosition() {
+        long[] values = LineDownsamplerTest.randomWalk(1000, 3);
+        PackedColumn column = PackedColumn.pack(values, values.length);
+        for (int position : new int[]{0, 1, 127, 128, 500, 999, 1000}) {
+            PackedColumn.Cursor cursor = column.newCursor(position);
+            for (int i = position; i < values.length; i++) {
+                assertTrue(cursor.hasNext());
+                assertEquals(values[i], cursor.next());
+            }
+            assertFalse(cursor.hasNext());
+        }
+    }
+
+    @Test
+    public void rangeMaxMatchesScan() {
+        long[] values = LineDownsamplerTest.randomWalk(1000, 5);
+        values[300] = Long.MIN_VALUE;
+        values[301] = Long.MAX_VALUE;
+        PackedColumn column = PackedColumn.pack(values, values.length);
+        for (int block = 0; block < column.getBlockCount(); block++) {
+            int from = block << PackedColumn.BLOCK_SHIFT;
+            int to = Math.min(from + PackedColumn.BLOCK_SIZE, values.length);
+            assertEquals(scanMin(values, from, to), column.getBlockMin(block));
+            assertEquals(scanMax(values, from, to), column.getBlockMax(block));
+        }
+
+        Random random = new Random(6);
+        for (int i = 0; i < 1000; i++) {
+            int from = random.nextInt(values.length + 1);
+            int to = from + random.nextInt(values.length + 1 - from);
+            assertEquals(scanMax(values, from, to), column.getMax(from, to));
+        }
+        //block edges and ranges past the ends
+        assertEquals(scanMax(values, 128, 384), column.getMax(128, 384));
+        assertEquals(scanMax(values, 0, values.length), column.getMax(-5, values.length + 5));
+        assertEquals(Long.MIN_VALUE, column.getMax(500, 500));
+    }
+
+    @Test
+    public void compressesTypicalSeries() {
+        long[] values = LineDownsamplerTest.randomWalk(100000, 4);
+        PackedColumn column = PackedColumn.pack(values, values.length);
+        assertTrue(column.getByteCount() < values.length * 8L / 4);
+    }
+
+    private static long scanMin(long[] values, int from, int to) {
+        long min = Long.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+            min = Math.min(min, values[i]);
+        }
+        return min;
+    }
+
+    private static long scanMax(long[] values, int from, int to) {
+        long max = Long.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return max;
+    }
+
+    private static PackedColumn assertRoundTrip(long[] values) {
+        PackedColumn column = PackedColumn.pack(values, values.length);
+        assertEquals(values.length, column.size());
+        assertArrayEquals(values, column.toArray());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], column.get(i));
+        }
+
+        //ranges starting and ending inside blocks
+        if (values.length > 2) {
+            int from = values.length / 3;
+            int to = values.length - 1;
+            long[] range = new long[to - from + 2];
+            column.get(from, to, range, 1);
+            assertArrayEquals(Arrays.copyOfRange(values, from, to), Arrays.copyOfRange(range, 1, range.length - 1));
+        }
+        return column;
+    }
+}
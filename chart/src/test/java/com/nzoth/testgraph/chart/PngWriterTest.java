@@ -0,0 +1,115 @@
+package com.nzoth.testgraph.chart;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Decodes what {@link PngWriter} wrote with {@link ImageIO} and compares every pixel.
+ */
+public class PngWriterTest {
+    @Test
+    public void smallImageDecodes() throws IOException {
+        assertDecodes(randomPixels(3, 2, 1), 3, 2);
+        assertDecodes(randomPixels(1, 1, 2), 1, 1);
+    }
+
+    @Test
+    public void translucentAndExtremePixelsDecode() throws IOException {
+        int[] pixels = {0x00000000, 0xFFFFFFFF, 0x80FF0000, 0x0100FF00, 0xFF0000FF, 0x7F808080, 0xFF000000, 0x00FFFFFF};
+        assertDecodes(pixels, 4, 2);
+    }
+
+    @Test
+    public void wideImageSpansChunks() throws IOException {
+        //a row longer than a chunk, and noise that doesn't compress
+        int width = PngWriter.CHUNK_SIZE / 4 + 1000;
+        assertDecodes(randomPixels(width, 3, 3), width, 3);
+    }
+
+    @Test
+    public void tallImageDecodes() throws IOException {
+        int[] pixels = new int[20 * 5000];
+        for (int i = 0; i < pixels.length; i++) {
+            //a gradient, like a chart background
+            pixels[i] = 0xFF000000 | (i / 20 % 256) << 8 | i % 20;
+        }
+        assertDecodes(pixels, 20, 5000);
+    }
+
+    @Test
+    public void rowCountIsChecked() throws IOException {
+        PngWriter pngWriter = new PngWriter(new ByteArrayOutputStream(), 2, 2);
+        pngWriter.writeRow(new int[2], 0);
+        try {
+            pngWriter.finish();
+            fail("Finished with a row missing");
+        } catch (IllegalStateException expected) {
+            //the image would be cut short
+        }
+        pngWriter.writeRow(new int[2], 0);
+        try {
+            pngWriter.writeRow(new int[2], 0);
+            fail("Wrote a row too many");
+        } catch (IllegalStateException expected) {
+            //and the rest is unchanged
+        }
+        pngWriter.finish();
+        pngWriter.close();
+    }
+
+    @Test
+    public void closeMayReplaceFinish() throws IOException {
+        PngWriter pngWriter = new PngWriter(new ByteArrayOutputStream(), 2, 2);
+        pngWriter.writeRow(new int[2], 0);
+        pngWriter.close();
+        pngWriter.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyImageIsRejected() throws IOException {
+        new PngWriter(new ByteArrayOutputStream(), 0, 1);
+    }
+
+    private static void assertDecodes(int[] pixels, int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PngWriter pngWriter = new PngWriter(out, width, height);
+        try {
+            for (int y = 0; y < height; y++) {
+                pngWriter.writeRow(pixels, y * width);
+            }
+            pngWriter.finish();
+        } finally {
+            pngWriter.close();
+        }
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+        int[] decoded = image.getRGB(0, 0, width, height, null, 0, width);
+        for (int i = 0; i < pixels.length; i++) {
+            if (decoded[i] != pixels[i]) {
+                fail("Pixel " + (i % width) + ", " + (i / width) + " is " + Integer.toHexString(decoded[i])
+                        + " instead of " + Integer.toHexString(pixels[i]));
+            }
+        }
+    }
+
+    private static int[] randomPixels(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,120 @@
+package com.nzoth.testgraph.chart;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class RangeMaxIndexTest {
+    private static final int[] SIZES = {0, 1, 15, 16, 17, 33, 1000, 100003};
+    private static final int QUERY_COUNT = 2000;
+
+    @Test
+    public void getMaxMatchesScan() {
+        for (int size : SIZES) {
+            long[] values = randomValues(size, size);
+            RangeMaxIndex index = new RangeMaxIndex(values, size);
+            assertEquals(scan(values, 0, size), index.getMax());
+            assertQueries(values, index, new Random(size));
+        }
+    }
+
+    @Test
+    public void everyRangeOfSmallSeries() {
+        long[] values = randomValues(70, 1);
+        RangeMaxIndex index = new RangeMaxIndex(values);
+        for (int from = 0; from <= values.length; from++) {
+            for (int to = from; to <= values.length; to++) {
+                assertEquals(scan(values, from, to), index.getMax(from, to));
+            }
+        }
+    }
+
+    @Test
+    public void rangesAreClampedToSize() {
+        long[] values = {3, 9, -4, 7, 100, 200};
+        RangeMaxIndex index = new RangeMaxIndex(values, 4);
+        assertEquals(9, index.getMax(-10, 100));
+        assertEquals(7, index.getMax(2, 5));
+        assertEquals(Long.MIN_VALUE, index.getMax(4, 6));
+        assertEquals(Long.MIN_VALUE, index.getMax(3, 2));
+        assertEquals(Long.MIN_VALUE, new RangeMaxIndex(new long[0]).getMax());
+    }
+
+    @Test
+    public void negativeValues() {
+        long[] values = new long[500];
+        Random random = new Random(3);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = -1 - random.nextInt(1000000);
+        }
+        assertQueries(values, new RangeMaxIndex(values), random);
+    }
+
+    @Test
+    public void restoredFromTreeMatchesBuilt() {
+        for (int size : SIZES) {
+            long[] values = randomValues(size, size + 1);
+            RangeMaxIndex index = new RangeMaxIndex(values, size);
+            long[] blockMaxs = new long[RangeMaxIndex.getBlockCount(size)];
+            System.arraycopy(index.getTree(), index.getLeafCount(), blockMaxs, 0, blockMaxs.length);
+
+            RangeMaxIndex restored = new RangeMaxIndex(values, size, blockMaxs);
+            assertEquals(index.getMax(), restored.getMax());
+            assertQueries(values, restored, new Random(size));
+        }
+    }
+
+    @Test
+    public void updatesMatchRebuiltIndex() {
+        Random random = new Random(4);
+        long[] source = randomValues(20000, 5);
+        long[] values = new long[1];
+        int size = 0;
+        RangeMaxIndex index = new RangeMaxIndex(values, 0);
+        while (size < source.length) {
+            //single points like a live series, now and then a batch
+            int newSize = Math.min(size + (random.nextInt(10) == 0 ? random.nextInt(200) : 1), source.length);
+            if (newSize > values.length) {
+                values = Arrays.copyOf(values, Math.max(newSize, values.length * 2));
+            }
+            System.arraycopy(source, size, values, size, newSize - size);
+            size = newSize;
+            index.update(values, size);
+
+            if (random.nextInt(50) == 0 || size == source.length) {
+                RangeMaxIndex rebuilt = new RangeMaxIndex(values, size);
+                assertEquals(rebuilt.getMax(), index.getMax());
+                assertQueries(values, index, new Random(size));
+            }
+        }
+    }
+
+    static void assertQueries(long[] values, RangeMaxIndex index, Random random) {
+        int size = index.size();
+        for (int i = 0; i < QUERY_COUNT && size > 0; i++) {
+            int from = random.nextInt(size);
+            int to = from + 1 + random.nextInt(size - from);
+            assertEquals(scan(values, from, to), index.getMax(from, to));
+        }
+    }
+
+    static long scan(long[] values, int from, int to) {
+        long max = Long.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return max;
+    }
+
+    static long[] randomValues(int size, long seed) {
+        Random random = new Random(seed);
+        long[] values = new long[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextInt(1000000);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,221 @@
+package com.nzoth.testgraph.chart;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Rollups against buckets found with {@link Calendar} in the local time of zones with
+ * daylight saving, including Lord Howe's half hour one.
+ */
+public class RollupTest {
+    private static final String[] TIME_ZONES = {"UTC", "America/New_York", "Europe/Berlin", "Australia/Lord_Howe", "Asia/Kolkata"};
+    private static final long MINUTE_MILLIS = 60 * 1000L;
+    //2019-01-01T00:00Z
+    private static final long START_TIME = 1546300800000L;
+
+    @Test
+    public void bucketsFollowLocalClock() {
+        for (String id : TIME_ZONES) {
+            TimeZone timeZone = TimeZone.getTimeZone(id);
+            for (Rollup.Granularity granularity : Rollup.Granularity.values()) {
+                long maxStep = granularity == Rollup.Granularity.HOUR ? 23 * MINUTE_MILLIS : 300 * MINUTE_MILLIS;
+                long[] dates = createDates(granularity == Rollup.Granularity.HOUR ? 40000 : 20000, maxStep, 1);
+                for (Rollup.Aggregation aggregation : Rollup.Aggregation.values()) {
+                    long[][] graphList = {LineDownsamplerTest.randomWalk(dates.length, 2), LineDownsamplerTest.randomWalk(dates.length, 3)};
+                    Rollup rollup = Rollup.build(granularity, aggregation, timeZone, dates, graphList, dates.length, null);
+                    assertRollup(rollup, granularity, aggregation, timeZone, dates, graphList, dates.length);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void bucketStartsAreLocalBoundaries() {
+        for (String id : TIME_ZONES) {
+            TimeZone timeZone = TimeZone.getTimeZone(id);
+            for (Rollup.Granularity granularity : Rollup.Granularity.values()) {
+                long[] dates = createDates(20000, 300 * MINUTE_MILLIS, 4);
+                Rollup rollup = Rollup.build(granularity, Rollup.Aggregation.LAST, timeZone, dates, new long[][]{dates}, dates.length, null);
+                for (int i = 0; i < rollup.size(); i++) {
+                    long start = rollup.getDateList()[i];
+                    long key = getKey(start, granularity, timeZone);
+                    assertTrue(id + " " + granularity + " " + start, getKey(start - 1, granularity, timeZone) < key);
+                    //the last point of the bucket is in the same local hour, day or week
+                    assertEquals(id + " " + granularity + " " + start, key, getKey(rollup.getGraphList()[0][i], granularity, timeZone));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void repeatedHourIsOneBucket() {
+        TimeZone timeZone = TimeZone.getTimeZone("America/New_York");
+        //2019-11-03, 1:00 to 2:00 local happens twice, from 05:00Z to 07:00Z
+        long fallBack = 1572757200000L;
+        long[] dates = new long[12];
+        for (int i = 0; i < dates.length; i++) {
+            dates[i] = fallBack - 60 * MINUTE_MILLIS + i * 20 * MINUTE_MILLIS;
+        }
+        long[][] graphList = {new long[dates.length]};
+        for (int i = 0; i < dates.length; i++) {
+            graphList[0][i] = 1;
+        }
+        Rollup rollup = Rollup.build(Rollup.Granularity.HOUR, Rollup.Aggregation.SUM, timeZone, dates, graphList, dates.length, null);
+        //00:00, the two 01:00 and 02:00 local, the last one open
+        assertEquals(2, rollup.size());
+        assertEquals(fallBack - 60 * MINUTE_MILLIS, rollup.getDateList()[0]);
+        assertEquals(fallBack, rollup.getDateList()[1]);
+        assertEquals(3, rollup.getGraphList()[0][0]);
+        assertEquals(6, rollup.getGraphList()[0][1]);
+    }
+
+    @Test
+    public void appendMatchesBuild() {
+        TimeZone timeZone = TimeZone.getTimeZone("Australia/Lord_Howe");
+        long[] dates = createDates(30000, 40 * MINUTE_MILLIS, 5);
+        long[][] graphList = {LineDownsamplerTest.randomWalk(dates.length, 6), LineDownsamplerTest.randomWalk(dates.length, 7)};
+        for (Rollup.Granularity granularity : Rollup.Granularity.values()) {
+            for (Rollup.Aggregation aggregation : Rollup.Aggregation.values()) {
+                int builtCount = dates.length / 3;
+                Rollup rollup = Rollup.build(granularity, aggregation, timeZone, dates, graphList, builtCount, null);
+                long[] values = new long[graphList.length];
+                for (int i = builtCount; i < dates.length; i++) {
+                    for (int series = 0; series < values.length; series++) {
+                        values[series] = graphList[series][i];
+                    }
+                    int size = rollup.size();
+                    boolean closed = rollup.append(dates[i], values);
+                    assertEquals(closed, rollup.size() == size + 1);
+                }
+                assertEquals(dates.length, rollup.getPointCount());
+                assertRollup(rollup, granularity, aggregation, timeZone, dates, graphList, dates.length);
+            }
+        }
+    }
+
+    @Test
+    public void parallelBuildMatchesSequential() {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            TimeZone timeZone = TimeZone.getTimeZone("Europe/Berlin");
+            long[] dates = createDates(50000, 30 * MINUTE_MILLIS, 8);
+            long[][] graphList = new long[5][];
+            for (int i = 0; i < graphList.length; i++) {
+                graphList[i] = LineDownsamplerTest.randomWalk(dates.length, 10 + i);
+            }
+            for (Rollup.Granularity granularity : Rollup.Granularity.values()) {
+                Rollup rollup = Rollup.build(granularity, Rollup.Aggregation.AVG, timeZone, dates, graphList, dates.length, null);
+                Rollup parallel = Rollup.build(granularity, Rollup.Aggregation.AVG, timeZone, dates, graphList, dates.length, executor);
+                assertEquals(rollup.size(), parallel.size());
+                for (int i = 0; i < graphList.length; i++) {
+                    assertArrayEquals(rollup.getGraphList()[i], parallel.getGraphList()[i]);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void emptyAndSingleBucket() {
+        TimeZone timeZone = TimeZone.getTimeZone("UTC");
+        Rollup empty = Rollup.build(Rollup.Granularity.DAY, Rollup.Aggregation.SUM, timeZone, new long[0], new long[][]{new long[0]}, 0, null);
+        assertEquals(0, empty.size());
+        assertFalse(empty.append(START_TIME, new long[]{1}));
+        assertFalse(empty.append(START_TIME + 1, new long[]{2}));
+        assertTrue(empty.append(START_TIME + 24 * 60 * MINUTE_MILLIS, new long[]{4}));
+        assertEquals(1, empty.size());
+        assertEquals(START_TIME, empty.getDateList()[0]);
+        assertEquals(3, empty.getGraphList()[0][0]);
+    }
+
+    private static void assertRollup(
+            Rollup rollup,
+            Rollup.Granularity granularity,
+            Rollup.Aggregation aggregation,
+            TimeZone timeZone,
+            long[] dates,
+            long[][] graphList,
+            int pointCount
+    ) {
+        List<int[]> buckets = new ArrayList<>();
+        int from = 0;
+        for (int i = 1; i <= pointCount; i++) {
+            if (i == pointCount || getKey(dates[i], granularity, timeZone) != getKey(dates[from], granularity, timeZone)) {
+                buckets.add(new int[]{from, i});
+                from = i;
+            }
+        }
+
+        String message = timeZone.getID() + " " + granularity + " " + aggregation;
+        //the last bucket stays open
+        assertEquals(message, buckets.size() - 1, rollup.size());
+        for (int bucket = 0; bucket < rollup.size(); bucket++) {
+            int bucketFrom = buckets.get(bucket)[0];
+            int bucketTo = buckets.get(bucket)[1];
+            assertEquals(message, getKey(dates[bucketFrom], granularity, timeZone), getKey(rollup.getDateList()[bucket], granularity, timeZone));
+            for (int series = 0; series < graphList.length; series++) {
+                long expected = aggregate(aggregation, graphList[series], bucketFrom, bucketTo);
+                assertEquals(message + " bucket " + bucket, expected, rollup.getGraphList()[series][bucket]);
+            }
+        }
+    }
+
+    private static long aggregate(Rollup.Aggregation aggregation, long[] values, int from, int to) {
+        long sum = 0;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            sum += values[i];
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+        switch (aggregation) {
+            case SUM:
+                return sum;
+            case AVG:
+                return Math.round(sum / (double) (to - from));
+            case MIN:
+                return min;
+            case MAX:
+                return max;
+            default:
+                return values[to - 1];
+        }
+    }
+
+    //ordered number of the local hour, day or week from Monday, from the calendar fields
+    private static long getKey(long time, Rollup.Granularity granularity, TimeZone timeZone) {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.setTimeInMillis(time);
+        if (granularity == Rollup.Granularity.WEEK) {
+            int daysFromMonday = (calendar.get(Calendar.DAY_OF_WEEK) - Calendar.MONDAY + 7) % 7;
+            calendar.add(Calendar.DAY_OF_MONTH, -daysFromMonday);
+        }
+        long day = calendar.get(Calendar.YEAR) * 1000L + calendar.get(Calendar.DAY_OF_YEAR);
+        return granularity == Rollup.Granularity.HOUR ? day * 100 + calendar.get(Calendar.HOUR_OF_DAY) : day;
+    }
+
+    private static long[] createDates(int pointCount, long maxStep, long seed) {
+        Random random = new Random(seed);
+        long[] dates = new long[pointCount];
+        long date = START_TIME;
+        for (int i = 0; i < pointCount; i++) {
+            dates[i] = date;
+            date += 1 + (long) (random.nextDouble() * maxStep);
+        }
+        return dates;
+    }
+}
@@ -0,0 +1,173 @@
+package com.nzoth.testgraph.chart;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class SeriesPyramidTest {
+    private static final int[] SIZES = {0, 1, 7, 8, 9, 100, 1000, 100003};
+
+    @Test
+    public void bucketsMatchScan() {
+        for (int size : SIZES) {
+            long[] values = RangeMaxIndexTest.randomValues(size, size);
+            assertBuckets(values, new SeriesPyramid(values, size));
+        }
+    }
+
+    @Test
+    public void getMaxMatchesScan() {
+        for (int size : SIZES) {
+            long[] values = RangeMaxIndexTest.randomValues(size, size);
+            SeriesPyramid pyramid = new SeriesPyramid(values, size);
+            Random random = new Random(size);
+            for (int i = 0; i < 2000 && size > 0; i++) {
+                int from = random.nextInt(size);
+                int to = from + 1 + random.nextInt(size - from);
+                assertEquals(RangeMaxIndexTest.scan(values, from, to), pyramid.getMax(from, to));
+            }
+        }
+    }
+
+    @Test
+    public void topLevelIsOneBucket() {
+        long[] values = RangeMaxIndexTest.randomValues(100003, 1);
+        SeriesPyramid pyramid = new SeriesPyramid(values, values.length);
+        int top = pyramid.getLevelCount() - 1;
+        assertEquals(1, SeriesPyramid.getBucketCount(top, values.length));
+        assertEquals(RangeMaxIndexTest.scan(values, 0, values.length), pyramid.getBucketMax(top, 0));
+    }
+
+    @Test
+    public void getLevelFitsBucketWidth() {
+        long[] values = RangeMaxIndexTest.randomValues(100000, 2);
+        SeriesPyramid pyramid = new SeriesPyramid(values, values.length);
+        //8 points per level 0 bucket
+        assertEquals(-1, pyramid.getLevel(0.1F, 0.5F));
+        assertEquals(0, pyramid.getLevel(0.01F, 0.1F));
+        assertEquals(2, pyramid.getLevel(0.001F, 0.04F));
+        assertEquals(pyramid.getLevelCount() - 1, pyramid.getLevel(1e-9F, 1F));
+    }
+
+    @Test
+    public void parallelBuildMatchesSequential() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int size : new int[]{0, 1, 1000, (1 << 17) + 3, 1000003}) {
+                long[] values = RangeMaxIndexTest.randomValues(size, size);
+                SeriesPyramid pyramid = new SeriesPyramid(values, size);
+                SeriesPyramid parallel = ParallelPyramidBuilder.build(pool, values, size);
+                assertEquals(pyramid.getLevelCount(), parallel.getLevelCount());
+                assertBuckets(values, parallel);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void restoredFromLevelsMatchesBuilt() {
+        for (int size : SIZES) {
+            long[] values = RangeMaxIndexTest.randomValues(size, size + 1);
+            SeriesPyramid pyramid = new SeriesPyramid(values, size);
+            long[][] minLevels = new long[pyramid.getLevelCount()][];
+            long[][] maxLevels = new long[pyramid.getLevelCount()][];
+            for (int level = 0; level < minLevels.length; level++) {
+                minLevels[level] = pyramid.getMinLevel(level).clone();
+                maxLevels[level] = pyramid.getMaxLevel(level).clone();
+            }
+            assertBuckets(values, new SeriesPyramid(values, size, minLevels, maxLevels));
+        }
+    }
+
+    @Test
+    public void appendsMatchRebuiltPyramid() {
+        Random random = new Random(4);
+        long[] source = RangeMaxIndexTest.randomValues(20000, 5);
+        long[] values = new long[1];
+        int size = 0;
+        SeriesPyramid pyramid = new SeriesPyramid(values, 0);
+        while (size < source.length) {
+            int newSize = Math.min(size + (random.nextInt(10) == 0 ? random.nextInt(200) : 1), source.length);
+            if (newSize > values.length) {
+                values = Arrays.copyOf(values, Math.max(newSize, values.length * 2));
+            }
+            System.arraycopy(source, size, values, size, newSize - size);
+            size = newSize;
+            pyramid.append(values, size);
+
+            if (random.nextInt(50) == 0 || size == source.length) {
+                SeriesPyramid rebuilt = new SeriesPyramid(values, size);
+                assertEquals(rebuilt.getLevelCount(), pyramid.getLevelCount());
+                assertBuckets(values, pyramid);
+                for (int i = 0; i < 200; i++) {
+                    int from = random.nextInt(size);
+                    int to = from + 1 + random.nextInt(size - from);
+                    assertEquals(rebuilt.getMax(from, to), pyramid.getMax(from, to));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void snapshotKeepsItsSize() {
+        long[] values = RangeMaxIndexTest.randomValues(1000, 6);
+        SeriesPyramid pyramid = new SeriesPyramid(values, 500);
+        SeriesPyramid snapshot = pyramid.snapshot();
+        long[] grown = Arrays.copyOf(values, 2000);
+        pyramid.append(grown, 1000);
+
+        assertEquals(500, snapshot.size());
+        assertEquals(1000, pyramid.size());
+        assertBuckets(values, snapshot);
+        assertBuckets(grown, pyramid);
+    }
+
+    @Test
+    public void snapshotKeepsItsLastBuckets() {
+        long[] values = new long[4096];
+        Arrays.fill(values, 0, 1003, 5);
+        //room to grow in place, so the level arrays stay shared
+        SeriesPyramid pyramid = new SeriesPyramid(values, 1003);
+        pyramid.append(values, 1003);
+        SeriesPyramid snapshot = pyramid.snapshot();
+        long[] before = Arrays.copyOf(values, 1003);
+
+        for (int size = 1004; size <= 4096; size++) {
+            values[size - 1] = size % 2 == 0 ? 1000 : -1000;
+            pyramid.append(values, size);
+        }
+        assertEquals(1003, snapshot.size());
+        assertBuckets(before, snapshot);
+        assertEquals(5, snapshot.getMax(0, 1003));
+        assertBuckets(values, pyramid);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void snapshotCantBeAppendedTo() {
+        long[] values = RangeMaxIndexTest.randomValues(100, 7);
+        new SeriesPyramid(values, 50).snapshot().append(values, 100);
+    }
+
+    static void assertBuckets(long[] values, SeriesPyramid pyramid) {
+        int size = pyramid.size();
+        for (int level = 0; level < pyramid.getLevelCount(); level++) {
+            int shift = pyramid.getBucketShift(level);
+            int bucketCount = SeriesPyramid.getBucketCount(level, size);
+            for (int bucket = 0; bucket < bucketCount; bucket++) {
+                int from = bucket << shift;
+                int to = Math.min(from + (1 << shift), size);
+                long min = Long.MAX_VALUE;
+                for (int i = from; i < to; i++) {
+                    min = Math.min(min, values[i]);
+                }
+                assertEquals(min, pyramid.getBucketMin(level, bucket));
+                assertEquals(RangeMaxIndexTest.scan(values, from, to), pyramid.getBucketMax(level, bucket));
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.nzoth.testgraph.chart;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StackedSeriesTest {
+    private static final int POINT_COUNT = 1003;
+    private static final int SERIES_COUNT = 4;
+
+    @Test
+    public void updateMatchesNewSums() {
+        long[][] graphList = createGraphList();
+        SeriesVisibility visibility = new SeriesVisibility(SERIES_COUNT);
+        StackedSeries stackedSeries = new StackedSeries(graphList, POINT_COUNT, visibility, false);
+
+        //hides, then shows them again in another order
+        int[] toggles = {2, 0, 3, 1, 0, 2, 1, 3};
+        for (int step = 0; step < toggles.length; step++) {
+            int series = toggles[step];
+            visibility.setVisible(series, step >= SERIES_COUNT, 0);
+            stackedSeries.update(graphList, visibility, series);
+            assertSameSums(new StackedSeries(graphList, POINT_COUNT, visibility, false), stackedSeries);
+        }
+    }
+
+    @Test
+    public void updateReusesArraysAndIndexes() {
+        long[][] graphList = createGraphList();
+        SeriesVisibility visibility = new SeriesVisibility(SERIES_COUNT);
+        StackedSeries stackedSeries = new StackedSeries(graphList, POINT_COUNT, visibility, false);
+        long[][] stacks = new long[SERIES_COUNT][];
+        SeriesPyramid[] pyramids = new SeriesPyramid[SERIES_COUNT];
+        for (int i = 0; i < SERIES_COUNT; i++) {
+            stacks[i] = stackedSeries.getStack(i);
+            pyramids[i] = stackedSeries.getPyramid(i);
+        }
+        RangeMaxIndex totalMaxIndex = stackedSeries.getTotalMaxIndex();
+        long[] below = stacks[0].clone();
+
+        visibility.setVisible(1, false, 0);
+        stackedSeries.update(graphList, visibility, 1);
+
+        for (int i = 0; i < SERIES_COUNT; i++) {
+            assertSame(stacks[i], stackedSeries.getStack(i));
+            assertSame(pyramids[i], stackedSeries.getPyramid(i));
+        }
+        assertSame(totalMaxIndex, stackedSeries.getTotalMaxIndex());
+        assertArrayEquals(below, stackedSeries.getStack(0));
+    }
+
+    @Test
+    public void fadingSeriesCountsByItsAlpha() {
+        long[][] graphList = createGraphList();
+        SeriesVisibility visibility = new SeriesVisibility(SERIES_COUNT);
+        StackedSeries stackedSeries = new StackedSeries(graphList, POINT_COUNT, visibility, false);
+        long[] shown = stackedSeries.getTotal().clone();
+
+        visibility.setVisible(1, false, 0);
+        stackedSeries.update(graphList, visibility, 1);
+        long[] hidden = stackedSeries.getTotal().clone();
+        int top = SERIES_COUNT - 1;
+
+        //the hidden series is still all there when its fade starts, and gone at its end
+        assertTrue(stackedSeries.setFades(visibility, 0));
+        for (int i = 0; i < POINT_COUNT; i++) {
+            assertEquals(shown[i], stackedSeries.getShownValue(top, i), 0.5F);
+            assertEquals(stackedSeries.getStack(0)[i], stackedSeries.getShownValue(0, i), 0);
+        }
+        float alpha = visibility.getAlpha(1, SeriesVisibility.DURATION_MILLIS / 2);
+        stackedSeries.setFades(visibility, SeriesVisibility.DURATION_MILLIS / 2);
+        for (int i = 0; i < POINT_COUNT; i++) {
+            assertEquals(hidden[i] + alpha * graphList[1][i], stackedSeries.getShownValue(top, i), 0.5F);
+        }
+        assertFalse(stackedSeries.setFades(visibility, SeriesVisibility.DURATION_MILLIS));
+        for (int i = 0; i < POINT_COUNT; i++) {
+            assertEquals(hidden[i], stackedSeries.getShownValue(top, i), 0);
+        }
+
+        //and grows back from nothing when shown again
+        visibility.setVisible(1, true, 1000);
+        stackedSeries.update(graphList, visibility, 1);
+        stackedSeries.setFades(visibility, 1000);
+        for (int i = 0; i < POINT_COUNT; i++) {
+            assertEquals(hidden[i], stackedSeries.getShownValue(top, i), 0.5F);
+        }
+    }
+
+    private static void assertSameSums(StackedSeries expected, StackedSeries actual) {
+        Random random = new Random(7);
+        for (int series = 0; series < SERIES_COUNT; series++) {
+            long[] stack = expected.getStack(series);
+            assertArrayEquals(stack, actual.getStack(series));
+            for (int i = 0; i < 100; i++) {
+                int from = random.nextInt(POINT_COUNT);
+                int to = from + 1 + random.nextInt(POINT_COUNT - from);
+                assertEquals(RangeMaxIndexTest.scan(stack, from, to), actual.getPyramid(series).getMax(from, to));
+                if (series == SERIES_COUNT - 1) {
+                    assertEquals(RangeMaxIndexTest.scan(stack, from, to), actual.getTotalMaxIndex().getMax(from, to));
+                }
+            }
+        }
+    }
+
+    private static long[][] createGraphList() {
+        long[][] graphList = new long[SERIES_COUNT][];
+        for (int i = 0; i < SERIES_COUNT; i++) {
+            graphList[i] = LineDownsamplerTest.randomWalk(POINT_COUNT, i);
+        }
+        return graphList;
+    }
+}
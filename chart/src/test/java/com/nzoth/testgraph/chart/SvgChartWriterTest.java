@@ -0,0 +1,117 @@
+package com.nzoth.testgraph.chart;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SvgChartWriterTest {
+    private static final int COLOR = 0xFF3DC23F;
+
+    @Test
+    public void connectedSegmentsAreOnePolyline() {
+        assertEquals("M0 0L10 10L20 5M30 30L40 40", writePath(
+                0, 0, 10, 10,
+                10, 10, 20, 5,
+                //a gap starts a new polyline
+                30, 30, 40, 40));
+        //only x or only y continuing is a gap too
+        assertEquals("M0 0L1 1M1 2L3 3M2 3L4 4", writePath(
+                0, 0, 1, 1,
+                1, 2, 3, 3,
+                2, 3, 4, 4));
+    }
+
+    @Test
+    public void lessThanASegmentIsNotWritten() {
+        StringWriter writer = new StringWriter();
+        new SvgChartWriter(writer, 12).drawLines(new float[]{0, 0, 1}, 3, COLOR, 2);
+        assertEquals("", writer.toString());
+    }
+
+    @Test
+    public void numbersAreRoundedToTenths() {
+        assertEquals("M12.3 0L2 -2", writePath(12.34F, 0.04F, 1.96F, -1.96F));
+        //no "-0" for small negatives, and no trailing ".0"
+        assertEquals("M-0.1 0L-3 100", writePath(-0.06F, -0.04F, -3F, 99.96F));
+        assertEquals("M1234567.9 0.5L-1234567.9 7.1", writePath(1234567.875F, 0.5F, -1234567.875F, 7.06F));
+    }
+
+    @Test
+    public void colorsHaveSixDigitsAndOpacityBelowOpaque() {
+        String opaque = writeLines(0xFF00000F);
+        assertTrue(opaque, opaque.contains(" stroke=\"#00000f\""));
+        assertFalse(opaque, opaque.contains("opacity"));
+
+        String translucent = writeLines(0x80FF0000);
+        assertTrue(translucent, translucent.contains(" stroke=\"#ff0000\" stroke-opacity=\"0.5\""));
+
+        StringWriter writer = new StringWriter();
+        new SvgChartWriter(writer, 12).drawText("1M".toCharArray(), 2, 4, 8, 0x00888888, true);
+        assertEquals("<text x=\"4\" y=\"8\" font-family=\"sans-serif\" font-size=\"12\" text-anchor=\"end\""
+                + " fill=\"#888888\" fill-opacity=\"0\">1M</text>\n", writer.toString());
+    }
+
+    @Test
+    public void documentWrapsTheDrawing() throws IOException {
+        StringWriter writer = new StringWriter();
+        SvgChartWriter svgWriter = new SvgChartWriter(writer, 12.5F);
+        svgWriter.begin(300, 200);
+        svgWriter.drawText("Jan 1".toCharArray(), 3, 1.25F, 2, ChartImage.LABEL_COLOR, false);
+        svgWriter.end();
+
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"300\" height=\"200\" viewBox=\"0 0 300 200\">\n"
+                + "<rect width=\"100%\" height=\"100%\" fill=\"#ffffff\"/>\n"
+                + "<text x=\"1.3\" y=\"2\" font-family=\"sans-serif\" font-size=\"12.5\" fill=\"#888888\">Jan</text>\n"
+                + "</svg>\n", writer.toString());
+    }
+
+    @Test
+    public void firstWriteErrorIsThrownAtTheEnd() throws IOException {
+        final IOException error = new IOException("Disk full");
+        SvgChartWriter svgWriter = new SvgChartWriter(new Writer() {
+            @Override
+            public void write(char[] chars, int offset, int length) throws IOException {
+                throw error;
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        }, 12);
+        svgWriter.drawLines(new float[]{0, 0, 1, 1}, 4, COLOR, 2);
+        svgWriter.drawText("1".toCharArray(), 1, 0, 0, COLOR, false);
+        try {
+            svgWriter.end();
+            fail("Ended after a failed write");
+        } catch (IOException e) {
+            assertEquals(error, e);
+        }
+    }
+
+    private static String writeLines(int color) {
+        StringWriter writer = new StringWriter();
+        new SvgChartWriter(writer, 12).drawLines(new float[]{0, 0, 1, 1}, 4, color, 2);
+        return writer.toString();
+    }
+
+    //the d attribute of the path
+    private static String writePath(float... segments) {
+        StringWriter writer = new StringWriter();
+        new SvgChartWriter(writer, 12).drawLines(segments, segments.length, COLOR, 2);
+        String path = writer.toString();
+        int start = path.indexOf(" d=\"") + 4;
+        return path.substring(start, path.indexOf('"', start));
+    }
+}